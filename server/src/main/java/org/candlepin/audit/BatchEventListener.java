@@ -0,0 +1,35 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.audit;
+
+import java.util.List;
+
+
+
+/**
+ * An EventListener able to process the events put on the event queue in batches. When batches are
+ * enabled, the events of the listener's queue are received in batches, and each batch is
+ * acknowledged as a whole once it has been processed.
+ */
+public interface BatchEventListener extends EventListener {
+
+    /**
+     * Called when a batch of events was received from the event queue. If this method throws an
+     * exception, every event of the batch is put back on the queue.
+     *
+     * @param events the events that were received, in the order they were received.
+     */
+    void onEvents(List<Event> events);
+}
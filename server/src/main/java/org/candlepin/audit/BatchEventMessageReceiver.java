@@ -0,0 +1,266 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.audit;
+
+import org.apache.activemq.artemis.api.core.ActiveMQException;
+import org.apache.activemq.artemis.api.core.client.ClientConsumer;
+import org.apache.activemq.artemis.api.core.client.ClientMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+
+/**
+ * A MessageReceiver draining the messages of its queue in batches, for listeners able to process
+ * events in batches. A dedicated thread receives up to a maximum number of messages, waiting up to
+ * a maximum time for a batch to fill up once its first message has been received, hands the events
+ * of the batch to the listener, and commits the session once per batch.
+ *
+ * When a batch fails to be processed, the session is rolled back and every message of the batch is
+ * put back on the queue. The messages received next are then processed one at a time, so that a
+ * message which cannot be processed does not cause the other messages of its batch to be redelivered
+ * until they reach their maximum number of delivery attempts.
+ */
+public class BatchEventMessageReceiver extends MessageReceiver {
+
+    private static Logger log = LoggerFactory.getLogger(BatchEventMessageReceiver.class);
+
+    /** The number of milliseconds to wait for the first message of a batch between checks for shutdown */
+    private static final long POLL_INTERVAL = 1000;
+
+    private final BatchEventListener batchListener;
+    private final int batchSize;
+    private final long batchWait;
+
+    private Thread worker;
+    private volatile boolean running;
+    private int individualRetries;
+
+    private volatile long batchCount;
+    private volatile long batchedMessageCount;
+    private volatile int lastBatchSize;
+    private volatile long lastBatchLag;
+
+    /**
+     * Creates a receiver handing the events of the listener's queue to the listener in batches.
+     *
+     * @param listener the listener of the events.
+     * @param connection the connection to the message broker.
+     * @param codec the codec used to read the events.
+     * @param batchSize the maximum number of events in a batch.
+     * @param batchWait the maximum number of milliseconds to wait for a batch to fill up once its
+     *  first event has been received.
+     *
+     * @throws ActiveMQException
+     */
+    public BatchEventMessageReceiver(BatchEventListener listener, ActiveMQConnection connection,
+        EventCodec codec, int batchSize, long batchWait) throws ActiveMQException {
+        super(listener, connection, codec);
+
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize is less than one");
+        }
+
+        this.batchListener = listener;
+        this.batchSize = batchSize;
+        this.batchWait = Math.max(0, batchWait);
+    }
+
+    @Override
+    protected void startConsumer() throws ActiveMQException {
+        // Messages are pulled from the consumer by the worker thread rather than pushed to a handler
+        super.startConsumer();
+
+        this.running = true;
+        this.worker = new Thread(this::drain, "event-batch-" + listener.getClass().getSimpleName());
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Stops the thread receiving the messages, and waits for the batch being processed to be
+     * committed or rolled back.
+     */
+    private void stopWorker() {
+        this.running = false;
+
+        if (this.worker != null && this.worker != Thread.currentThread()) {
+            try {
+                this.worker.join(POLL_INTERVAL + this.batchWait);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (this.worker.isAlive()) {
+                log.warn("Message receiver for {} is still processing a batch; closing anyway", listener);
+            }
+
+            this.worker = null;
+        }
+    }
+
+    @Override
+    public void pause() {
+        this.stopWorker();
+        super.pause();
+    }
+
+    @Override
+    public void close() {
+        this.stopWorker();
+        super.close();
+    }
+
+    private void drain() {
+        log.debug("Receiving messages for {} in batches of up to {} messages", listener, this.batchSize);
+
+        while (this.running) {
+            try {
+                List<ClientMessage> messages = this.receiveBatch(this.consumer, this.nextBatchLimit());
+
+                if (!messages.isEmpty()) {
+                    if (this.individualRetries > 0) {
+                        --this.individualRetries;
+                    }
+
+                    this.process(messages);
+                }
+            }
+            catch (ActiveMQException e) {
+                if (this.running) {
+                    log.error("Unable to receive messages for {}; stopping message consumption",
+                        listener, e);
+                }
+
+                break;
+            }
+        }
+
+        log.debug("Stopped receiving messages for {}", listener);
+    }
+
+    /**
+     * @return the maximum number of messages of the next batch; 1 while the messages of a failed
+     *  batch are being retried.
+     */
+    int nextBatchLimit() {
+        return this.individualRetries > 0 ? 1 : this.batchSize;
+    }
+
+    /**
+     * Receives the next batch of messages. Waits for the first message of the batch, and then for
+     * up to the batch wait time for the batch to fill up.
+     *
+     * @return the messages received, or an empty list if no message was received before the poll
+     *  interval elapsed.
+     */
+    List<ClientMessage> receiveBatch(ClientConsumer consumer, int limit) throws ActiveMQException {
+        List<ClientMessage> messages = new ArrayList<>();
+
+        ClientMessage message = consumer.receive(POLL_INTERVAL);
+        if (message == null) {
+            return messages;
+        }
+
+        messages.add(message);
+        long deadline = System.currentTimeMillis() + this.batchWait;
+
+        while (messages.size() < limit) {
+            long remaining = deadline - System.currentTimeMillis();
+
+            // Note that a timeout of 0 would wait for a message indefinitely
+            message = remaining > 0 ? consumer.receive(remaining) : consumer.receiveImmediate();
+            if (message == null) {
+                break;
+            }
+
+            messages.add(message);
+        }
+
+        return messages;
+    }
+
+    /**
+     * Processes a batch of messages, committing the session if the listener processed every event,
+     * and rolling it back otherwise.
+     */
+    void process(List<ClientMessage> messages) {
+        try {
+            List<Event> events = new ArrayList<>(messages.size());
+            long oldest = Long.MAX_VALUE;
+
+            for (ClientMessage msg : messages) {
+                // Acknowledge the messages so that the server updates their delivery counts, which
+                // play part in calculating redelivery delays.
+                msg.acknowledge();
+
+                events.add(codec.decode(msg));
+
+                if (msg.getTimestamp() > 0) {
+                    oldest = Math.min(oldest, msg.getTimestamp());
+                }
+            }
+
+            this.batchListener.onEvents(events);
+
+            // Commit the session so that the whole batch is taken out of the queue.
+            session.commit();
+
+            log.debug("Message listener {} processed a batch of {} messages: SUCCESS", listener,
+                messages.size());
+
+            this.batchCount++;
+            this.batchedMessageCount += messages.size();
+            this.lastBatchSize = messages.size();
+            this.lastBatchLag = oldest != Long.MAX_VALUE ?
+                Math.max(0, System.currentTimeMillis() - oldest) :
+                0;
+        }
+        catch (Exception e) {
+            String reason = (e.getCause() == null) ? e.getMessage() : e.getCause().getMessage();
+            log.error("Unable to process a batch of {} messages: {}", messages.size(), reason);
+            log.debug("Unable to process a batch of messages. Rolling back client session.", e);
+
+            try {
+                // Put every message of the batch back on the queue
+                session.rollback();
+            }
+            catch (ActiveMQException amqe) {
+                log.error("Unable to roll back client session.", amqe);
+            }
+
+            // Process the redelivered messages one at a time
+            this.individualRetries += messages.size();
+        }
+    }
+
+    @Override
+    public void updateQueueStatus(QueueStatus status) {
+        status.setBatchCount(this.batchCount);
+        status.setBatchedMessageCount(this.batchedMessageCount);
+        status.setLastBatchSize(this.lastBatchSize);
+        status.setLastBatchLag(this.lastBatchLag);
+    }
+
+    @Override
+    protected String getQueueAddress() {
+        return MessageAddress.DEFAULT_EVENT_MESSAGE_ADDRESS;
+    }
+
+}
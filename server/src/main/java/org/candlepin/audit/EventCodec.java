@@ -0,0 +1,417 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.audit;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import org.apache.activemq.artemis.api.core.ActiveMQBuffer;
+import org.apache.activemq.artemis.api.core.client.ClientMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+
+
+/**
+ * Encodes the events sent to the internal event queues into message bodies, and decodes them back.
+ *
+ * Events are encoded as JSON by default. The binary format is a compact, versioned encoding of the
+ * fields of an event, optionally compressed with deflate above a configured size. Messages in the
+ * binary format are flagged with a message property, so that messages in either format are decoded
+ * correctly while the format is being switched. Only the messages of the internal queues are
+ * affected; events published to the AMQP bus are always converted to JSON by their publisher.
+ */
+@Singleton
+public class EventCodec {
+    private static Logger log = LoggerFactory.getLogger(EventCodec.class);
+
+    /** The message property naming the format of a message body; absent for JSON bodies */
+    public static final String FORMAT_PROPERTY = "cp_event_format";
+
+    /** The version of the binary format written by this codec */
+    static final byte BINARY_VERSION = 1;
+
+    /** Set in the flags of binary bodies whose fields are compressed with deflate */
+    static final byte FLAG_DEFLATED = 0x01;
+
+    /**
+     * The formats of the events sent to the internal event queues.
+     */
+    public enum Format {
+        JSON("json"),
+        BINARY("binary");
+
+        private final String label;
+
+        Format(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public static Format fromLabel(String label) {
+            for (Format format : Format.values()) {
+                if (format.label.equalsIgnoreCase(label)) {
+                    return format;
+                }
+            }
+
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return getLabel();
+        }
+    }
+
+    private final ObjectMapper mapper;
+    private final Format format;
+    private final int compressionThreshold;
+
+    @Inject
+    public EventCodec(ObjectMapper mapper, Configuration config) {
+        this(mapper, readFormat(config),
+            config.getInt(ConfigProperties.AUDIT_MESSAGE_COMPRESSION_THRESHOLD, 0));
+    }
+
+    /**
+     * Creates a codec encoding events as JSON.
+     *
+     * @param mapper the mapper used to read and write JSON events.
+     */
+    public EventCodec(ObjectMapper mapper) {
+        this(mapper, Format.JSON, 0);
+    }
+
+    /**
+     * Creates a codec encoding events in the given format.
+     *
+     * @param mapper the mapper used to read and write JSON events.
+     * @param format the format in which events are encoded.
+     * @param compressionThreshold the size in bytes from which the fields of binary events are
+     *  compressed; 0 to never compress them.
+     */
+    public EventCodec(ObjectMapper mapper, Format format, int compressionThreshold) {
+        this.mapper = mapper;
+        this.format = format;
+        this.compressionThreshold = Math.max(0, compressionThreshold);
+    }
+
+    private static Format readFormat(Configuration config) {
+        String label = config.getString(ConfigProperties.AUDIT_MESSAGE_FORMAT, Format.JSON.getLabel());
+        Format format = Format.fromLabel(label);
+
+        if (format == null) {
+            log.warn("Unknown event message format \"{}\"; events will be sent as {}", label, Format.JSON);
+            format = Format.JSON;
+        }
+
+        return format;
+    }
+
+    public Format getFormat() {
+        return this.format;
+    }
+
+    /**
+     * Writes the given event into the body of a message.
+     *
+     * @param event the event to write.
+     * @param message the message to write the event into.
+     *
+     * @throws IOException if the event could not be encoded.
+     */
+    public void encode(Event event, ClientMessage message) throws IOException {
+        if (this.format == Format.BINARY) {
+            message.putStringProperty(FORMAT_PROPERTY, Format.BINARY.getLabel());
+            message.getBodyBuffer().writeBytes(this.toBinary(event));
+        }
+        else {
+            message.getBodyBuffer().writeString(this.mapper.writeValueAsString(event));
+        }
+    }
+
+    /**
+     * Reads the event from the body of a message, in the format the message was written in.
+     *
+     * @param message the message to read the event from.
+     *
+     * @throws IOException if the event could not be decoded.
+     *
+     * @return the event of the message.
+     */
+    public Event decode(ClientMessage message) throws IOException {
+        String label = message.getStringProperty(FORMAT_PROPERTY);
+
+        if (label == null || Format.JSON.getLabel().equals(label)) {
+            String body = message.getBodyBuffer().readString();
+            log.debug("Got event: {}", body);
+            return this.mapper.readValue(body, Event.class);
+        }
+
+        if (!Format.BINARY.getLabel().equals(label)) {
+            throw new IOException("Unsupported event message format: " + label);
+        }
+
+        ActiveMQBuffer buffer = message.getBodyBuffer();
+        byte[] body = new byte[buffer.readableBytes()];
+        buffer.readBytes(body);
+
+        Event event = this.fromBinary(body);
+        log.debug("Got event: {}", event);
+        return event;
+    }
+
+    /**
+     * Encodes an event in the binary format. A binary body starts with the format version and a
+     * byte of flags, followed by the fields of the event, compressed with deflate if flagged.
+     */
+    byte[] toBinary(Event event) {
+        BinaryWriter writer = new BinaryWriter();
+        writer.writeString(event.getId());
+        writer.writeString(event.getType() != null ? event.getType().name() : null);
+        writer.writeString(event.getTarget() != null ? event.getTarget().name() : null);
+        writer.writeString(event.getTargetName());
+        writer.writeString(event.getPrincipalStore());
+        writer.writeDate(event.getTimestamp());
+        writer.writeString(event.getEntityId());
+        writer.writeString(event.getOwnerId());
+        writer.writeString(event.getConsumerUuid());
+        writer.writeString(event.getReferenceId());
+        writer.writeString(event.getReferenceType() != null ? event.getReferenceType().name() : null);
+        writer.writeString(event.getEventData());
+        writer.writeString(event.getMessageText());
+
+        byte[] fields = writer.toByteArray();
+        byte flags = 0;
+
+        if (this.compressionThreshold > 0 && fields.length >= this.compressionThreshold) {
+            byte[] deflated = deflate(fields);
+
+            // Incompressible fields are kept as they are
+            if (deflated.length < fields.length) {
+                fields = deflated;
+                flags |= FLAG_DEFLATED;
+            }
+        }
+
+        byte[] body = new byte[fields.length + 2];
+        body[0] = BINARY_VERSION;
+        body[1] = flags;
+        System.arraycopy(fields, 0, body, 2, fields.length);
+
+        return body;
+    }
+
+    /**
+     * Decodes an event encoded in the binary format.
+     */
+    Event fromBinary(byte[] body) throws IOException {
+        if (body.length < 2) {
+            throw new IOException("Truncated binary event");
+        }
+
+        if (body[0] != BINARY_VERSION) {
+            throw new IOException("Unsupported binary event version: " + body[0]);
+        }
+
+        byte[] fields = new byte[body.length - 2];
+        System.arraycopy(body, 2, fields, 0, fields.length);
+
+        if ((body[1] & FLAG_DEFLATED) != 0) {
+            fields = inflate(fields);
+        }
+
+        try {
+            BinaryReader reader = new BinaryReader(fields);
+
+            Event event = new Event();
+            event.setId(reader.readString());
+            String type = reader.readString();
+            event.setType(type != null ? Event.Type.valueOf(type) : null);
+            String target = reader.readString();
+            event.setTarget(target != null ? Event.Target.valueOf(target) : null);
+            event.setTargetName(reader.readString());
+            event.setPrincipalStore(reader.readString());
+            event.setTimestamp(reader.readDate());
+            event.setEntityId(reader.readString());
+            event.setOwnerId(reader.readString());
+            event.setConsumerUuid(reader.readString());
+            event.setReferenceId(reader.readString());
+            String referenceType = reader.readString();
+            event.setReferenceType(referenceType != null ? Event.ReferenceType.valueOf(referenceType) : null);
+            event.setEventData(reader.readString());
+            event.setMessageText(reader.readString());
+
+            return event;
+        }
+        catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Malformed binary event", e);
+        }
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 2 + 16);
+            byte[] block = new byte[8192];
+
+            while (!deflater.finished()) {
+                int length = deflater.deflate(block);
+                output.write(block, 0, length);
+            }
+
+            return output.toByteArray();
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) throws IOException {
+        Inflater inflater = new Inflater();
+
+        try {
+            inflater.setInput(data);
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream(data.length * 4);
+            byte[] block = new byte[8192];
+
+            while (!inflater.finished()) {
+                int length = inflater.inflate(block);
+
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated compressed event");
+                }
+
+                output.write(block, 0, length);
+            }
+
+            return output.toByteArray();
+        }
+        catch (DataFormatException e) {
+            throw new IOException("Malformed compressed event", e);
+        }
+        finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Writes the fields of binary events. Strings are written as their UTF-8 length plus one,
+     * followed by their bytes, with a length of 0 standing for null. Dates are written as their
+     * time plus one, with 0 standing for null. Numbers are written as unsigned variable-length
+     * integers, seven bits per byte, least significant bits first.
+     */
+    private static class BinaryWriter extends ByteArrayOutputStream {
+
+        BinaryWriter() {
+            super(256);
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                this.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+
+            this.write((int) value);
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                this.writeVarLong(0);
+                return;
+            }
+
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            this.writeVarLong(bytes.length + 1L);
+            this.write(bytes, 0, bytes.length);
+        }
+
+        void writeDate(Date value) {
+            this.writeVarLong(value != null ? value.getTime() + 1 : 0);
+        }
+    }
+
+    /**
+     * Reads the fields written by a BinaryWriter.
+     */
+    private static class BinaryReader {
+        private final byte[] data;
+        private int position;
+
+        BinaryReader(byte[] data) {
+            this.data = data;
+        }
+
+        long readVarLong() {
+            long value = 0;
+
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte next = this.data[this.position++];
+                value |= (long) (next & 0x7F) << shift;
+
+                if ((next & 0x80) == 0) {
+                    return value;
+                }
+            }
+
+            throw new IllegalArgumentException("Malformed variable-length integer");
+        }
+
+        String readString() {
+            long length = this.readVarLong();
+
+            if (length == 0) {
+                return null;
+            }
+
+            if (length - 1 > this.data.length - this.position) {
+                throw new IndexOutOfBoundsException("String exceeds the event");
+            }
+
+            String value = new String(this.data, this.position, (int) (length - 1), StandardCharsets.UTF_8);
+            this.position += (int) (length - 1);
+
+            return value;
+        }
+
+        Date readDate() {
+            long time = this.readVarLong();
+            return time != 0 ? new Date(time - 1) : null;
+        }
+    }
+
+}
@@ -14,9 +14,9 @@
  */
 package org.candlepin.audit;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.activemq.artemis.api.core.ActiveMQException;
 import org.apache.activemq.artemis.api.core.client.ClientMessage;
+import org.apache.activemq.artemis.api.core.client.MessageHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,18 +25,23 @@ import org.slf4j.LoggerFactory;
  * back in the associated queue and will retry the send on a configured basis. This is the
  * default ActiveMQ message handler implementation.
  */
-public class EventMessageReceiver extends MessageReceiver {
+public class EventMessageReceiver extends MessageReceiver implements MessageHandler {
 
     private static Logger log = LoggerFactory.getLogger(EventMessageReceiver.class);
 
     public EventMessageReceiver(EventListener listener, ActiveMQConnection connection,
-        ObjectMapper mapper) throws ActiveMQException {
-        super(listener, connection, mapper);
+        EventCodec codec) throws ActiveMQException {
+        super(listener, connection, codec);
+    }
+
+    @Override
+    protected void startConsumer() throws ActiveMQException {
+        super.startConsumer();
+        this.consumer.setMessageHandler(this);
     }
 
     @Override
     public void onMessage(ClientMessage msg) {
-        String body = "";
         try {
             // Acknowledge the message so that the server knows that it was received.
             // By doing this, the server can update the delivery counts which plays
@@ -45,9 +50,7 @@ public class EventMessageReceiver extends MessageReceiver {
             log.debug("ActiveMQ message {} acknowledged for listener: {}", msg.getMessageID(), listener);
 
             // Process the message via our EventListener framework.
-            body = msg.getBodyBuffer().readString();
-            log.debug("Got event: {}", body);
-            Event event = mapper.readValue(body, Event.class);
+            Event event = codec.decode(msg);
             listener.onEvent(event);
 
             log.debug("Message listener {} processed message: {}: SUCCESS", listener, msg.getMessageID());
@@ -63,7 +66,7 @@ public class EventMessageReceiver extends MessageReceiver {
             log.debug("Message listener {} processed message: {}: FAILURE", listener, msg.getMessageID());
 
             // If debugging is enabled log a more in depth message.
-            log.debug("Unable to process message. Rolling back client session.\n{}", body, e);
+            log.debug("Unable to process message. Rolling back client session.", e);
             try {
                 // When any exception occurs while processing the message, we need to roll back
                 // the session so that the message remains on the queue.
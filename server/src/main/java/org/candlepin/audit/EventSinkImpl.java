@@ -26,8 +26,6 @@ import org.candlepin.dto.manifest.v1.SubscriptionDTO;
 import org.candlepin.policy.SystemPurposeComplianceStatus;
 import org.candlepin.policy.js.compliance.ComplianceStatus;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import org.apache.activemq.artemis.api.core.ActiveMQException;
 import org.apache.activemq.artemis.api.core.SimpleString;
 import org.apache.activemq.artemis.api.core.client.ClientMessage;
@@ -36,6 +34,7 @@ import org.apache.activemq.artemis.api.core.client.ClientSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -52,24 +51,26 @@ public class EventSinkImpl implements EventSink {
     private static Logger log = LoggerFactory.getLogger(EventSinkImpl.class);
 
     private EventFactory eventFactory;
-    private ObjectMapper mapper;
+    private EventCodec codec;
     private EventFilter eventFilter;
     private ModeManager modeManager;
     private Configuration config;
 
     private EventSinkConnection connection;
+    private EventSource eventSource;
     private EventMessageSender messageSender;
 
     @Inject
     public EventSinkImpl(EventFilter eventFilter, EventFactory eventFactory,
-        ObjectMapper mapper, Configuration config, EventSinkConnection connection,
-        ModeManager modeManager) throws ActiveMQException {
+        EventCodec codec, Configuration config, EventSinkConnection connection,
+        ModeManager modeManager, EventSource eventSource) throws ActiveMQException {
         this.eventFactory = eventFactory;
-        this.mapper = mapper;
+        this.codec = codec;
         this.eventFilter = eventFilter;
         this.modeManager = modeManager;
         this.config = config;
         this.connection = connection;
+        this.eventSource = eventSource;
     }
 
     // FIXME This method really does not belong here. It should probably be moved
@@ -83,7 +84,11 @@ public class EventSinkImpl implements EventSink {
             for (String listenerClassName : ActiveMQContextListener.getActiveMQListeners(config)) {
                 String queueName = "event." + listenerClassName;
                 long msgCount = session.queueQuery(new SimpleString(queueName)).getMessageCount();
-                results.add(new QueueStatus(queueName, msgCount));
+                QueueStatus status = new QueueStatus(queueName, msgCount);
+
+                // Add the lag and batch statistics of the listeners receiving events in batches
+                this.eventSource.updateQueueStatus(status);
+                results.add(status);
             }
         }
         catch (Exception e) {
@@ -119,7 +124,7 @@ public class EventSinkImpl implements EventSink {
             if (messageSender == null) {
                 messageSender = new EventMessageSender(this.connection);
             }
-            messageSender.queueMessage(mapper.writeValueAsString(event));
+            messageSender.queueMessage(event);
         }
         catch (Exception e) {
             log.error("Error while trying to send event", e);
@@ -240,9 +245,9 @@ public class EventSinkImpl implements EventSink {
             log.debug("Created new message sender.");
         }
 
-        public void queueMessage(String eventString) throws ActiveMQException {
+        public void queueMessage(Event event) throws ActiveMQException, IOException {
             ClientMessage message = session.createMessage(true);
-            message.getBodyBuffer().writeString(eventString);
+            codec.encode(event, message);
 
             // NOTE: not actually sent until we commit the session.
             producer.send(message);
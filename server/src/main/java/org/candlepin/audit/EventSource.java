@@ -14,10 +14,11 @@
  */
 package org.candlepin.audit;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 
 import com.google.inject.Singleton;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.controller.ActiveMQStatusListener;
 import org.candlepin.controller.QpidStatusListener;
 import org.slf4j.Logger;
@@ -33,14 +34,18 @@ import java.util.List;
 public class EventSource implements QpidStatusListener, ActiveMQStatusListener {
     private static Logger log = LoggerFactory.getLogger(EventSource.class);
 
-    private ObjectMapper mapper;
+    private EventCodec codec;
     private EventSourceConnection connection;
     private List<MessageReceiver> messageReceivers = new LinkedList<>();
+    private int batchSize;
+    private long batchWait;
 
     @Inject
-    public EventSource(EventSourceConnection connection, ObjectMapper mapper) {
+    public EventSource(EventSourceConnection connection, EventCodec codec, Configuration config) {
         this.connection = connection;
-        this.mapper = mapper;
+        this.codec = codec;
+        this.batchSize = config.getInt(ConfigProperties.AUDIT_LISTENER_BATCH_SIZE, 0);
+        this.batchWait = config.getLong(ConfigProperties.AUDIT_LISTENER_BATCH_WAIT, 500L);
     }
 
     protected void shutDown() {
@@ -51,10 +56,27 @@ public class EventSource implements QpidStatusListener, ActiveMQStatusListener {
     void registerListener(EventListener listener) throws Exception {
         log.debug("Registering event listener for queue: {}", EventSource.getQueueName(listener));
         if (listener.requiresQpid()) {
-            this.messageReceivers.add(new QpidEventMessageReceiver(listener, this.connection, mapper));
+            this.messageReceivers.add(new QpidEventMessageReceiver(listener, this.connection, codec));
+        }
+        else if (listener instanceof BatchEventListener && this.batchSize > 0) {
+            this.messageReceivers.add(new BatchEventMessageReceiver((BatchEventListener) listener,
+                this.connection, codec, this.batchSize, this.batchWait));
         }
         else {
-            this.messageReceivers.add(new EventMessageReceiver(listener, this.connection, mapper));
+            this.messageReceivers.add(new EventMessageReceiver(listener, this.connection, codec));
+        }
+    }
+
+    /**
+     * Adds the statistics kept by the receiver of the given queue to its status.
+     *
+     * @param status the status of a listener queue.
+     */
+    public void updateQueueStatus(QueueStatus status) {
+        for (MessageReceiver receiver : this.messageReceivers) {
+            if (receiver.queueName.equals(status.getQueueName())) {
+                receiver.updateQueueStatus(status);
+            }
         }
     }
 
@@ -15,26 +15,25 @@
 
 package org.candlepin.audit;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.activemq.artemis.api.core.ActiveMQException;
 import org.apache.activemq.artemis.api.core.client.ClientConsumer;
 import org.apache.activemq.artemis.api.core.client.ClientSession;
-import org.apache.activemq.artemis.api.core.client.MessageHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
 /**
- * A base implementation of Candlepin's ActiveMQ MessageHandler.
+ * A base implementation of Candlepin's ActiveMQ message receivers, each handling the messages of
+ * one listener's queue in its own session.
  */
-public abstract class MessageReceiver implements MessageHandler {
+public abstract class MessageReceiver {
 
     private static Logger log = LoggerFactory.getLogger(MessageReceiver.class);
 
     private ActiveMQConnection connection;
 
     protected ClientSession session;
-    protected ObjectMapper mapper;
+    protected EventCodec codec;
     protected EventListener listener;
     protected ClientConsumer consumer;
     protected String queueName;
@@ -42,9 +41,9 @@ public abstract class MessageReceiver implements MessageHandler {
     protected abstract String getQueueAddress();
 
     public MessageReceiver(EventListener listener, ActiveMQConnection connection,
-        ObjectMapper mapper) throws ActiveMQException {
+        EventCodec codec) throws ActiveMQException {
         this.connection = connection;
-        this.mapper = mapper;
+        this.codec = codec;
         this.listener = listener;
         this.queueName = EventSource.getQueueName(listener);
     }
@@ -77,8 +76,7 @@ public abstract class MessageReceiver implements MessageHandler {
         try {
             if (this.consumer.isClosed()) {
                 log.debug("Resuming message consumption for {}.", listener);
-                this.consumer = session.createConsumer(queueName);
-                this.consumer.setMessageHandler(this);
+                this.startConsumer();
             }
         }
         catch (ActiveMQException e) {
@@ -114,9 +112,28 @@ public abstract class MessageReceiver implements MessageHandler {
         if (session == null || session.isClosed()) {
             session = this.connection.createClientSession();
 
-            consumer = session.createConsumer(queueName);
-            consumer.setMessageHandler(this);
+            this.startConsumer();
             session.start();
         }
     }
+
+    /**
+     * Creates the consumer of this receiver's queue. Receivers override this method to start
+     * handling the messages of the consumer.
+     *
+     * @throws ActiveMQException when the consumer could not be created.
+     */
+    protected void startConsumer() throws ActiveMQException {
+        this.consumer = session.createConsumer(queueName);
+    }
+
+    /**
+     * Adds the statistics this receiver keeps about the messages it handled to the status of its
+     * queue. Receivers do not keep statistics by default.
+     *
+     * @param status the status of this receiver's queue.
+     */
+    public void updateQueueStatus(QueueStatus status) {
+        // Intentionally left empty
+    }
 }
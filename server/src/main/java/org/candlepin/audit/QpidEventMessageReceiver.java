@@ -14,24 +14,24 @@
  */
 package org.candlepin.audit;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.activemq.artemis.api.core.ActiveMQException;
 import org.apache.activemq.artemis.api.core.client.ClientMessage;
+import org.apache.activemq.artemis.api.core.client.MessageHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Receives messages from an Artemis Queue. Each receiver creates and handles its own session.
  */
-public class QpidEventMessageReceiver extends MessageReceiver {
+public class QpidEventMessageReceiver extends MessageReceiver implements MessageHandler {
     private static Logger log = LoggerFactory.getLogger(QpidEventMessageReceiver.class);
 
     private static final String AMQ_ORIG_ADDRESS = "_AMQ_ORIG_ADDRESS";
     private static final String AMQ_ORIG_MSG_ID = "_AMQ_ORIG_MESSAGE_ID";
 
     public QpidEventMessageReceiver(EventListener listener, ActiveMQConnection connection,
-        ObjectMapper mapper) throws ActiveMQException {
-        super(listener, connection, mapper);
+        EventCodec codec) throws ActiveMQException {
+        super(listener, connection, codec);
     }
 
     /**
@@ -39,6 +39,12 @@ public class QpidEventMessageReceiver extends MessageReceiver {
      *
      * @param msg the message that was received.
      */
+    @Override
+    protected void startConsumer() throws ActiveMQException {
+        super.startConsumer();
+        this.consumer.setMessageHandler(this);
+    }
+
     @Override
     public void onMessage(ClientMessage msg) {
         boolean messageWasDiverted = msg.containsProperty(AMQ_ORIG_MSG_ID);
@@ -46,7 +52,6 @@ public class QpidEventMessageReceiver extends MessageReceiver {
             String.valueOf(msg.getLongProperty(AMQ_ORIG_MSG_ID)) : String.valueOf(msg.getMessageID());
         String msgId = String.valueOf(msg.getMessageID());
 
-        String body = "";
         try {
             // Messages received on this address should have been diverted after it was sent to
             // the 'event.default' address.
@@ -56,9 +61,7 @@ public class QpidEventMessageReceiver extends MessageReceiver {
             }
 
             // Process the message via our EventListener framework.
-            body = msg.getBodyBuffer().readString();
-            log.debug("Got event: {}", body);
-            Event event = mapper.readValue(body, Event.class);
+            Event event = codec.decode(msg);
             listener.onEvent(event);
             log.debug("Message listener {} processed message: {} [{}]: SUCCESS", listener, msgId, origMsgId);
 
@@ -75,7 +78,7 @@ public class QpidEventMessageReceiver extends MessageReceiver {
             log.error("Unable to process message {}[{}]: {}", msgId, origMsgId, reason);
 
             // If debugging is enabled log a more in depth message.
-            log.debug("Unable to process message. Rolling back client session.\n{}", body, e);
+            log.debug("Unable to process message. Rolling back client session.", e);
 
             // Since we are closing the Consumer whenever Qpid is in trouble (when notified)
             // we do not want to roll back as the message will get resent when the Client
@@ -29,6 +29,12 @@ public class QueueStatus {
     private String queueName;
     private long pendingMessageCount;
 
+    // Statistics of the listeners receiving their events in batches; null for other listeners
+    private Long batchCount;
+    private Long batchedMessageCount;
+    private Integer lastBatchSize;
+    private Long lastBatchLag;
+
     public QueueStatus() {
     }
 
@@ -49,4 +55,45 @@ public class QueueStatus {
         this.pendingMessageCount = pendingMessageCount;
     }
 
+    /**
+     * @return the number of batches of messages processed since the listener was started.
+     */
+    public Long getBatchCount() {
+        return batchCount;
+    }
+    public void setBatchCount(Long batchCount) {
+        this.batchCount = batchCount;
+    }
+
+    /**
+     * @return the number of messages processed in batches since the listener was started.
+     */
+    public Long getBatchedMessageCount() {
+        return batchedMessageCount;
+    }
+    public void setBatchedMessageCount(Long batchedMessageCount) {
+        this.batchedMessageCount = batchedMessageCount;
+    }
+
+    /**
+     * @return the number of messages in the last batch processed.
+     */
+    public Integer getLastBatchSize() {
+        return lastBatchSize;
+    }
+    public void setLastBatchSize(Integer lastBatchSize) {
+        this.lastBatchSize = lastBatchSize;
+    }
+
+    /**
+     * @return the number of milliseconds between the time the oldest message of the last batch
+     *  was sent, and the time the batch was committed.
+     */
+    public Long getLastBatchLag() {
+        return lastBatchLag;
+    }
+    public void setLastBatchLag(Long lastBatchLag) {
+        this.lastBatchLag = lastBatchLag;
+    }
+
 }
@@ -78,10 +78,14 @@ public class BindChain {
         return true;
     }
 
-    private void lock(BindContext context) {
+    private boolean lock(BindContext context) {
         log.debug("Requesting locks");
-        context.lockPools();
+        if (!context.lockPools()) {
+            log.error("Skipped chain as pool quantities could not be reserved");
+            return false;
+        }
         log.debug("Successfully achieved locks");
+        return true;
     }
 
     private boolean execute(BindContext context) {
@@ -105,11 +109,13 @@ public class BindChain {
     }
 
     public Collection<Entitlement> run() throws EntitlementRefusedException {
-        if (preProcess(context)) {
-            lock(context);
+        if (preProcess(context) && lock(context)) {
             if (execute(context)) {
                 return context.getEntitlementMap().values();
             }
+
+            // a refusal does not roll the transaction back, so reservations must be released here
+            context.releasePools();
         }
         throw context.getException();
     }
@@ -14,6 +14,8 @@
  */
 package org.candlepin.bind;
 
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerCurator;
 import org.candlepin.model.ConsumerType;
@@ -23,8 +25,12 @@ import org.candlepin.model.Owner;
 import org.candlepin.model.OwnerCurator;
 import org.candlepin.model.Pool;
 import org.candlepin.model.PoolCurator;
+import org.candlepin.model.PoolCurator.QuantityReservation;
 import org.candlepin.model.PoolQuantity;
 import org.candlepin.policy.EntitlementRefusedException;
+import org.candlepin.policy.ValidationResult;
+import org.candlepin.policy.js.entitlement.EntitlementRulesTranslator;
+import org.candlepin.util.TraceableMetrics;
 import org.candlepin.util.Util;
 
 import com.google.inject.Inject;
@@ -33,6 +39,7 @@ import com.google.inject.assistedinject.Assisted;
 import org.xnap.commons.i18n.I18n;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -47,6 +54,8 @@ import java.util.Map;
  * one call per entity type.
  */
 public class BindContext {
+    static final String RESERVE_POOLS_METRIC = "BindContext.reservePools";
+
     private Consumer consumer;
     private Owner owner;
     private Consumer lockedConsumer;
@@ -54,6 +63,7 @@ public class BindContext {
     private Map<String, Entitlement> entitlementMap;
     private Map<String, Integer> quantities;
     private boolean quantityRequested = false;
+    private QuantityReservation reservation;
     //change to generic type in future if needed
     private EntitlementRefusedException exception;
     private PoolCurator poolCurator;
@@ -61,6 +71,8 @@ public class BindContext {
     private ConsumerTypeCurator consumerTypeCurator;
     private OwnerCurator ownerCurator;
     private I18n i18n;
+    private Configuration config;
+    private TraceableMetrics metrics;
 
     @Inject
     public BindContext(PoolCurator poolCurator,
@@ -68,6 +80,8 @@ public class BindContext {
         ConsumerTypeCurator consumerTypeCurator,
         OwnerCurator ownerCurator,
         I18n i18n,
+        Configuration config,
+        TraceableMetrics metrics,
         @Assisted Consumer consumer,
         @Assisted Map<String, Integer> quantities) {
 
@@ -76,6 +90,8 @@ public class BindContext {
         this.consumerTypeCurator = consumerTypeCurator;
         this.ownerCurator = ownerCurator;
         this.i18n = i18n;
+        this.config = config;
+        this.metrics = metrics;
         this.consumer = consumer;
         this.quantities = quantities;
     }
@@ -84,6 +100,15 @@ public class BindContext {
         return quantityRequested;
     }
 
+    /**
+     * @return
+     *  true if the requested quantities have been reserved, and are already included in the
+     *  consumed quantities of the pools; false otherwise
+     */
+    public boolean isQuantityReserved() {
+        return reservation != null;
+    }
+
     public Consumer getConsumer() {
         return consumer;
     }
@@ -123,12 +148,82 @@ public class BindContext {
 
     /**
      * locks the pools and replaces the existing entities in poolQuantities.
+     * if pool reservations are enabled, the requested quantities are reserved instead, and the
+     * pools are reloaded without locking them; unless the current transaction has already
+     * created or updated any of the pools, in which case they are locked anyway.
+     *
+     * @return
+     *  true if the pools were locked or reserved, false if a pool does not have enough quantity
+     *  left to reserve
      */
-    public void lockPools() {
+    public boolean lockPools() {
+        if (config.getBoolean(ConfigProperties.BIND_POOL_RESERVATIONS, false) &&
+            poolCurator.supportsQuantityReservations()) {
+            return reservePools();
+        }
+
+        return lockAndLoadPools();
+    }
+
+    private boolean lockAndLoadPools() {
         Collection<Pool> pools = poolCurator.lockAndLoadByIds(poolQuantities.keySet());
         for (Pool pool: pools) {
             poolQuantities.get(pool.getId()).setPool(pool);
         }
+        return true;
+    }
+
+    private boolean reservePools() {
+        Map<String, Integer> reserved = new HashMap<>();
+        for (PoolQuantity poolQuantity : poolQuantities.values()) {
+            reserved.put(poolQuantity.getPool().getId(), poolQuantity.getQuantity());
+        }
+
+        long start = System.nanoTime();
+        QuantityReservation attempt = poolCurator.reserveQuantities(reserved,
+            getConsumerType().isManifest());
+        long nanos = System.nanoTime() - start;
+
+        if (attempt == null) {
+            // some pools are new or updated in this transaction, and can only be locked within it
+            return lockAndLoadPools();
+        }
+
+        String refusedPoolId = attempt.getRefusedPoolId();
+
+        // the time spent reserving includes waiting on concurrent reservations of the same pools
+        for (String poolId : reserved.keySet()) {
+            metrics.record(RESERVE_POOLS_METRIC, Collections.singletonMap("pool", poolId), nanos,
+                poolId.equals(refusedPoolId));
+        }
+
+        if (refusedPoolId != null) {
+            ValidationResult result = new ValidationResult();
+            result.addError(EntitlementRulesTranslator.PoolErrorKeys.NO_ENTITLEMENTS_AVAILABLE);
+
+            Map<String, ValidationResult> results = new HashMap<>();
+            results.put(refusedPoolId, result);
+            setException(new EntitlementRefusedException(results), Thread.currentThread().getStackTrace());
+            return false;
+        }
+
+        // reload the consumed quantities, which now include the reservations
+        for (PoolQuantity poolQuantity : poolQuantities.values()) {
+            poolCurator.refresh(poolQuantity.getPool());
+        }
+
+        reservation = attempt;
+        return true;
+    }
+
+    /**
+     * releases the quantities reserved by this bind, if any, when the bind is refused after
+     * reserving them. reservations are released anyway if the transaction rolls back.
+     */
+    public void releasePools() {
+        if (reservation != null) {
+            reservation.release();
+        }
     }
 
     public Consumer getLockedConsumer() {
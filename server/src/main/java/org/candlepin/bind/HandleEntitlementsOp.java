@@ -82,10 +82,13 @@ public class HandleEntitlementsOp implements BindOperation {
             ent.setConsumer(consumer);
             ent.setOwner(pool.getOwner());
 
-            pool.setConsumed(pool.getConsumed() + quantity);
+            // reserved quantities have already been consumed from the pool
+            if (!context.isQuantityReserved()) {
+                pool.setConsumed(pool.getConsumed() + quantity);
 
-            if (ctype.isManifest()) {
-                pool.setExported(pool.getExported() + quantity);
+                if (ctype.isManifest()) {
+                    pool.setExported(pool.getExported() + quantity);
+                }
             }
 
             consumer.addEntitlement(ent);
@@ -73,7 +73,8 @@ public class PreEntitlementRulesCheckOp implements BindOperation {
 
     /**
      * The pool's quantity might have changed since we last fetched it,
-     * so ensure that the pool still has enough quantity left.
+     * so ensure that the pool still has enough quantity left, unless the quantity
+     * has been reserved.
      * @param context
      */
     @Override
@@ -81,8 +82,10 @@ public class PreEntitlementRulesCheckOp implements BindOperation {
         if (context.isQuantityRequested()) {
             for (PoolQuantity poolQuantity : context.getPoolQuantities().values()) {
                 Pool pool = poolQuantity.getPool();
-                enforcer.finishValidation(results.get(pool.getId()),
-                    pool, context.getPoolQuantities().get(pool.getId()).getQuantity());
+                // reserved quantities are already consumed, and were checked as they were reserved
+                int quantity = context.isQuantityReserved() ? 0 :
+                    context.getPoolQuantities().get(pool.getId()).getQuantity();
+                enforcer.finishValidation(results.get(pool.getId()), pool, quantity);
             }
 
             EntitlementRefusedException exception = checkResults();
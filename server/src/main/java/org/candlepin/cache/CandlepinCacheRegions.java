@@ -21,6 +21,19 @@ package org.candlepin.cache;
 public class CandlepinCacheRegions {
     public static final String FIVE_SECONDS_QUERY_CACHE = "query-5-seconds";
 
+    // Product and content graphs. These entities are versioned and immutable, so their regions are
+    // never invalidated by updates; a change to a product or content creates a new entity instead.
+    public static final String PRODUCT = "product";
+    public static final String PRODUCT_ATTRIBUTES = "product-attributes";
+    public static final String PRODUCT_CONTENT = "product-content";
+    public static final String PRODUCT_CONTENT_COLLECTION = "product-content-collection";
+    public static final String PRODUCT_DEPENDENT_PRODUCTS = "product-dependent-products";
+    public static final String CONTENT = "content";
+    public static final String CONTENT_MODIFIED_PRODUCTS = "content-modified-products";
+
+    // Lookups of the products of an owner, invalidated by any change to the owner-product mappings
+    public static final String OWNER_PRODUCT_QUERY_CACHE = "query-owner-products";
+
     private CandlepinCacheRegions() {
 
     }
@@ -112,6 +112,29 @@ public class ConfigProperties {
      * will be filtered, meaning they will not enter ActiveMQ.
      */
     public static final String AUDIT_FILTER_DEFAULT_POLICY = "candlepin.audit.filter.policy";
+    /**
+     * The maximum number of events received at once by audit listeners able to process events in
+     * batches, such as the DatabaseListener. Each batch is processed and acknowledged as a whole.
+     * When set to 0, every listener receives its events one at a time.
+     */
+    public static final String AUDIT_LISTENER_BATCH_SIZE = "candlepin.audit.listener.batch_size";
+    /**
+     * The maximum number of milliseconds a batch of events is held open for more events once its
+     * first event has been received.
+     */
+    public static final String AUDIT_LISTENER_BATCH_WAIT = "candlepin.audit.listener.batch_wait";
+    /**
+     * The format of the events sent to the internal event queues: "json" or "binary". Every node
+     * reads both formats; the binary format should only be enabled once every node of a cluster
+     * supports it. Events published to the AMQP bus are always sent as JSON.
+     */
+    public static final String AUDIT_MESSAGE_FORMAT = "candlepin.audit.message_format";
+    /**
+     * The size in bytes from which the events sent in the binary format are compressed. When set
+     * to 0, events are never compressed.
+     */
+    public static final String AUDIT_MESSAGE_COMPRESSION_THRESHOLD =
+        "candlepin.audit.message_compression_threshold";
 
     public static final String PRETTY_PRINT = "candlepin.pretty_print";
     public static final String ACTIVATION_DEBUG_PREFIX = "candlepin.subscription.activation.debug_prefix";
@@ -268,6 +291,27 @@ public class ConfigProperties {
      */
     public static final String CRL_SERIAL_BATCH_SIZE = "candlepin.crl.update_serial_batch_size";
 
+    /**
+     * The number of seconds between background syncs of the CRL served from memory; 0 to sync the
+     * CRL with the database on every request for it.
+     */
+    public static final String CRL_SNAPSHOT_REFRESH_INTERVAL = "candlepin.crl.snapshot.refresh_interval";
+
+    /**
+     * The number of seconds between refreshes of the delta CRL published along with the CRL served
+     * from memory, listing the serials revoked since the CRL was last synced; 0 to disable delta
+     * CRLs. Only used if the CRL is served from memory, and should be shorter than the refresh
+     * interval of the CRL itself.
+     */
+    public static final String CRL_DELTA_REFRESH_INTERVAL = "candlepin.crl.delta.refresh_interval";
+
+    /**
+     * Whether or not the CRL is synced with the database in a single pass, fetching every serial to
+     * add or remove up front and rewriting the CRL once, rather than rewriting the CRL once per
+     * batch of serials. Takes memory in proportion to the number of serials to process.
+     */
+    public static final String CRL_SINGLE_PASS_SYNC = "candlepin.crl.single_pass_sync";
+
     public static final String IDENTITY_CERT_YEAR_ADDENDUM = "candlepin.identityCert.yr.addendum";
     /**
      * Identity certificate expiry threshold in days
@@ -276,6 +320,138 @@ public class ConfigProperties {
 
     public static final String SWAGGER_ENABLED = "candlepin.swagger.enabled";
 
+    /**
+     * The engine used to select pools during autobind: "rules" to run the select_pools function of
+     * the rules, or "native" to use the Java implementation of the same algorithm.
+     */
+    public static final String AUTOBIND_ENGINE = "candlepin.autobind.engine";
+
+    /**
+     * Whether rules contexts are passed to the rules as objects lazily materialized from a JSON tree
+     * of the rules DTOs, rather than as a JSON string the rules have to parse on every invocation.
+     */
+    public static final String RULES_STRUCTURED_CONTEXT = "candlepin.rules.structured_context";
+
+    /**
+     * The engine used to calculate consumer compliance: "rules" to run the get_status function of
+     * the rules, or "incremental" to use the Java implementation which keeps the coverage of each
+     * consumer's stacks and entitlements between calculations.
+     */
+    public static final String COMPLIANCE_ENGINE = "candlepin.compliance.engine";
+
+    /** The maximum number of consumers the incremental compliance engine keeps coverage for */
+    public static final String COMPLIANCE_INCREMENTAL_MAX_CONSUMERS =
+        "candlepin.compliance.incremental.max_consumers";
+
+    /**
+     * Whether or not to persist the last compliance status calculated for each consumer, and reuse
+     * it for as long as the consumer, its entitlements and the rules remain unchanged.
+     */
+    public static final String COMPLIANCE_CACHE_ENABLED = "candlepin.compliance.cache.enabled";
+
+    /**
+     * The number of threads used to build and sign entitlement certificates; 0 to use one thread per
+     * available processor. Defaults to 1, which generates every certificate on the requesting thread.
+     */
+    public static final String ENTITLEMENT_CERT_GENERATION_THREADS =
+        "candlepin.entitlement_cert.generation.threads";
+
+    /**
+     * The number of entitlement certificates prepared, signed and persisted together while
+     * regenerating the certificates of many entitlements at once.
+     */
+    public static final String ENTITLEMENT_CERT_GENERATION_BATCH_SIZE =
+        "candlepin.entitlement_cert.generation.batch_size";
+
+    /**
+     * The maximum number of bytes of encoded v3 content dictionaries kept in memory for reuse across
+     * certificates with the same content paths; 0 to disable the cache.
+     */
+    public static final String ENTITLEMENT_CERT_CONTENT_CACHE_MAX_BYTES =
+        "candlepin.entitlement_cert.content_cache.max_bytes";
+
+    /**
+     * The number of consumer key pairs generated ahead of time and kept in memory, so that consumers
+     * do not wait on key generation when registering; 0 to generate every key pair on demand.
+     */
+    public static final String KEYPAIR_POOL_SIZE = "candlepin.keypair_pool.size";
+
+    /**
+     * The number of low priority threads refilling the key pair pool.
+     */
+    public static final String KEYPAIR_POOL_THREADS = "candlepin.keypair_pool.threads";
+
+    /**
+     * The number of pools loaded and run through the rules at a time when listing a page of the pools
+     * available to a consumer or activation key. Listing stops once the page is filled, and the total
+     * reported for the listing becomes an upper bound, unless exact totals are cached; 0 to filter
+     * every matching pool on each request.
+     */
+    public static final String AVAILABLE_POOLS_FILTER_CHUNK_SIZE =
+        "candlepin.pools.available.filter_chunk_size";
+
+    /**
+     * The number of seconds the exact total of a chunk-filtered listing of available pools is kept
+     * for; 0 to report an upper bound instead of counting every pool the rules would accept.
+     */
+    public static final String AVAILABLE_POOLS_COUNT_CACHE_TTL =
+        "candlepin.pools.available.count_cache_ttl";
+
+    /**
+     * The number of owners whose pools are indexed in memory by product, so that finding the pools
+     * available for a set of products does not join the pools of an owner with their provided
+     * products in the database; 0 to disable the index.
+     */
+    public static final String POOL_INDEX_MAX_OWNERS = "candlepin.pools.index.max_owners";
+
+    /**
+     * The number of subscriptions refreshed per transaction when refreshing the pools of an owner; the
+     * progress of the refresh is recorded after each chunk, so that an interrupted refresh job resumes
+     * from the last chunk committed. 0 to refresh every subscription of an owner in one transaction.
+     */
+    public static final String REFRESH_POOLS_CHUNK_SIZE = "candlepin.refresh.chunk_size";
+
+    /**
+     * Whether or not refreshing the pools of an owner skips the subscriptions which have not changed
+     * since the last refresh, as determined by a fingerprint of the subscription and the versions of
+     * its products stored along with its master pool.
+     */
+    public static final String REFRESH_POOLS_SKIP_UNCHANGED = "candlepin.refresh.skip_unchanged";
+
+    /**
+     * Whether or not the consumed and exported quantities of the pools of an owner are recalculated
+     * after a refresh in set-based statements, rather than with a subquery per pool.
+     */
+    public static final String REFRESH_POOLS_BULK_QUANTITIES = "candlepin.refresh.bulk_quantities";
+
+    /**
+     * Whether or not binds reserve the quantities they consume from pools with conditional updates
+     * committed up front, rather than locking the pools until the bind commits, so that binds against
+     * the same pool do not wait for each other. Only used on PostgreSQL; reserved quantities are
+     * released if the bind does not commit.
+     */
+    public static final String BIND_POOL_RESERVATIONS = "candlepin.bind.pool_reservations";
+
+    /**
+     * The number of seconds between writes of buffered consumer check ins to the database; 0 to
+     * update the last check in of a consumer synchronously whenever it checks in. Queries on the
+     * last check in of consumers may lag behind by up to this interval.
+     */
+    public static final String CONSUMER_CHECKIN_FLUSH_INTERVAL =
+        "candlepin.consumer.checkin.flush_interval";
+
+    /**
+     * The maximum number of consumers whose check ins are buffered at once; check ins of other
+     * consumers are written to the database directly while the buffer is full.
+     */
+    public static final String CONSUMER_CHECKIN_BUFFER_SIZE = "candlepin.consumer.checkin.buffer_size";
+
+    /**
+     * Whether buffered consumer check ins are written to the database or dropped when shutting down.
+     */
+    public static final String CONSUMER_CHECKIN_FLUSH_ON_SHUTDOWN =
+        "candlepin.consumer.checkin.flush_on_shutdown";
+
     public static final Map<String, String> DEFAULT_PROPERTIES = new HashMap<String, String>() {
         private static final long serialVersionUID = 1L;
 
@@ -320,11 +496,18 @@ public class ConfigProperties {
 
             this.put(AUDIT_FILTER_DO_FILTER, "");
             this.put(AUDIT_FILTER_DEFAULT_POLICY, "DO_FILTER");
+            this.put(AUDIT_LISTENER_BATCH_SIZE, "0");
+            this.put(AUDIT_LISTENER_BATCH_WAIT, "500"); // milliseconds
+            this.put(AUDIT_MESSAGE_FORMAT, "json");
+            this.put(AUDIT_MESSAGE_COMPRESSION_THRESHOLD, "0"); // bytes
 
             this.put(PRETTY_PRINT, "false");
             this.put(CRL_FILE_PATH, "/var/lib/candlepin/candlepin-crl.crl");
             this.put(CRL_NEXT_UPDATE_DELTA, "1");
             this.put(CRL_SERIAL_BATCH_SIZE, "1000000");
+            this.put(CRL_SNAPSHOT_REFRESH_INTERVAL, "0");
+            this.put(CRL_DELTA_REFRESH_INTERVAL, "0");
+            this.put(CRL_SINGLE_PASS_SYNC, "false");
 
             this.put(SYNC_WORK_DIR, "/var/cache/candlepin/sync");
             this.put(CONSUMER_FACTS_MATCHER, ".*");
@@ -410,6 +593,27 @@ public class ConfigProperties {
             this.put(PINSETTER_ASYNC_JOB_TIMEOUT, Integer.toString(1200));
             this.put(PINSETTER_MAX_RETRIES, Integer.toString(PINSETTER_MAX_RETRIES_DEFAULT));
             this.put(SWAGGER_ENABLED, Boolean.toString(true));
+            this.put(AUTOBIND_ENGINE, "rules");
+            this.put(RULES_STRUCTURED_CONTEXT, "false");
+            this.put(COMPLIANCE_ENGINE, "rules");
+            this.put(COMPLIANCE_INCREMENTAL_MAX_CONSUMERS, "1000");
+            this.put(COMPLIANCE_CACHE_ENABLED, "false");
+            this.put(ENTITLEMENT_CERT_GENERATION_THREADS, "1");
+            this.put(ENTITLEMENT_CERT_GENERATION_BATCH_SIZE, "1000");
+            // 64 MB
+            this.put(ENTITLEMENT_CERT_CONTENT_CACHE_MAX_BYTES, "67108864");
+            this.put(KEYPAIR_POOL_SIZE, "0");
+            this.put(KEYPAIR_POOL_THREADS, "1");
+            this.put(AVAILABLE_POOLS_FILTER_CHUNK_SIZE, "0");
+            this.put(AVAILABLE_POOLS_COUNT_CACHE_TTL, "0");
+            this.put(POOL_INDEX_MAX_OWNERS, "0");
+            this.put(REFRESH_POOLS_CHUNK_SIZE, "0");
+            this.put(REFRESH_POOLS_SKIP_UNCHANGED, "false");
+            this.put(REFRESH_POOLS_BULK_QUANTITIES, "false");
+            this.put(BIND_POOL_RESERVATIONS, "false");
+            this.put(CONSUMER_CHECKIN_FLUSH_INTERVAL, "0");
+            this.put(CONSUMER_CHECKIN_BUFFER_SIZE, "100000");
+            this.put(CONSUMER_CHECKIN_FLUSH_ON_SHUTDOWN, "true");
 
             // ManifestCleanerJob config
             // Max Age: 24 hours
@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.activationkeys.ActivationKey;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Singleton;
+
+
+
+/**
+ * The AvailablePoolCountCache keeps the number of pools the rules accept for a consumer or
+ * activation key, so that paging through the pools available to them does not require running
+ * every matching pool through the rules on each page to report the total.
+ *
+ * Counts are keyed by the consumer or activation key and the IDs of the matching pools, so adding
+ * or removing pools changes the key; changes which only affect the outcome of the rules, such as
+ * the consumer's entitlements, are reflected once the entry expires.
+ */
+@Singleton
+public class AvailablePoolCountCache {
+
+    private final Cache<HashCode, Integer> cache;
+
+    @Inject
+    public AvailablePoolCountCache(Configuration config) {
+        this(config.getInt(ConfigProperties.AVAILABLE_POOLS_COUNT_CACHE_TTL, 0));
+    }
+
+    /**
+     * Creates a cache keeping counts for the given number of seconds.
+     *
+     * @param ttl
+     *  the number of seconds to keep counts for; 0 to disable the cache
+     */
+    public AvailablePoolCountCache(int ttl) {
+        this.cache = ttl > 0 ?
+            CacheBuilder.newBuilder()
+                .expireAfterWrite(ttl, TimeUnit.SECONDS)
+                .<HashCode, Integer>build() :
+            null;
+    }
+
+    /**
+     * @return
+     *  true if counts are cached; false otherwise
+     */
+    public boolean isEnabled() {
+        return this.cache != null;
+    }
+
+    /**
+     * Computes the key of the count of pools accepted for a consumer or activation key.
+     *
+     * @param consumer
+     *  the consumer the pools are listed for, or null
+     *
+     * @param key
+     *  the activation key the pools are listed for, or null
+     *
+     * @param includeWarnings
+     *  whether or not pools the rules warn about are accepted
+     *
+     * @param poolIds
+     *  the IDs of the pools matching the listing, before the rules are run
+     *
+     * @return
+     *  the key of the count
+     */
+    public static HashCode key(Consumer consumer, ActivationKey key, boolean includeWarnings,
+        List<String> poolIds) {
+
+        // Counts do not depend on the order pools are listed in
+        List<String> sorted = new ArrayList<>(poolIds);
+        Collections.sort(sorted);
+
+        Hasher hasher = Hashing.sha256().newHasher()
+            .putUnencodedChars(consumer != null ? consumer.getUuid() : "")
+            .putByte((byte) 0)
+            .putUnencodedChars(key != null ? key.getId() : "")
+            .putByte((byte) 0)
+            .putBoolean(includeWarnings)
+            .putInt(sorted.size());
+
+        for (String poolId : sorted) {
+            hasher.putUnencodedChars(poolId).putByte((byte) 0);
+        }
+
+        return hasher.hash();
+    }
+
+    /**
+     * @param key
+     *  the key of the count
+     *
+     * @return
+     *  the cached count, or null if it has not been cached or the cache is disabled
+     */
+    public Integer get(HashCode key) {
+        return this.cache != null ? this.cache.getIfPresent(key) : null;
+    }
+
+    /**
+     * Caches a count, if the cache is enabled.
+     *
+     * @param key
+     *  the key of the count
+     *
+     * @param count
+     *  the number of pools accepted by the rules
+     */
+    public void put(HashCode key, int count) {
+        if (this.cache != null) {
+            this.cache.put(key, count);
+        }
+    }
+
+}
@@ -84,6 +84,7 @@ import org.candlepin.util.TraceableParam;
 import org.candlepin.util.Util;
 
 import com.google.common.collect.Iterables;
+import com.google.common.hash.HashCode;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 
@@ -102,6 +103,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -144,6 +146,7 @@ public class CandlepinPoolManager implements PoolManager {
     private PinsetterKernel pinsetterKernel;
     private OwnerManager ownerManager;
     private BindChainFactory bindChainFactory;
+    private AvailablePoolCountCache poolCountCache;
 
     /**
      * @param poolCurator
@@ -178,7 +181,8 @@ public class CandlepinPoolManager implements PoolManager {
         CdnCurator cdnCurator,
         PinsetterKernel pinsetterKernel,
         I18n i18n,
-        BindChainFactory bindChainFactory) {
+        BindChainFactory bindChainFactory,
+        AvailablePoolCountCache poolCountCache) {
 
         this.poolCurator = poolCurator;
         this.sink = sink;
@@ -207,6 +211,49 @@ public class CandlepinPoolManager implements PoolManager {
         this.pinsetterKernel = pinsetterKernel;
         this.i18n = i18n;
         this.bindChainFactory = bindChainFactory;
+        this.poolCountCache = poolCountCache;
+    }
+
+    RefreshResult refreshPoolsWithRegeneration(SubscriptionServiceAdapter subAdapter, Owner owner,
+        boolean lazy) {
+
+        return this.refreshPoolsWithRegeneration(subAdapter, owner, lazy, null);
+    }
+
+    /**
+     * Refreshes the pools of an owner from its subscriptions. If a refresh chunk size is configured,
+     * the subscriptions are refreshed a chunk at a time, each in its own transaction, and the
+     * progress is recorded in the given checkpoint; otherwise the whole refresh is performed in one
+     * transaction. If unchanged subscriptions are to be skipped, the subscriptions whose fingerprints
+     * match the ones stored at their last refresh are not refreshed.
+     *
+     * @param subAdapter
+     *  the subscription service adapter providing the subscriptions of the owner
+     *
+     * @param owner
+     *  the owner whose pools are refreshed
+     *
+     * @param lazy
+     *  whether or not to regenerate the entitlement certificates of updated pools lazily
+     *
+     * @param checkpoint
+     *  the checkpoint recording which subscriptions have been refreshed, allowing an interrupted
+     *  refresh to be resumed; may be null
+     *
+     * @return
+     *  the numbers of subscriptions processed and skipped
+     */
+    @Traceable
+    RefreshResult refreshPoolsWithRegeneration(SubscriptionServiceAdapter subAdapter,
+        @TraceableParam("owner") Owner owner, boolean lazy, RefreshCheckpoint checkpoint) {
+
+        int chunkSize = this.config.getInt(ConfigProperties.REFRESH_POOLS_CHUNK_SIZE, 0);
+
+        if (chunkSize > 0) {
+            return this.refreshPoolsInChunks(subAdapter, owner, lazy, checkpoint, chunkSize);
+        }
+
+        return this.refreshPoolsInTransaction(subAdapter, owner, lazy);
     }
 
     /*
@@ -214,15 +261,133 @@ public class CandlepinPoolManager implements PoolManager {
      * so we don't miss anything
      */
     @Transactional
-    @SuppressWarnings("checkstyle:methodlength")
-    @Traceable
-    void refreshPoolsWithRegeneration(SubscriptionServiceAdapter subAdapter,
-        @TraceableParam("owner") Owner owner, boolean lazy) {
+    RefreshResult refreshPoolsInTransaction(SubscriptionServiceAdapter subAdapter, Owner owner,
+        boolean lazy) {
 
         Date now = new Date();
         owner = this.resolveOwner(owner);
         log.info("Refreshing pools for owner: {}", owner);
 
+        RefreshData data = this.importRefreshData(subAdapter, owner);
+        Map<String, ? extends SubscriptionInfo> subscriptionMap = data.subscriptions;
+        this.removeExpiredSubscriptions(subscriptionMap, now);
+
+        RefreshResult result = new RefreshResult();
+        Collection<SubscriptionInfo> changed = this.filterUnchangedSubscriptions(owner, data, result);
+
+        log.debug("Refreshing {} pool(s)...", changed.size());
+        this.refreshSubscriptionPools(owner, changed, data, lazy);
+        this.finishRefresh(owner, subscriptionMap.keySet(), lazy, data.updatedProducts);
+
+        log.info("Refresh pools for owner: {} completed in: {}ms; {} subscription(s) processed, {} skipped",
+            owner.getKey(), System.currentTimeMillis() - now.getTime(), result.getProcessedSubscriptions(),
+            result.getSkippedSubscriptions());
+
+        return result;
+    }
+
+    /**
+     * Refreshes the pools of an owner a chunk of subscriptions at a time. Subscriptions are grouped
+     * into units which are refreshed together: the subscriptions sharing a stacking ID, or single
+     * subscriptions otherwise. Units are packed into chunks of at least the given number of
+     * subscriptions, and each chunk is refreshed in its own transaction, so that locks are only held
+     * for the duration of a chunk, and a failure only rolls back the chunk being refreshed. The
+     * pools of absent subscriptions and floating pools are updated once every chunk is done.
+     */
+    private RefreshResult refreshPoolsInChunks(SubscriptionServiceAdapter subAdapter, Owner owner,
+        boolean lazy, RefreshCheckpoint checkpoint, int chunkSize) {
+
+        Date now = new Date();
+        owner = this.resolveOwner(owner);
+        log.info("Refreshing pools for owner: {}, in chunks of {} subscription(s)", owner, chunkSize);
+
+        RefreshData data = this.importRefreshData(subAdapter, owner);
+        if (checkpoint != null) {
+            this.restoreUpdatedProducts(data, checkpoint);
+        }
+
+        Map<String, ? extends SubscriptionInfo> subscriptionMap = data.subscriptions;
+        this.removeExpiredSubscriptions(subscriptionMap, now);
+
+        RefreshResult result = new RefreshResult();
+        Collection<SubscriptionInfo> changed = this.filterUnchangedSubscriptions(owner, data, result);
+
+        Set<String> refreshed = checkpoint != null ?
+            checkpoint.getRefreshedSubscriptions() :
+            Collections.<String>emptySet();
+
+        if (!refreshed.isEmpty()) {
+            log.info("Resuming refresh; {} subscription(s) have already been refreshed", refreshed.size());
+        }
+
+        List<List<SubscriptionInfo>> chunks = this.partitionSubscriptions(changed, refreshed, chunkSize);
+
+        log.debug("Refreshing {} pool(s) in {} chunk(s)...", changed.size(), chunks.size());
+        for (List<SubscriptionInfo> chunk : chunks) {
+            // Each chunk is committed on its own, as we're not running in a transaction here
+            this.refreshSubscriptionPools(owner, chunk, data, lazy);
+
+            if (checkpoint != null) {
+                List<String> subscriptionIds = new ArrayList<>(chunk.size());
+                for (SubscriptionInfo sub : chunk) {
+                    subscriptionIds.add(sub.getId());
+                }
+
+                checkpoint.subscriptionsRefreshed(subscriptionIds, changed.size());
+            }
+        }
+
+        this.finishRefresh(owner, subscriptionMap.keySet(), lazy, data.updatedProducts);
+
+        log.info("Refresh pools for owner: {} completed in: {}ms; {} subscription(s) processed, {} skipped",
+            owner.getKey(), System.currentTimeMillis() - now.getTime(), result.getProcessedSubscriptions(),
+            result.getSkippedSubscriptions());
+
+        return result;
+    }
+
+    /**
+     * Adds the products updated by previous attempts of a refresh to the products updated by this
+     * one, and records them in the checkpoint before any chunk is refreshed. The products imported
+     * by previous attempts are committed already, so the import of a resumed refresh no longer
+     * reports them as updated, while the entitlements of the subscriptions left to refresh, and of
+     * the floating pools, still have to be regenerated.
+     */
+    private void restoreUpdatedProducts(RefreshData data, RefreshCheckpoint checkpoint) {
+        for (String productId : checkpoint.getUpdatedProducts()) {
+            Product product = data.importedProducts.get(productId);
+
+            if (product != null && !data.updatedProducts.containsKey(productId)) {
+                data.updatedProducts.put(productId, product);
+            }
+        }
+
+        if (!data.updatedProducts.isEmpty()) {
+            checkpoint.productsUpdated(data.updatedProducts.keySet());
+        }
+    }
+
+    /**
+     * The subscriptions of an owner, and the products imported from them, shared by the steps of a
+     * refresh.
+     */
+    static class RefreshData {
+        private final Map<String, ? extends SubscriptionInfo> subscriptions;
+        private final Map<String, Product> importedProducts;
+        private final Map<String, Product> updatedProducts;
+        private final Map<String, String> fingerprints = new HashMap<>();
+
+        RefreshData(Map<String, ? extends SubscriptionInfo> subscriptions,
+            Map<String, Product> importedProducts, Map<String, Product> updatedProducts) {
+
+            this.subscriptions = subscriptions;
+            this.importedProducts = importedProducts;
+            this.updatedProducts = new HashMap<>(updatedProducts);
+        }
+    }
+
+    @Transactional
+    RefreshData importRefreshData(SubscriptionServiceAdapter subAdapter, Owner owner) {
         ImportedEntityCompiler compiler = new ImportedEntityCompiler();
 
         log.debug("Fetching subscriptions from adapter...");
@@ -243,30 +408,126 @@ public class CandlepinPoolManager implements PoolManager {
         ImportResult<Product> importResult = this.productManager
             .importProducts(owner, productMap, importedContent);
 
-        Map<String, Product> importedProducts = importResult.getImportedEntities();
-        Map<String, Product> updatedProducts = importResult.getUpdatedEntities();
+        return new RefreshData(subscriptionMap, importResult.getImportedEntities(),
+            importResult.getUpdatedEntities());
+    }
+
+    private void removeExpiredSubscriptions(Map<String, ? extends SubscriptionInfo> subscriptionMap,
+        Date now) {
 
-        log.debug("Refreshing {} pool(s)...", subscriptionMap.size());
         for (Iterator<? extends SubscriptionInfo> si = subscriptionMap.values().iterator(); si.hasNext();) {
             SubscriptionInfo sub = si.next();
 
             if (now.after(sub.getEndDate())) {
                 log.info("Skipping expired subscription: {}", sub);
-
                 si.remove();
+            }
+        }
+    }
+
+    /**
+     * Computes the fingerprints of the subscriptions to refresh, to be stored once their pools are
+     * refreshed. If unchanged subscriptions are to be skipped, filters out the subscriptions whose
+     * fingerprints match the ones stored at the last refresh of their master pools.
+     */
+    private Collection<SubscriptionInfo> filterUnchangedSubscriptions(Owner owner, RefreshData data,
+        RefreshResult result) {
+
+        boolean skipUnchanged = this.config.getBoolean(ConfigProperties.REFRESH_POOLS_SKIP_UNCHANGED, false);
+        Map<String, String> stored = skipUnchanged ?
+            this.poolCurator.getMasterPoolRefreshFingerprints(owner) :
+            Collections.<String, String>emptyMap();
+
+        List<SubscriptionInfo> changed = new ArrayList<>(data.subscriptions.size());
+        for (SubscriptionInfo sub : data.subscriptions.values()) {
+            String fingerprint = SubscriptionFingerprint.compute(sub, data.importedProducts);
+            data.fingerprints.put(sub.getId(), fingerprint);
+
+            if (fingerprint.equals(stored.get(sub.getId()))) {
+                log.debug("Skipping unchanged subscription: {}", sub);
+            }
+            else {
+                changed.add(sub);
+            }
+        }
+
+        result.addProcessedSubscriptions(changed.size())
+            .addSkippedSubscriptions(data.subscriptions.size() - changed.size());
+
+        return changed;
+    }
+
+    /**
+     * Partitions subscriptions into chunks of whole units, skipping the units whose subscriptions
+     * have all been refreshed already.
+     */
+    private List<List<SubscriptionInfo>> partitionSubscriptions(
+        Collection<? extends SubscriptionInfo> subscriptions, Set<String> refreshed, int chunkSize) {
+
+        Map<String, List<SubscriptionInfo>> units = new LinkedHashMap<>();
+        for (SubscriptionInfo sub : subscriptions) {
+            String stackingId = sub.getProduct() != null ?
+                sub.getProduct().getAttributeValue(Product.Attributes.STACKING_ID) :
+                null;
+
+            String unit = stackingId != null ? "stack:" + stackingId : "subscription:" + sub.getId();
+            units.computeIfAbsent(unit, key -> new ArrayList<>()).add(sub);
+        }
+
+        List<List<SubscriptionInfo>> chunks = new ArrayList<>();
+        List<SubscriptionInfo> chunk = new ArrayList<>();
+
+        for (List<SubscriptionInfo> unit : units.values()) {
+            boolean done = true;
+            for (SubscriptionInfo sub : unit) {
+                done &= refreshed.contains(sub.getId());
+            }
+
+            if (done) {
                 continue;
             }
 
+            chunk.addAll(unit);
+            if (chunk.size() >= chunkSize) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+            }
+        }
+
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+
+        return chunks;
+    }
+
+    @Transactional
+    void refreshSubscriptionPools(Owner owner, Collection<? extends SubscriptionInfo> subscriptions,
+        RefreshData data, boolean lazy) {
+
+        for (SubscriptionInfo sub : subscriptions) {
             log.debug("Processing subscription: {}", sub);
-            Pool pool = this.convertToMasterPoolImpl(sub, owner, importedProducts);
-            this.refreshPoolsForMasterPool(pool, false, lazy, updatedProducts);
+            Pool pool = this.convertToMasterPoolImpl(sub, owner, data.importedProducts);
+            this.refreshPoolsForMasterPool(pool, false, lazy, data.updatedProducts);
+
+            // Fingerprints are stored even when unchanged subscriptions are not skipped, so that
+            // they are never stale once skipping is enabled
+            String fingerprint = data.fingerprints.get(sub.getId());
+            if (fingerprint != null) {
+                this.poolCurator.setMasterPoolRefreshFingerprint(sub.getId(), fingerprint);
+            }
         }
+    }
+
+    @Transactional
+    void finishRefresh(Owner owner, Set<String> subscriptionIds, boolean lazy,
+        Map<String, Product> updatedProducts) {
 
         // delete pools whose subscription disappeared:
         log.debug("Deleting pools for absent subscriptions...");
         List<Pool> poolsToDelete = new ArrayList<>();
 
-        for (Pool pool : poolCurator.getPoolsFromBadSubs(owner, subscriptionMap.keySet())) {
+        for (Pool pool : poolCurator.getPoolsFromBadSubs(owner, subscriptionIds)) {
             if (this.isManaged(pool)) {
                 poolsToDelete.add(pool);
             }
@@ -278,9 +539,6 @@ public class CandlepinPoolManager implements PoolManager {
         log.debug("Updating floating pools...");
         List<Pool> floatingPools = poolCurator.getOwnersFloatingPools(owner);
         updateFloatingPools(floatingPools, lazy, updatedProducts);
-
-        log.info("Refresh pools for owner: {} completed in: {}ms", owner.getKey(),
-            System.currentTimeMillis() - now.getTime());
     }
 
     private Owner resolveOwner(Owner owner) {
@@ -2457,6 +2715,13 @@ public class CandlepinPoolManager implements PoolManager {
             filters.addAttributeFilter(Pool.Attributes.DEVELOPMENT_POOL, "!true");
         }
 
+        int chunkSize = this.config.getInt(ConfigProperties.AVAILABLE_POOLS_FILTER_CHUNK_SIZE, 0);
+        if (postFilter && chunkSize > 0 && pageRequest != null && pageRequest.isPaging()) {
+            return this.listAvailableEntitlementPoolsByChunk(consumer, key, ownerId, productId,
+                subscriptionId, activeOn, includeWarnings, filters, pageRequest, addFuture, onlyFuture, after,
+                chunkSize);
+        }
+
         Page<List<Pool>> page = this.poolCurator.listAvailableEntitlementPools(consumer,
             ownerId, productId, subscriptionId, activeOn, filters, pageRequest, postFilter,
             addFuture, onlyFuture, after);
@@ -2465,6 +2730,113 @@ public class CandlepinPoolManager implements PoolManager {
             return page;
         }
 
+        List<Pool> resultingPools = this.filterAvailablePools(consumer, key, page.getPageData(),
+            includeWarnings);
+
+        // Set maxRecords once we are done filtering
+        page.setMaxRecords(resultingPools.size());
+
+        if (pageRequest != null && pageRequest.isPaging()) {
+            resultingPools = poolCurator.takeSubList(pageRequest, resultingPools);
+        }
+
+        page.setPageData(resultingPools);
+        return page;
+    }
+
+    /**
+     * Lists a page of the pools available to a consumer or activation key, loading the matching
+     * pools and running them through the rules a chunk at a time, until the page is filled. As the
+     * pools past the page are not run through the rules, the total reported for the listing is an
+     * upper bound, unless the exact total has been cached, or the cache is enabled and has to be
+     * filled, in which case every matching pool is filtered.
+     */
+    private Page<List<Pool>> listAvailableEntitlementPoolsByChunk(Consumer consumer, ActivationKey key,
+        String ownerId, String productId, String subscriptionId, Date activeOn, boolean includeWarnings,
+        PoolFilterBuilder filters, PageRequest pageRequest, boolean addFuture, boolean onlyFuture,
+        Date after, int chunkSize) {
+
+        List<String> poolIds = this.poolCurator.listAvailableEntitlementPoolIds(consumer, ownerId, productId,
+            subscriptionId, activeOn, filters, pageRequest, addFuture, onlyFuture, after);
+
+        HashCode countKey = this.poolCountCache.isEnabled() ?
+            AvailablePoolCountCache.key(consumer, key, includeWarnings, poolIds) :
+            null;
+
+        Integer total = countKey != null ? this.poolCountCache.get(countKey) : null;
+        boolean counting = countKey != null && total == null;
+
+        int perPage = pageRequest.getPerPage();
+        int skip = (pageRequest.getPage() - 1) * perPage;
+        List<Pool> pageData = new ArrayList<>(perPage);
+        int accepted = 0;
+        int examined = 0;
+
+        while (examined < poolIds.size() && (pageData.size() < perPage || counting)) {
+            List<String> chunk = poolIds.subList(examined, Math.min(examined + chunkSize, poolIds.size()));
+            examined += chunk.size();
+
+            List<Pool> pools = this.filterAvailablePools(consumer, key, this.loadPools(chunk),
+                includeWarnings);
+
+            for (Pool pool : pools) {
+                if (accepted >= skip && pageData.size() < perPage) {
+                    pageData.add(pool);
+                }
+
+                ++accepted;
+            }
+        }
+
+        if (examined >= poolIds.size()) {
+            total = accepted;
+
+            if (countKey != null) {
+                this.poolCountCache.put(countKey, total);
+            }
+        }
+        else if (total != null) {
+            total = Math.max(total, accepted);
+        }
+        else {
+            // Every pool which has yet to be filtered may be accepted
+            total = accepted + poolIds.size() - examined;
+        }
+
+        log.debug("Filtered {} of {} available pools to list page {}", examined, poolIds.size(),
+            pageRequest.getPage());
+
+        Page<List<Pool>> page = new Page<>();
+        page.setPageData(pageData);
+        page.setPageRequest(pageRequest);
+        page.setMaxRecords(total);
+
+        return page;
+    }
+
+    /**
+     * Loads the pools with the given IDs, in the order of the IDs.
+     */
+    private List<Pool> loadPools(List<String> poolIds) {
+        Map<String, Pool> pools = new HashMap<>();
+        for (Pool pool : this.poolCurator.listAllByIds(poolIds)) {
+            pools.put(pool.getId(), pool);
+        }
+
+        List<Pool> ordered = new ArrayList<>(poolIds.size());
+        for (String poolId : poolIds) {
+            Pool pool = pools.get(poolId);
+            if (pool != null) {
+                ordered.add(pool);
+            }
+        }
+
+        return ordered;
+    }
+
+    private List<Pool> filterAvailablePools(Consumer consumer, ActivationKey key, List<Pool> pools,
+        boolean includeWarnings) {
+
         // If the consumer was specified, we need to filter out any
         // pools that the consumer will not be able to attach.
         // If querying for pools available to a specific consumer, we need
@@ -2472,7 +2844,7 @@ public class CandlepinPoolManager implements PoolManager {
         // Note that something could change between the time we list a pool as
         // available, and the consumer requests the actual entitlement, and the
         // request still could fail.
-        List<Pool> resultingPools = page.getPageData();
+        List<Pool> resultingPools = pools;
 
         if (consumer != null) {
             resultingPools = enforcer.filterPools(consumer, resultingPools, includeWarnings);
@@ -2482,15 +2854,7 @@ public class CandlepinPoolManager implements PoolManager {
             resultingPools = this.filterPoolsForActKey(key, resultingPools, includeWarnings);
         }
 
-        // Set maxRecords once we are done filtering
-        page.setMaxRecords(resultingPools.size());
-
-        if (pageRequest != null && pageRequest.isPaging()) {
-            resultingPools = poolCurator.takeSubList(pageRequest, resultingPools);
-        }
-
-        page.setPageData(resultingPools);
-        return page;
+        return resultingPools;
     }
 
     /**
@@ -2598,8 +2962,13 @@ public class CandlepinPoolManager implements PoolManager {
 
     @Transactional
     public void recalculatePoolQuantitiesForOwner(Owner owner) {
-        poolCurator.calculateConsumedForOwnersPools(owner);
-        poolCurator.calculateExportedForOwnersPools(owner);
+        if (this.config.getBoolean(ConfigProperties.REFRESH_POOLS_BULK_QUANTITIES, false)) {
+            poolCurator.bulkCalculatePoolQuantitiesForOwner(owner);
+        }
+        else {
+            poolCurator.calculateConsumedForOwnersPools(owner);
+            poolCurator.calculateExportedForOwnersPools(owner);
+        }
     }
 
     /**
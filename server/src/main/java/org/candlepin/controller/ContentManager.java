@@ -248,6 +248,7 @@ public class ContentManager {
 
                 this.ownerContentCurator.updateOwnerContentReferences(owner,
                     Collections.<String, String>singletonMap(entity.getUuid(), alt.getUuid()));
+                this.contentCurator.evictContentFromCache(Arrays.asList(entity.getUuid()));
 
                 log.debug("Updating {} affected products", affectedProducts.size());
                 ContentDTO cdto = this.modelTranslator.translate(alt, ContentDTO.class);
@@ -307,6 +308,7 @@ public class ContentManager {
 
         this.ownerContentCurator.updateOwnerContentReferences(owner,
             Collections.<String, String>singletonMap(entity.getUuid(), updated.getUuid()));
+        this.contentCurator.evictContentFromCache(Arrays.asList(entity.getUuid()));
 
         // Impl note:
         // This block is a consequence of products and contents not being strongly related.
@@ -550,6 +552,7 @@ public class ContentManager {
         }
 
         this.ownerContentCurator.updateOwnerContentReferences(owner, contentUuidMap);
+        this.contentCurator.evictContentFromCache(contentUuidMap.keySet());
 
         // Return
         return importResult;
@@ -717,6 +720,7 @@ public class ContentManager {
 
             // Remove content references
             this.ownerContentCurator.removeOwnerContentReferences(owner, contentUuids);
+            this.contentCurator.evictContentFromCache(contentUuids);
         }
     }
 
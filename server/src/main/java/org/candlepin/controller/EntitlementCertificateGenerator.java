@@ -40,6 +40,7 @@ import com.google.inject.persist.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -239,27 +240,46 @@ public class EntitlementCertificateGenerator {
      */
     private void regenerateCertificatesImpl(Iterable<Entitlement> entitlements) {
         if (entitlements != null) {
-            Set<String> entIds = new HashSet<>();
+            List<Entitlement> entList = new ArrayList<>();
+            entitlements.forEach(entList::add);
 
-            for (Entitlement entitlement : entitlements) {
-                try {
-                    // Generate new cert
-                    EntitlementCertificate generated = this.generateEntitlementCertificate(
-                        entitlement.getPool(), entitlement, false);
+            List<EntitlementCertificate> generated;
+            try {
+                // Generate new certs
+                generated = this.entCertServiceAdapter.regenerateEntitlementCerts(entList);
+            }
+            catch (CertVersionConflictException cvce) {
+                throw cvce;
+            }
+            catch (CertificateSizeException cse) {
+                throw cse;
+            }
+            catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
 
-                    // Apply to the entitlement
-                    entitlement.setDirty(false);
-                    entitlement.setCertificates(Collections.singleton(generated));
+            Set<String> entIds = new HashSet<>();
 
-                    // send entitlement changed event.
-                    this.eventSink.queueEvent(this.eventFactory.entitlementChanged(entitlement));
+            for (int i = 0; i < entList.size(); i++) {
+                Entitlement entitlement = entList.get(i);
+                EntitlementCertificate certificate = generated.get(i);
 
-                    entIds.add(entitlement.getId());
-                }
-                catch (CertificateSizeException cse) {
+                if (certificate == null) {
                     // Uh oh... do nothing for now.
-                    log.warn("The certificate cannot be regenerated at this time: {}", cse.getMessage());
+                    log.warn("The certificate of entitlement {} cannot be regenerated at this time",
+                        entitlement.getId());
+
+                    continue;
                 }
+
+                // Apply to the entitlement
+                entitlement.setDirty(false);
+                entitlement.setCertificates(Collections.singleton(certificate));
+
+                // send entitlement changed event.
+                this.eventSink.queueEvent(this.eventFactory.entitlementChanged(entitlement));
+
+                entIds.add(entitlement.getId());
             }
 
             // Clear the old certs before we save so we don't end up in a weird state
@@ -273,7 +293,8 @@ public class EntitlementCertificateGenerator {
 
     /**
      * Regenerates the certificates for the specified entitlements. This method is a utility method
-     * which individually regenerates certificates for each entitlement in the provided collection.
+     * which loads each entitlement in the provided collection, and regenerates their certificates
+     * together.
      *
      * @param entitlementIds
      *  An iterable collection of entitlement IDs for which to regenerate certificates
@@ -292,6 +313,8 @@ public class EntitlementCertificateGenerator {
             this.entitlementCurator.markEntitlementsDirty(entitlementIds);
         }
         else {
+            List<Entitlement> entitlements = new ArrayList<>();
+
             for (String entitlementId : entitlementIds) {
                 Entitlement entitlement = entitlementCurator.get(entitlementId);
 
@@ -301,8 +324,10 @@ public class EntitlementCertificateGenerator {
                     continue;
                 }
 
-                this.regenerateCertificatesOf(entitlement, false);
+                entitlements.add(entitlement);
             }
+
+            this.regenerateCertificatesOf(entitlements, false);
         }
     }
 
@@ -399,9 +424,16 @@ public class EntitlementCertificateGenerator {
             null, owner, productId, new Date()
         );
 
+        // Regenerate the entitlements of every pool together, so their certificates can be generated
+        // in batches rather than pool by pool
+        List<Entitlement> entitlements = new ArrayList<>();
         for (Pool pool : pools) {
-            this.regenerateCertificatesOf(pool.getEntitlements(), lazy);
+            if (pool.getEntitlements() != null) {
+                entitlements.addAll(pool.getEntitlements());
+            }
         }
+
+        this.regenerateCertificatesOf(entitlements, lazy);
     }
 
     /**
@@ -464,9 +496,16 @@ public class EntitlementCertificateGenerator {
             }
         }
 
+        // Regenerate the entitlements of every pool together, so their certificates can be generated
+        // in batches rather than pool by pool
+        List<Entitlement> entitlements = new ArrayList<>();
         for (Pool pool : pools) {
-            this.regenerateCertificatesOf(pool.getEntitlements(), lazy);
+            if (pool.getEntitlements() != null) {
+                entitlements.addAll(pool.getEntitlements());
+            }
         }
+
+        this.regenerateCertificatesOf(entitlements, lazy);
     }
 
 }
@@ -213,6 +213,7 @@ public class ProductManager {
 
                 this.ownerProductCurator.updateOwnerProductReferences(owner,
                     Collections.<String, String>singletonMap(entity.getUuid(), alt.getUuid()));
+                this.productCurator.evictProductsFromCache(Arrays.asList(entity.getUuid()));
 
                 if (regenerateEntitlementCerts) {
                     this.entitlementCertGenerator.regenerateCertificatesOf(
@@ -251,6 +252,7 @@ public class ProductManager {
 
         this.ownerProductCurator.updateOwnerProductReferences(owner,
             Collections.<String, String>singletonMap(entity.getUuid(), updated.getUuid()));
+        this.productCurator.evictProductsFromCache(Arrays.asList(entity.getUuid()));
 
         if (regenerateEntitlementCerts) {
             this.entitlementCertGenerator.regenerateCertificatesOf(
@@ -441,6 +443,7 @@ public class ProductManager {
         }
 
         this.ownerProductCurator.updateOwnerProductReferences(owner, productUuidMap);
+        this.productCurator.evictProductsFromCache(productUuidMap.keySet());
 
         // Return
         return importResult;
@@ -550,6 +553,7 @@ public class ProductManager {
             // Remove owner references to all the products. This will leave the products orphaned,
             // to be eventually deleted by the orphan removal job
             this.ownerProductCurator.removeOwnerProductReferences(owner, productUuids);
+            this.productCurator.evictProductsFromCache(productUuids);
         }
     }
 
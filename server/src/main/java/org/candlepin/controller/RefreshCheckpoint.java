@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import java.util.Collection;
+import java.util.Set;
+
+
+
+/**
+ * A RefreshCheckpoint records the progress of a pool refresh performed in chunks, so that a refresh
+ * which has been interrupted can be resumed without refreshing the chunks it already committed.
+ */
+public interface RefreshCheckpoint {
+
+    /**
+     * Fetches the subscriptions refreshed by previous attempts of the refresh.
+     *
+     * @return
+     *  the IDs of the subscriptions whose pools have already been refreshed
+     */
+    Set<String> getRefreshedSubscriptions();
+
+    /**
+     * Records that the pools of the given subscriptions have been refreshed and committed.
+     *
+     * @param subscriptionIds
+     *  the IDs of the subscriptions just refreshed
+     *
+     * @param total
+     *  the total number of subscriptions being refreshed
+     */
+    void subscriptionsRefreshed(Collection<String> subscriptionIds, int total);
+
+    /**
+     * Fetches the products updated by the imports of previous attempts of the refresh. As the
+     * imported products are committed before any subscription is refreshed, a resumed refresh no
+     * longer sees them as updated.
+     *
+     * @return
+     *  the IDs of the products updated by previous attempts of the refresh
+     */
+    Set<String> getUpdatedProducts();
+
+    /**
+     * Records that the given products have been updated by the import of the refresh, so that the
+     * entitlements of the subscriptions refreshed by later attempts are still regenerated.
+     *
+     * @param productIds
+     *  the IDs of the updated products
+     */
+    void productsUpdated(Collection<String> productIds);
+
+}
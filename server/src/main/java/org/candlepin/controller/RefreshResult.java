@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+
+
+/**
+ * The RefreshResult class counts the subscriptions processed by a refresh of the pools of one or
+ * more owners.
+ */
+public class RefreshResult {
+
+    private int processedSubscriptions;
+    private int skippedSubscriptions;
+
+    /**
+     * Retrieves the number of subscriptions whose pools were refreshed.
+     *
+     * @return
+     *  the number of subscriptions processed
+     */
+    public int getProcessedSubscriptions() {
+        return this.processedSubscriptions;
+    }
+
+    /**
+     * Retrieves the number of subscriptions skipped, as they had not changed since the last refresh
+     * of their pools.
+     *
+     * @return
+     *  the number of unchanged subscriptions skipped
+     */
+    public int getSkippedSubscriptions() {
+        return this.skippedSubscriptions;
+    }
+
+    public RefreshResult addProcessedSubscriptions(int count) {
+        this.processedSubscriptions += count;
+        return this;
+    }
+
+    public RefreshResult addSkippedSubscriptions(int count) {
+        this.skippedSubscriptions += count;
+        return this;
+    }
+
+    /**
+     * Adds the counts of another result to this result.
+     *
+     * @param result
+     *  the result to add
+     *
+     * @return
+     *  this RefreshResult instance
+     */
+    public RefreshResult add(RefreshResult result) {
+        this.processedSubscriptions += result.processedSubscriptions;
+        this.skippedSubscriptions += result.skippedSubscriptions;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RefreshResult [processed: %d, skipped: %d]", this.processedSubscriptions,
+            this.skippedSubscriptions);
+    }
+
+}
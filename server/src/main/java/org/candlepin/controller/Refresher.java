@@ -47,6 +47,7 @@ public class Refresher {
     private OwnerManager ownerManager;
     private boolean lazy;
     private UnitOfWork uow;
+    private RefreshCheckpoint checkpoint;
     private static Logger log = LoggerFactory.getLogger(Refresher.class);
 
     private Map<String, Owner> owners = new HashMap<>();
@@ -67,6 +68,20 @@ public class Refresher {
         return this;
     }
 
+    /**
+     * Sets the checkpoint recording the progress of the refresh of the owner's pools. As the
+     * checkpoint tracks subscriptions, it is only meant for refreshers of a single owner.
+     *
+     * @param checkpoint
+     *  the checkpoint recording which subscriptions have been refreshed
+     *
+     * @return this Refresher instance
+     */
+    public Refresher setCheckpoint(RefreshCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+        return this;
+    }
+
     public Refresher add(Owner owner) {
         if (owner == null || owner.getKey() == null) {
             throw new IllegalArgumentException("Owner is null or lacks identifying information");
@@ -94,7 +109,14 @@ public class Refresher {
         return this;
     }
 
-    public void run() {
+    /**
+     * Refreshes the pools of the owners and products added to this refresher.
+     *
+     * @return
+     *  the numbers of subscriptions processed and skipped while refreshing the pools of the owners
+     */
+    public RefreshResult run() {
+        RefreshResult result = new RefreshResult();
 
         // If products were specified on the refresher, lookup any subscriptions
         // using them, regardless of organization, and trigger a refresh for those
@@ -157,15 +179,20 @@ public class Refresher {
             Pool masterPool = poolManager.convertToMasterPool(subscription);
             poolManager.refreshPoolsForMasterPool(masterPool, true, lazy,
                 Collections.<String, Product>emptyMap());
+
+            result.addProcessedSubscriptions(1);
         }
 
         for (Owner owner : this.owners.values()) {
-            poolManager.refreshPoolsWithRegeneration(this.subAdapter, owner, this.lazy);
+            result.add(poolManager.refreshPoolsWithRegeneration(this.subAdapter, owner, this.lazy,
+                this.checkpoint));
             poolManager.recalculatePoolQuantitiesForOwner(owner);
 
             ownerManager.refreshContentAccessMode(this.ownerAdapter, owner);
             ownerManager.updateRefreshDate(owner);
         }
+
+        return result;
     }
 
 }
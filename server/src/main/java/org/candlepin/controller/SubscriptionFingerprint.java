@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import org.candlepin.model.Product;
+import org.candlepin.service.model.BrandingInfo;
+import org.candlepin.service.model.CdnInfo;
+import org.candlepin.service.model.CertificateInfo;
+import org.candlepin.service.model.CertificateSerialInfo;
+import org.candlepin.service.model.ProductInfo;
+import org.candlepin.service.model.SubscriptionInfo;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+
+
+/**
+ * Computes the fingerprints of subscriptions, covering every field of a subscription copied onto
+ * its master pool, and the UUIDs and versions of the imported products it references, which in
+ * turn cover the content of the products. Refreshing a subscription whose fingerprint has not
+ * changed since its last refresh does not change its pools.
+ */
+public class SubscriptionFingerprint {
+
+    private SubscriptionFingerprint() {
+        // Static methods only
+    }
+
+    /**
+     * Computes the fingerprint of a subscription.
+     *
+     * @param sub
+     *  the subscription to fingerprint
+     *
+     * @param products
+     *  the products imported for the owner of the subscription, mapped by product ID
+     *
+     * @return
+     *  a 256 bit hex string
+     */
+    public static String compute(SubscriptionInfo sub, Map<String, Product> products) {
+        Hasher hasher = Hashing.sha256().newHasher();
+
+        putString(hasher, sub.getId());
+        putString(hasher, sub.getOwner() != null ? sub.getOwner().getKey() : null);
+        putString(hasher, sub.getQuantity() != null ? sub.getQuantity().toString() : null);
+        putDate(hasher, sub.getStartDate());
+        putDate(hasher, sub.getEndDate());
+        putString(hasher, sub.getContractNumber());
+        putString(hasher, sub.getAccountNumber());
+        putString(hasher, sub.getOrderNumber());
+        putString(hasher, sub.getUpstreamPoolId());
+        putString(hasher, sub.getUpstreamEntitlementId());
+        putString(hasher, sub.getUpstreamConsumerId());
+
+        putProduct(hasher, sub.getProduct(), products);
+        putProduct(hasher, sub.getDerivedProduct(), products);
+        putProducts(hasher, sub.getProvidedProducts(), products);
+        putProducts(hasher, sub.getDerivedProvidedProducts(), products);
+
+        CdnInfo cdn = sub.getCdn();
+        hasher.putBoolean(cdn != null);
+        if (cdn != null) {
+            putString(hasher, cdn.getLabel());
+            putString(hasher, cdn.getName());
+            putString(hasher, cdn.getUrl());
+            putCertificate(hasher, cdn.getCertificate());
+        }
+
+        putCertificate(hasher, sub.getCertificate());
+
+        Collection<? extends BrandingInfo> branding = sub.getBranding();
+        hasher.putInt(branding != null ? branding.size() : -1);
+        if (branding != null) {
+            List<String> brands = new ArrayList<>();
+            for (BrandingInfo brand : branding) {
+                brands.add(brand.getProductId() + '\0' + brand.getType() + '\0' + brand.getName());
+            }
+
+            // Branding is a set on the pool, so its order does not matter
+            Collections.sort(brands);
+            for (String brand : brands) {
+                putString(hasher, brand);
+            }
+        }
+
+        return hasher.hash().toString();
+    }
+
+    private static void putString(Hasher hasher, String value) {
+        hasher.putBoolean(value != null);
+        if (value != null) {
+            hasher.putInt(value.length()).putUnencodedChars(value);
+        }
+    }
+
+    private static void putDate(Hasher hasher, Date date) {
+        hasher.putLong(date != null ? date.getTime() : Long.MIN_VALUE);
+    }
+
+    private static void putProduct(Hasher hasher, ProductInfo pinfo, Map<String, Product> products) {
+        Product product = pinfo != null ? products.get(pinfo.getId()) : null;
+
+        putString(hasher, pinfo != null ? pinfo.getId() : null);
+        putString(hasher, product != null ? product.getUuid() : null);
+        hasher.putInt(product != null ? product.getEntityVersion() : 0);
+    }
+
+    private static void putProducts(Hasher hasher, Collection<? extends ProductInfo> pinfos,
+        Map<String, Product> products) {
+
+        hasher.putInt(pinfos != null ? pinfos.size() : -1);
+        if (pinfos != null) {
+            // Provided products are sets on the pool, so their order does not matter
+            List<ProductInfo> sorted = new ArrayList<>(pinfos);
+            sorted.sort((lhs, rhs) -> String.valueOf(lhs != null ? lhs.getId() : null)
+                .compareTo(String.valueOf(rhs != null ? rhs.getId() : null)));
+
+            for (ProductInfo pinfo : sorted) {
+                putProduct(hasher, pinfo, products);
+            }
+        }
+    }
+
+    private static void putCertificate(Hasher hasher, CertificateInfo cert) {
+        hasher.putBoolean(cert != null);
+        if (cert != null) {
+            putString(hasher, cert.getKey());
+            putString(hasher, cert.getCertificate());
+
+            CertificateSerialInfo serial = cert.getSerial();
+            hasher.putBoolean(serial != null);
+            if (serial != null) {
+                putString(hasher, String.valueOf(serial.isRevoked()));
+                putString(hasher, String.valueOf(serial.isCollected()));
+                putDate(hasher, serial.getExpiration());
+            }
+        }
+    }
+
+}
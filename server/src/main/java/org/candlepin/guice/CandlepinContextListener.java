@@ -33,10 +33,14 @@ import org.candlepin.config.DatabaseConfigFactory;
 import org.candlepin.controller.QpidStatusMonitor;
 import org.candlepin.controller.SuspendModeTransitioner;
 import org.candlepin.logging.LoggerContextListener;
+import org.candlepin.model.ConsumerCheckInBuffer;
 import org.candlepin.pinsetter.core.PinsetterContextListener;
+import org.candlepin.pki.KeyPairPool;
 import org.candlepin.pki.impl.JSSProviderLoader;
+import org.candlepin.policy.js.compliance.ComplianceStatusCache;
 import org.candlepin.resteasy.ResourceLocatorMap;
 import org.candlepin.swagger.CandlepinSwaggerModelConverter;
+import org.candlepin.util.CrlPublisher;
 import org.candlepin.util.Util;
 
 import com.google.inject.AbstractModule;
@@ -70,7 +74,9 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 
+import javax.management.JMException;
 import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.persistence.EntityManagerFactory;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
@@ -183,6 +189,30 @@ public class CandlepinContextListener extends GuiceResteasyBootstrapServletConte
             MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
             ManagementService.registerMBeans(CacheManager.getInstance(), mBeanServer,
                 true, true, true, true);
+
+            try {
+                mBeanServer.registerMBean(injector.getInstance(ComplianceStatusCache.class),
+                    new ObjectName("org.candlepin:type=ComplianceStatusCache"));
+            }
+            catch (JMException e) {
+                log.warn("Unable to register the compliance status cache statistics", e);
+            }
+
+            try {
+                mBeanServer.registerMBean(injector.getInstance(KeyPairPool.class),
+                    new ObjectName("org.candlepin:type=KeyPairPool"));
+            }
+            catch (JMException e) {
+                log.warn("Unable to register the key pair pool statistics", e);
+            }
+
+            try {
+                mBeanServer.registerMBean(injector.getInstance(ConsumerCheckInBuffer.class),
+                    new ObjectName("org.candlepin:type=ConsumerCheckInBuffer"));
+            }
+            catch (JMException e) {
+                log.warn("Unable to register the consumer check in buffer statistics", e);
+            }
         }
 
         pinsetterListener = injector.getInstance(PinsetterContextListener.class);
@@ -207,6 +237,9 @@ public class CandlepinContextListener extends GuiceResteasyBootstrapServletConte
         }
         pinsetterListener.contextDestroyed();
         loggerListener.contextDestroyed();
+        injector.getInstance(KeyPairPool.class).shutdown();
+        injector.getInstance(ConsumerCheckInBuffer.class).shutdown();
+        injector.getInstance(CrlPublisher.class).shutdown();
 
         // if amqp is enabled, close all connections.
         if (config.getBoolean(ConfigProperties.AMQP_INTEGRATION_ENABLED)) {
@@ -319,5 +352,11 @@ public class CandlepinContextListener extends GuiceResteasyBootstrapServletConte
         registry.getEventListenerGroup(EventType.PRE_INSERT).appendListener(listenerProvider.get());
         registry.getEventListenerGroup(EventType.PRE_UPDATE).appendListener(listenerProvider.get());
         registry.getEventListenerGroup(EventType.PRE_DELETE).appendListener(listenerProvider.get());
+
+        ConsumerCheckInBuffer checkInBuffer = injector.getInstance(ConsumerCheckInBuffer.class);
+        if (checkInBuffer.isEnabled()) {
+            registry.getEventListenerGroup(EventType.POST_LOAD)
+                .appendListener(new ConsumerCheckInBuffer.LoadListener(checkInBuffer));
+        }
     }
 }
@@ -166,6 +166,8 @@ import org.candlepin.util.DateSource;
 import org.candlepin.util.DateSourceImpl;
 import org.candlepin.util.ExpiryDateFunction;
 import org.candlepin.util.FactValidator;
+import org.candlepin.util.Traceable;
+import org.candlepin.util.TraceableMetrics;
 import org.candlepin.util.X509ExtensionUtil;
 
 import com.google.common.base.Function;
@@ -173,6 +175,7 @@ import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
 import com.google.inject.assistedinject.FactoryModuleBuilder;
+import com.google.inject.matcher.Matchers;
 import com.google.inject.name.Named;
 import com.google.inject.name.Names;
 import com.google.inject.persist.jpa.JpaPersistModule;
@@ -383,6 +386,11 @@ public class CandlepinModule extends AbstractModule {
         bind(DynamicJsonFilter.class);
 
         bindConstant().annotatedWith(Names.named("PREFIX_APIURL_KEY")).to(ConfigProperties.PREFIX_APIURL);
+
+        TraceableMetrics traceableMetrics = new TraceableMetrics();
+        bind(TraceableMetrics.class).toInstance(traceableMetrics);
+        bindInterceptor(Matchers.any(), Matchers.annotatedWith(Traceable.class),
+            new TraceableInterceptor(traceableMetrics));
     }
 
     private void configurePinsetter() {
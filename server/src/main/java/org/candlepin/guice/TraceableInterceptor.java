@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.guice;
+
+import org.candlepin.service.model.OwnerInfo;
+import org.candlepin.util.Traceable;
+import org.candlepin.util.TraceableMetrics;
+import org.candlepin.util.TraceableParam;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+
+/**
+ * The TraceableInterceptor times the calls of methods annotated with {@link Traceable}, and records
+ * them in the {@link TraceableMetrics}, tagged with the values of their {@link TraceableParam}
+ * parameters.
+ */
+public class TraceableInterceptor implements MethodInterceptor {
+
+    private final TraceableMetrics metrics;
+
+    /** The traceable parameter names of each method, by parameter index; null for other parameters */
+    private final ConcurrentMap<Method, String[]> paramNames = new ConcurrentHashMap<>();
+
+    public TraceableInterceptor(TraceableMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        boolean failed = true;
+
+        try {
+            Object result = invocation.proceed();
+            failed = false;
+
+            return result;
+        }
+        finally {
+            this.metrics.record(getMethodName(invocation), this.getTags(invocation),
+                System.nanoTime() - start, failed);
+        }
+    }
+
+    private static String getMethodName(MethodInvocation invocation) {
+        // Name the method after the class of the instance, rather than the class declaring it, so
+        // that the subclasses sharing a traceable method, such as jobs, are recorded separately
+        Class<?> type = invocation.getThis() != null ?
+            invocation.getThis().getClass() :
+            invocation.getMethod().getDeclaringClass();
+
+        // Skip the subclasses generated by Guice
+        while (type.getName().contains("$$") && type.getSuperclass() != null) {
+            type = type.getSuperclass();
+        }
+
+        return type.getSimpleName() + "." + invocation.getMethod().getName();
+    }
+
+    private Map<String, String> getTags(MethodInvocation invocation) {
+        String[] names = this.paramNames.computeIfAbsent(invocation.getMethod(),
+            TraceableInterceptor::findParamNames);
+
+        if (names.length == 0) {
+            return Collections.emptyMap();
+        }
+
+        Object[] args = invocation.getArguments();
+        Map<String, String> tags = new HashMap<>();
+
+        for (int i = 0; i < names.length && i < args.length; i++) {
+            if (names[i] != null) {
+                tags.put(names[i], toTagValue(args[i]));
+            }
+        }
+
+        return tags;
+    }
+
+    private static String[] findParamNames(Method method) {
+        Annotation[][] annotations = method.getParameterAnnotations();
+        String[] names = new String[annotations.length];
+        boolean found = false;
+
+        for (int i = 0; i < annotations.length; i++) {
+            for (Annotation annotation : annotations[i]) {
+                if (annotation instanceof TraceableParam) {
+                    names[i] = ((TraceableParam) annotation).value();
+                    found = true;
+                }
+            }
+        }
+
+        return found ? names : new String[0];
+    }
+
+    private static String toTagValue(Object value) {
+        if (value instanceof OwnerInfo) {
+            String key = ((OwnerInfo) value).getKey();
+            return key != null ? key : "";
+        }
+
+        return String.valueOf(value);
+    }
+
+}
@@ -283,7 +283,7 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
         return c.list();
     }
 
-    private Order createPagingOrder(PageRequest p) {
+    protected Order createPagingOrder(PageRequest p) {
         String sortBy = (p.getSortBy() == null) ? AbstractHibernateObject.DEFAULT_SORT_FIELD : p.getSortBy();
         PageRequest.Order order = (p.getOrder() == null) ? PageRequest.DEFAULT_ORDER : p.getOrder();
 
@@ -1227,6 +1227,9 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
      * will be updated and included in the update count, even if the value does not change. If the
      * number of actual changes made is significant to the caller, the criteria should also include
      * the keySet from the given values.
+     * <p></p>
+     * Only the second-level cache regions and cached queries backed by the given table are
+     * invalidated by the update.
      *
      * @param table
      *  The name of the table to update
@@ -1327,7 +1330,10 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
                     }
                 }
 
-                query = session.createNativeQuery(builder.toString());
+                // Only invalidate the cached data of the table being updated, rather than the
+                // entire second-level cache
+                query = session.createNativeQuery(builder.toString())
+                    .addSynchronizedQuerySpace(table);
             }
 
             // Set params
@@ -1381,7 +1387,8 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
 
     /**
      * Performs an SQL delete on the given table, using the given criteria map to filter rows to
-     * delete.
+     * delete. Only the second-level cache regions and cached queries backed by the given table are
+     * invalidated by the delete.
      *
      * @param table
      *  The name of the table to update
@@ -1439,7 +1446,8 @@ public abstract class AbstractHibernateCurator<E extends Persisted> {
             }
         }
 
-        NativeQuery query = this.currentSession().createNativeQuery(builder.toString());
+        NativeQuery query = this.currentSession().createNativeQuery(builder.toString())
+            .addSynchronizedQuerySpace(table);
 
         if (criteria != null && !criteria.isEmpty()) {
             int param = 0;
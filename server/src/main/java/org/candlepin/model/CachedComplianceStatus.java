@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+
+
+/**
+ * CachedComplianceStatus
+ *
+ * The last compliance status calculated for a consumer, along with fingerprints of the inputs it
+ * was calculated from and the range of dates on which it remains valid for those inputs.
+ */
+@Entity
+@Table(name = CachedComplianceStatus.DB_TABLE)
+public class CachedComplianceStatus extends AbstractHibernateObject<CachedComplianceStatus> {
+
+    /** Name of the table backing this object in the database */
+    public static final String DB_TABLE = "cp_compliance_cache";
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "consumer_id", length = 32)
+    @NotNull
+    private String consumerId;
+
+    @Column(name = "rules_version")
+    @Size(max = 255)
+    private String rulesVersion;
+
+    @Column(name = "consumer_hash", length = 64)
+    @Size(max = 64)
+    private String consumerHash;
+
+    @Column(name = "entitlements_hash", length = 64)
+    @Size(max = 64)
+    private String entitlementsHash;
+
+    @Column(name = "valid_from")
+    private Date validFrom;
+
+    @Column(name = "valid_until")
+    private Date validUntil;
+
+    @Column(name = "compliant_until_calculated", nullable = false)
+    private boolean compliantUntilCalculated;
+
+    @Column(nullable = false)
+    @NotNull
+    private byte[] status;
+
+    public CachedComplianceStatus() {
+    }
+
+    public CachedComplianceStatus(String consumerId) {
+        this.consumerId = consumerId;
+    }
+
+    @Override
+    public String getId() {
+        return this.consumerId;
+    }
+
+    public String getConsumerId() {
+        return this.consumerId;
+    }
+
+    public void setConsumerId(String consumerId) {
+        this.consumerId = consumerId;
+    }
+
+    public String getRulesVersion() {
+        return this.rulesVersion;
+    }
+
+    public void setRulesVersion(String rulesVersion) {
+        this.rulesVersion = rulesVersion;
+    }
+
+    public String getConsumerHash() {
+        return this.consumerHash;
+    }
+
+    public void setConsumerHash(String consumerHash) {
+        this.consumerHash = consumerHash;
+    }
+
+    public String getEntitlementsHash() {
+        return this.entitlementsHash;
+    }
+
+    public void setEntitlementsHash(String entitlementsHash) {
+        this.entitlementsHash = entitlementsHash;
+    }
+
+    /**
+     * @return
+     *  the earliest date on which the status is valid, or null if it is valid on any date before
+     *  its valid until date
+     */
+    public Date getValidFrom() {
+        return this.validFrom;
+    }
+
+    public void setValidFrom(Date validFrom) {
+        this.validFrom = validFrom;
+    }
+
+    /**
+     * @return
+     *  the date on which the status is no longer valid, or null if it remains valid on any date
+     *  after its valid from date
+     */
+    public Date getValidUntil() {
+        return this.validUntil;
+    }
+
+    public void setValidUntil(Date validUntil) {
+        this.validUntil = validUntil;
+    }
+
+    public boolean isCompliantUntilCalculated() {
+        return this.compliantUntilCalculated;
+    }
+
+    public void setCompliantUntilCalculated(boolean compliantUntilCalculated) {
+        this.compliantUntilCalculated = compliantUntilCalculated;
+    }
+
+    /**
+     * @return
+     *  the serialized compliance status
+     */
+    public byte[] getStatus() {
+        return this.status;
+    }
+
+    public void setStatus(byte[] status) {
+        this.status = status;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CachedComplianceStatus [consumerId: %s, rulesVersion: %s, validFrom: %s, " +
+            "validUntil: %s]", this.consumerId, this.rulesVersion, this.validFrom, this.validUntil);
+    }
+
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import com.google.inject.Inject;
+
+import javax.inject.Singleton;
+
+
+
+/**
+ * CachedComplianceStatusCurator
+ */
+@Singleton
+public class CachedComplianceStatusCurator extends AbstractHibernateCurator<CachedComplianceStatus> {
+
+    @Inject
+    public CachedComplianceStatusCurator() {
+        super(CachedComplianceStatus.class);
+    }
+
+    /**
+     * Stores the given status as the cached compliance status of its consumer, replacing any
+     * status previously cached for the consumer.
+     *
+     * @param status
+     *  the status to cache
+     *
+     * @return
+     *  the managed cached status
+     */
+    public CachedComplianceStatus store(CachedComplianceStatus status) {
+        if (status == null) {
+            throw new IllegalArgumentException("status is null");
+        }
+
+        CachedComplianceStatus existing = this.get(status.getConsumerId());
+        if (existing == null) {
+            return this.create(status, false);
+        }
+
+        existing.setRulesVersion(status.getRulesVersion());
+        existing.setConsumerHash(status.getConsumerHash());
+        existing.setEntitlementsHash(status.getEntitlementsHash());
+        existing.setValidFrom(status.getValidFrom());
+        existing.setValidUntil(status.getValidUntil());
+        existing.setCompliantUntilCalculated(status.isCompliantUntilCalculated());
+        existing.setStatus(status.getStatus());
+
+        return existing;
+    }
+
+}
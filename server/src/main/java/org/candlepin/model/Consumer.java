@@ -210,6 +210,10 @@ public class Consumer extends AbstractHibernateObject implements Linkable, Owned
 
     private Date lastCheckin;
 
+    /** A check in recorded but not yet written to the database; see ConsumerCheckInBuffer */
+    @Transient
+    private Date pendingCheckin;
+
     @OneToMany(mappedBy = "consumer", orphanRemoval = true, cascade = { CascadeType.ALL })
     private Set<ConsumerInstalledProduct> installedProducts;
 
@@ -611,9 +615,21 @@ public class Consumer extends AbstractHibernateObject implements Linkable, Owned
     }
 
     public Date getLastCheckin() {
+        if (pendingCheckin != null && (lastCheckin == null || pendingCheckin.after(lastCheckin))) {
+            return pendingCheckin;
+        }
+
         return lastCheckin;
     }
 
+    /*
+     * Only for internal use by the check in buffer; does not change the persisted last check in.
+     */
+    @JsonIgnore
+    public void setPendingCheckin(Date pendingCheckin) {
+        this.pendingCheckin = pendingCheckin;
+    }
+
     public boolean isCanActivate() {
         return canActivate;
     }
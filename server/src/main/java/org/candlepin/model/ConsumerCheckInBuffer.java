@@ -0,0 +1,420 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.inject.Inject;
+import com.google.inject.persist.UnitOfWork;
+
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+
+
+/**
+ * The ConsumerCheckInBuffer records the check ins of consumers in memory, and writes them to the
+ * database periodically in batches, so that consumers checking in do not each update their row
+ * synchronously. Repeated check ins of a consumer between two flushes are coalesced into the latest
+ * one, and check in dates are truncated to the second so that consumers checking in within the same
+ * second are updated together.
+ *
+ * Consumers loaded while their check in is pending see the pending check in date as their last
+ * check in. Queries filtering consumers on their last check in only see check ins once they have
+ * been flushed.
+ *
+ * If the buffer is full, check ins of consumers not already in the buffer are written to the
+ * database directly, and a flush is started early. When shutting down, pending check ins are
+ * either flushed or dropped, as configured.
+ */
+@Singleton
+public class ConsumerCheckInBuffer implements ConsumerCheckInBufferMXBean {
+    private static Logger log = LoggerFactory.getLogger(ConsumerCheckInBuffer.class);
+
+    /**
+     * A pending check in, along with the time it was first recorded since the last flush of its
+     * consumer.
+     */
+    private static class CheckIn {
+        private final Date date;
+        private final long recorded;
+
+        CheckIn(Date date, long recorded) {
+            this.date = date;
+            this.recorded = recorded;
+        }
+
+        CheckIn merge(CheckIn other) {
+            return new CheckIn(other.date.after(this.date) ? other.date : this.date,
+                Math.min(this.recorded, other.recorded));
+        }
+    }
+
+    /**
+     * Applies the pending check ins to the consumers loaded by Hibernate.
+     */
+    public static class LoadListener implements PostLoadEventListener {
+        private static final long serialVersionUID = 1L;
+
+        private final transient ConsumerCheckInBuffer buffer;
+
+        public LoadListener(ConsumerCheckInBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void onPostLoad(PostLoadEvent event) {
+            if (event.getEntity() instanceof Consumer) {
+                this.buffer.applyPendingCheckIn((Consumer) event.getEntity());
+            }
+        }
+    }
+
+    private final Provider<ConsumerCurator> consumerCuratorProvider;
+    private final UnitOfWork unitOfWork;
+    private final long flushInterval;
+    private final int maxSize;
+    private final boolean flushOnShutdown;
+    private final ScheduledExecutorService executor;
+
+    private final Map<String, CheckIn> pending = new ConcurrentHashMap<>();
+
+    /** The check ins being written by the current flush, which remain visible until committed */
+    private volatile Map<String, CheckIn> flushing = Collections.emptyMap();
+
+    private final AtomicBoolean earlyFlushScheduled = new AtomicBoolean();
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong writeThroughs = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long lastFlushLag;
+
+    @Inject
+    public ConsumerCheckInBuffer(Configuration config, Provider<ConsumerCurator> consumerCuratorProvider,
+        UnitOfWork unitOfWork) {
+
+        this(consumerCuratorProvider, unitOfWork,
+            config.getLong(ConfigProperties.CONSUMER_CHECKIN_FLUSH_INTERVAL, 0) * 1000,
+            config.getInt(ConfigProperties.CONSUMER_CHECKIN_BUFFER_SIZE, 0),
+            config.getBoolean(ConfigProperties.CONSUMER_CHECKIN_FLUSH_ON_SHUTDOWN, true));
+    }
+
+    /**
+     * Creates a buffer, and starts flushing it periodically.
+     *
+     * @param consumerCuratorProvider
+     *  a provider of the curator writing check ins to the database
+     *
+     * @param unitOfWork
+     *  the unit of work flushes are run in
+     *
+     * @param flushInterval
+     *  the number of milliseconds between flushes; 0 to write every check in directly
+     *
+     * @param maxSize
+     *  the maximum number of consumers with pending check ins
+     *
+     * @param flushOnShutdown
+     *  whether pending check ins are flushed or dropped when shutting down
+     */
+    public ConsumerCheckInBuffer(Provider<ConsumerCurator> consumerCuratorProvider, UnitOfWork unitOfWork,
+        long flushInterval, int maxSize, boolean flushOnShutdown) {
+
+        this.consumerCuratorProvider = consumerCuratorProvider;
+        this.unitOfWork = unitOfWork;
+        this.flushInterval = Math.max(0, flushInterval);
+        this.maxSize = Math.max(0, maxSize);
+        this.flushOnShutdown = flushOnShutdown;
+
+        if (this.isEnabled()) {
+            this.executor = Executors.newSingleThreadScheduledExecutor(this::newFlushThread);
+            this.executor.scheduleWithFixedDelay(this::flushQuietly, this.flushInterval, this.flushInterval,
+                TimeUnit.MILLISECONDS);
+        }
+        else {
+            this.executor = null;
+        }
+    }
+
+    private Thread newFlushThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "consumer-checkin-flush");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * @return
+     *  true if check ins are buffered; false if they are written to the database directly
+     */
+    public boolean isEnabled() {
+        return this.flushInterval > 0 && this.maxSize > 0;
+    }
+
+    /**
+     * Records a check in of the given consumer at the current time.
+     *
+     * @param consumer
+     *  the consumer checking in
+     */
+    public void record(Consumer consumer) {
+        this.record(consumer, new Date());
+    }
+
+    /**
+     * Records a check in of the given consumer. The check in is applied to the given consumer
+     * instance, and written to the database with the next flush, or immediately if buffering is
+     * disabled or the buffer is full.
+     *
+     * @param consumer
+     *  the consumer checking in
+     *
+     * @param date
+     *  the date the consumer checked in
+     */
+    public void record(Consumer consumer, Date date) {
+        if (!this.isEnabled()) {
+            this.consumerCuratorProvider.get().updateLastCheckin(consumer, date);
+            return;
+        }
+
+        CheckIn checkIn = new CheckIn(new Date(date.getTime() / 1000 * 1000), System.currentTimeMillis());
+
+        if (this.pending.size() >= this.maxSize && !this.pending.containsKey(consumer.getId())) {
+            log.debug("Consumer check in buffer is full; writing check in of {} directly", consumer);
+
+            this.writeThroughs.incrementAndGet();
+            this.scheduleEarlyFlush();
+            this.consumerCuratorProvider.get().updateLastCheckin(consumer, checkIn.date);
+        }
+        else if (this.pending.merge(consumer.getId(), checkIn, CheckIn::merge) != checkIn) {
+            this.coalesced.incrementAndGet();
+        }
+
+        this.recorded.incrementAndGet();
+        consumer.setPendingCheckin(checkIn.date);
+    }
+
+    /**
+     * Applies the pending check in of the given consumer, if any, to the given consumer instance.
+     *
+     * @param consumer
+     *  the consumer to update
+     */
+    public void applyPendingCheckIn(Consumer consumer) {
+        if (this.isEnabled() && consumer.getId() != null) {
+            CheckIn checkIn = this.pending.get(consumer.getId());
+
+            if (checkIn == null) {
+                checkIn = this.flushing.get(consumer.getId());
+            }
+
+            if (checkIn != null) {
+                consumer.setPendingCheckin(checkIn.date);
+            }
+        }
+    }
+
+    private void scheduleEarlyFlush() {
+        if (this.earlyFlushScheduled.compareAndSet(false, true)) {
+            try {
+                this.executor.execute(this::flushQuietly);
+            }
+            catch (RejectedExecutionException e) {
+                // The buffer has been shut down
+                this.earlyFlushScheduled.set(false);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        this.earlyFlushScheduled.set(false);
+
+        try {
+            this.flush();
+        }
+        catch (Exception e) {
+            log.warn("Unable to flush consumer check ins; retrying with the next flush", e);
+        }
+    }
+
+    /**
+     * Writes the pending check ins to the database. Check ins which could not be written are kept
+     * in the buffer for the next flush.
+     *
+     * @return
+     *  the number of check ins written
+     */
+    public synchronized int flush() {
+        if (this.pending.isEmpty()) {
+            return 0;
+        }
+
+        // The batch is published before any check in leaves the pending check ins, so that consumers
+        // loaded while it is being filled still see their check in in one or the other
+        Map<String, CheckIn> batch = new ConcurrentHashMap<>();
+        this.flushing = batch;
+
+        for (Map.Entry<String, CheckIn> entry : this.pending.entrySet()) {
+            batch.put(entry.getKey(), entry.getValue());
+
+            // A check in recorded in the meantime stays pending, and is written by the next flush
+            this.pending.remove(entry.getKey(), entry.getValue());
+        }
+
+        boolean committed = false;
+
+        try {
+            Map<String, Date> checkins = new HashMap<>();
+            long oldest = System.currentTimeMillis();
+
+            for (Map.Entry<String, CheckIn> entry : batch.entrySet()) {
+                checkins.put(entry.getKey(), entry.getValue().date);
+                oldest = Math.min(oldest, entry.getValue().recorded);
+            }
+
+            this.write(checkins);
+            committed = true;
+
+            this.flushed.addAndGet(batch.size());
+            this.lastFlushLag = System.currentTimeMillis() - oldest;
+            log.debug("Flushed {} consumer check ins", batch.size());
+
+            return batch.size();
+        }
+        finally {
+            if (!committed) {
+                for (Map.Entry<String, CheckIn> entry : batch.entrySet()) {
+                    this.pending.merge(entry.getKey(), entry.getValue(), CheckIn::merge);
+                }
+            }
+
+            this.flushing = Collections.emptyMap();
+        }
+    }
+
+    private void write(Map<String, Date> checkins) {
+        boolean startedUnitOfWork = false;
+
+        try {
+            this.unitOfWork.begin();
+            startedUnitOfWork = true;
+        }
+        catch (IllegalStateException e) {
+            log.debug("Already have an open unit of work");
+        }
+
+        try {
+            this.consumerCuratorProvider.get().updateLastCheckins(checkins);
+        }
+        finally {
+            if (startedUnitOfWork) {
+                this.unitOfWork.end();
+            }
+        }
+    }
+
+    /**
+     * Stops flushing the buffer periodically, and either flushes or drops the pending check ins.
+     * Check ins recorded afterward are not flushed until the next call to flush.
+     */
+    public void shutdown() {
+        if (this.executor == null) {
+            return;
+        }
+
+        this.executor.shutdownNow();
+
+        if (this.flushOnShutdown) {
+            try {
+                this.flush();
+            }
+            catch (Exception e) {
+                log.warn("Unable to flush consumer check ins while shutting down", e);
+            }
+        }
+
+        if (!this.pending.isEmpty()) {
+            log.info("Dropping {} pending consumer check ins", this.pending.size());
+
+            this.dropped.addAndGet(this.pending.size());
+            this.pending.clear();
+        }
+    }
+
+    @Override
+    public int getPendingCount() {
+        return this.pending.size();
+    }
+
+    @Override
+    public long getPendingLag() {
+        long oldest = Long.MAX_VALUE;
+        for (CheckIn checkIn : this.pending.values()) {
+            oldest = Math.min(oldest, checkIn.recorded);
+        }
+
+        return oldest != Long.MAX_VALUE ? Math.max(0, System.currentTimeMillis() - oldest) : 0;
+    }
+
+    @Override
+    public long getLastFlushLag() {
+        return this.lastFlushLag;
+    }
+
+    @Override
+    public long getRecordedCount() {
+        return this.recorded.get();
+    }
+
+    @Override
+    public long getCoalescedCount() {
+        return this.coalesced.get();
+    }
+
+    @Override
+    public long getFlushedCount() {
+        return this.flushed.get();
+    }
+
+    @Override
+    public long getWriteThroughCount() {
+        return this.writeThroughs.get();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return this.dropped.get();
+    }
+
+}
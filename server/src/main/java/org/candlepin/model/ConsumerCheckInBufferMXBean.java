@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+
+
+/**
+ * The statistics of the consumer check in buffer, as exposed over JMX.
+ */
+public interface ConsumerCheckInBufferMXBean {
+
+    /**
+     * @return
+     *  the number of consumers whose check ins are waiting to be written to the database
+     */
+    int getPendingCount();
+
+    /**
+     * @return
+     *  the number of milliseconds the oldest check in waiting to be written to the database has been
+     *  waiting for; 0 if no check in is waiting
+     */
+    long getPendingLag();
+
+    /**
+     * @return
+     *  the number of milliseconds the oldest check in written by the last flush had been waiting for
+     */
+    long getLastFlushLag();
+
+    /**
+     * @return
+     *  the number of check ins recorded in the buffer
+     */
+    long getRecordedCount();
+
+    /**
+     * @return
+     *  the number of check ins coalesced with a check in of the same consumer already in the buffer
+     */
+    long getCoalescedCount();
+
+    /**
+     * @return
+     *  the number of consumers whose check ins have been written to the database by flushes
+     */
+    long getFlushedCount();
+
+    /**
+     * @return
+     *  the number of check ins written to the database directly because the buffer was full
+     */
+    long getWriteThroughCount();
+
+    /**
+     * @return
+     *  the number of check ins dropped when shutting down
+     */
+    long getDroppedCount();
+
+}
@@ -448,6 +448,44 @@ public class ConsumerCurator extends AbstractHibernateCurator<Consumer> {
             .executeUpdate();
     }
 
+    /**
+     * Updates the last check in of a number of consumers, with one update per distinct check in
+     * date and block of consumer IDs. A consumer which has already checked in later than the given
+     * date is left untouched.
+     *
+     * @param checkins
+     *  a map of consumer IDs to the dates the consumers checked in
+     *
+     * @return
+     *  the number of consumers updated
+     */
+    @Transactional
+    public int updateLastCheckins(Map<String, Date> checkins) {
+        // Buffered check ins may be older than later updates of their consumers, which must be kept
+        String hql = "UPDATE Consumer c SET c.lastCheckin = :date, " +
+            "c.updated = CASE WHEN c.updated < :date THEN :date ELSE c.updated END " +
+            "WHERE c.id IN (:cids) AND (c.lastCheckin IS NULL OR c.lastCheckin < :date)";
+
+        Map<Date, List<String>> consumerIdsByDate = new HashMap<>();
+        for (Entry<String, Date> entry : checkins.entrySet()) {
+            consumerIdsByDate.computeIfAbsent(entry.getValue(), date -> new ArrayList<>())
+                .add(entry.getKey());
+        }
+
+        Query query = this.currentSession().createQuery(hql);
+        int updated = 0;
+
+        for (Entry<Date, List<String>> entry : consumerIdsByDate.entrySet()) {
+            for (List<String> block : this.partition(entry.getValue())) {
+                updated += query.setTimestamp("date", entry.getKey())
+                    .setParameterList("cids", block)
+                    .executeUpdate();
+            }
+        }
+
+        return updated;
+    }
+
     private boolean factsChanged(Map<String, String> updatedFacts, Map<String, String> existingFacts) {
         return !existingFacts.equals(updatedFacts);
     }
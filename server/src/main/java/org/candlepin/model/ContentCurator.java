@@ -57,6 +57,30 @@ public class ContentCurator extends AbstractHibernateCurator<Content> {
         currentSession().delete(toDelete);
     }
 
+    /**
+     * Evicts the specified content from the second-level cache. As content is immutable, its cache
+     * entries never become stale; this only releases the entries of content an owner stopped using.
+     * Content still used by other owners is reloaded on its next lookup.
+     *
+     * @param contentUuids
+     *  A collection of UUIDs of the content to evict
+     */
+    public void evictContentFromCache(Collection<String> contentUuids) {
+        if (contentUuids == null || contentUuids.isEmpty()) {
+            return;
+        }
+
+        org.hibernate.Cache cache = this.currentSession().getSessionFactory().getCache();
+        String role = this.entityType().getName() + ".modifiedProductIds";
+
+        for (String uuid : contentUuids) {
+            cache.evictEntityData(this.entityType(), uuid);
+            cache.evictCollectionData(role, uuid);
+        }
+
+        log.debug("Evicted {} content from the second-level cache", contentUuids.size());
+    }
+
     /**
      * Retrieves a Content instance for the specified content UUID. If no matching content could be
      * be found, this method returns null.
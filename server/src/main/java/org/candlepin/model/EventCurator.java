@@ -17,11 +17,15 @@ package org.candlepin.model;
 import org.candlepin.audit.Event;
 
 import com.google.inject.Inject;
+import com.google.inject.persist.Transactional;
 
+import org.hibernate.Session;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
 
+import java.util.Collection;
+
 import javax.inject.Singleton;
 
 
@@ -38,6 +42,27 @@ public class EventCurator extends AbstractHibernateCurator<Event> {
         super(Event.class);
     }
 
+    /**
+     * Creates the given events in a single transaction. The events are inserted with JDBC batches,
+     * and evicted from the session once inserted.
+     *
+     * @param events
+     *  the events to create
+     */
+    @Transactional
+    public void createAll(Collection<Event> events) {
+        Session session = this.currentSession();
+        Integer jdbcBatchSize = session.getJdbcBatchSize();
+
+        try {
+            session.setJdbcBatchSize(this.getBatchBlockSize());
+            this.saveAll(events, true, true);
+        }
+        finally {
+            session.setJdbcBatchSize(jdbcBatchSize);
+        }
+    }
+
     /**
      * @param limit
      * @return
@@ -14,6 +14,7 @@
  */
 package org.candlepin.model;
 
+import org.candlepin.cache.CandlepinCacheRegions;
 import org.candlepin.model.activationkeys.ActivationKey;
 
 import com.google.inject.persist.Transactional;
@@ -79,6 +80,8 @@ public class OwnerProductCurator extends AbstractHibernateCurator<OwnerProduct>
             .setProjection(Projections.property("product"))
             .add(Restrictions.eq("owner.id", ownerId))
             .add(Restrictions.eq("product.id", productId))
+            .setCacheable(true)
+            .setCacheRegion(CandlepinCacheRegions.OWNER_PRODUCT_QUERY_CACHE)
             .uniqueResult();
     }
 
@@ -90,6 +93,8 @@ public class OwnerProductCurator extends AbstractHibernateCurator<OwnerProduct>
             .setProjection(Projections.property("product"))
             .add(Restrictions.eq("owner.key", ownerKey))
             .add(Restrictions.eq("product.id", productId))
+            .setCacheable(true)
+            .setCacheRegion(CandlepinCacheRegions.OWNER_PRODUCT_QUERY_CACHE)
             .uniqueResult();
     }
 
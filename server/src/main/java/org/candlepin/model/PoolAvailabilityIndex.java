@@ -0,0 +1,321 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.inject.Singleton;
+
+
+
+/**
+ * The PoolAvailabilityIndex keeps an in-memory index of the pools of each owner by the IDs of their
+ * products and provided products, along with their date ranges, so that finding the pools available
+ * for a set of products does not require joining the pools of an owner with their provided products
+ * in the database.
+ *
+ * Indexes are built from committed pools only. An owner's index is checked against the number of
+ * pools of the owner and the latest time any of them was updated before it is used, and the pools
+ * updated since are reloaded. As the index may still hold pools which have since been deleted, the
+ * pools it finds are candidates, which must be looked up in the database along with the remaining
+ * criteria of a query.
+ */
+@Singleton
+public class PoolAvailabilityIndex {
+
+    /**
+     * Pools updated within this many milliseconds of the latest update seen are reloaded whenever an
+     * index is checked, as the database may truncate update times to the second, and the clocks of
+     * the nodes of a cluster may drift apart.
+     */
+    static final long RECHECK_WINDOW = 60000;
+
+    /**
+     * An indexed pool.
+     */
+    public static class Entry {
+        private final String poolId;
+        private final Set<String> productIds;
+        private final Date startDate;
+        private final Date endDate;
+
+        public Entry(String poolId, String productId, Collection<String> providedProductIds,
+            Date startDate, Date endDate) {
+
+            this.poolId = poolId;
+            this.productIds = new HashSet<>();
+            this.startDate = startDate;
+            this.endDate = endDate;
+
+            if (productId != null) {
+                this.productIds.add(productId);
+            }
+
+            if (providedProductIds != null) {
+                this.productIds.addAll(providedProductIds);
+            }
+        }
+
+        public String getPoolId() {
+            return this.poolId;
+        }
+
+        /**
+         * Checks whether or not this pool matches the date criteria of a pool listing.
+         *
+         * @see PoolCurator#listAvailableEntitlementPools
+         */
+        boolean matchesDates(Date activeOn, boolean addFuture, boolean onlyFuture, Date after) {
+            if (activeOn != null) {
+                if (onlyFuture) {
+                    if (this.startDate == null || this.startDate.getTime() < activeOn.getTime()) {
+                        return false;
+                    }
+                }
+                else {
+                    if (this.endDate == null || this.endDate.getTime() < activeOn.getTime()) {
+                        return false;
+                    }
+
+                    if (!addFuture &&
+                        (this.startDate == null || this.startDate.getTime() > activeOn.getTime())) {
+                        return false;
+                    }
+                }
+            }
+
+            return after == null || (this.startDate != null && this.startDate.getTime() > after.getTime());
+        }
+    }
+
+    /**
+     * The index of the pools of one owner. Owner indexes are immutable; updating an index creates
+     * a new one, so lookups never see an index being updated.
+     */
+    public static class OwnerIndex {
+        private final Map<String, Entry> entries;
+        private final Map<String, Set<String>> poolIdsByProduct;
+        private final long poolCount;
+        private final Date latestUpdate;
+
+        /**
+         * Creates an index of the given pools.
+         *
+         * @param entries
+         *  the pools of the owner
+         *
+         * @param poolCount
+         *  the number of pools of the owner in the database when the pools were loaded
+         *
+         * @param latestUpdate
+         *  the latest time any pool of the owner was updated when the pools were loaded; null if the
+         *  owner had no pools
+         */
+        public OwnerIndex(Collection<Entry> entries, long poolCount, Date latestUpdate) {
+            this(Collections.<String, Entry>emptyMap(), entries, poolCount, latestUpdate);
+        }
+
+        private OwnerIndex(Map<String, Entry> base, Collection<Entry> updates, long poolCount,
+            Date latestUpdate) {
+
+            this.entries = new HashMap<>(base);
+            this.poolIdsByProduct = new HashMap<>();
+            this.poolCount = poolCount;
+            this.latestUpdate = latestUpdate;
+
+            for (Entry entry : updates) {
+                this.entries.put(entry.poolId, entry);
+            }
+
+            for (Entry entry : this.entries.values()) {
+                for (String productId : entry.productIds) {
+                    this.poolIdsByProduct.computeIfAbsent(productId, key -> new HashSet<>())
+                        .add(entry.poolId);
+                }
+            }
+        }
+
+        /**
+         * Checks whether or not this index still covers every pool of the owner.
+         *
+         * @param poolCount
+         *  the number of pools of the owner in the database
+         *
+         * @param latestUpdate
+         *  the latest time any pool of the owner was updated
+         *
+         * @param now
+         *  the current time
+         *
+         * @return
+         *  true if no pool has been created, updated or deleted since the index was built; false
+         *  otherwise
+         */
+        public boolean isCurrent(long poolCount, Date latestUpdate, Date now) {
+            return this.poolCount == poolCount &&
+                Objects.equals(timeOf(this.latestUpdate), timeOf(latestUpdate)) &&
+                (latestUpdate == null || now.getTime() - latestUpdate.getTime() > RECHECK_WINDOW);
+        }
+
+        /**
+         * Determines the time since which the pools of the owner must be reloaded to update this
+         * index.
+         *
+         * @param latestUpdate
+         *  the latest time any pool of the owner was updated
+         *
+         * @return
+         *  the time since which the updated pools of the owner must be reloaded, or null if the index
+         *  must be rebuilt
+         */
+        public Date getReloadSince(Date latestUpdate) {
+            if (this.latestUpdate == null || latestUpdate == null || latestUpdate.before(this.latestUpdate)) {
+                // Either the owner had no pools, or the latest updates were lost
+                return null;
+            }
+
+            return new Date(this.latestUpdate.getTime() - RECHECK_WINDOW);
+        }
+
+        /**
+         * Creates an index from this one and the given reloaded pools.
+         *
+         * @param reloaded
+         *  the pools updated since this index was built
+         *
+         * @param poolCount
+         *  the number of pools of the owner in the database when the pools were reloaded
+         *
+         * @param latestUpdate
+         *  the latest time any pool of the owner was updated when the pools were reloaded
+         *
+         * @return
+         *  the updated index, or null if it does not hold exactly the pools counted in the database
+         *  and must be rebuilt; either because pools have been deleted, or because pools committed
+         *  with update times older than the reloaded range were missed
+         */
+        public OwnerIndex update(Collection<Entry> reloaded, long poolCount, Date latestUpdate) {
+            OwnerIndex updated = new OwnerIndex(this.entries, reloaded, poolCount, latestUpdate);
+            return updated.entries.size() == poolCount ? updated : null;
+        }
+
+        /**
+         * Finds the pools providing any of the given products which match the given dates.
+         *
+         * @return
+         *  the IDs of the candidate pools
+         */
+        public Set<String> findPoolIds(Collection<String> productIds, Date activeOn, boolean addFuture,
+            boolean onlyFuture, Date after) {
+
+            Set<String> poolIds = new HashSet<>();
+
+            for (String productId : productIds) {
+                Set<String> candidates = this.poolIdsByProduct.get(productId);
+
+                if (candidates != null) {
+                    for (String poolId : candidates) {
+                        if (!poolIds.contains(poolId) &&
+                            this.entries.get(poolId).matchesDates(activeOn, addFuture, onlyFuture, after)) {
+
+                            poolIds.add(poolId);
+                        }
+                    }
+                }
+            }
+
+            return poolIds;
+        }
+
+        public int size() {
+            return this.entries.size();
+        }
+
+        private static Long timeOf(Date date) {
+            return date != null ? date.getTime() : null;
+        }
+    }
+
+    private final Cache<String, OwnerIndex> indexes;
+
+    @Inject
+    public PoolAvailabilityIndex(Configuration config) {
+        this(config.getInt(ConfigProperties.POOL_INDEX_MAX_OWNERS, 0));
+    }
+
+    /**
+     * Creates an index keeping the pools of up to the given number of owners.
+     *
+     * @param maxOwners
+     *  the maximum number of owners indexed at once; 0 to disable the index
+     */
+    public PoolAvailabilityIndex(int maxOwners) {
+        this.indexes = maxOwners > 0 ?
+            CacheBuilder.newBuilder()
+                .maximumSize(maxOwners)
+                .<String, OwnerIndex>build() :
+            null;
+    }
+
+    /**
+     * @return
+     *  true if pools are indexed; false otherwise
+     */
+    public boolean isEnabled() {
+        return this.indexes != null;
+    }
+
+    /**
+     * @param ownerId
+     *  the ID of the owner
+     *
+     * @return
+     *  the index of the pools of the owner, or null if the owner has not been indexed or the index
+     *  is disabled
+     */
+    public OwnerIndex get(String ownerId) {
+        return this.indexes != null ? this.indexes.getIfPresent(ownerId) : null;
+    }
+
+    /**
+     * Stores the index of the pools of an owner, if the index is enabled.
+     *
+     * @param ownerId
+     *  the ID of the owner
+     *
+     * @param index
+     *  the index of the pools of the owner
+     */
+    public void put(String ownerId, OwnerIndex index) {
+        if (this.indexes != null) {
+            this.indexes.put(ownerId, index);
+        }
+    }
+
+}
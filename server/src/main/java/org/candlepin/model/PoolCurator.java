@@ -29,9 +29,13 @@ import org.hibernate.Criteria;
 import org.hibernate.FetchMode;
 import org.hibernate.Filter;
 import org.hibernate.Hibernate;
+import org.hibernate.LockMode;
 import org.hibernate.query.Query;
 import org.hibernate.ReplicationMode;
 import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Disjunction;
@@ -42,7 +46,16 @@ import org.hibernate.criterion.Property;
 import org.hibernate.criterion.SimpleExpression;
 import org.hibernate.criterion.Subqueries;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.HSQLDialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
 import org.hibernate.internal.FilterImpl;
+import org.hibernate.persister.entity.EntityPersister;
 import org.hibernate.sql.JoinType;
 import org.hibernate.type.StringType;
 import org.slf4j.Logger;
@@ -60,11 +73,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.persistence.TypedQuery;
 
 import javax.inject.Singleton;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
 
 
 
@@ -77,18 +95,25 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
     /** The recommended number of expired pools to fetch in a single call to listExpiredPools */
     public static final int EXPIRED_POOL_BLOCK_SIZE = 2048;
 
+    private static final String POOL_INDEX_STATS_JPQL =
+        "SELECT count(p.id), max(p.updated) FROM Pool p WHERE p.owner.id = :owner_id";
+
     private static Logger log = LoggerFactory.getLogger(PoolCurator.class);
     private ConsumerCurator consumerCurator;
     private ConsumerTypeCurator consumerTypeCurator;
+    private PoolAvailabilityIndex poolIndex;
 
     @Inject
     protected Injector injector;
 
     @Inject
-    public PoolCurator(ConsumerCurator consumerCurator, ConsumerTypeCurator consumerTypeCurator) {
+    public PoolCurator(ConsumerCurator consumerCurator, ConsumerTypeCurator consumerTypeCurator,
+        PoolAvailabilityIndex poolIndex) {
+
         super(Pool.class);
         this.consumerCurator = consumerCurator;
         this.consumerTypeCurator = consumerTypeCurator;
+        this.poolIndex = poolIndex;
     }
 
     /**
@@ -345,12 +370,80 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
      * @return List of entitlement pools.
      */
     @Transactional
-    @SuppressWarnings({"unchecked", "checkstyle:indentation", "checkstyle:methodlength"})
-    // TODO: Remove the methodlength suppression once this method is cleaned up
     public Page<List<Pool>> listAvailableEntitlementPools(Consumer consumer, String ownerId,
         Collection<String> productIds, String subscriptionId, Date activeOn, PoolFilterBuilder filters,
         PageRequest pageRequest, boolean postFilter, boolean addFuture, boolean onlyFuture, Date after) {
 
+        // Impl note:
+        // Hibernate has an issue with properly hydrating objects within collections of the pool
+        // when only a subset of the collection matches the criteria. To work around this, we pull
+        // the ID list from the main filtering query, then pull the pools again using the ID list.
+        // This also makes it easier to eventually start using a cursor, since the distinct entity
+        // functionality doesn't work with cursors.
+
+        List<String> poolIds = this.findAvailableEntitlementPoolIds(consumer, ownerId, productIds,
+            subscriptionId, activeOn, filters, addFuture, onlyFuture, after);
+
+        if (!poolIds.isEmpty()) {
+            Criteria criteria = this.currentSession()
+                .createCriteria(Pool.class)
+                .add(CPRestrictions.in("id", poolIds));
+
+            return this.listByCriteria(criteria, pageRequest, postFilter);
+        }
+
+        Page<List<Pool>> output = new Page<>();
+        output.setPageData(Collections.<Pool>emptyList());
+        output.setMaxRecords(0);
+
+        return output;
+    }
+
+    /**
+     * Lists the IDs of the entitlement pools matching the given criteria, in the order given by the
+     * sort field and order of the page request, without loading the pools themselves. The page and
+     * page size of the request are ignored; this allows callers which filter pools in java to load
+     * and filter them a few at a time, stopping as soon as they have found enough.
+     *
+     * @param consumer Consumer being entitled.
+     * @param ownerId Owner whose subscriptions should be inspected.
+     * @param productId only entitlements which provide this product are included.
+     * @param activeOn Indicates to return only pools valid on this date.
+     *        Set to null for no date filtering.
+     * @param filters filter builder with set filters to apply to the criteria.
+     * @param pageRequest used to specify the sort field and order; may be null.
+     * @return the IDs of the matching pools, in order.
+     */
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public List<String> listAvailableEntitlementPoolIds(Consumer consumer, String ownerId, String productId,
+        String subscriptionId, Date activeOn, PoolFilterBuilder filters, PageRequest pageRequest,
+        boolean addFuture, boolean onlyFuture, Date after) {
+
+        List<String> poolIds = this.findAvailableEntitlementPoolIds(consumer, ownerId,
+            (productId != null ? Arrays.asList(productId) : null), subscriptionId, activeOn, filters,
+            addFuture, onlyFuture, after);
+
+        if (poolIds.size() < 2) {
+            return poolIds;
+        }
+
+        // Pools sharing a sort value are ordered by ID, so the order is the same on every request
+        return this.currentSession()
+            .createCriteria(Pool.class)
+            .add(CPRestrictions.in("id", poolIds))
+            .setProjection(Projections.id())
+            .addOrder(this.createPagingOrder(pageRequest != null ? pageRequest : new PageRequest()))
+            .addOrder(Order.asc("id"))
+            .list();
+    }
+
+    @SuppressWarnings({"unchecked", "checkstyle:indentation", "checkstyle:methodlength"})
+    // TODO: Remove the methodlength suppression once this method is cleaned up
+    private List<String> findAvailableEntitlementPoolIds(Consumer consumer, String ownerId,
+        Collection<String> productIds, String subscriptionId, Date activeOn, PoolFilterBuilder filters,
+        boolean addFuture, boolean onlyFuture, Date after) {
+
         if (log.isDebugEnabled()) {
             log.debug("Listing available pools for:");
             log.debug("    consumer: {}", consumer);
@@ -373,16 +466,12 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
 
             if (ownerId != null && !ownerId.equals(consumer.getOwnerId())) {
                 // Both a consumer and an owner were specified, but the consumer belongs to a different owner.
-                // We can't possibly match a pool on two owners, so we can just abort immediately with an
-                // empty page
+                // We can't possibly match a pool on two owners, so we can just abort immediately with no
+                // pools
                 log.warn("Attempting to filter entitlement pools by owner and a consumer belonging to a " +
                     "different owner: {}, {}", ownerId, consumer);
 
-                Page<List<Pool>> output = new Page<>();
-                output.setPageData(Collections.<Pool>emptyList());
-                output.setMaxRecords(0);
-
-                return output;
+                return Collections.<String>emptyList();
             }
 
             // We'll set the owner restriction later
@@ -474,15 +563,30 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
             productIds;
 
         if (values != null && !values.isEmpty()) {
-            if (!joinedProvided) {
-                criteria.createAlias("Pool.providedProducts", "Provided", JoinType.LEFT_OUTER_JOIN);
-                joinedProvided = true;
+            // Look the candidate pools up in the owner's index instead of joining the provided
+            // products, if possible; the remaining criteria are still checked against the candidates
+            Set<String> candidates = ownerId != null && this.poolIndex.isEnabled() ?
+                this.findIndexedPoolIds(ownerId, values, activeOn, addFuture, onlyFuture, after) :
+                null;
+
+            if (candidates != null) {
+                if (candidates.isEmpty()) {
+                    return Collections.<String>emptyList();
+                }
+
+                criteria.add(CPRestrictions.in("Pool.id", candidates));
             }
+            else {
+                if (!joinedProvided) {
+                    criteria.createAlias("Pool.providedProducts", "Provided", JoinType.LEFT_OUTER_JOIN);
+                    joinedProvided = true;
+                }
 
-            criteria.add(Restrictions.or(
-                CPRestrictions.in("Product.id", values),
-                CPRestrictions.in("Provided.id", values)
-            ));
+                criteria.add(Restrictions.or(
+                    CPRestrictions.in("Product.id", values),
+                    CPRestrictions.in("Provided.id", values)
+                ));
+            }
         }
 
         if (filters != null) {
@@ -567,28 +671,378 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
             }
         }
 
-        // Impl note:
-        // Hibernate has an issue with properly hydrating objects within collections of the pool
-        // when only a subset of the collection matches the criteria. To work around this, we pull
-        // the ID list from the main filtering query, then pull the pools again using the ID list.
-        // This also makes it easier to eventually start using a cursor, since the distinct entity
-        // functionality doesn't work with cursors.
-
         List<String> poolIds = criteria.list();
+        return poolIds != null ? poolIds : Collections.<String>emptyList();
+    }
 
-        if (poolIds != null && !poolIds.isEmpty()) {
-            criteria = this.currentSession()
-                .createCriteria(Pool.class)
-                .add(CPRestrictions.in("id", poolIds));
+    /**
+     * Finds the pools of an owner providing any of the given products on the given dates in the
+     * owner's pool index, first updating the index with the pools created or updated since it was
+     * built.
+     *
+     * @return
+     *  the IDs of the candidate pools, which may include pools which have since been deleted; or
+     *  null if the pools of the owner have been changed by the current transaction, and the index
+     *  cannot be used
+     */
+    private Set<String> findIndexedPoolIds(String ownerId, Collection<String> productIds, Date activeOn,
+        boolean addFuture, boolean onlyFuture, Date after) {
 
-            return this.listByCriteria(criteria, pageRequest, postFilter);
+        Object[] stats = this.getPoolIndexStats(this.currentSession().createQuery(POOL_INDEX_STATS_JPQL),
+            ownerId);
+
+        long poolCount = ((Number) stats[0]).longValue();
+        Date latestUpdate = (Date) stats[1];
+
+        // Any change made by the current transaction either changes the number of pools, or updates
+        // a pool within the recheck window, so an index still current with the pools the current
+        // transaction sees is current with the committed pools as well
+        PoolAvailabilityIndex.OwnerIndex index = this.poolIndex.get(ownerId);
+
+        if (index == null || !index.isCurrent(poolCount, latestUpdate, new Date())) {
+            index = this.reloadPoolIndex(ownerId, index, stats);
+
+            if (index == null) {
+                return null;
+            }
         }
 
-        Page<List<Pool>> output = new Page<>();
-        output.setPageData(Collections.<Pool>emptyList());
-        output.setMaxRecords(0);
+        return index.findPoolIds(productIds, activeOn, addFuture, onlyFuture, after);
+    }
 
-        return output;
+    /**
+     * Updates or rebuilds the pool index of an owner from the committed pools of the owner.
+     *
+     * @return
+     *  the updated index, or null if the pools of the owner have been changed by the current
+     *  transaction
+     */
+    private PoolAvailabilityIndex.OwnerIndex reloadPoolIndex(String ownerId,
+        PoolAvailabilityIndex.OwnerIndex index, Object[] stats) {
+
+        // The index is shared by every transaction, so it is built from committed pools only, in a
+        // session of its own
+        StatelessSession session = this.currentSession().getSessionFactory().openStatelessSession();
+
+        try {
+            Object[] committed = this.getPoolIndexStats(createQuery(session, POOL_INDEX_STATS_JPQL), ownerId);
+
+            if (!Arrays.equals(stats, committed)) {
+                log.debug("Pools of owner {} changed by the current transaction; skipping pool index",
+                    ownerId);
+
+                return null;
+            }
+
+            long poolCount = ((Number) committed[0]).longValue();
+            Date latestUpdate = (Date) committed[1];
+
+            Date since = index != null ? index.getReloadSince(latestUpdate) : null;
+            PoolAvailabilityIndex.OwnerIndex updated = null;
+
+            if (since != null) {
+                updated = index.update(this.loadPoolIndexEntries(session, ownerId, since), poolCount,
+                    latestUpdate);
+            }
+
+            if (updated == null) {
+                log.debug("Indexing the pools of owner: {}", ownerId);
+                updated = new PoolAvailabilityIndex.OwnerIndex(
+                    this.loadPoolIndexEntries(session, ownerId, null), poolCount, latestUpdate);
+            }
+
+            this.poolIndex.put(ownerId, updated);
+            return updated;
+        }
+        finally {
+            session.close();
+        }
+    }
+
+    private Object[] getPoolIndexStats(Query query, String ownerId) {
+        Object[] stats = (Object[]) query.setParameter("owner_id", ownerId).uniqueResult();
+
+        // Compare update times by value, regardless of the Date subclass returned
+        if (stats[1] != null) {
+            stats[1] = new Date(((Date) stats[1]).getTime());
+        }
+
+        return stats;
+    }
+
+    private static final String RESERVE_QUANTITY_JPQL = "UPDATE Pool p " +
+        "SET p.consumed = p.consumed + :quantity, p.exported = p.exported + :exported " +
+        "WHERE p.id = :pool_id AND (p.quantity < 0 OR p.consumed + :quantity <= p.quantity)";
+
+    private static final String RELEASE_QUANTITY_JPQL = "UPDATE Pool p " +
+        "SET p.consumed = p.consumed - :quantity, p.exported = p.exported - :exported " +
+        "WHERE p.id = :pool_id";
+
+    private static Query createQuery(StatelessSession session, String jpql) {
+        // Stateless sessions still declare the legacy query type, but create the current one
+        return (Query) session.createQuery(jpql);
+    }
+
+    /**
+     * Loads the index entries of the pools of an owner updated since the given time, or of every
+     * pool of the owner if the time is null.
+     */
+    @SuppressWarnings("unchecked")
+    private List<PoolAvailabilityIndex.Entry> loadPoolIndexEntries(StatelessSession session, String ownerId,
+        Date since) {
+
+        String restriction = "WHERE p.owner.id = :owner_id" +
+            (since != null ? " AND p.updated >= :since" : "");
+
+        Query poolQuery = createQuery(session, "SELECT p.id, prod.id, p.startDate, p.endDate " +
+            "FROM Pool p LEFT JOIN p.product prod " + restriction);
+
+        Query providedQuery = createQuery(session, "SELECT p.id, pp.id FROM Pool p " +
+            "JOIN p.providedProducts pp " + restriction);
+
+        for (Query query : Arrays.asList(poolQuery, providedQuery)) {
+            query.setParameter("owner_id", ownerId);
+
+            if (since != null) {
+                query.setParameter("since", since);
+            }
+        }
+
+        Map<String, Set<String>> providedProductIds = new HashMap<>();
+        for (Object[] row : (List<Object[]>) providedQuery.list()) {
+            providedProductIds.computeIfAbsent((String) row[0], key -> new HashSet<>()).add((String) row[1]);
+        }
+
+        List<PoolAvailabilityIndex.Entry> entries = new ArrayList<>();
+        for (Object[] row : (List<Object[]>) poolQuery.list()) {
+            entries.add(new PoolAvailabilityIndex.Entry((String) row[0], (String) row[1],
+                providedProductIds.get((String) row[0]), (Date) row[2], (Date) row[3]));
+        }
+
+        log.debug("Loaded {} pool index entries for owner: {}", entries.size(), ownerId);
+        return entries;
+    }
+
+    /**
+     * Checks whether or not pool quantities can be reserved on the current database. Reservations
+     * are committed by a connection of their own; on PostgreSQL, the entitlements inserted by the
+     * current transaction do not keep other transactions from updating their pools, while on other
+     * databases, reserving a pool the current transaction has already bound would wait on the
+     * current transaction itself.
+     *
+     * @return
+     *  true if pool quantities can be reserved; false otherwise
+     */
+    public boolean supportsQuantityReservations() {
+        Dialect dialect = ((SessionFactoryImplementor) this.currentSession().getSessionFactory())
+            .getJdbcServices()
+            .getDialect();
+
+        return dialect instanceof PostgreSQL81Dialect;
+    }
+
+    /**
+     * A reservation of quantities of pools, held as long as the transaction it was made for does
+     * not roll back, and until it is released.
+     */
+    public static class QuantityReservation implements Synchronization {
+        private final SessionFactory sessionFactory;
+        private final SortedMap<String, Integer> quantities;
+        private final boolean export;
+        private final String refusedPoolId;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private QuantityReservation(SessionFactory sessionFactory, SortedMap<String, Integer> quantities,
+            boolean export, String refusedPoolId) {
+
+            this.sessionFactory = sessionFactory;
+            this.quantities = quantities;
+            this.export = export;
+            this.refusedPoolId = refusedPoolId;
+        }
+
+        /**
+         * @return
+         *  the ID of a pool without enough quantity left, in which case no quantity has been
+         *  reserved; or null if every quantity has been reserved
+         */
+        public String getRefusedPoolId() {
+            return this.refusedPoolId;
+        }
+
+        /**
+         * Releases the reserved quantities, if they have not been released already, in a
+         * transaction of their own.
+         */
+        public void release() {
+            if (this.refusedPoolId != null || !this.released.compareAndSet(false, true)) {
+                return;
+            }
+
+            log.debug("Releasing reserved quantities of pools: {}", this.quantities);
+            StatelessSession session = this.sessionFactory.openStatelessSession();
+
+            try {
+                Transaction transaction = session.beginTransaction();
+
+                for (Entry<String, Integer> entry : this.quantities.entrySet()) {
+                    updateQuantity(session, RELEASE_QUANTITY_JPQL, entry, this.export);
+                }
+
+                transaction.commit();
+            }
+            catch (RuntimeException e) {
+                // The quantities remain consumed until the pool quantities of their owner are
+                // recalculated by the next refresh
+                log.error("Unable to release reserved quantities of pools: {}", this.quantities, e);
+            }
+            finally {
+                session.close();
+            }
+        }
+
+        @Override
+        public void beforeCompletion() {
+            // Intentionally left empty
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status != Status.STATUS_COMMITTED) {
+                this.release();
+            }
+        }
+    }
+
+    /**
+     * Reserves quantities of pools for the current transaction, without locking the pools for the
+     * remainder of it. The quantities are consumed by conditional updates, in order of pool ID, in a
+     * short transaction of their own which is committed before this method returns, so concurrent
+     * binds against the same pools only wait on each other's reservations. If the current
+     * transaction does not commit, the reserved quantities are released again.
+     * <p></p>
+     * Pools created, updated or locked by the current transaction cannot be reserved this way, as
+     * the reserving transaction could neither see their uncommitted state nor update them before
+     * the current transaction completes. No quantity is reserved if any of the pools is such a
+     * pool, and the pools must be locked within the current transaction instead.
+     * <p></p>
+     * Note that this operation does not update any fetched or cached Pool objects.
+     *
+     * @param quantities
+     *  the quantities to reserve, mapped by pool ID
+     *
+     * @param export
+     *  whether or not the reserved quantities are exported as well as consumed
+     *
+     * @throws IllegalStateException
+     *  if there is no active transaction to reserve the quantities for
+     *
+     * @return
+     *  the reservation, which either holds every quantity or, if a pool does not have enough
+     *  quantity left, none of them; or null if the pools must be locked instead
+     */
+    public QuantityReservation reserveQuantities(Map<String, Integer> quantities, boolean export) {
+        Transaction current = this.currentSession().getTransaction();
+        if (!current.isActive()) {
+            throw new IllegalStateException("Pool quantities can only be reserved within a transaction");
+        }
+
+        SortedMap<String, Integer> sorted = new TreeMap<>(quantities);
+
+        // Pending changes need to be written first, so the pools they touch are known to be
+        // written by the current transaction
+        this.currentSession().flush();
+
+        if (this.isWrittenInTransaction(sorted.keySet())) {
+            log.debug("Pools written by the current transaction cannot be reserved: {}", sorted.keySet());
+            return null;
+        }
+
+        SessionFactory sessionFactory = this.currentSession().getSessionFactory();
+        StatelessSession session = sessionFactory.openStatelessSession();
+
+        try {
+            Transaction transaction = session.beginTransaction();
+
+            try {
+                for (Entry<String, Integer> entry : sorted.entrySet()) {
+                    if (updateQuantity(session, RESERVE_QUANTITY_JPQL, entry, export) == 0) {
+                        boolean committed = isCommitted(session, entry.getKey());
+                        transaction.rollback();
+
+                        if (!committed) {
+                            // Created by the current transaction, after the session was cleared
+                            log.debug("Uncommitted pools cannot be reserved: {}", entry.getKey());
+                            return null;
+                        }
+
+                        log.debug("Not enough quantity left to reserve {} of pool {}", entry.getValue(),
+                            entry.getKey());
+
+                        return new QuantityReservation(sessionFactory, sorted, export, entry.getKey());
+                    }
+                }
+
+                transaction.commit();
+            }
+            catch (RuntimeException e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+
+                throw e;
+            }
+        }
+        finally {
+            session.close();
+        }
+
+        QuantityReservation reservation = new QuantityReservation(sessionFactory, sorted, export, null);
+        current.registerSynchronization(reservation);
+
+        return reservation;
+    }
+
+    /**
+     * Checks whether or not any of the given pools has been created, updated or locked by the
+     * current transaction, as far as the entities of the current session tell.
+     */
+    private boolean isWrittenInTransaction(Collection<String> poolIds) {
+        SessionImplementor session = (SessionImplementor) this.currentSession();
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(Pool.class);
+        PersistenceContext context = session.getPersistenceContext();
+
+        for (String poolId : poolIds) {
+            Object pool = context.getEntity(session.generateEntityKey(poolId, persister));
+            EntityEntry entry = pool != null ? context.getEntry(pool) : null;
+
+            // Entities inserted or updated by the session are write locked until it commits
+            if (entry != null && !entry.getLockMode().lessThan(LockMode.PESSIMISTIC_READ)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isCommitted(StatelessSession session, String poolId) {
+        Long count = (Long) createQuery(session, "SELECT COUNT(p.id) FROM Pool p WHERE p.id = :pool_id")
+            .setParameter("pool_id", poolId)
+            .uniqueResult();
+
+        return count != null && count > 0;
+    }
+
+    private static int updateQuantity(StatelessSession session, String jpql, Entry<String, Integer> entry,
+        boolean export) {
+
+        long quantity = entry.getValue().longValue();
+
+        return createQuery(session, jpql)
+            .setParameter("quantity", quantity)
+            .setParameter("exported", export ? quantity : 0L)
+            .setParameter("pool_id", entry.getKey())
+            .executeUpdate();
     }
 
     @SuppressWarnings("checkstyle:indentation")
@@ -1396,6 +1850,58 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
         }
     }
 
+    /**
+     * Retrieves the refresh fingerprints stored with the master pools of the given owner, mapped by
+     * subscription ID. Master pools without a fingerprint are not included.
+     *
+     * @param owner
+     *  The owner for which to fetch refresh fingerprints
+     *
+     * @return
+     *  A map of subscription IDs to the fingerprints of the subscriptions as of their last refresh
+     */
+    public Map<String, String> getMasterPoolRefreshFingerprints(Owner owner) {
+        String jpql = "SELECT ss.subscriptionId, ss.refreshFingerprint FROM SourceSubscription ss " +
+            "WHERE ss.subscriptionSubKey = 'master' AND ss.pool.owner.id = :owner_id " +
+            "AND ss.refreshFingerprint IS NOT NULL";
+
+        Map<String, String> fingerprints = new HashMap<>();
+        List<Object[]> rows = this.getEntityManager()
+            .createQuery(jpql, Object[].class)
+            .setParameter("owner_id", owner.getId())
+            .getResultList();
+
+        for (Object[] row : rows) {
+            fingerprints.put((String) row[0], (String) row[1]);
+        }
+
+        return fingerprints;
+    }
+
+    /**
+     * Stores the refresh fingerprint of a subscription with its master pool. Note that this
+     * operation does not update any fetched or cached SourceSubscription objects.
+     *
+     * @param subscriptionId
+     *  The ID of the subscription
+     *
+     * @param fingerprint
+     *  The fingerprint of the subscription, or null to clear it
+     *
+     * @return
+     *  the number of master pools updated
+     */
+    public int setMasterPoolRefreshFingerprint(String subscriptionId, String fingerprint) {
+        String hql = "UPDATE SourceSubscription SET refreshFingerprint = :fingerprint " +
+            "WHERE subscriptionId = :sid AND subscriptionSubKey = 'master'";
+
+        return this.currentSession()
+            .createQuery(hql)
+            .setParameter("fingerprint", fingerprint)
+            .setParameter("sid", subscriptionId)
+            .executeUpdate();
+    }
+
     /**
      * Retrieves the set of all known product IDs, as determined by looking only at pool data. If
      * there are no known products, this method returns an empty set.
@@ -1572,6 +2078,87 @@ public class PoolCurator extends AbstractHibernateCurator<Pool> {
         q.executeUpdate();
     }
 
+    /**
+     * The consumed and exported quantities of the pools of an owner, aggregated from their
+     * entitlements. Only pools with entitlements are included.
+     */
+    private static final String POOL_QUANTITIES_SQL =
+        "SELECT e.pool_id AS pool_id, SUM(e.quantity) AS consumed, " +
+        "  SUM(CASE WHEN ct.manifest = 'Y' THEN e.quantity ELSE 0 END) AS exported " +
+        "FROM cp_entitlement e " +
+        "  JOIN cp_pool op ON op.id = e.pool_id " +
+        "  LEFT JOIN cp_consumer c ON c.id = e.consumer_id " +
+        "  LEFT JOIN cp_consumer_type ct ON ct.id = c.type_id " +
+        "WHERE op.owner_id = :owner_id " +
+        "GROUP BY e.pool_id";
+
+    /**
+     * Recalculates the consumed and exported quantities of the pools of an owner from their
+     * entitlements, using set-based statements which neither load the pools nor run a subquery per
+     * pool: one statement aggregates the entitlements of the owner and updates the pools whose
+     * quantities differ, the other resets the quantities of pools without entitlements. This is
+     * equivalent to calling {@link #calculateConsumedForOwnersPools(Owner)} and
+     * {@link #calculateExportedForOwnersPools(Owner)}, and falls back to them on databases other
+     * than PostgreSQL, MySQL/MariaDB and HSQLDB.
+     * <p></p>
+     * Note that this operation does not update any fetched or cached Pool objects.
+     *
+     * @param owner
+     *  The owner for which to recalculate pool quantities
+     */
+    public void bulkCalculatePoolQuantitiesForOwner(Owner owner) {
+        Dialect dialect = ((SessionFactoryImplementor) this.currentSession().getSessionFactory())
+            .getJdbcServices()
+            .getDialect();
+
+        String sql;
+        if (dialect instanceof PostgreSQL81Dialect) {
+            sql = "UPDATE cp_pool SET quantity_consumed = q.consumed, quantity_exported = q.exported " +
+                "FROM (" + POOL_QUANTITIES_SQL + ") q " +
+                "WHERE cp_pool.id = q.pool_id " +
+                "  AND (cp_pool.quantity_consumed IS DISTINCT FROM q.consumed " +
+                "    OR cp_pool.quantity_exported IS DISTINCT FROM q.exported)";
+        }
+        else if (dialect instanceof MySQLDialect) {
+            // The aggregation forces the derived table to be materialized, which is what allows it
+            // to read from the table being updated
+            sql = "UPDATE cp_pool p JOIN (" + POOL_QUANTITIES_SQL + ") q ON p.id = q.pool_id " +
+                "SET p.quantity_consumed = q.consumed, p.quantity_exported = q.exported " +
+                "WHERE NOT (p.quantity_consumed <=> q.consumed AND p.quantity_exported <=> q.exported)";
+        }
+        else if (dialect instanceof HSQLDialect) {
+            sql = "MERGE INTO cp_pool p USING (" + POOL_QUANTITIES_SQL + ") q ON (p.id = q.pool_id) " +
+                "WHEN MATCHED THEN UPDATE SET p.quantity_consumed = q.consumed, " +
+                "  p.quantity_exported = q.exported";
+        }
+        else {
+            log.debug("No set-based pool quantity recalculation for {}; updating pools individually",
+                dialect);
+
+            this.calculateConsumedForOwnersPools(owner);
+            this.calculateExportedForOwnersPools(owner);
+            return;
+        }
+
+        int updated = this.currentSession()
+            .createNativeQuery(sql)
+            .addSynchronizedEntityClass(Pool.class)
+            .setParameter("owner_id", owner.getId())
+            .executeUpdate();
+
+        updated += this.currentSession()
+            .createNativeQuery("UPDATE cp_pool SET quantity_consumed = 0, quantity_exported = 0 " +
+                "WHERE owner_id = :owner_id " +
+                "  AND (quantity_consumed IS NULL OR quantity_consumed <> 0 " +
+                "    OR quantity_exported IS NULL OR quantity_exported <> 0) " +
+                "  AND NOT EXISTS (SELECT 1 FROM cp_entitlement e WHERE e.pool_id = cp_pool.id)")
+            .addSynchronizedEntityClass(Pool.class)
+            .setParameter("owner_id", owner.getId())
+            .executeUpdate();
+
+        log.debug("Recalculated the quantities of {} pool(s) of owner: {}", updated, owner);
+    }
+
     public void markCertificatesDirtyForPoolsWithProducts(Owner owner, Collection<String> productIds) {
         for (List<String> batch : Iterables.partition(productIds, getInBlockSize())) {
             markCertificatesDirtyForPoolsWithNormalProducts(owner, batch);
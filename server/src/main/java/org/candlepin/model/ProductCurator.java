@@ -195,6 +195,33 @@ public class ProductCurator extends AbstractHibernateCurator<Product> {
         return products;
     }
 
+    /**
+     * Evicts the specified products, and the collections of their product graphs, from the
+     * second-level cache. As products are immutable, their cache entries never become stale; this
+     * only releases the entries of products an owner stopped using. Products still used by other
+     * owners are reloaded on their next lookup.
+     *
+     * @param productUuids
+     *  A collection of UUIDs of the products to evict
+     */
+    public void evictProductsFromCache(Collection<String> productUuids) {
+        if (productUuids == null || productUuids.isEmpty()) {
+            return;
+        }
+
+        org.hibernate.Cache cache = this.currentSession().getSessionFactory().getCache();
+        String role = this.entityType().getName();
+
+        for (String uuid : productUuids) {
+            cache.evictEntityData(this.entityType(), uuid);
+            cache.evictCollectionData(role + ".attributes", uuid);
+            cache.evictCollectionData(role + ".productContent", uuid);
+            cache.evictCollectionData(role + ".dependentProductIds", uuid);
+        }
+
+        log.debug("Evicted {} product(s) from the second-level cache", productUuids.size());
+    }
+
     /**
      * Loads the set of products from database and triggers all lazy loads.
      * @param uuids
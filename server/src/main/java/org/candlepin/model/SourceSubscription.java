@@ -60,6 +60,12 @@ public class SourceSubscription extends AbstractHibernateObject<SourceSubscripti
     @Size(max = 255)
     private String subscriptionSubKey;
 
+    // A fingerprint of the subscription and the versions of its products as of the last refresh of
+    // the master pool, used to skip subscriptions which have not changed since
+    @Column(name = "refresh_fingerprint")
+    @Size(max = 64)
+    private String refreshFingerprint;
+
     /**
      * pool derived from the source
      */
@@ -103,6 +109,20 @@ public class SourceSubscription extends AbstractHibernateObject<SourceSubscripti
         this.subscriptionSubKey = subscriptionSubKey;
     }
 
+    /**
+     * @return the fingerprint of the subscription as of the last refresh of its pools
+     */
+    public String getRefreshFingerprint() {
+        return refreshFingerprint;
+    }
+
+    /**
+     * @param refreshFingerprint the fingerprint of the subscription to set
+     */
+    public void setRefreshFingerprint(String refreshFingerprint) {
+        this.refreshFingerprint = refreshFingerprint;
+    }
+
     /**
      * @return the pool
      */
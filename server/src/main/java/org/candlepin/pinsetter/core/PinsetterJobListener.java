@@ -131,7 +131,9 @@ public class PinsetterJobListener implements JobListener {
                 status.setState(JobState.FAILED);
                 status.setResult(exc.getMessage());
 
-                if (exc.getCause() instanceof CandlepinException) {
+                // Result data recorded by the job while running, such as the progress of a pool
+                // refresh, is kept so that the job can still be resumed
+                if (exc.getCause() instanceof CandlepinException && status.getResultData() == null) {
                     status.setResultData(((CandlepinException) exc.getCause()).message());
                 }
             }
@@ -17,6 +17,7 @@ package org.candlepin.pinsetter.tasks;
 import org.candlepin.common.config.Configuration;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.util.CrlFileUtil;
+import org.candlepin.util.CrlPublisher;
 
 import com.google.inject.Inject;
 
@@ -41,6 +42,7 @@ public class CertificateRevocationListTask extends KingpinJob {
 
     private Configuration config;
     private CrlFileUtil crlFileUtil;
+    private CrlPublisher crlPublisher;
 
     private static Logger log =
         LoggerFactory.getLogger(CertificateRevocationListTask.class);
@@ -49,12 +51,15 @@ public class CertificateRevocationListTask extends KingpinJob {
      * Instantiates a new certificate revocation list task.
      *
      * @param crlFileUtil file util
+     * @param crlPublisher the publisher of the CRL served to clients
      * @param conf the conf
      */
     @Inject
-    public CertificateRevocationListTask(Configuration conf, CrlFileUtil crlFileUtil) {
+    public CertificateRevocationListTask(Configuration conf, CrlFileUtil crlFileUtil,
+        CrlPublisher crlPublisher) {
         this.config = conf;
         this.crlFileUtil = crlFileUtil;
+        this.crlPublisher = crlPublisher;
     }
 
     public void toExecute(JobExecutionContext ctx) throws JobExecutionException {
@@ -65,6 +70,12 @@ public class CertificateRevocationListTask extends KingpinJob {
             throw new JobExecutionException("Invalid " + ConfigProperties.CRL_FILE_PATH, false);
         }
 
+        // The publisher syncs the CRL itself, and serializes the syncs of the CRL file
+        if (this.crlPublisher.isEnabled()) {
+            this.crlPublisher.requestRefresh();
+            return;
+        }
+
         try {
             File crlFile = new File(filePath);
             this.crlFileUtil.syncCRLWithDB(crlFile);
@@ -18,6 +18,9 @@ import static org.quartz.JobBuilder.newJob;
 
 import org.candlepin.common.filter.LoggingFilter;
 import org.candlepin.controller.PoolManager;
+import org.candlepin.controller.RefreshCheckpoint;
+import org.candlepin.controller.RefreshResult;
+import org.candlepin.model.JobCurator;
 import org.candlepin.model.Owner;
 import org.candlepin.model.OwnerCurator;
 import org.candlepin.pinsetter.core.RetryJobException;
@@ -33,10 +36,18 @@ import org.quartz.JobDataMap;
 import org.quartz.JobDetail;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
+import org.quartz.JobKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.persistence.PersistenceException;
 
@@ -55,15 +66,106 @@ public class RefreshPoolsJob extends UniqueByEntityJob {
     protected PoolManager poolManager;
     protected SubscriptionServiceAdapter subAdapter;
     protected OwnerServiceAdapter ownerAdapter;
+    protected JobCurator jobCurator;
 
     @Inject
     public RefreshPoolsJob(OwnerCurator ownerCurator, PoolManager poolManager,
-        SubscriptionServiceAdapter subAdapter, OwnerServiceAdapter ownerAdapter) {
+        SubscriptionServiceAdapter subAdapter, OwnerServiceAdapter ownerAdapter, JobCurator jobCurator) {
 
         this.ownerCurator = ownerCurator;
         this.poolManager = poolManager;
         this.subAdapter = subAdapter;
         this.ownerAdapter = ownerAdapter;
+        this.jobCurator = jobCurator;
+    }
+
+    /**
+     * Keeps the IDs of the subscriptions refreshed so far, and of the products updated by the
+     * import of the refresh, in the result data of the job's status, so that a job refired after a
+     * failure, or recovered after a restart, skips the chunks of subscriptions it already committed
+     * and still regenerates the entitlements of the updated products. The result data is replaced by
+     * the job's result once the job completes.
+     */
+    static class JobStatusCheckpoint implements RefreshCheckpoint {
+        static final String SUBSCRIPTIONS = "subscriptions";
+        static final String PRODUCTS = "products";
+
+        private final JobCurator jobCurator;
+        private final String jobId;
+        private final Set<String> refreshed = new HashSet<>();
+        private final Set<String> updatedProducts = new HashSet<>();
+        private boolean loaded;
+
+        JobStatusCheckpoint(JobCurator jobCurator, String jobId) {
+            this.jobCurator = jobCurator;
+            this.jobId = jobId;
+        }
+
+        private void load() {
+            if (this.loaded) {
+                return;
+            }
+
+            this.loaded = true;
+            JobStatus status = this.jobCurator.get(this.jobId);
+
+            if (status != null && status.getResultData() instanceof Map) {
+                Map<?, ?> data = (Map<?, ?>) status.getResultData();
+
+                addAll(this.refreshed, data.get(SUBSCRIPTIONS));
+                addAll(this.updatedProducts, data.get(PRODUCTS));
+            }
+        }
+
+        private static void addAll(Set<String> ids, Object values) {
+            if (values instanceof Collection) {
+                for (Object id : (Collection<?>) values) {
+                    ids.add(String.valueOf(id));
+                }
+            }
+        }
+
+        private void save(String result) {
+            this.load();
+            JobStatus status = this.jobCurator.get(this.jobId);
+
+            if (status != null) {
+                Map<String, List<String>> data = new HashMap<>();
+                data.put(SUBSCRIPTIONS, new ArrayList<>(this.refreshed));
+                data.put(PRODUCTS, new ArrayList<>(this.updatedProducts));
+
+                if (result != null) {
+                    status.setResult(result);
+                }
+
+                status.setResultData(data);
+                this.jobCurator.merge(status);
+            }
+        }
+
+        @Override
+        public Set<String> getRefreshedSubscriptions() {
+            this.load();
+            return new HashSet<>(this.refreshed);
+        }
+
+        @Override
+        public void subscriptionsRefreshed(Collection<String> subscriptionIds, int total) {
+            this.refreshed.addAll(subscriptionIds);
+            this.save(String.format("Refreshed %d of %d subscriptions", this.refreshed.size(), total));
+        }
+
+        @Override
+        public Set<String> getUpdatedProducts() {
+            this.load();
+            return new HashSet<>(this.updatedProducts);
+        }
+
+        @Override
+        public void productsUpdated(Collection<String> productIds) {
+            this.updatedProducts.addAll(productIds);
+            this.save(null);
+        }
     }
 
     /**
@@ -86,13 +188,22 @@ public class RefreshPoolsJob extends UniqueByEntityJob {
                 return;
             }
 
+            JobKey jobKey = context.getJobDetail() != null ? context.getJobDetail().getKey() : null;
+            RefreshCheckpoint checkpoint = jobKey != null ?
+                new JobStatusCheckpoint(this.jobCurator, jobKey.getName()) :
+                null;
+
             // Assume that we verified the request in the resource layer:
-            poolManager.getRefresher(this.subAdapter, this.ownerAdapter, lazy)
+            RefreshResult result = poolManager.getRefresher(this.subAdapter, this.ownerAdapter, lazy)
                 .setUnitOfWork(unitOfWork)
+                .setCheckpoint(checkpoint)
                 .add(owner)
                 .run();
 
-            context.setResult("Pools refreshed for owner " + owner.getDisplayName());
+            context.setResult(String.format(
+                "Pools refreshed for owner %s: %d subscription(s) processed, %d unchanged subscription(s) " +
+                "skipped", owner.getDisplayName(), result.getProcessedSubscriptions(),
+                result.getSkippedSubscriptions()));
         }
         catch (PersistenceException e) {
             throw new RetryJobException("RefreshPoolsJob encountered a problem.", e);
@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pki;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.inject.Inject;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Singleton;
+
+
+
+/**
+ * The CertificateGenerationPool runs the CPU-bound steps of certificate generation, such as building
+ * extensions, compressing payloads and signing, on a bounded pool of worker threads.
+ *
+ * Tasks run by the pool must not touch the database or any lazily loaded state of persistent
+ * objects, as the session of the calling thread is not available to the workers. Callers are
+ * expected to gather everything a certificate needs beforehand, and to persist the results once
+ * the pool returns them.
+ */
+@Singleton
+public class CertificateGenerationPool {
+
+    /**
+     * A step of certificate generation to apply to each input.
+     *
+     * @param <I> the type of inputs of the step
+     * @param <O> the type of outputs of the step
+     */
+    public interface Task<I, O> {
+        O apply(I input) throws GeneralSecurityException, IOException;
+    }
+
+    /** How long idle worker threads are kept around, in seconds */
+    private static final long KEEP_ALIVE = 60;
+
+    private final int parallelism;
+    private final ThreadPoolExecutor executor;
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    @Inject
+    public CertificateGenerationPool(Configuration config) {
+        this(config.getInt(ConfigProperties.ENTITLEMENT_CERT_GENERATION_THREADS, 1));
+    }
+
+    /**
+     * Creates a pool with the given number of worker threads.
+     *
+     * @param threads
+     *  the number of worker threads; 0 to use one thread per available processor, or 1 to run every
+     *  task on the calling thread
+     */
+    public CertificateGenerationPool(int threads) {
+        this.parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+        if (this.parallelism > 1) {
+            this.executor = new ThreadPoolExecutor(this.parallelism, this.parallelism, KEEP_ALIVE,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(), this::newWorkerThread);
+
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+        else {
+            this.executor = null;
+        }
+    }
+
+    private Thread newWorkerThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "cert-generation-" + this.threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * @return
+     *  the maximum number of tasks run at once
+     */
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * Applies the given task to each of the inputs, spreading them across the worker threads, and
+     * waits for all of them to complete. If any task fails, the tasks which have not started yet are
+     * cancelled and the failure is rethrown on the calling thread.
+     *
+     * @param inputs
+     *  the inputs to apply the task to
+     *
+     * @param task
+     *  the task to apply; must be safe to run concurrently
+     *
+     * @throws GeneralSecurityException
+     *  if a task fails to sign a certificate
+     *
+     * @throws IOException
+     *  if a task fails to encode a certificate
+     *
+     * @return
+     *  the outputs of the task, in the order of their inputs
+     */
+    public <I, O> List<O> map(List<I> inputs, Task<I, O> task)
+        throws GeneralSecurityException, IOException {
+
+        List<O> outputs = new ArrayList<>(inputs.size());
+
+        if (this.executor == null || inputs.size() < 2) {
+            for (I input : inputs) {
+                outputs.add(task.apply(input));
+            }
+
+            return outputs;
+        }
+
+        List<Future<O>> tasks = new ArrayList<>(inputs.size());
+        for (I input : inputs) {
+            tasks.add(this.executor.submit(() -> task.apply(input)));
+        }
+
+        try {
+            for (Future<O> submitted : tasks) {
+                outputs.add(submitted.get());
+            }
+        }
+        catch (InterruptedException e) {
+            cancel(tasks);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while generating certificates", e);
+        }
+        catch (ExecutionException e) {
+            cancel(tasks);
+
+            Throwable cause = e.getCause();
+            if (cause instanceof GeneralSecurityException) {
+                throw (GeneralSecurityException) cause;
+            }
+            else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new RuntimeException(cause);
+        }
+
+        return outputs;
+    }
+
+    private static void cancel(List<? extends Future<?>> tasks) {
+        for (Future<?> task : tasks) {
+            task.cancel(false);
+        }
+    }
+
+}
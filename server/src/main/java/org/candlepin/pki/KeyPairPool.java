@@ -0,0 +1,220 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pki;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Singleton;
+
+
+
+/**
+ * The KeyPairPool keeps a number of key pairs generated ahead of time by low priority background
+ * threads, so that registering consumers do not have to wait on key generation. Whenever a key pair
+ * is taken, the pool is refilled in the background; if the pool is empty, as may happen while many
+ * consumers register at once, key pairs are generated on demand instead.
+ */
+@Singleton
+public class KeyPairPool implements KeyPairPoolMXBean {
+    private static Logger log = LoggerFactory.getLogger(KeyPairPool.class);
+
+    /** How long idle refill threads are kept around, in seconds */
+    private static final long KEEP_ALIVE = 60;
+
+    private final PKIUtility pki;
+    private final int capacity;
+    private final BlockingQueue<KeyPair> keyPairs;
+    private final ThreadPoolExecutor executor;
+    private final long created;
+
+    /** The number of refills submitted but not yet completed */
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    private final AtomicLong refills = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    @Inject
+    public KeyPairPool(Configuration config, PKIUtility pki) {
+        this(pki, config.getInt(ConfigProperties.KEYPAIR_POOL_SIZE, 0),
+            config.getInt(ConfigProperties.KEYPAIR_POOL_THREADS, 1));
+    }
+
+    /**
+     * Creates a pool of the given capacity, and starts filling it.
+     *
+     * @param pki
+     *  the PKI utility used to generate key pairs
+     *
+     * @param capacity
+     *  the number of key pairs to keep; 0 to generate every key pair on demand
+     *
+     * @param threads
+     *  the number of threads refilling the pool
+     */
+    public KeyPairPool(PKIUtility pki, int capacity, int threads) {
+        this.pki = pki;
+        this.capacity = Math.max(0, capacity);
+        this.created = System.nanoTime();
+
+        if (this.capacity > 0) {
+            int size = Math.max(1, threads);
+
+            this.keyPairs = new ArrayBlockingQueue<>(this.capacity);
+            this.executor = new ThreadPoolExecutor(size, size, KEEP_ALIVE, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), this::newRefillThread);
+
+            this.executor.allowCoreThreadTimeOut(true);
+            this.refill();
+        }
+        else {
+            this.keyPairs = null;
+            this.executor = null;
+        }
+    }
+
+    private Thread newRefillThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "keypair-pool-" + this.threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    }
+
+    /**
+     * Takes a key pair from the pool, or generates one if the pool is empty.
+     *
+     * @throws NoSuchAlgorithmException
+     *  if a key pair has to be generated, and the key algorithm is not available
+     *
+     * @return
+     *  a key pair which has not been handed out before
+     */
+    public KeyPair take() throws NoSuchAlgorithmException {
+        if (this.keyPairs == null) {
+            return this.pki.generateNewKeyPair();
+        }
+
+        KeyPair keyPair = this.keyPairs.poll();
+        this.refill();
+
+        if (keyPair != null) {
+            this.hits.incrementAndGet();
+            return keyPair;
+        }
+
+        log.debug("Key pair pool is empty; generating a key pair on demand");
+        this.fallbacks.incrementAndGet();
+        return this.pki.generateNewKeyPair();
+    }
+
+    /**
+     * Submits enough background generations to fill the pool, counting the ones still pending.
+     */
+    private void refill() {
+        while (true) {
+            int submitted = this.pending.get();
+            if (this.keyPairs.size() + submitted >= this.capacity) {
+                return;
+            }
+
+            if (this.pending.compareAndSet(submitted, submitted + 1)) {
+                try {
+                    this.executor.execute(this::generate);
+                }
+                catch (RejectedExecutionException e) {
+                    // The pool has been shut down
+                    this.pending.decrementAndGet();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void generate() {
+        try {
+            if (this.keyPairs.offer(this.pki.generateNewKeyPair())) {
+                this.refills.incrementAndGet();
+            }
+        }
+        catch (Exception e) {
+            // Leave the pool short; it is refilled again the next time a key pair is taken
+            if (!this.executor.isShutdown()) {
+                log.warn("Unable to generate a key pair for the key pair pool", e);
+            }
+        }
+        finally {
+            this.pending.decrementAndGet();
+        }
+    }
+
+    /**
+     * Stops refilling the pool. Key pairs are generated on demand once the remaining ones are taken.
+     */
+    public void shutdown() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    @Override
+    public int getDepth() {
+        return this.keyPairs != null ? this.keyPairs.size() : 0;
+    }
+
+    @Override
+    public long getRefillCount() {
+        return this.refills.get();
+    }
+
+    @Override
+    public double getRefillRate() {
+        double seconds = (System.nanoTime() - this.created) / 1e9;
+        return seconds > 0 ? this.getRefillCount() / seconds : 0;
+    }
+
+    @Override
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    @Override
+    public long getFallbackCount() {
+        return this.fallbacks.get();
+    }
+
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pki;
+
+
+
+/**
+ * The statistics of the key pair pool, as exposed over JMX.
+ */
+public interface KeyPairPoolMXBean {
+
+    /**
+     * @return
+     *  the maximum number of key pairs kept in the pool
+     */
+    int getCapacity();
+
+    /**
+     * @return
+     *  the number of key pairs currently available in the pool
+     */
+    int getDepth();
+
+    /**
+     * @return
+     *  the number of key pairs generated in the background to refill the pool
+     */
+    long getRefillCount();
+
+    /**
+     * @return
+     *  the average number of key pairs generated in the background per second since the pool was
+     *  created
+     */
+    double getRefillRate();
+
+    /**
+     * @return
+     *  the number of key pairs taken from the pool
+     */
+    long getHitCount();
+
+    /**
+     * @return
+     *  the number of key pairs generated on demand because the pool was empty
+     */
+    long getFallbackCount();
+
+}
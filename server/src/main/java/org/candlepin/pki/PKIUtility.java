@@ -51,6 +51,19 @@ public interface PKIUtility {
      */
     X509CRL createX509CRL(List<X509CRLEntryWrapper> entries, BigInteger crlNumber);
 
+    /**
+     * Generate a delta CRL containing the provided entries, as defined by RFC 5280, listing the
+     * certificates revoked since the base CRL with the given CRL number was issued. The CRL will be
+     * signed with the key retrieved from CertificateReader.
+     *
+     * @param entries the entries
+     * @param crlNumber the CRL number to use; must be greater than the base CRL number
+     * @param baseCrlNumber the CRL number of the base CRL
+     * @return the x509 delta CRL
+     */
+    X509CRL createX509DeltaCRL(List<X509CRLEntryWrapper> entries, BigInteger crlNumber,
+        BigInteger baseCrlNumber);
+
     /**
      * Take an X509Certificate object and return a byte[] of the certificate,
      * PEM encoded
@@ -53,6 +53,7 @@ import org.mozilla.jss.netscape.security.x509.CertificateSubjectName;
 import org.mozilla.jss.netscape.security.x509.CertificateValidity;
 import org.mozilla.jss.netscape.security.x509.CertificateVersion;
 import org.mozilla.jss.netscape.security.x509.CertificateX509Key;
+import org.mozilla.jss.netscape.security.x509.DeltaCRLIndicatorExtension;
 import org.mozilla.jss.netscape.security.x509.Extension;
 import org.mozilla.jss.netscape.security.x509.GeneralName;
 import org.mozilla.jss.netscape.security.x509.GeneralNames;
@@ -280,6 +281,22 @@ public class JSSPKIUtility extends ProviderBasedPKIUtility {
 
     @Override
     public X509CRL createX509CRL(List<X509CRLEntryWrapper> entries, BigInteger crlNumber) {
+        return this.createX509CRL(entries, crlNumber, null);
+    }
+
+    @Override
+    public X509CRL createX509DeltaCRL(List<X509CRLEntryWrapper> entries, BigInteger crlNumber,
+        BigInteger baseCrlNumber) {
+
+        if (baseCrlNumber == null) {
+            throw new IllegalArgumentException("baseCrlNumber is null");
+        }
+
+        return this.createX509CRL(entries, crlNumber, baseCrlNumber);
+    }
+
+    private X509CRL createX509CRL(List<X509CRLEntryWrapper> entries, BigInteger crlNumber,
+        BigInteger baseCrlNumber) {
         try {
             X509Certificate caCert = reader.getCACert();
 
@@ -294,6 +311,11 @@ public class JSSPKIUtility extends ProviderBasedPKIUtility {
             crlExtensions.add(new CRLNumberExtension(crlNumber));
             crlExtensions.add(buildAuthorityKeyIdentifier(caCert));
 
+            if (baseCrlNumber != null) {
+                // Marks the CRL as a delta of the base CRL; the extension is always critical
+                crlExtensions.add(new DeltaCRLIndicatorExtension(baseCrlNumber));
+            }
+
             X500Name issuer = new X500Name(caCert.getIssuerX500Principal().getEncoded());
             Date until = Util.addDaysToDt(config.getInt(ConfigProperties.CRL_NEXT_UPDATE_DELTA));
             X509CRLImpl crlImpl = new X509CRLImpl(
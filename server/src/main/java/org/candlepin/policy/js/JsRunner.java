@@ -28,6 +28,9 @@ import org.slf4j.LoggerFactory;
  * JsRunner - Responsible for running the javascript rules methods in all
  * namespaces.
  * Used by the various "Rules" classes.
+ *
+ * A runner backed by a {@link JsRunnerPool} checks out an initialized scope for each
+ * invocation, rather than holding a scope of its own.
  */
 public class JsRunner {
 
@@ -36,6 +39,7 @@ public class JsRunner {
     private Object rulesNameSpace;
     private String namespace;
     private Scriptable scope;
+    private JsRunnerPool pool;
 
     private boolean initialized = false;
 
@@ -43,6 +47,10 @@ public class JsRunner {
         this.scope = scope;
     }
 
+    JsRunner(JsRunnerPool pool) {
+        this.pool = pool;
+    }
+
     /**
      * initialize the javascript rules for the provided namespace. you must run
      * this
@@ -55,22 +63,35 @@ public class JsRunner {
         this.namespace = namespace;
 
         if (!initialized) {
-
-            Context context = Context.enter();
-            try {
-                Object func = ScriptableObject.getProperty(scope, namespace);
-                this.rulesNameSpace = unwrapReturnValue(((Function) func)
-                    .call(context, scope, scope, Context.emptyArgs));
-
-                this.initialized = true;
-            }
-            catch (RhinoException ex) {
-                this.initialized = false;
-                throw new RuleParseException(ex);
+            if (this.pool != null) {
+                // Check out a scope right away, so we fail here on an invalid namespace
+                this.pool.checkin(this.pool.checkout(namespace));
             }
-            finally {
-                Context.exit();
+            else {
+                this.rulesNameSpace = initNameSpace(scope, namespace);
             }
+
+            this.initialized = true;
+        }
+    }
+
+    /**
+     * Runs the factory function of the given namespace in the specified scope.
+     *
+     * @return
+     *  the namespace object containing the rules of the namespace
+     */
+    static Object initNameSpace(Scriptable scope, String namespace) {
+        Context context = Context.enter();
+        try {
+            Object func = ScriptableObject.getProperty(scope, namespace);
+            return unwrapReturnValue(((Function) func).call(context, scope, scope, Context.emptyArgs));
+        }
+        catch (RhinoException ex) {
+            throw new RuleParseException(ex);
+        }
+        finally {
+            Context.exit();
         }
     }
 
@@ -79,7 +100,7 @@ public class JsRunner {
         init(namespace);
     }
 
-    Object unwrapReturnValue(Object result) {
+    static Object unwrapReturnValue(Object result) {
         if (result instanceof Wrapper) {
             result = ((Wrapper) result).unwrap();
         }
@@ -87,10 +108,41 @@ public class JsRunner {
         return result instanceof Undefined ? null : result;
     }
 
-    @SuppressWarnings("unchecked")
     public <T> T invokeMethod(String method)
         throws NoSuchMethodException, RhinoException {
-        Scriptable localScope = Context.toObject(this.rulesNameSpace, scope);
+        return this.invoke(method, null);
+    }
+
+    /*
+     * Applies the context, if any, and runs the method; either in the runner's own scope, or in
+     * a scope checked out from the pool for this invocation only.
+     */
+    private <T> T invoke(String method, JsContext context) throws NoSuchMethodException, RhinoException {
+        if (this.pool == null) {
+            if (context != null) {
+                context.applyTo(this.scope);
+            }
+
+            return invoke(this.scope, this.rulesNameSpace, method);
+        }
+
+        JsRunnerPool.PooledScope pooled = this.pool.checkout(this.namespace);
+        try {
+            if (context != null) {
+                context.applyTo(pooled.getScope());
+            }
+
+            return invoke(pooled.getScope(), pooled.getNameSpaceObject(), method);
+        }
+        finally {
+            this.pool.checkin(pooled);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T invoke(Scriptable scope, Object rulesNameSpace, String method)
+        throws NoSuchMethodException, RhinoException {
+        Scriptable localScope = Context.toObject(rulesNameSpace, scope);
         Object func = ScriptableObject.getProperty(localScope, method);
         if (!(func instanceof Function)) {
             throw new NoSuchMethodException("no such javascript method: " + method);
@@ -105,19 +157,21 @@ public class JsRunner {
         }
     }
 
-    @SuppressWarnings("unchecked")
     public <T> T invokeMethod(String method, JsContext context)
         throws NoSuchMethodException, RhinoException {
-        context.applyTo(scope);
-        return (T) invokeMethod(method);
+        return this.invoke(method, context);
     }
 
     public <T> T invokeRule(String ruleName) {
+        return this.invokeRule(ruleName, null);
+    }
+
+    public <T> T invokeRule(String ruleName, JsContext context) {
         log.debug("Running rule: {} in namespace: {}", ruleName, namespace);
 
         T returner = null;
         try {
-            returner = this.invokeMethod(ruleName);
+            returner = this.invoke(ruleName, context);
         }
         catch (NoSuchMethodException ex) {
             log.info("No rule found: {} in namespace: {}", ruleName, namespace);
@@ -128,11 +182,6 @@ public class JsRunner {
         return returner;
     }
 
-    public <T> T invokeRule(String ruleName, JsContext context) {
-        context.applyTo(scope);
-        return invokeRule(ruleName);
-    }
-
     public <T extends Object> T runJsFunction(Class<T> clazz, String function,
         JsContext context) {
         T returner = null;
@@ -0,0 +1,243 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js;
+
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+
+
+/**
+ * A bounded pool of execution scopes which have already been initialized for a given rules
+ * namespace. Scopes are checked out for the duration of a single rules invocation, and are
+ * cleared of any request data before they are returned to the pool.
+ *
+ * Pooled scopes are tied to the version of the rules they were created from. Whenever the rules
+ * are recompiled the pool is drained, and scopes created from the previous rules are discarded
+ * as they are returned.
+ */
+public class JsRunnerPool {
+    private static Logger log = LoggerFactory.getLogger(JsRunnerPool.class);
+
+    /** The default number of idle scopes kept for each namespace */
+    public static final int DEFAULT_MAX_IDLE = 32;
+
+    /**
+     * An execution scope, along with the namespace object initialized in it.
+     */
+    static class PooledScope {
+        private final String namespace;
+        private final Date rulesUpdated;
+        private final Scriptable scope;
+        private final Object nameSpaceObject;
+
+        PooledScope(String namespace, Date rulesUpdated, Scriptable scope, Object nameSpaceObject) {
+            this.namespace = namespace;
+            this.rulesUpdated = rulesUpdated;
+            this.scope = scope;
+            this.nameSpaceObject = nameSpaceObject;
+        }
+
+        String getNamespace() {
+            return this.namespace;
+        }
+
+        Date getRulesUpdated() {
+            return this.rulesUpdated;
+        }
+
+        Scriptable getScope() {
+            return this.scope;
+        }
+
+        Object getNameSpaceObject() {
+            return this.nameSpaceObject;
+        }
+    }
+
+    private final Function<String, PooledScope> factory;
+    private final int maxIdle;
+    private final ConcurrentMap<String, BlockingQueue<PooledScope>> idle;
+    private volatile Date rulesUpdated;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong checkoutTime = new AtomicLong();
+
+    /**
+     * Creates a new pool.
+     *
+     * @param factory
+     *  the function used to create and initialize a new scope for a namespace
+     *
+     * @param maxIdle
+     *  the maximum number of idle scopes kept for each namespace
+     */
+    JsRunnerPool(Function<String, PooledScope> factory, int maxIdle) {
+        if (factory == null) {
+            throw new IllegalArgumentException("factory is null");
+        }
+
+        if (maxIdle < 1) {
+            throw new IllegalArgumentException("maxIdle is less than 1");
+        }
+
+        this.factory = factory;
+        this.maxIdle = maxIdle;
+        this.idle = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Checks out a scope initialized for the given namespace, creating a new one if there are no
+     * idle scopes for the current rules.
+     *
+     * @param namespace
+     *  the rules namespace the scope should be initialized for
+     *
+     * @return
+     *  a scope initialized for the given namespace
+     */
+    PooledScope checkout(String namespace) {
+        long start = System.nanoTime();
+
+        try {
+            BlockingQueue<PooledScope> queue = this.idle.get(namespace);
+            if (queue != null) {
+                for (PooledScope pooled = queue.poll(); pooled != null; pooled = queue.poll()) {
+                    if (this.isCurrent(pooled)) {
+                        this.hits.incrementAndGet();
+                        return pooled;
+                    }
+                }
+            }
+
+            this.misses.incrementAndGet();
+            return this.factory.apply(namespace);
+        }
+        finally {
+            this.checkoutTime.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Clears the given scope and returns it to the pool. Scopes created from outdated rules, or
+     * which do not fit in the pool, are discarded.
+     *
+     * @param pooled
+     *  the scope to return to the pool
+     */
+    void checkin(PooledScope pooled) {
+        if (pooled == null) {
+            return;
+        }
+
+        reset(pooled.getScope());
+
+        if (this.isCurrent(pooled)) {
+            BlockingQueue<PooledScope> queue = this.idle.computeIfAbsent(pooled.getNamespace(),
+                key -> new ArrayBlockingQueue<>(this.maxIdle));
+
+            queue.offer(pooled);
+        }
+    }
+
+    /**
+     * Removes the context and any globals set by a rules invocation from the given scope, leaving
+     * only the compiled rules visible through its prototype.
+     */
+    private static void reset(Scriptable scope) {
+        Object[] ids = scope instanceof ScriptableObject ?
+            ((ScriptableObject) scope).getAllIds() :
+            scope.getIds();
+
+        for (Object id : ids) {
+            if (id instanceof Integer) {
+                scope.delete((Integer) id);
+            }
+            else {
+                scope.delete(String.valueOf(id));
+            }
+        }
+    }
+
+    private boolean isCurrent(PooledScope pooled) {
+        return Objects.equals(pooled.getRulesUpdated(), this.rulesUpdated);
+    }
+
+    /**
+     * Discards all idle scopes, and marks scopes created from rules other than the given version
+     * as outdated.
+     *
+     * @param rulesUpdated
+     *  the timestamp of the rules now in use
+     */
+    void drain(Date rulesUpdated) {
+        this.rulesUpdated = rulesUpdated;
+        this.idle.clear();
+
+        log.debug("Drained rules scope pool; hits: {}, misses: {}, average checkout time: {}ns",
+            this.getHitCount(), this.getMissCount(), this.getAverageCheckoutTime());
+    }
+
+    /**
+     * @return
+     *  the number of checkouts served by an idle scope
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return
+     *  the number of checkouts which required a new scope to be created
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return
+     *  the average time spent checking out a scope, in nanoseconds
+     */
+    public long getAverageCheckoutTime() {
+        long checkouts = this.getHitCount() + this.getMissCount();
+        return checkouts > 0 ? this.checkoutTime.get() / checkouts : 0;
+    }
+
+    /**
+     * @return
+     *  the number of idle scopes currently held by the pool
+     */
+    public int getIdleCount() {
+        int count = 0;
+        for (BlockingQueue<PooledScope> queue : this.idle.values()) {
+            count += queue.size();
+        }
+
+        return count;
+    }
+
+}
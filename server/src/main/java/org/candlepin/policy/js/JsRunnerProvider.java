@@ -36,7 +36,8 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 /**
  * Reads/compiles our javascript rules and the standard js objects only
  * once across the JVM lifetime (and whenever the rules require a recompile), and creates
- * lightweight execution scopes per thread/request.
+ * lightweight execution scopes per thread/request. Execution scopes are pooled per rules
+ * namespace, and the pool is drained whenever the rules are recompiled.
  */
 public class JsRunnerProvider implements Provider<JsRunner> {
     private static Logger log = LoggerFactory.getLogger(JsRunnerProvider.class);
@@ -61,6 +62,9 @@ public class JsRunnerProvider implements Provider<JsRunner> {
     // Use this lock to access script, scope and updated
     private ReadWriteLock scriptLock = new ReentrantReadWriteLock();
 
+    private final JsRunnerPool runnerPool =
+        new JsRunnerPool(this::createPooledScope, JsRunnerPool.DEFAULT_MAX_IDLE);
+
     /**
      * DynamicScopeContextFactory - replace the standard rhino context factory with one that
      * enables dynamic scopes. Dynamic scopes allow us to define a global var (ie pools) in
@@ -126,6 +130,7 @@ public class JsRunnerProvider implements Provider<JsRunner> {
                 script.exec(context, scope);
                 ((ScriptableObject) scope).sealObject();
                 this.currentRulesUpdated = newUpdated;
+                this.runnerPool.drain(newUpdated);
             }
             finally {
                 Context.exit();
@@ -156,20 +161,42 @@ public class JsRunnerProvider implements Provider<JsRunner> {
         if (!updated.equals(this.currentRulesUpdated)) {
             compileRules();
         }
-        Scriptable rulesScope;
+
+        return new JsRunner(this.runnerPool);
+    }
+
+    /*
+     * Creates a new execution scope for the pool, initialized for the given namespace.
+     */
+    private JsRunnerPool.PooledScope createPooledScope(String namespace) {
         scriptLock.readLock().lock();
         try {
+            Scriptable rulesScope;
             Context context = Context.enter();
-            rulesScope = context.newObject(scope);
-            rulesScope.setPrototype(scope);
-            rulesScope.setParentScope(null);
-            Context.exit();
+            try {
+                rulesScope = context.newObject(scope);
+                rulesScope.setPrototype(scope);
+                rulesScope.setParentScope(null);
+            }
+            finally {
+                Context.exit();
+            }
+
+            Object nameSpaceObject = JsRunner.initNameSpace(rulesScope, namespace);
+            return new JsRunnerPool.PooledScope(namespace, this.currentRulesUpdated, rulesScope,
+                nameSpaceObject);
         }
         finally {
             scriptLock.readLock().unlock();
         }
+    }
 
-        return new JsRunner(rulesScope);
+    /**
+     * @return
+     *  the pool of execution scopes, which exposes its hit, miss and checkout time statistics
+     */
+    public JsRunnerPool getRunnerPool() {
+        return this.runnerPool;
     }
 
     public String getRulesVersion() {
@@ -23,6 +23,10 @@ import org.mozilla.javascript.Scriptable;
  * a single JSON string. It also provides the ability to specify
  * non-serializable objects which are passed directly to the called
  * JS function.
+ *
+ * When the structured context is enabled on the mapper, the context args
+ * are instead provided as lazily materialized objects, which the rules
+ * read with the same JSON.parse call.
  */
 public class JsonJsContext extends JsContext {
 
@@ -36,7 +40,13 @@ public class JsonJsContext extends JsContext {
 
     @Override
     public void applyTo(Scriptable scope) {
-        scope.put("json_context", scope, this.rulesObjectMapper.toJsonString(contextArgs));
+        if (this.rulesObjectMapper.isStructuredContextEnabled()) {
+            new StructuredJsonContext(this.rulesObjectMapper, contextArgs).applyTo(scope);
+        }
+        else {
+            scope.put("json_context", scope, this.rulesObjectMapper.toJsonString(contextArgs));
+        }
+
         nonSerializableContext.applyTo(scope);
     }
 
@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.TopLevel;
+
+import java.util.Iterator;
+import java.util.Map;
+
+
+
+/**
+ * A javascript object backed by a JSON object node. The properties of the object are only
+ * converted to javascript values when the object is first accessed, and nested objects are
+ * themselves lazy; objects which are never read by the rules are never converted.
+ *
+ * Once materialized, the object is indistinguishable from the object JSON.parse would have
+ * built from the serialized node: properties are defined in the same order, with the same
+ * value types, and may be freely modified by the rules.
+ */
+class LazyJsonObject extends NativeObject {
+    private static final long serialVersionUID = 1L;
+
+    private transient JsonNode node;
+
+    LazyJsonObject(JsonNode node, Scriptable scope) {
+        this.node = node;
+        ScriptRuntime.setBuiltinProtoAndParent(this, scope, TopLevel.Builtins.Object);
+    }
+
+    /**
+     * Converts the given JSON node to the value JSON.parse would produce for it.
+     *
+     * @param node
+     *  the JSON node to convert
+     *
+     * @param scope
+     *  the scope in which objects and arrays are created
+     *
+     * @return
+     *  the javascript value of the node
+     */
+    static Object toJsValue(JsonNode node, Scriptable scope) {
+        if (node == null || node.isNull() || node.isMissingNode()) {
+            return null;
+        }
+
+        if (node.isObject()) {
+            return new LazyJsonObject(node, scope);
+        }
+
+        if (node.isArray()) {
+            Object[] elements = new Object[node.size()];
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = toJsValue(node.get(i), scope);
+            }
+
+            NativeArray array = new NativeArray(elements);
+            ScriptRuntime.setBuiltinProtoAndParent(array, scope, TopLevel.Builtins.Array);
+            return array;
+        }
+
+        if (node.isNumber()) {
+            // Same as the JSON parser: integral values which fit in an int are ints.
+            if (node.isInt()) {
+                return node.intValue();
+            }
+
+            double value = Double.parseDouble(node.asText());
+            int intValue = (int) value;
+            return intValue == value ? (Object) intValue : (Object) value;
+        }
+
+        if (node.isBoolean()) {
+            return node.booleanValue();
+        }
+
+        return node.asText();
+    }
+
+    private void materialize() {
+        if (this.node == null) {
+            return;
+        }
+
+        JsonNode source = this.node;
+        this.node = null;
+
+        Scriptable scope = this.getParentScope();
+        Iterator<Map.Entry<String, JsonNode>> fields = source.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            Object value = toJsValue(field.getValue(), scope);
+
+            long index = ScriptRuntime.indexFromString(field.getKey());
+            if (index >= 0) {
+                super.put((int) index, this, value);
+            }
+            else {
+                super.put(field.getKey(), this, value);
+            }
+        }
+    }
+
+    @Override
+    public boolean has(String name, Scriptable start) {
+        this.materialize();
+        return super.has(name, start);
+    }
+
+    @Override
+    public boolean has(int index, Scriptable start) {
+        this.materialize();
+        return super.has(index, start);
+    }
+
+    @Override
+    public Object get(String name, Scriptable start) {
+        this.materialize();
+        return super.get(name, start);
+    }
+
+    @Override
+    public Object get(int index, Scriptable start) {
+        this.materialize();
+        return super.get(index, start);
+    }
+
+    @Override
+    public void put(String name, Scriptable start, Object value) {
+        this.materialize();
+        super.put(name, start, value);
+    }
+
+    @Override
+    public void put(int index, Scriptable start, Object value) {
+        this.materialize();
+        super.put(index, start, value);
+    }
+
+    @Override
+    public void delete(String name) {
+        this.materialize();
+        super.delete(name);
+    }
+
+    @Override
+    public void delete(int index) {
+        this.materialize();
+        super.delete(index);
+    }
+
+    @Override
+    public Object[] getIds() {
+        this.materialize();
+        return super.getIds();
+    }
+
+    @Override
+    public Object[] getAllIds() {
+        this.materialize();
+        return super.getAllIds();
+    }
+
+}
@@ -14,13 +14,16 @@
  */
 package org.candlepin.policy.js;
 
+import org.candlepin.common.config.Configuration;
 import org.candlepin.common.exceptions.IseException;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.jackson.ProductCachedSerializationModule;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.AnnotationIntrospector;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.introspect.AnnotationIntrospectorPair;
 import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
@@ -58,8 +61,16 @@ public class RulesObjectMapper {
     private static Logger log = LoggerFactory.getLogger(RulesObjectMapper.class);
 
     private ObjectMapper mapper;
+    private boolean structuredContext;
 
     @Inject
+    public RulesObjectMapper(ProductCachedSerializationModule poolCachedSerializationModule,
+        Configuration config) {
+
+        this(poolCachedSerializationModule);
+        this.structuredContext = config.getBoolean(ConfigProperties.RULES_STRUCTURED_CONTEXT, false);
+    }
+
     @SuppressWarnings("checkstyle:indentation")
     public RulesObjectMapper(ProductCachedSerializationModule poolCachedSerializationModule) {
         this.mapper = new ObjectMapper();
@@ -100,14 +111,21 @@ public class RulesObjectMapper {
         this.mapper.setAnnotationIntrospector(pair);
     }
 
-    public String toJsonString(Map<String, Object> toSerialize) {
+    /**
+     * Wraps the given objects in a JSON object node, without serializing them yet.
+     */
+    private ObjectNode createMainNode(Map<String, Object> toSerialize) {
         ObjectNode mainNode = this.mapper.createObjectNode();
         for (Entry<String, Object> entry : toSerialize.entrySet()) {
             mainNode.putPOJO(entry.getKey(), entry.getValue());
         }
 
+        return mainNode;
+    }
+
+    public String toJsonString(Map<String, Object> toSerialize) {
         try {
-            return this.mapper.writeValueAsString(mainNode);
+            return this.mapper.writeValueAsString(this.createMainNode(toSerialize));
         }
         catch (Exception e) {
             log.error("Unable to serialize objects to JSON.", e);
@@ -115,6 +133,35 @@ public class RulesObjectMapper {
         }
     }
 
+    /**
+     * Converts the given objects to a JSON tree, as they would be serialized by
+     * {@link #toJsonString(Map)}.
+     *
+     * @param toSerialize
+     *  the objects to convert, keyed by name
+     *
+     * @return
+     *  a JSON object node containing the serialized objects
+     */
+    public JsonNode toJsonTree(Map<String, Object> toSerialize) {
+        try {
+            return this.mapper.valueToTree(this.createMainNode(toSerialize));
+        }
+        catch (Exception e) {
+            log.error("Unable to serialize objects to JSON.", e);
+            throw new IseException("Unable to serialize objects to JSON.", e);
+        }
+    }
+
+    /**
+     * @return
+     *  true if rules contexts should be passed to the rules as structured objects rather than
+     *  JSON strings; false otherwise
+     */
+    public boolean isStructuredContextEnabled() {
+        return this.structuredContext;
+    }
+
     public <T extends Object> T toObject(String json, Class<T> clazz) {
         try {
             return mapper.readValue(json, clazz);
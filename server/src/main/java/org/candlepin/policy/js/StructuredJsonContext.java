@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import org.mozilla.javascript.BaseFunction;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.TopLevel;
+
+import java.util.Map;
+
+
+
+/**
+ * StructuredJsonContext
+ *
+ * The value of json_context when the structured context is enabled. Rather than serializing the
+ * context arguments to a JSON string for the rules to parse, the arguments are converted to a
+ * JSON tree, which is exposed to the rules as lazily materialized javascript objects.
+ *
+ * The rules read their context with JSON.parse(json_context); to keep working with any version
+ * of the rules, the scope is given its own JSON object which returns a new view of the tree when
+ * asked to parse this context, and defers to the standard JSON object for everything else.
+ */
+class StructuredJsonContext extends ScriptableObject {
+    private static final long serialVersionUID = 1L;
+
+    private static final String JSON = "JSON";
+    private static final String PARSE = "parse";
+
+    private final transient RulesObjectMapper mapper;
+    private final transient Map<String, Object> contextArgs;
+    private transient JsonNode tree;
+
+    StructuredJsonContext(RulesObjectMapper mapper, Map<String, Object> contextArgs) {
+        this.mapper = mapper;
+        this.contextArgs = contextArgs;
+    }
+
+    @Override
+    public String getClassName() {
+        return "Object";
+    }
+
+    /**
+     * Applies this context as json_context to the specified scope, along with the JSON object
+     * used to parse it.
+     *
+     * @param scope the {@link Scriptable} to inject the context into.
+     */
+    void applyTo(Scriptable scope) {
+        Object json = ScriptableObject.getProperty(scope, JSON);
+        if (json instanceof JsonShim) {
+            json = ((JsonShim) json).getPrototype();
+        }
+
+        scope.put(JSON, scope, new JsonShim((Scriptable) json, scope));
+        scope.put("json_context", scope, this);
+    }
+
+    /**
+     * Builds a new javascript view of the context. Like JSON.parse, every call returns distinct
+     * objects, so changes the rules make to one view are not visible in another.
+     */
+    private Object parse(Scriptable scope) {
+        if (this.tree == null) {
+            this.tree = this.mapper.toJsonTree(this.contextArgs);
+        }
+
+        return LazyJsonObject.toJsValue(this.tree, ScriptableObject.getTopLevelScope(scope));
+    }
+
+    /**
+     * A JSON object which parses structured contexts, and inherits everything else from the
+     * standard JSON object.
+     */
+    private static class JsonShim extends NativeObject {
+        private static final long serialVersionUID = 1L;
+
+        JsonShim(Scriptable json, Scriptable scope) {
+            this.setPrototype(json);
+            this.setParentScope(scope);
+
+            BaseFunction parse = new BaseFunction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public Object call(Context cx, Scriptable scope, Scriptable thisObj, Object[] args) {
+                    if (args.length > 0 && args[0] instanceof StructuredJsonContext) {
+                        return ((StructuredJsonContext) args[0]).parse(scope);
+                    }
+
+                    Function parse = (Function) ScriptableObject.getProperty(json, PARSE);
+                    return parse.call(cx, scope, json, args);
+                }
+            };
+
+            ScriptRuntime.setBuiltinProtoAndParent(parse, scope, TopLevel.Builtins.Function);
+            this.defineProperty(PARSE, parse, ScriptableObject.DONTENUM);
+        }
+    }
+
+}
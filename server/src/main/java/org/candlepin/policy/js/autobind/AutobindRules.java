@@ -14,6 +14,8 @@
  */
 package org.candlepin.policy.js.autobind;
 
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.dto.ModelTranslator;
 import org.candlepin.dto.rules.v1.ComplianceStatusDTO;
 import org.candlepin.dto.rules.v1.ConsumerDTO;
@@ -47,22 +49,25 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.stream.Stream;
+import java.util.stream.Collectors;
 
 
 /**
  * AutobindRules
  *
- * Defers to rules to determine the best match of pools for a given consumer.
+ * Defers to rules to determine the best match of pools for a given consumer. When the native
+ * autobind engine is configured, the Java implementation of the rules is used instead.
  */
 public class AutobindRules {
 
     protected static final String SELECT_POOL_FUNCTION = "select_pools";
+    protected static final String NATIVE_ENGINE = "native";
     private static Logger log = LoggerFactory.getLogger(AutobindRules.class);
 
     private JsRunner jsRules;
@@ -71,11 +76,12 @@ public class AutobindRules {
     private ConsumerTypeCurator consumerTypeCurator;
     private OwnerCurator ownerCurator;
     private ModelTranslator translator;
+    private NativeAutobindSolver nativeSolver;
 
     @Inject
     public AutobindRules(JsRunner jsRules, ProductCurator productCurator,
         ConsumerTypeCurator consumerTypeCurator, OwnerCurator ownerCurator, RulesObjectMapper mapper,
-        ModelTranslator translator) {
+        ModelTranslator translator, Configuration config) {
 
         this.jsRules = jsRules;
         this.productCurator = productCurator;
@@ -84,6 +90,11 @@ public class AutobindRules {
         this.mapper = mapper;
         this.translator = translator;
 
+        if (NATIVE_ENGINE.equalsIgnoreCase(config.getString(ConfigProperties.AUTOBIND_ENGINE, "rules"))) {
+            log.info("Using the native autobind engine");
+            this.nativeSolver = new NativeAutobindSolver();
+        }
+
         jsRules.init("autobind_name_space");
     }
 
@@ -123,40 +134,50 @@ public class AutobindRules {
             poolDTOs.add(this.translator.translate(pool, PoolDTO.class));
         }
 
-        Stream<GuestIdDTO> guestIdStream = consumer.getGuestIds() == null ? Stream.empty() :
+        List<GuestIdDTO> guestIds = consumer.getGuestIds() == null ? Collections.emptyList() :
             consumer.getGuestIds().stream()
-            .map(this.translator.getStreamMapper(GuestId.class, GuestIdDTO.class));
-
-        // Provide objects for the script:
-        JsonJsContext args = new JsonJsContext(mapper);
-        args.put("consumer", this.translator.translate(consumer, ConsumerDTO.class));
-        Owner owner = ownerCurator.findOwnerById(consumer.getOwnerId());
-        args.put("owner", this.translator.translate(owner, OwnerDTO.class));
-        args.put("serviceLevelOverride", serviceLevelOverride);
-        args.put("pools", poolDTOs.toArray());
-        args.put("products", productIds);
-        args.put("log", log, false);
-        args.put("compliance", this.translator.translate(compliance, ComplianceStatusDTO.class));
-        args.put("exemptList", exemptLevels);
-        args.put("considerDerived", considerDerived);
-        args.put("guestIds", guestIdStream);
-
-        // Convert the JSON returned into a Map object:
+            .map(this.translator.getStreamMapper(GuestId.class, GuestIdDTO.class))
+            .collect(Collectors.toList());
+
+        ConsumerDTO consumerDTO = this.translator.translate(consumer, ConsumerDTO.class);
+        ComplianceStatusDTO complianceDTO = this.translator.translate(compliance, ComplianceStatusDTO.class);
+
         Map<String, Integer> result = null;
-        try {
-            String json = jsRules.invokeMethod(SELECT_POOL_FUNCTION, args);
-            result = mapper.toObject(json, Map.class);
-            if (log.isDebugEnabled()) {
-                log.debug("Executed javascript rule: {}", SELECT_POOL_FUNCTION);
-            }
-        }
-        catch (NoSuchMethodException e) {
-            log.warn("No method found: {}", SELECT_POOL_FUNCTION);
-            log.warn("Resorting to default pool selection behavior.");
-            return selectBestPoolDefault(pools);
+        if (this.nativeSolver != null) {
+            result = this.nativeSolver.selectPools(consumerDTO, poolDTOs, productIds, complianceDTO, guestIds,
+                exemptLevels, considerDerived);
         }
-        catch (RhinoException e) {
-            throw new RuleExecutionException(e);
+        else {
+            // Provide objects for the script:
+            JsonJsContext args = new JsonJsContext(mapper);
+            args.put("consumer", consumerDTO);
+            Owner owner = ownerCurator.findOwnerById(consumer.getOwnerId());
+            args.put("owner", this.translator.translate(owner, OwnerDTO.class));
+            args.put("serviceLevelOverride", serviceLevelOverride);
+            args.put("pools", poolDTOs.toArray());
+            args.put("products", productIds);
+            args.put("log", log, false);
+            args.put("compliance", complianceDTO);
+            args.put("exemptList", exemptLevels);
+            args.put("considerDerived", considerDerived);
+            args.put("guestIds", guestIds);
+
+            // Convert the JSON returned into a Map object:
+            try {
+                String json = jsRules.invokeMethod(SELECT_POOL_FUNCTION, args);
+                result = mapper.toObject(json, Map.class);
+                if (log.isDebugEnabled()) {
+                    log.debug("Executed javascript rule: {}", SELECT_POOL_FUNCTION);
+                }
+            }
+            catch (NoSuchMethodException e) {
+                log.warn("No method found: {}", SELECT_POOL_FUNCTION);
+                log.warn("Resorting to default pool selection behavior.");
+                return selectBestPoolDefault(pools);
+            }
+            catch (RhinoException e) {
+                throw new RuleExecutionException(e);
+            }
         }
 
         if (pools.size() > 0 && (result == null || result.isEmpty())) {
@@ -0,0 +1,500 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.autobind;
+
+import org.candlepin.policy.js.compliance.CoverageCalculator.Coverage;
+import org.candlepin.policy.js.compliance.CoverageCalculator;
+import org.candlepin.policy.js.compliance.JsValues;
+import org.candlepin.policy.js.compliance.RulesConsumer;
+import org.candlepin.policy.js.compliance.RulesEntitlement;
+import org.candlepin.policy.js.compliance.RulesPool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+
+/**
+ * An entitlement group is an abstraction that allows us to check and modify groups of available
+ * pools uniformly, regardless of whether they form a stack or a single entitlement. It is a port
+ * of create_entitlement_group from the autobind rules.
+ */
+class EntitlementGroup {
+
+    private final boolean stackable;
+    private final String stackId;
+    private final RulesConsumer consumer;
+    private final List<RulesEntitlement> attachedEnts;
+    private final boolean considerDerived;
+
+    private List<RulesPool> pools;
+    private List<String> installed;
+
+    // Only valid once prune_pools has run; used to pick the best groups.
+    private Map<String, Double> poolQuantity;
+    private Double averagePriority;
+
+    /**
+     * Creates a new entitlement group.
+     *
+     * @param installed
+     *  the installed product IDs the group should provide; shared between groups until the group
+     *  is selected, as the rules remove products from it once they are covered
+     */
+    EntitlementGroup(boolean stackable, String stackId, List<String> installed, RulesConsumer consumer,
+        List<RulesEntitlement> attachedEnts, boolean considerDerived) {
+
+        this.stackable = stackable;
+        this.stackId = stackId;
+        this.installed = installed;
+        this.consumer = consumer;
+        this.attachedEnts = attachedEnts;
+        this.considerDerived = considerDerived;
+        this.pools = new ArrayList<>();
+    }
+
+    boolean isStackable() {
+        return this.stackable;
+    }
+
+    String getStackId() {
+        return this.stackId;
+    }
+
+    List<RulesPool> getPools() {
+        return this.pools;
+    }
+
+    List<RulesEntitlement> getAttachedEnts() {
+        return this.attachedEnts;
+    }
+
+    void setInstalled(List<String> installed) {
+        this.installed = installed;
+    }
+
+    void addPool(RulesPool pool) {
+        this.pools.add(pool);
+    }
+
+    /**
+     * Determines whether it is possible for the group to fully cover the consumer. If this is a
+     * stack, pools with attributes that break compliance are removed.
+     */
+    boolean validate() {
+        List<RulesEntitlement> allEnts = this.withAttached(this.getAllEnts(this.pools));
+
+        if (allEnts.isEmpty()) {
+            return false;
+        }
+
+        if (!this.stackable) {
+            return CoverageCalculator.getEntitlementCoverage(this.consumer, allEnts.get(0), allEnts)
+                .isCovered();
+        }
+
+        Coverage coverage = CoverageCalculator.getStackCoverage(this.consumer, this.stackId, allEnts);
+        if (coverage.isCovered()) {
+            return true;
+        }
+
+        List<String> attrsToRemove = new ArrayList<>();
+        for (String reason : coverage.getReasons()) {
+            attrsToRemove.add(reason.toLowerCase());
+        }
+
+        // Remove all pools with attributes that we cannot support. As in the rules, the
+        // remaining pools end up in reverse order.
+        List<RulesPool> poolsWithoutBadAttrs = new ArrayList<>();
+        for (int i = this.pools.size() - 1; i >= 0; i--) {
+            RulesPool pool = this.pools.get(i);
+            boolean valid = true;
+
+            for (String attribute : attrsToRemove) {
+                if (JsValues.isTruthy(pool.getProductAttribute(attribute))) {
+                    valid = false;
+                    break;
+                }
+            }
+
+            if (valid) {
+                poolsWithoutBadAttrs.add(pool);
+            }
+        }
+
+        this.pools = poolsWithoutBadAttrs;
+        allEnts = this.withAttached(this.getAllEnts(this.pools));
+        return CoverageCalculator.getStackCoverage(this.consumer, this.stackId, allEnts).isCovered();
+    }
+
+    int numHostSpecific() {
+        int count = 0;
+        for (RulesPool pool : this.pools) {
+            if (pool.isHostSpecific()) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    int numVirtOnly() {
+        int count = 0;
+        for (RulesPool pool : this.pools) {
+            if (pool.isVirtOnly()) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Generates every subset of the given list no longer than the given length, in the order
+     * get_sets produces them.
+     */
+    static List<List<String>> getSets(List<String> list, int maxLength) {
+        List<List<String>> results = new ArrayList<>();
+
+        if (list.isEmpty()) {
+            results.add(Collections.<String>emptyList());
+            return results;
+        }
+
+        for (List<String> set : getSets(list.subList(1, list.size()), maxLength)) {
+            if (set.size() < maxLength) {
+                List<String> withFirst = new ArrayList<>();
+                withFirst.add(list.get(0));
+                withFirst.addAll(set);
+                results.add(withFirst);
+            }
+
+            results.add(set);
+        }
+
+        return results;
+    }
+
+    /**
+     * Generates the non-empty sets of stackable attributes (other than arch) used by the given
+     * pools, which remove_extra_attrs attempts to remove.
+     */
+    private List<List<String>> getAttributeSets(List<RulesPool> pools) {
+        List<String> stackAttributes = new ArrayList<>();
+
+        for (String attribute : this.consumer.getComplianceAttributes()) {
+            if (!RulesConsumer.ARCH_ATTRIBUTE.equals(attribute)) {
+                // Only check attributes that the pools actually use
+                for (RulesPool pool : pools) {
+                    if (pool.hasProductAttribute(attribute)) {
+                        stackAttributes.add(attribute);
+                        break;
+                    }
+                }
+            }
+        }
+
+        List<List<String>> sets = getSets(stackAttributes, stackAttributes.size() - 1);
+        for (int i = sets.size() - 1; i >= 0; i--) {
+            if (sets.get(i).isEmpty()) {
+                sets.remove(i);
+            }
+        }
+
+        return sets;
+    }
+
+    /**
+     * Removes parallel stacks, so we aren't binding two stacks which would each be fully
+     * compliant on their own.
+     */
+    void removeExtraAttrs(String role, List<String> addons) {
+        List<List<RulesPool>> possiblePoolSets = new ArrayList<>();
+        possiblePoolSets.add(this.pools);
+
+        int originalProvided = this.getProvidedProducts().size();
+
+        for (List<String> attrsToRemove : this.getAttributeSets(this.pools)) {
+            for (String attribute : attrsToRemove) {
+                List<RulesPool> poolsWithout = new ArrayList<>();
+
+                for (RulesPool pool : this.pools) {
+                    if (!JsValues.isTruthy(pool.getProductAttribute(attribute)) &&
+                        !this.matchesRoleOrAddons(pool, role, addons)) {
+                        poolsWithout.add(pool);
+                    }
+                }
+
+                List<RulesEntitlement> allEnts = this.withAttached(this.getAllEnts(poolsWithout));
+                if (CoverageCalculator.getStackCoverage(this.consumer, this.stackId, allEnts).isCovered() &&
+                    this.getProvidedProducts(poolsWithout).size() == originalProvided) {
+                    possiblePoolSets.add(poolsWithout);
+                }
+            }
+        }
+
+        int best = 0;
+        double bestPriority = 0.0;
+        int numPools = this.pools.size();
+
+        for (int i = 0; i < possiblePoolSets.size(); i++) {
+            List<RulesPool> pools = possiblePoolSets.get(i);
+            double priority = 0;
+
+            for (RulesPool pool : pools) {
+                // use virt only if possible
+                if (pool.isVirtOnly()) {
+                    priority += 100;
+                }
+
+                // better still if host specific
+                if (pool.isHostSpecific()) {
+                    priority += 150;
+                }
+            }
+
+            // Priority per pool, that way we don't tend towards stacks with more pools.
+            priority /= pools.size();
+
+            if (priority > bestPriority) {
+                bestPriority = priority;
+                best = i;
+                numPools = pools.size();
+            }
+            else if (priority == bestPriority && numPools > pools.size()) {
+                best = i;
+                numPools = pools.size();
+            }
+        }
+
+        this.pools = possiblePoolSets.get(best);
+    }
+
+    /**
+     * Removes all pools that aren't necessary for compliance, preferring to keep virt-only and
+     * host specific pools.
+     */
+    void prunePools(String role, List<String> addons) {
+        // We know this group is required at this point, so we cannot remove the one pool if it's
+        // non-stackable
+        if (!this.stackable) {
+            return;
+        }
+
+        // Sort descending, so it's easier to remove items while going backwards. List.sort uses
+        // the same algorithm as Rhino's Array.prototype.sort, so ties resolve identically.
+        this.pools = new ArrayList<>(this.pools);
+        this.pools.sort(this.poolComparator());
+
+        int providedSize = this.getProvidedProducts().size();
+
+        for (int i = this.pools.size() - 1; i >= 0; i--) {
+            RulesPool temp = this.pools.get(i);
+            boolean roleOrAddonMatch = this.matchesRoleOrAddons(temp, role, addons);
+
+            this.pools.remove(i);
+            List<RulesEntitlement> ents = this.getAllEnts(this.pools);
+
+            Coverage coverage = ents.isEmpty() ? null :
+                CoverageCalculator.getStackCoverage(this.consumer, this.stackId, this.withAttached(ents));
+
+            if (coverage == null || !coverage.isCovered() ||
+                this.getProvidedProducts().size() != providedSize || roleOrAddonMatch) {
+
+                // if something has broken, we add the pool back
+                this.pools.add(temp);
+            }
+        }
+    }
+
+    private boolean matchesRoleOrAddons(RulesPool pool, String role, List<String> addons) {
+        boolean roleMatch = pool.splitProductAttribute(RulesPool.ROLES_ATTRIBUTE).contains(role);
+
+        boolean addonMatch = false;
+        for (String addon : pool.splitProductAttribute(RulesPool.ADDONS_ATTRIBUTE)) {
+            addonMatch = addonMatch || addons.contains(addon);
+        }
+
+        return roleMatch || addonMatch;
+    }
+
+    /**
+     * Orders pools by descending priority, preferring the pool that expires first when two pools
+     * are otherwise equal.
+     */
+    private Comparator<RulesPool> poolComparator() {
+        return (pool0, pool1) -> {
+            if (pool0 == pool1) {
+                return 0;
+            }
+
+            double priority0 = this.consumer.getPoolPriority(pool0);
+            double priority1 = this.consumer.getPoolPriority(pool1);
+
+            if (pool0.getEndDate() > pool1.getEndDate()) {
+                priority1 += 1;
+            }
+            else if (pool0.getEndDate() < pool1.getEndDate()) {
+                priority0 += 1;
+            }
+
+            double difference = priority1 - priority0;
+            return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+        };
+    }
+
+    double getTotalQuantity() {
+        double result = 0;
+        for (Double quantity : this.getPoolQuantity().values()) {
+            result += quantity;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the average priority of the pools in this group. Only meaningful once prunePools has
+     * run.
+     */
+    double getAveragePriority() {
+        if (this.averagePriority == null) {
+            double total = 0;
+            for (RulesPool pool : this.pools) {
+                total += this.consumer.getPoolPriority(pool);
+            }
+
+            this.averagePriority = total / this.pools.size();
+        }
+
+        return this.averagePriority;
+    }
+
+    /**
+     * Returns a map of pool ID to the quantity required from every pool in this group. Only
+     * meaningful once prunePools has run.
+     */
+    Map<String, Double> getPoolQuantity() {
+        if (this.poolQuantity != null) {
+            return this.poolQuantity;
+        }
+
+        Map<String, Double> result = new LinkedHashMap<>();
+
+        // Still in priority order, but reversed from prunePools
+        List<RulesEntitlement> ents = this.getAllEnts(this.pools);
+        List<RulesEntitlement> allEnts = this.withAttached(ents);
+
+        for (int i = 0; i < this.pools.size(); i++) {
+            RulesPool pool = this.pools.get(i);
+
+            double increment = 1;
+            if (pool.hasProductAttribute(RulesPool.INSTANCE_ATTRIBUTE) && !this.consumer.isGuest()) {
+                increment = JsValues.parseInt(pool.getProductAttribute(RulesPool.INSTANCE_ATTRIBUTE));
+            }
+
+            // entitlement index matches pool index
+            RulesEntitlement currentEnt = ents.get(i);
+
+            for (double j = increment; j <= pool.getCurrentlyAvailable(); j += increment) {
+                currentEnt.setQuantity(j);
+
+                Coverage coverage = this.stackable ?
+                    CoverageCalculator.getStackCoverage(this.consumer, this.stackId, allEnts) :
+                    CoverageCalculator.getEntitlementCoverage(this.consumer, currentEnt, allEnts);
+
+                if (coverage.isCovered()) {
+                    result.put(pool.getId(), j);
+                    break;
+                }
+            }
+        }
+
+        this.poolQuantity = result;
+        return result;
+    }
+
+    private List<RulesEntitlement> getAllEnts(List<RulesPool> pools) {
+        List<RulesEntitlement> ents = new ArrayList<>(pools.size());
+        for (RulesPool pool : pools) {
+            ents.add(RulesEntitlement.mockFor(pool));
+        }
+
+        return ents;
+    }
+
+    private List<RulesEntitlement> withAttached(List<RulesEntitlement> ents) {
+        List<RulesEntitlement> result = new ArrayList<>(ents.size() + this.attachedEnts.size());
+        result.addAll(ents);
+        result.addAll(this.attachedEnts);
+        return result;
+    }
+
+    List<String> getProvidedProducts() {
+        return this.getProvidedProducts(this.pools);
+    }
+
+    /**
+     * Returns the installed product IDs provided by the given pools. When considering derived
+     * products, pools carrying derived product data provide their derived products instead.
+     */
+    private List<String> getProvidedProducts(List<RulesPool> pools) {
+        List<String> provided = new ArrayList<>();
+
+        for (RulesPool pool : pools) {
+            List<String> providedByPool = this.considerDerived && pool.hasDerived() ?
+                pool.derivedProducts() :
+                pool.products();
+
+            for (String productId : providedByPool) {
+                if (!provided.contains(productId) && this.installed.contains(productId)) {
+                    provided.add(productId);
+                }
+            }
+        }
+
+        return provided;
+    }
+
+    List<String> getAddons() {
+        return getAddonsOfPools(this.pools);
+    }
+
+    List<String> getRoles() {
+        return getRolesOfPools(this.pools);
+    }
+
+    static List<String> getAddonsOfPools(List<RulesPool> pools) {
+        List<String> addons = new ArrayList<>();
+        for (RulesPool pool : pools) {
+            addons.addAll(pool.retrievePoolAttributeValues(RulesPool.ADDONS_ATTRIBUTE));
+        }
+
+        return addons;
+    }
+
+    static List<String> getRolesOfPools(List<RulesPool> pools) {
+        List<String> roles = new ArrayList<>();
+        for (RulesPool pool : pools) {
+            roles.addAll(pool.retrievePoolAttributeValues(RulesPool.ROLES_ATTRIBUTE));
+        }
+
+        return roles;
+    }
+
+}
@@ -0,0 +1,554 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.autobind;
+
+import org.candlepin.dto.rules.v1.ComplianceStatusDTO;
+import org.candlepin.dto.rules.v1.ConsumerDTO;
+import org.candlepin.dto.rules.v1.EntitlementDTO;
+import org.candlepin.dto.rules.v1.GuestIdDTO;
+import org.candlepin.dto.rules.v1.PoolDTO;
+import org.candlepin.policy.js.compliance.CoverageCalculator;
+import org.candlepin.policy.js.compliance.JsValues;
+import org.candlepin.policy.js.compliance.RulesConsumer;
+import org.candlepin.policy.js.compliance.RulesEntitlement;
+import org.candlepin.policy.js.compliance.RulesPool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+
+
+/**
+ * The NativeAutobindSolver class is a Java implementation of the select_pools function of the
+ * autobind rules. It operates on the same rules DTOs which are serialized for the rules, and
+ * reproduces the rules' pool ordering, scoring and tie-breaking so both engines select the same
+ * pools and quantities for a given input.
+ */
+public class NativeAutobindSolver {
+
+    private static Logger log = LoggerFactory.getLogger(NativeAutobindSolver.class);
+
+    /**
+     * Selects the best pools and quantities to attach to the given consumer.
+     *
+     * @param consumer
+     *  the consumer to select pools for
+     *
+     * @param pools
+     *  the candidate pools
+     *
+     * @param productIds
+     *  the IDs of the products the consumer needs to cover
+     *
+     * @param compliance
+     *  the current compliance status of the consumer
+     *
+     * @param guestIds
+     *  the guests of the consumer, used to determine its guest limit; may be null
+     *
+     * @param exemptLevels
+     *  the service levels which are exempt from service level matching
+     *
+     * @param considerDerived
+     *  whether derived products should be considered in place of the provided products
+     *
+     * @return
+     *  a map of the selected pool IDs to the quantity to attach from each pool
+     */
+    public Map<String, Integer> selectPools(ConsumerDTO consumer, List<PoolDTO> pools, String[] productIds,
+        ComplianceStatusDTO compliance, Collection<GuestIdDTO> guestIds, Set<String> exemptLevels,
+        boolean considerDerived) {
+
+        log.debug("considerDerived = {}", considerDerived);
+
+        Map<String, List<RulesEntitlement>> compliantProducts =
+            buildEntitlementMap(compliance.getCompliantProducts());
+        Map<String, List<RulesEntitlement>> partiallyCompliantProducts =
+            buildEntitlementMap(compliance.getPartiallyCompliantProducts());
+        Map<String, List<RulesEntitlement>> partialStacks =
+            buildEntitlementMap(compliance.getPartialStacks());
+
+        RulesConsumer rulesConsumer = new RulesConsumer(consumer, RulesConsumer.countActiveGuests(guestIds),
+            compliantProducts, partiallyCompliantProducts, partialStacks);
+
+        List<RulesPool> candidates = new ArrayList<>();
+        for (PoolDTO pool : pools) {
+            candidates.add(this.createCandidatePool(pool, rulesConsumer));
+        }
+
+        List<RulesEntitlement> attachedEnts = getAttachedEnts(
+            Arrays.asList(partialStacks, partiallyCompliantProducts, compliantProducts));
+
+        List<RulesPool> validPools = this.getValidPools(candidates, rulesConsumer, exemptLevels,
+            Arrays.asList(compliantProducts, partiallyCompliantProducts, partialStacks));
+
+        List<String> installed = productIds != null ?
+            new ArrayList<>(Arrays.asList(productIds)) :
+            new ArrayList<>();
+        log.debug("Installed products: {}", installed);
+
+        // filter compliant products from this list
+        for (String productId : compliantProducts.keySet()) {
+            installed.remove(productId);
+        }
+
+        // filter role and addons if they have been fulfilled
+        String role = getRemainingRole(rulesConsumer.getRole(), attachedEnts);
+        List<String> addons = getRemainingAddons(rulesConsumer.getAddOns(), attachedEnts);
+
+        List<EntitlementGroup> entGroups = buildEntitlementGroups(validPools, installed, rulesConsumer,
+            attachedEnts, considerDerived);
+        log.debug("Total ent groups: {}", entGroups.size());
+
+        List<EntitlementGroup> validGroups = new ArrayList<>();
+        for (int i = entGroups.size() - 1; i >= 0; i--) {
+            EntitlementGroup group = entGroups.get(i);
+
+            if (group.validate()) {
+                // Only really consider the group if it provides a necessary product, role, addon,
+                // or stacks with an existing partial stack
+                if (!getCommonProducts(installed, group).isEmpty() ||
+                    !getCommonRole(role, group).isEmpty() ||
+                    !getCommonAddons(addons, group).isEmpty() ||
+                    !group.getAttachedEnts().isEmpty()) {
+
+                    validGroups.add(group);
+                    group.removeExtraAttrs(role, addons);
+                    group.prunePools(role, addons);
+                }
+                else {
+                    log.debug("Group {} provides no needed products", group.getStackId());
+                }
+            }
+            else {
+                log.debug("Group {} failed validation.", group.getStackId());
+            }
+        }
+
+        log.debug("valid ent groups size: {}", validGroups.size());
+        log.debug("remaining role: {}", role);
+        log.debug("remaining addons: {}", addons);
+
+        List<EntitlementGroup> bestGroups = getBestEntitlementGroups(validGroups, installed,
+            partialStacks.keySet(), role, addons);
+        log.debug("best_groups size: {}", bestGroups.size());
+
+        Map<String, Integer> selected = new LinkedHashMap<>();
+        for (EntitlementGroup group : bestGroups) {
+            for (Map.Entry<String, Double> entry : group.getPoolQuantity().entrySet()) {
+                selected.put(entry.getKey(), entry.getValue().intValue());
+            }
+        }
+
+        log.debug("selected_pools: {}", selected);
+        return selected;
+    }
+
+    private static Map<String, List<RulesEntitlement>> buildEntitlementMap(
+        Map<String, Set<EntitlementDTO>> entitlements) {
+
+        Map<String, List<RulesEntitlement>> output = new LinkedHashMap<>();
+
+        if (entitlements != null) {
+            for (Map.Entry<String, Set<EntitlementDTO>> entry : entitlements.entrySet()) {
+                List<RulesEntitlement> ents = new ArrayList<>();
+                for (EntitlementDTO entitlement : entry.getValue()) {
+                    ents.add(RulesEntitlement.fromDTO(entitlement));
+                }
+
+                output.put(entry.getKey(), ents);
+            }
+        }
+
+        return output;
+    }
+
+    private RulesPool createCandidatePool(PoolDTO dto, RulesConsumer consumer) {
+        RulesPool pool = new RulesPool(dto);
+
+        if (pool.isUnlimited()) {
+            // In the unlimited case, we need at most the number required to cover the system
+            pool.setCurrentlyAvailable(CoverageCalculator.getSuggestedPoolQuantity(pool, consumer));
+        }
+        else {
+            pool.setCurrentlyAvailable(pool.getAvailable());
+        }
+
+        // If the pool is not multi-entitlable, only one may be used
+        if (pool.getCurrentlyAvailable() > 0 && !pool.isMultiEnt()) {
+            pool.setCurrentlyAvailable(1);
+        }
+
+        return pool;
+    }
+
+    private static List<RulesEntitlement> getAttachedEnts(List<Map<String, List<RulesEntitlement>>> maps) {
+        List<RulesEntitlement> attached = new ArrayList<>();
+
+        for (Map<String, List<RulesEntitlement>> map : maps) {
+            for (List<RulesEntitlement> ents : map.values()) {
+                for (RulesEntitlement ent : ents) {
+                    // Must make sure there are no duplicates
+                    boolean contains = false;
+                    for (RulesEntitlement existing : attached) {
+                        if (Objects.equals(ent.getId(), existing.getId())) {
+                            contains = true;
+                            break;
+                        }
+                    }
+
+                    if (!contains) {
+                        attached.add(ent);
+                    }
+                }
+            }
+        }
+
+        return attached;
+    }
+
+    // Returns all pools that can be attached to this consumer
+    private List<RulesPool> getValidPools(List<RulesPool> pools, RulesConsumer consumer,
+        Set<String> exemptLevels, List<Map<String, List<RulesEntitlement>>> complianceMaps) {
+
+        String consumerArch = consumer.getFactValue(RulesConsumer.ARCH_FACT);
+        List<String> consumerSlas = null;
+        List<RulesPool> valid = new ArrayList<>();
+
+        for (RulesPool pool : pools) {
+            // The rules pass the consumer type object in place of its label here, so the
+            // consumer is never treated as a system when checking the architecture.
+            String poolArch = pool.getProductAttribute(RulesConsumer.ARCH_ATTRIBUTE);
+            if (!CoverageCalculator.architectureMatches(poolArch, consumerArch, false)) {
+
+                log.debug("Skipping pool {} since the ARCH doesn't match that of the consumer",
+                    pool.getId());
+                continue;
+            }
+
+            if (!consumer.isGuest() && pool.hasProductAttribute(RulesPool.VIRT_ONLY_ATTRIBUTE) &&
+                JsValues.equalsIgnoreCase("true", pool.getProductAttribute(RulesPool.VIRT_ONLY_ATTRIBUTE))) {
+
+                log.debug("Skipping pool {} since a physical system can not consume from a virt-only pool.",
+                    pool.getId());
+                continue;
+            }
+
+            String poolSla = pool.getProductAttribute(RulesPool.SUPPORT_LEVEL_ATTRIBUTE);
+            if (!isSlaNullOrExempt(poolSla, exemptLevels)) {
+                if (consumerSlas == null) {
+                    consumerSlas = getExistingEntitlementSlas(complianceMaps);
+                }
+
+                if (!consumerSlas.isEmpty() && !containsIgnoreCase(consumerSlas, poolSla)) {
+                    log.debug("Skipping pool {} since SLA is non-null, non-exempt, and does not match any " +
+                        "of the consumer's entitlements' SLAs.", pool.getId());
+                    continue;
+                }
+            }
+
+            if (pool.getCurrentlyAvailable() <= 0) {
+                log.debug("Skipping pool {} since all entitlements have been consumed.", pool.getId());
+                continue;
+            }
+
+            valid.add(pool);
+        }
+
+        return valid;
+    }
+
+    private static boolean isSlaNullOrExempt(String sla, Set<String> exemptLevels) {
+        if (!JsValues.isTruthy(sla)) {
+            return true;
+        }
+
+        return exemptLevels != null && containsIgnoreCase(exemptLevels, sla);
+    }
+
+    private static boolean containsIgnoreCase(Collection<String> values, String value) {
+        for (String candidate : values) {
+            if (JsValues.equalsIgnoreCase(candidate, value)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the distinct, non-null service levels of the consumer's existing entitlements.
+     */
+    private static List<String> getExistingEntitlementSlas(
+        List<Map<String, List<RulesEntitlement>>> complianceMaps) {
+
+        List<String> slas = new ArrayList<>();
+
+        for (Map<String, List<RulesEntitlement>> map : complianceMaps) {
+            for (List<RulesEntitlement> ents : map.values()) {
+                for (RulesEntitlement ent : ents) {
+                    String sla = ent.getPool().getProductAttribute(RulesPool.SUPPORT_LEVEL_ATTRIBUTE);
+                    if (JsValues.isTruthy(sla) && !containsIgnoreCase(slas, sla)) {
+                        slas.add(sla);
+                    }
+                }
+            }
+        }
+
+        return slas;
+    }
+
+    private static String getRemainingRole(String role, List<RulesEntitlement> attachedEnts) {
+        if (role == null) {
+            return "";
+        }
+
+        if (attachedEnts.isEmpty() || role.isEmpty()) {
+            return role;
+        }
+
+        return getRolesOfPools(attachedEnts).contains(role) ? "" : role;
+    }
+
+    private static List<String> getRemainingAddons(List<String> addons, List<RulesEntitlement> attachedEnts) {
+        if (attachedEnts.isEmpty()) {
+            // The consumer's list is used as-is, and is trimmed as addons are satisfied
+            return addons;
+        }
+
+        List<String> attachedAddons = EntitlementGroup.getAddonsOfPools(getPools(attachedEnts));
+        List<String> remaining = new ArrayList<>();
+        for (String addon : addons) {
+            if (!attachedAddons.contains(addon)) {
+                remaining.add(addon);
+            }
+        }
+
+        return remaining;
+    }
+
+    private static List<String> getRolesOfPools(List<RulesEntitlement> ents) {
+        return EntitlementGroup.getRolesOfPools(getPools(ents));
+    }
+
+    private static List<RulesPool> getPools(List<RulesEntitlement> ents) {
+        List<RulesPool> pools = new ArrayList<>();
+        for (RulesEntitlement ent : ents) {
+            pools.add(ent.getPool());
+        }
+
+        return pools;
+    }
+
+    /**
+     * Builds entitlement groups that allow us to treat stacks and individual entitlements the same
+     */
+    private static List<EntitlementGroup> buildEntitlementGroups(List<RulesPool> validPools,
+        List<String> installed, RulesConsumer consumer, List<RulesEntitlement> attachedEnts,
+        boolean considerDerived) {
+
+        List<EntitlementGroup> groups = new ArrayList<>();
+
+        for (RulesPool pool : validPools) {
+            EntitlementGroup target = null;
+
+            if (pool.isStacked()) {
+                String stackId = pool.getProductAttribute(RulesPool.STACKING_ID_ATTRIBUTE);
+                for (EntitlementGroup group : groups) {
+                    if (Objects.equals(group.getStackId(), stackId)) {
+                        target = group;
+                        break;
+                    }
+                }
+
+                // If the pool is stackable, and not part of an existing entitlement group, create a
+                // new group for it
+                if (target == null) {
+                    target = new EntitlementGroup(true, stackId, installed, consumer, attachedEnts,
+                        considerDerived);
+                    groups.add(target);
+                }
+            }
+            else {
+                // if the entitlement is not stackable, create a new stack group for it
+                target = new EntitlementGroup(false, "", installed, consumer, attachedEnts, considerDerived);
+                groups.add(target);
+            }
+
+            target.addPool(pool);
+        }
+
+        return groups;
+    }
+
+    /**
+     * Returns the products the group will cover, which the consumer requires.
+     */
+    private static List<String> getCommonProducts(List<String> installed, EntitlementGroup group) {
+        List<String> common = new ArrayList<>();
+        for (String productId : group.getProvidedProducts()) {
+            if (installed.contains(productId)) {
+                common.add(productId);
+            }
+        }
+
+        return common;
+    }
+
+    /**
+     * Returns the addons the group will cover, which the consumer requires.
+     */
+    private static List<String> getCommonAddons(List<String> addons, EntitlementGroup group) {
+        List<String> common = new ArrayList<>();
+        for (String addon : group.getAddons()) {
+            if (addons.contains(addon)) {
+                common.add(addon);
+            }
+        }
+
+        return common;
+    }
+
+    /**
+     * Returns the role if the group covers it, or an empty string otherwise.
+     */
+    private static String getCommonRole(String role, EntitlementGroup group) {
+        return role != null && group.getRoles().contains(role) ? role : "";
+    }
+
+    // Ties are broken on host specific pools, virt only pools, priority, quantity, and finally on
+    // whether the group is a stack, in that order.
+    private static EntitlementGroup findBestEntGroup(List<EntitlementGroup> groups, List<String> installed,
+        String role, List<String> addons) {
+
+        boolean stacked = false;
+        EntitlementGroup best = null;
+        double totalPoolQuantity = Double.MAX_VALUE;
+        double bestAvgPriority = 0;
+        int bestNumHostSpecific = 0;
+        int bestNumVirtOnly = 0;
+        boolean virtOnlyFound = false;
+        boolean hostSpecificFound = false;
+
+        for (EntitlementGroup group : groups) {
+            double groupAvgPriority = group.getAveragePriority();
+            int intersection = getCommonProducts(installed, group).size();
+            boolean roleNeeded = !getCommonRole(role, group).isEmpty();
+            boolean addonsNeeded = !getCommonAddons(addons, group).isEmpty();
+            double groupPoolQuantity = group.getTotalQuantity();
+            int groupNumHostSpecific = group.numHostSpecific();
+            int groupNumVirtOnly = group.numVirtOnly();
+
+            if (!roleNeeded && !addonsNeeded && (intersection <= 0 ||
+                (hostSpecificFound && groupNumHostSpecific < bestNumHostSpecific) ||
+                (virtOnlyFound && groupNumVirtOnly < bestNumVirtOnly))) {
+                // Skip this group if we've found virt or host_specific and this group is not.
+                continue;
+            }
+
+            boolean newBestFound = false;
+            if (groupNumHostSpecific > bestNumHostSpecific) {
+                hostSpecificFound = true;
+                newBestFound = true;
+            }
+            else if (groupNumHostSpecific < bestNumHostSpecific) {
+                newBestFound = false;
+            }
+            else if (groupNumVirtOnly > bestNumVirtOnly) {
+                virtOnlyFound = true;
+                newBestFound = true;
+            }
+            else if (groupNumVirtOnly < bestNumVirtOnly) {
+                newBestFound = false;
+            }
+            else if (groupAvgPriority > bestAvgPriority) {
+                newBestFound = true;
+            }
+            else if (groupAvgPriority < bestAvgPriority) {
+                newBestFound = false;
+            }
+            else if (groupPoolQuantity < totalPoolQuantity) {
+                newBestFound = true;
+            }
+            else if (groupPoolQuantity > totalPoolQuantity) {
+                newBestFound = false;
+            }
+            else if (stacked && !group.isStackable()) {
+                newBestFound = true;
+            }
+            else if (roleNeeded || addonsNeeded) {
+                newBestFound = true;
+            }
+
+            if (newBestFound) {
+                stacked = group.isStackable();
+                totalPoolQuantity = groupPoolQuantity;
+                bestAvgPriority = groupAvgPriority;
+                best = group;
+                bestNumHostSpecific = groupNumHostSpecific;
+                bestNumVirtOnly = groupNumVirtOnly;
+            }
+        }
+
+        return best;
+    }
+
+    private static List<EntitlementGroup> getBestEntitlementGroups(List<EntitlementGroup> groups,
+        List<String> installed, Collection<String> partialStackIds, String role, List<String> addons) {
+
+        List<EntitlementGroup> best = new ArrayList<>();
+
+        for (String stackId : partialStackIds) {
+            for (EntitlementGroup group : groups) {
+                if (Objects.equals(group.getStackId(), stackId)) {
+                    // Other stacks don't have to worry about the products this stack is handling
+                    List<String> inCommon = getCommonProducts(installed, group);
+                    group.setInstalled(inCommon);
+                    best.add(group);
+                    installed.removeAll(inCommon);
+                }
+            }
+        }
+
+        EntitlementGroup group = findBestEntGroup(groups, installed, role, addons);
+        while (group != null) {
+            best.add(group);
+
+            List<String> productsInCommon = getCommonProducts(installed, group);
+            installed.removeAll(productsInCommon);
+            group.setInstalled(productsInCommon);
+
+            addons.removeAll(getCommonAddons(addons, group));
+
+            if (getCommonRole(role, group).contains(role)) {
+                role = "";
+            }
+
+            group = findBestEntGroup(groups, installed, role, addons);
+        }
+
+        return best;
+    }
+
+}
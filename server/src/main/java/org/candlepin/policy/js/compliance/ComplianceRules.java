@@ -72,11 +72,14 @@ public class ComplianceRules {
     private ConsumerTypeCurator consumerTypeCurator;
     private RulesObjectMapper mapper;
     private ModelTranslator translator;
+    private IncrementalComplianceCache complianceCache;
+    private ComplianceStatusCache statusCache;
 
     @Inject
     public ComplianceRules(JsRunner jsRules, EntitlementCurator entCurator,
         StatusReasonMessageGenerator generator, EventSink eventSink, ConsumerCurator consumerCurator,
-        ConsumerTypeCurator consumerTypeCurator, RulesObjectMapper mapper, ModelTranslator translator) {
+        ConsumerTypeCurator consumerTypeCurator, RulesObjectMapper mapper, ModelTranslator translator,
+        IncrementalComplianceCache complianceCache, ComplianceStatusCache statusCache) {
 
         this.jsRules = jsRules;
         this.entCurator = entCurator;
@@ -86,6 +89,8 @@ public class ComplianceRules {
         this.consumerTypeCurator = consumerTypeCurator;
         this.mapper = mapper;
         this.translator = translator;
+        this.complianceCache = complianceCache;
+        this.statusCache = statusCache;
 
         jsRules.init("compliance_name_space");
     }
@@ -167,15 +172,6 @@ public class ComplianceRules {
             updateEntsOnStart(consumer);
         }
 
-        Stream<EntitlementDTO> entStream = Stream.concat(
-            newEntitlements != null ? newEntitlements.stream() : Stream.empty(),
-            consumer.getEntitlements() != null ? consumer.getEntitlements().stream() : Stream.empty())
-                .map(this.translator.getStreamMapper(Entitlement.class, EntitlementDTO.class));
-
-        Stream<GuestIdDTO> guestIdStream = consumer.getGuestIds() == null ? Stream.empty() :
-            consumer.getGuestIds().stream()
-                .map(this.translator.getStreamMapper(GuestId.class, GuestIdDTO.class));
-
         // Do not calculate compliance status for distributors. It is prohibitively
         // expensive and meaningless
         ConsumerType ctype = this.consumerTypeCurator.getConsumerType(consumer);
@@ -183,19 +179,40 @@ public class ComplianceRules {
             return new ComplianceStatus(new Date());
         }
 
-        JsonJsContext args = new JsonJsContext(mapper);
-        args.put("consumer", this.translator.translate(consumer, ConsumerDTO.class));
-        args.put("entitlements", entStream);
-        args.put("ondate", date);
-        args.put("calculateCompliantUntil", calculateCompliantUntil);
-        args.put("calculateProductComplianceDateRanges", calculateProductComplianceDateRanges);
-        args.put("log", log, false);
-        args.put("guestIds", guestIdStream);
+        // Statuses calculated with unpersisted entitlements or date ranges are never cached
+        ComplianceStatusCache.Fingerprint fingerprint = null;
+        ComplianceStatusDTO statusDTO = null;
+
+        if (this.statusCache.isEnabled() && consumer.getId() != null &&
+            (newEntitlements == null || newEntitlements.isEmpty()) && !calculateProductComplianceDateRanges) {
+
+            fingerprint = this.statusCache.getFingerprint(consumer);
+            statusDTO = this.statusCache.get(fingerprint, date, calculateCompliantUntil);
+        }
+
+        if (statusDTO == null) {
+            List<EntitlementDTO> entitlements = Stream.concat(
+                newEntitlements != null ? newEntitlements.stream() : Stream.empty(),
+                consumer.getEntitlements() != null ? consumer.getEntitlements().stream() : Stream.empty())
+                    .map(this.translator.getStreamMapper(Entitlement.class, EntitlementDTO.class))
+                    .collect(Collectors.toList());
+
+            List<GuestIdDTO> guestIds = consumer.getGuestIds() == null ? Collections.emptyList() :
+                consumer.getGuestIds().stream()
+                    .map(this.translator.getStreamMapper(GuestId.class, GuestIdDTO.class))
+                    .collect(Collectors.toList());
+
+            statusDTO = this.calculateStatus(
+                this.translator.translate(consumer, ConsumerDTO.class), entitlements, guestIds, date,
+                calculateCompliantUntil, calculateProductComplianceDateRanges);
+
+            // Only current statuses are stored, so checks on other dates don't displace them
+            if (fingerprint != null && currentCompliance) {
+                this.statusCache.put(fingerprint, date, calculateCompliantUntil, statusDTO);
+            }
+        }
 
-        // Convert the JSON returned into a ComplianceStatus object:
-        String json = jsRules.runJsFunction(String.class, "get_status", args);
         try {
-            ComplianceStatusDTO statusDTO = mapper.toObject(json, ComplianceStatusDTO.class);
             ComplianceStatus status = new ComplianceStatus();
             Set<Entitlement> allEntitlements = Stream.concat(
                 newEntitlements != null ? newEntitlements.stream() : Stream.empty(),
@@ -218,6 +235,59 @@ public class ComplianceRules {
         }
     }
 
+    /**
+     * Calculates the compliance status of a consumer with the given entitlements, using either the
+     * rules or the incremental compliance engine.
+     *
+     * @param consumer
+     *  the consumer to check
+     *
+     * @param entitlements
+     *  the entitlements of the consumer
+     *
+     * @param guestIds
+     *  the guests of the consumer
+     *
+     * @param date
+     *  the date to check compliance status for
+     *
+     * @param calculateCompliantUntil
+     *  whether or not to calculate how long the consumer will remain compliant
+     *
+     * @param calculateProductComplianceDateRanges
+     *  whether or not to calculate the individual compliance ranges for each product
+     *
+     * @return
+     *  the compliance status of the consumer
+     */
+    protected ComplianceStatusDTO calculateStatus(ConsumerDTO consumer, List<EntitlementDTO> entitlements,
+        List<GuestIdDTO> guestIds, Date date, boolean calculateCompliantUntil,
+        boolean calculateProductComplianceDateRanges) {
+
+        if (this.complianceCache.isEnabled()) {
+            return this.complianceCache.getStatus(consumer, entitlements, guestIds, date,
+                calculateCompliantUntil, calculateProductComplianceDateRanges);
+        }
+
+        JsonJsContext args = new JsonJsContext(mapper);
+        args.put("consumer", consumer);
+        args.put("entitlements", entitlements);
+        args.put("ondate", date);
+        args.put("calculateCompliantUntil", calculateCompliantUntil);
+        args.put("calculateProductComplianceDateRanges", calculateProductComplianceDateRanges);
+        args.put("log", log, false);
+        args.put("guestIds", guestIds);
+
+        // Convert the JSON returned into a ComplianceStatus object:
+        String json = jsRules.runJsFunction(String.class, "get_status", args);
+        try {
+            return mapper.toObject(json, ComplianceStatusDTO.class);
+        }
+        catch (Exception e) {
+            throw new RuleExecutionException(e);
+        }
+    }
+
     public void updateEntsOnStart(Consumer c) {
         for (Entitlement ent : c.getEntitlements()) {
             if (!ent.isUpdatedOnStart() && ent.isValid()) {
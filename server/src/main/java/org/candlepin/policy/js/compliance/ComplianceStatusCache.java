@@ -0,0 +1,364 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.dto.rules.v1.ComplianceStatusDTO;
+import org.candlepin.model.CachedComplianceStatus;
+import org.candlepin.model.CachedComplianceStatusCurator;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.Entitlement;
+import org.candlepin.policy.js.JsRunnerProvider;
+import org.candlepin.policy.js.RulesObjectMapper;
+import org.candlepin.policy.js.compliance.hash.ComplianceInputHasher;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Singleton;
+
+
+
+/**
+ * The ComplianceStatusCache persists the last compliance status calculated for each consumer, so
+ * that it can be reused rather than running the rules again for as long as nothing it was
+ * calculated from has changed.
+ *
+ * A cached status is keyed on fingerprints of its inputs: the version of the rules, the consumer's
+ * type, compliance-related facts, installed products and guests, and the IDs and versions of its
+ * entitlements. As the status also depends on the date it was calculated for, it is only valid up
+ * to the next date on which any of the consumer's entitlements starts or ends.
+ */
+@Singleton
+public class ComplianceStatusCache implements ComplianceStatusCacheMXBean {
+    private static Logger log = LoggerFactory.getLogger(ComplianceStatusCache.class);
+
+    /** The consumer facts read by the compliance rules */
+    private static final List<String> COMPLIANCE_FACTS = Collections.unmodifiableList(Arrays.asList(
+        "cpu.cpu_socket(s)", "cpu.core(s)_per_socket", "memory.memtotal", "uname.machine",
+        "virt.is_guest", "band.storage.usage"));
+
+    /**
+     * The reasons for which a cached compliance status can no longer be used.
+     */
+    public enum InvalidationReason {
+        /** The rules have been updated since the status was calculated */
+        RULES_CHANGED,
+
+        /** The consumer's facts, installed products, type or guests have changed */
+        CONSUMER_CHANGED,
+
+        /** An entitlement of the consumer, or its pool, was added, removed or changed */
+        ENTITLEMENTS_CHANGED,
+
+        /** An entitlement of the consumer starts or ends between the cached and requested dates */
+        DATE_OUT_OF_RANGE,
+
+        /** The cached status does not include the compliant until date requested */
+        COMPLIANT_UNTIL_MISSING
+    }
+
+    /**
+     * The fingerprint of the inputs of a compliance calculation for a given consumer.
+     */
+    public static class Fingerprint {
+        private final String consumerId;
+        private final String rulesVersion;
+        private final String consumerHash;
+        private final String entitlementsHash;
+
+        /** The sorted times at which any of the consumer's entitlements starts or ends */
+        private final long[] boundaries;
+
+        Fingerprint(String consumerId, String rulesVersion, String consumerHash, String entitlementsHash,
+            long[] boundaries) {
+
+            this.consumerId = consumerId;
+            this.rulesVersion = rulesVersion;
+            this.consumerHash = consumerHash;
+            this.entitlementsHash = entitlementsHash;
+            this.boundaries = boundaries;
+        }
+
+        public String getConsumerId() {
+            return this.consumerId;
+        }
+    }
+
+    private final boolean enabled;
+    private final CachedComplianceStatusCurator curator;
+    private final JsRunnerProvider jsProvider;
+    private final RulesObjectMapper mapper;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final Map<InvalidationReason, AtomicLong> invalidations = new EnumMap<>(InvalidationReason.class);
+
+    @Inject
+    public ComplianceStatusCache(Configuration config, CachedComplianceStatusCurator curator,
+        JsRunnerProvider jsProvider, RulesObjectMapper mapper) {
+
+        this.enabled = config.getBoolean(ConfigProperties.COMPLIANCE_CACHE_ENABLED, false);
+        this.curator = curator;
+        this.jsProvider = jsProvider;
+        this.mapper = mapper;
+
+        for (InvalidationReason reason : InvalidationReason.values()) {
+            this.invalidations.put(reason, new AtomicLong());
+        }
+    }
+
+    /**
+     * Checks whether compliance statuses should be cached.
+     *
+     * @return
+     *  true if the compliance status cache is enabled; false otherwise
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Builds the fingerprint of the current inputs of a compliance calculation for the given
+     * consumer.
+     *
+     * @param consumer
+     *  the consumer to fingerprint; must be persisted
+     *
+     * @return
+     *  the fingerprint of the consumer's compliance inputs
+     */
+    public Fingerprint getFingerprint(Consumer consumer) {
+        if (consumer == null || consumer.getId() == null) {
+            throw new IllegalArgumentException("consumer is null or has not been persisted");
+        }
+
+        Collection<Entitlement> entitlements = consumer.getEntitlements() != null ?
+            consumer.getEntitlements() : Collections.<Entitlement>emptySet();
+
+        // An entitlement is active from its start date through its end date, and the compliant
+        // until date considers every end date after the date being checked.
+        long[] boundaries = new long[entitlements.size() * 3];
+        int i = 0;
+        for (Entitlement entitlement : entitlements) {
+            long endDate = getTime(entitlement.getEndDate());
+
+            boundaries[i++] = getTime(entitlement.getStartDate());
+            boundaries[i++] = endDate;
+            boundaries[i++] = endDate + 1;
+        }
+        Arrays.sort(boundaries);
+
+        return new Fingerprint(consumer.getId(), this.jsProvider.getRulesVersion(),
+            ComplianceInputHasher.hashConsumer(consumer, COMPLIANCE_FACTS),
+            ComplianceInputHasher.hashEntitlements(entitlements), boundaries);
+    }
+
+    /**
+     * Fetches the cached compliance status for the consumer with the given fingerprint.
+     *
+     * @param fingerprint
+     *  the fingerprint of the consumer's current compliance inputs
+     *
+     * @param date
+     *  the date the status is requested for
+     *
+     * @param calculateCompliantUntil
+     *  whether or not the status should include the date until which the consumer remains compliant
+     *
+     * @return
+     *  the cached compliance status, or null if no valid status has been cached for the consumer
+     */
+    public ComplianceStatusDTO get(Fingerprint fingerprint, Date date, boolean calculateCompliantUntil) {
+        CachedComplianceStatus cached = this.curator.get(fingerprint.consumerId);
+        if (cached == null) {
+            this.misses.incrementAndGet();
+            return null;
+        }
+
+        InvalidationReason reason = this.validate(cached, fingerprint, date, calculateCompliantUntil);
+        if (reason != null) {
+            log.debug("Cached compliance status for consumer {} is no longer valid: {}",
+                fingerprint.consumerId, reason);
+
+            this.invalidations.get(reason).incrementAndGet();
+            this.misses.incrementAndGet();
+            return null;
+        }
+
+        ComplianceStatusDTO status;
+        try {
+            status = this.mapper.toObject(new String(cached.getStatus(), StandardCharsets.UTF_8),
+                ComplianceStatusDTO.class);
+        }
+        catch (RuntimeException e) {
+            log.warn("Unable to read cached compliance status for consumer {}", fingerprint.consumerId, e);
+            this.misses.incrementAndGet();
+            return null;
+        }
+
+        status.setDate(date);
+        if (!calculateCompliantUntil) {
+            status.setCompliantUntil(null);
+        }
+
+        this.hits.incrementAndGet();
+        return status;
+    }
+
+    /**
+     * Caches the given compliance status for the consumer with the given fingerprint, replacing any
+     * status previously cached for the consumer.
+     *
+     * @param fingerprint
+     *  the fingerprint of the compliance inputs the status was calculated from
+     *
+     * @param date
+     *  the date the status was calculated for
+     *
+     * @param compliantUntilCalculated
+     *  whether or not the date until which the consumer remains compliant was calculated
+     *
+     * @param status
+     *  the status to cache
+     */
+    public void put(Fingerprint fingerprint, Date date, boolean compliantUntilCalculated,
+        ComplianceStatusDTO status) {
+
+        byte[] serialized;
+        try {
+            serialized = this.mapper.toJsonString(status).getBytes(StandardCharsets.UTF_8);
+        }
+        catch (JsonProcessingException e) {
+            log.warn("Unable to cache compliance status for consumer {}", fingerprint.consumerId, e);
+            return;
+        }
+
+        // The status remains valid until the next entitlement boundary after the date, and was
+        // equally valid since the last one.
+        long time = date.getTime();
+        Long validFrom = null;
+        Long validUntil = null;
+        for (long boundary : fingerprint.boundaries) {
+            if (boundary > time) {
+                validUntil = boundary;
+                break;
+            }
+
+            validFrom = boundary;
+        }
+
+        CachedComplianceStatus cached = new CachedComplianceStatus(fingerprint.consumerId);
+        cached.setRulesVersion(fingerprint.rulesVersion);
+        cached.setConsumerHash(fingerprint.consumerHash);
+        cached.setEntitlementsHash(fingerprint.entitlementsHash);
+        cached.setValidFrom(validFrom != null ? new Date(validFrom) : null);
+        cached.setValidUntil(validUntil != null ? new Date(validUntil) : null);
+        cached.setCompliantUntilCalculated(compliantUntilCalculated);
+        cached.setStatus(serialized);
+
+        this.curator.store(cached);
+    }
+
+    private InvalidationReason validate(CachedComplianceStatus cached, Fingerprint fingerprint, Date date,
+        boolean calculateCompliantUntil) {
+
+        if (!Objects.equals(cached.getRulesVersion(), fingerprint.rulesVersion)) {
+            return InvalidationReason.RULES_CHANGED;
+        }
+
+        if (!Objects.equals(cached.getConsumerHash(), fingerprint.consumerHash)) {
+            return InvalidationReason.CONSUMER_CHANGED;
+        }
+
+        if (!Objects.equals(cached.getEntitlementsHash(), fingerprint.entitlementsHash)) {
+            return InvalidationReason.ENTITLEMENTS_CHANGED;
+        }
+
+        if ((cached.getValidFrom() != null && date.before(cached.getValidFrom())) ||
+            (cached.getValidUntil() != null && !date.before(cached.getValidUntil()))) {
+            return InvalidationReason.DATE_OUT_OF_RANGE;
+        }
+
+        if (calculateCompliantUntil && !cached.isCompliantUntilCalculated()) {
+            return InvalidationReason.COMPLIANT_UNTIL_MISSING;
+        }
+
+        return null;
+    }
+
+    /*
+     * The rules parse missing dates as the epoch
+     */
+    private static long getTime(Date date) {
+        return date != null ? date.getTime() : 0;
+    }
+
+    @Override
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long hits = this.getHitCount();
+        long total = hits + this.getMissCount();
+
+        return total > 0 ? (double) hits / total : 0;
+    }
+
+    /**
+     * @param reason
+     *  the invalidation reason to fetch the count of
+     *
+     * @return
+     *  the number of cached statuses found to be invalid for the given reason
+     */
+    public long getInvalidationCount(InvalidationReason reason) {
+        return this.invalidations.get(reason).get();
+    }
+
+    @Override
+    public Map<String, Long> getInvalidationCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Map.Entry<InvalidationReason, AtomicLong> entry : this.invalidations.entrySet()) {
+            counts.put(entry.getKey().name(), entry.getValue().get());
+        }
+
+        return counts;
+    }
+
+}
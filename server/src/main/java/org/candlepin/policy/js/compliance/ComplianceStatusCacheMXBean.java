@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import java.util.Map;
+
+
+
+/**
+ * The statistics of the compliance status cache, as exposed over JMX.
+ */
+public interface ComplianceStatusCacheMXBean {
+
+    /**
+     * @return
+     *  the number of compliance calculations served from the cache
+     */
+    long getHitCount();
+
+    /**
+     * @return
+     *  the number of compliance calculations which could not be served from the cache
+     */
+    long getMissCount();
+
+    /**
+     * @return
+     *  the ratio of calculations served from the cache to all cacheable calculations, or 0 if no
+     *  calculations have been made
+     */
+    double getHitRatio();
+
+    /**
+     * @return
+     *  the number of cached statuses found to be invalid, by the reason they were invalid
+     */
+    Map<String, Long> getInvalidationCounts();
+
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+
+/**
+ * The ComplianceTracker class tracks the values accumulated by a single entitlement or a stack
+ * of entitlements, as createComplianceTracker does in the rules. Accumulated values are either
+ * numbers, or the list of supported architecture strings for the "arch" attribute.
+ */
+class ComplianceTracker {
+
+    private final RulesConsumer consumer;
+    private final List<String> entitlementIds;
+    private final Map<String, Object> accumulatedValues;
+    private String hostRestricted;
+    private boolean empty;
+
+    ComplianceTracker(RulesConsumer consumer) {
+        this.consumer = consumer;
+        this.entitlementIds = new ArrayList<>();
+        this.accumulatedValues = new HashMap<>();
+        this.hostRestricted = null;
+        this.empty = true;
+    }
+
+    /**
+     * Creates a tracker enforcing the product attributes set on the given pool, without
+     * accumulating any quantity from it (createComplianceTrackerFromPool).
+     */
+    static ComplianceTracker fromPool(RulesPool pool, RulesConsumer consumer) {
+        ComplianceTracker tracker = new ComplianceTracker(consumer);
+        tracker.updateAccumulatedFromPool(pool, 0);
+        return tracker;
+    }
+
+    boolean isEmpty() {
+        return this.empty;
+    }
+
+    Object getAccumulatedValue(String attribute) {
+        return this.accumulatedValues.get(attribute);
+    }
+
+    void setAccumulatedValue(String attribute, Object value) {
+        this.accumulatedValues.put(attribute, value);
+    }
+
+    /**
+     * Determines whether the given attribute is enforced by the tracker. Guests are not subjected
+     * to RAM or vCPU limits when using a host restricted pool.
+     */
+    boolean enforces(String attribute) {
+        if (this.hostRestricted != null && this.consumer.isGuest() &&
+            (RulesConsumer.RAM_ATTRIBUTE.equals(attribute) ||
+            RulesConsumer.VCPU_ATTRIBUTE.equals(attribute))) {
+            return false;
+        }
+
+        return this.accumulatedValues.containsKey(attribute);
+    }
+
+    /**
+     * Updates the accumulated values as if the given quantity of entitlements from the pool had
+     * been added to the tracker.
+     */
+    void updateAccumulatedFromPool(RulesPool pool, double quantity) {
+        if (quantity > 0) {
+            this.empty = false;
+        }
+
+        String requiresHost = pool.getAttribute(RulesPool.REQUIRES_HOST_ATTRIBUTE);
+        if (JsValues.isTruthy(requiresHost)) {
+            this.hostRestricted = requiresHost;
+        }
+
+        for (String attribute : this.consumer.getComplianceAttributes()) {
+            String poolValue = pool.getProductAttribute(attribute);
+            if (poolValue != null) {
+                Object stackValue = this.enforces(attribute) ? this.getAccumulatedValue(attribute) : null;
+                this.setAccumulatedValue(attribute,
+                    accumulate(attribute, stackValue, poolValue, pool, quantity));
+            }
+        }
+    }
+
+    /**
+     * Updates the accumulated values from the given entitlement. Each entitlement is only added
+     * once, using the same ID lookup the rules perform.
+     */
+    void updateAccumulatedFromEnt(RulesEntitlement entitlement) {
+        if (JsValues.isIndexOf(entitlement.getId(), this.entitlementIds)) {
+            // This entitlement was already added.
+            return;
+        }
+
+        this.empty = false;
+        this.entitlementIds.add(entitlement.getId());
+
+        // If quantity is > 1 but the entitlement is not stacked only calculate compliance for
+        // quantity 1
+        double quantity = entitlement.getQuantity();
+        if (!entitlement.getPool().isStacked() && quantity > 1) {
+            quantity = 1;
+        }
+
+        this.updateAccumulatedFromPool(entitlement.getPool(), quantity);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object accumulate(String attribute, Object currentValue, String poolValue, RulesPool pool,
+        double quantity) {
+
+        switch (attribute) {
+            case RulesConsumer.ARCH_ATTRIBUTE:
+                // Architecture is accumulated as a list of comma separated arch strings
+                List<String> archs = currentValue != null ? (List<String>) currentValue : new ArrayList<>();
+                archs.add(poolValue);
+                return archs;
+
+            case RulesConsumer.SOCKETS_ATTRIBUTE:
+                double increment = JsValues.parseInt(pool.getProductAttribute(RulesPool.INSTANCE_ATTRIBUTE));
+                if (Double.isNaN(increment) || increment == 0) {
+                    increment = 1;
+                }
+
+                // use lowest quantity evenly divisible by the instance multiplier
+                double adjustedQuantity = quantity - (quantity % increment);
+                return toInt32(currentValue) +
+                    ((JsValues.parseInt(poolValue) * adjustedQuantity) / increment);
+
+            case RulesConsumer.GUEST_LIMIT_ATTRIBUTE:
+                // The value doesn't matter, it just needs to be enforced
+                return -1.0;
+
+            default:
+                return toInt32(currentValue) + (JsValues.parseInt(poolValue) * quantity);
+        }
+    }
+
+    private static double toInt32(Object value) {
+        return value instanceof Double ? JsValues.toInt32((Double) value) : 0;
+    }
+
+}
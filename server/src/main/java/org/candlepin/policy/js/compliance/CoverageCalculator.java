@@ -0,0 +1,387 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import org.candlepin.dto.rules.v1.ComplianceReasonDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+
+
+/**
+ * The CoverageCalculator class determines how much of a consumer is covered by a single
+ * entitlement or a stack of entitlements. It mirrors the CoverageCalculator, Compliance coverage
+ * and Quantity functions of the rules which autobind depends on.
+ */
+public final class CoverageCalculator {
+
+    /** Stackable attributes which do not affect the quantity needed to make a stack valid */
+    private static final List<String> ATTRIBUTES_NOT_AFFECTING_QUANTITY = Collections.unmodifiableList(
+        Arrays.asList(RulesConsumer.ARCH_ATTRIBUTE, RulesConsumer.GUEST_LIMIT_ATTRIBUTE));
+
+    private CoverageCalculator() {
+        // Intentionally left empty
+    }
+
+    /**
+     * The Coverage class represents the coverage of a consumer by a tracker. The keys of the
+     * reasons are the upper-cased names of the attributes which are not covered.
+     */
+    public static final class Coverage {
+        private final boolean covered;
+        private final List<String> reasons;
+
+        private Coverage(boolean covered, List<String> reasons) {
+            this.covered = covered;
+            this.reasons = reasons;
+        }
+
+        public boolean isCovered() {
+            return this.covered;
+        }
+
+        public List<String> getReasons() {
+            return this.reasons;
+        }
+    }
+
+    /**
+     * Determines the coverage provided by the stack with the given ID, built from the stacked
+     * entitlements in the given list (Compliance.getStackCoverage).
+     *
+     * @return
+     *  the coverage of the stack
+     */
+    public static Coverage getStackCoverage(RulesConsumer consumer, String stackId,
+        List<RulesEntitlement> entitlements) {
+
+        ComplianceTracker tracker = new ComplianceTracker(consumer);
+
+        for (RulesEntitlement entitlement : entitlements) {
+            RulesPool pool = entitlement.getPool();
+            if (pool.isStacked() &&
+                Objects.equals(pool.getProductAttribute(RulesPool.STACKING_ID_ATTRIBUTE), stackId)) {
+                tracker.updateAccumulatedFromEnt(entitlement);
+            }
+        }
+
+        return getTrackerStackCoverage(tracker, consumer, entitlements);
+    }
+
+    /**
+     * Determines the coverage provided by a single entitlement (Compliance.getEntitlementCoverage).
+     *
+     * @return
+     *  the coverage of the entitlement
+     */
+    public static Coverage getEntitlementCoverage(RulesConsumer consumer, RulesEntitlement entitlement,
+        List<RulesEntitlement> entitlements) {
+
+        ComplianceTracker tracker = new ComplianceTracker(consumer);
+        tracker.updateAccumulatedFromEnt(entitlement);
+        return getTrackerStackCoverage(tracker, consumer, entitlements);
+    }
+
+    /**
+     * Determines the coverage provided by the given tracker, after applying the global attributes
+     * calculated over all of the given entitlements (CoverageCalculator.getStackCoverage).
+     */
+    static Coverage getTrackerStackCoverage(ComplianceTracker tracker, RulesConsumer consumer,
+        List<RulesEntitlement> entitlements) {
+
+        // guest_limit is the only global attribute; it is considered across all entitlements
+        if (tracker.enforces(RulesConsumer.GUEST_LIMIT_ATTRIBUTE)) {
+            tracker.setAccumulatedValue(RulesConsumer.GUEST_LIMIT_ATTRIBUTE,
+                getGlobalGuestLimit(entitlements));
+        }
+
+        return getCoverageForTracker(tracker, consumer);
+    }
+
+    /**
+     * Determines the coverage provided by the given tracker, using a global guest limit which has
+     * already been calculated over all of the entitlements being considered.
+     */
+    static Coverage getTrackerStackCoverage(ComplianceTracker tracker, RulesConsumer consumer,
+        Double globalGuestLimit) {
+
+        if (tracker.enforces(RulesConsumer.GUEST_LIMIT_ATTRIBUTE)) {
+            tracker.setAccumulatedValue(RulesConsumer.GUEST_LIMIT_ATTRIBUTE, globalGuestLimit);
+        }
+
+        return getCoverageForTracker(tracker, consumer);
+    }
+
+    /**
+     * Calculates the guest limit provided by the given entitlements as a whole
+     * (GlobalAttributeCalculator); null if none of them sets a guest limit.
+     */
+    static Double getGlobalGuestLimit(List<RulesEntitlement> entitlements) {
+        Double total = null;
+
+        for (RulesEntitlement entitlement : entitlements) {
+            RulesPool pool = entitlement.getPool();
+            String value = pool.getProductAttribute(RulesConsumer.GUEST_LIMIT_ATTRIBUTE);
+
+            if (value != null) {
+                if (total == null) {
+                    total = 0.0;
+                }
+
+                double poolValue = JsValues.parseInt(value);
+                if (poolValue == -1) {
+                    return poolValue;
+                }
+
+                if (poolValue > total) {
+                    total = poolValue;
+                }
+            }
+        }
+
+        return total;
+    }
+
+    private static Coverage getCoverageForTracker(ComplianceTracker tracker, RulesConsumer consumer) {
+        List<String> complianceAttributes = consumer.getComplianceAttributes();
+        List<String> reasons = new ArrayList<>();
+        int coverageCount = 0;
+
+        for (String attribute : complianceAttributes) {
+            // if the value doesn't exist we do not enforce it.
+            if (!tracker.enforces(attribute) || isCovered(tracker, attribute, consumer)) {
+                coverageCount++;
+            }
+            else {
+                reasons.add(attribute.toUpperCase());
+            }
+        }
+
+        return new Coverage(coverageCount == complianceAttributes.size(), reasons);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean isCovered(ComplianceTracker tracker, String attribute, RulesConsumer consumer) {
+        Object sourceValue = tracker.getAccumulatedValue(attribute);
+
+        switch (attribute) {
+            case RulesConsumer.ARCH_ATTRIBUTE:
+                String consumerArch = consumer.getFactValue(RulesConsumer.ARCH_FACT);
+                boolean system = "system".equals(consumer.getTypeLabel());
+
+                for (String archString : (List<String>) sourceValue) {
+                    if (!architectureMatches(archString, consumerArch, system)) {
+                        return false;
+                    }
+                }
+
+                return true;
+
+            case RulesConsumer.GUEST_LIMIT_ATTRIBUTE:
+                // Same as the default, except -1 is unlimited
+                double limit = parseInt(sourceValue);
+                return (sourceValue != null && (Double) sourceValue == -1) ||
+                    limit >= consumer.getFact(attribute);
+
+            default:
+                return parseInt(sourceValue) >= consumer.getFact(attribute);
+        }
+    }
+
+    /**
+     * Builds the status reasons for the attributes the given tracker does not cover, as the
+     * conditions of the rules' CoverageCalculator do. The tracker must already have had its
+     * coverage determined, so that its global attributes are set.
+     *
+     * @param tracker
+     *  the tracker to build reasons for
+     *
+     * @param consumer
+     *  the consumer being covered
+     *
+     * @param stackId
+     *  the ID of the stack tracked, or null if the tracker was not created for a stack
+     *
+     * @param entitlementId
+     *  the ID of the first entitlement added to the tracker; only used when stackId is null
+     *
+     * @return
+     *  the reasons the tracker does not cover the consumer
+     */
+    @SuppressWarnings("unchecked")
+    public static List<ComplianceReasonDTO> getReasons(ComplianceTracker tracker, RulesConsumer consumer,
+        String stackId, String entitlementId) {
+
+        String idAttribute = stackId != null ? "stack_id" : "entitlement_id";
+        String id = stackId != null ? stackId : entitlementId;
+
+        List<ComplianceReasonDTO> reasons = new ArrayList<>();
+
+        for (String attribute : consumer.getComplianceAttributes()) {
+            if (!tracker.enforces(attribute)) {
+                continue;
+            }
+
+            Object sourceValue = tracker.getAccumulatedValue(attribute);
+
+            if (RulesConsumer.ARCH_ATTRIBUTE.equals(attribute)) {
+                String consumerArch = consumer.getFactValue(RulesConsumer.ARCH_FACT);
+                boolean system = "system".equals(consumer.getTypeLabel());
+
+                for (String archString : (List<String>) sourceValue) {
+                    if (!architectureMatches(archString, consumerArch, system)) {
+                        reasons.add(buildReason(attribute, idAttribute, id, consumerArch, archString));
+                        break;
+                    }
+                }
+            }
+            else if (!isCovered(tracker, attribute, consumer)) {
+                String covered = sourceValue instanceof Double ?
+                    JsValues.stringify((Double) sourceValue) :
+                    null;
+
+                reasons.add(buildReason(attribute, idAttribute, id, consumer.getFactAsString(attribute),
+                    covered));
+            }
+        }
+
+        return reasons;
+    }
+
+    /**
+     * Builds a reason in the form of StatusReasonGenerator.buildReason.
+     */
+    private static ComplianceReasonDTO buildReason(String attribute, String idAttribute, String id,
+        String has, String covered) {
+
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put("has", has);
+        attributes.put("covered", covered);
+        attributes.put(idAttribute, id);
+
+        String key = attribute.toUpperCase();
+        return new ComplianceReasonDTO()
+            .setKey(key)
+            .setMessage(key)
+            .setAttributes(attributes);
+    }
+
+    private static double parseInt(Object value) {
+        return value instanceof Double ? JsValues.parseInt((Double) value) : Double.NaN;
+    }
+
+    /**
+     * Checks whether the consumer architecture is one of the architectures in the given comma
+     * separated list. Non-system consumers without an architecture fact always match.
+     *
+     * @return
+     *  true if the consumer architecture is supported; false otherwise
+     */
+    public static boolean architectureMatches(String productArchs, String consumerArch,
+        boolean systemConsumer) {
+        if (!JsValues.isTruthy(consumerArch) && !systemConsumer) {
+            return true;
+        }
+
+        if (productArchs != null) {
+            List<String> supportedArchs = new ArrayList<>(
+                Arrays.asList(JsValues.split(productArchs.toUpperCase(), ",")));
+
+            // If X86 is supported, add all variants to this list:
+            if (supportedArchs.contains("X86")) {
+                supportedArchs.add("I386");
+                supportedArchs.add("I586");
+                supportedArchs.add("I686");
+            }
+
+            if (!supportedArchs.contains("ALL") && (!JsValues.isTruthy(consumerArch) ||
+                !supportedArchs.contains(consumerArch.toUpperCase()))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Determines the quantity of entitlements needed from the given pool for the tracked stack to
+     * cover the consumer (CoverageCalculator.getQuantityToCoverStack).
+     */
+    static double getQuantityToCoverStack(ComplianceTracker tracker, RulesPool pool, RulesConsumer consumer,
+        List<RulesEntitlement> entitlements) {
+
+        List<String> attributesToUse = new ArrayList<>();
+        for (String attribute : consumer.getComplianceAttributes()) {
+            if (!ATTRIBUTES_NOT_AFFECTING_QUANTITY.contains(attribute) &&
+                pool.hasProductAttribute(attribute)) {
+                attributesToUse.add(attribute);
+            }
+        }
+
+        double increment = pool.hasProductAttribute(RulesPool.INSTANCE_ATTRIBUTE) && !consumer.isGuest() ?
+            JsValues.parseInt(pool.getProductAttribute(RulesPool.INSTANCE_ATTRIBUTE)) :
+            1;
+
+        boolean covered;
+        double quantity = 0;
+        boolean startedEmpty = tracker.isEmpty();
+
+        do {
+            if (startedEmpty || quantity != 0) {
+                // If the stack is empty, we can assume at least one is needed. This works around
+                // coverage coming back as 100% because no attributes are being enforced.
+                tracker.updateAccumulatedFromPool(pool, increment);
+                quantity += increment;
+            }
+
+            startedEmpty = true;
+            Coverage coverage = getTrackerStackCoverage(tracker, consumer, entitlements);
+
+            covered = true;
+            for (String reason : coverage.getReasons()) {
+                if (attributesToUse.contains(reason.toLowerCase())) {
+                    covered = false;
+                }
+            }
+        }
+        while (!covered && (quantity + increment <= pool.getAvailable() || pool.isUnlimited()));
+
+        return quantity;
+    }
+
+    /**
+     * Suggests the quantity to take from an unlimited pool: at most the number required to cover
+     * the consumer (Quantity.get_suggested_pool_quantity).
+     *
+     * @return
+     *  the suggested quantity
+     */
+    public static double getSuggestedPoolQuantity(RulesPool pool, RulesConsumer consumer) {
+        if (pool.isMultiEnt() && pool.hasProductAttribute(RulesPool.STACKING_ID_ATTRIBUTE)) {
+            ComplianceTracker tracker = ComplianceTracker.fromPool(pool, consumer);
+            return getQuantityToCoverStack(tracker, pool, consumer,
+                Collections.<RulesEntitlement>emptyList());
+        }
+
+        return 1;
+    }
+
+}
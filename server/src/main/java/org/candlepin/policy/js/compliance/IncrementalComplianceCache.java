@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.dto.rules.v1.ComplianceStatusDTO;
+import org.candlepin.dto.rules.v1.ConsumerDTO;
+import org.candlepin.dto.rules.v1.EntitlementDTO;
+import org.candlepin.dto.rules.v1.GuestIdDTO;
+
+import com.google.inject.Inject;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Singleton;
+
+
+
+/**
+ * The IncrementalComplianceCache holds the incremental compliance calculators of the most
+ * recently checked consumers, so that each compliance calculation for a consumer only needs to
+ * evaluate the stacks and entitlements which changed since the last one.
+ *
+ * The cache only holds derived state: a calculator is replaced whenever the consumer's facts,
+ * installed products, type or guests no longer match those it was created for, and the
+ * entitlements are compared on every calculation.
+ */
+@Singleton
+public class IncrementalComplianceCache {
+    /** The value of the compliance engine setting which enables incremental compliance */
+    public static final String INCREMENTAL_ENGINE = "incremental";
+
+    private final boolean enabled;
+    private final Map<String, IncrementalComplianceCalculator> calculators;
+
+    @Inject
+    public IncrementalComplianceCache(Configuration config) {
+        this.enabled = INCREMENTAL_ENGINE.equals(
+            config.getString(ConfigProperties.COMPLIANCE_ENGINE, "rules"));
+
+        final int maxConsumers = config.getInt(ConfigProperties.COMPLIANCE_INCREMENTAL_MAX_CONSUMERS, 1000);
+        this.calculators = new LinkedHashMap<String, IncrementalComplianceCalculator>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IncrementalComplianceCalculator> eldest) {
+                return this.size() > maxConsumers;
+            }
+        };
+    }
+
+    /**
+     * Checks whether compliance should be calculated by the incremental engine rather than by the
+     * rules.
+     *
+     * @return
+     *  true if the incremental compliance engine is enabled; false otherwise
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Calculates the compliance status of the given consumer, reusing the coverage calculated for
+     * the consumer by previous calls.
+     *
+     * @param consumer
+     *  the consumer to calculate the compliance status of
+     *
+     * @param entitlements
+     *  the entitlements of the consumer
+     *
+     * @param guestIds
+     *  the guests of the consumer; may be null
+     *
+     * @param date
+     *  the date to calculate the status for
+     *
+     * @param calculateCompliantUntil
+     *  whether or not to calculate the date until which the consumer remains compliant
+     *
+     * @param calculateProductComplianceDateRanges
+     *  whether or not to calculate the compliance date ranges of the installed products
+     *
+     * @return
+     *  the compliance status of the consumer
+     */
+    public ComplianceStatusDTO getStatus(ConsumerDTO consumer, List<EntitlementDTO> entitlements,
+        List<GuestIdDTO> guestIds, Date date, boolean calculateCompliantUntil,
+        boolean calculateProductComplianceDateRanges) {
+
+        IncrementalComplianceCalculator calculator = this.getCalculator(consumer, guestIds);
+
+        synchronized (calculator) {
+            return calculator.getStatus(entitlements, date, calculateCompliantUntil,
+                calculateProductComplianceDateRanges);
+        }
+    }
+
+    /**
+     * Fetches the calculator for the given consumer, creating a new one if the consumer has no
+     * calculator, or its calculator is out of date.
+     *
+     * @param consumer
+     *  the consumer to fetch the calculator for
+     *
+     * @param guestIds
+     *  the guests of the consumer; may be null
+     *
+     * @return
+     *  a calculator for the given consumer
+     */
+    public IncrementalComplianceCalculator getCalculator(ConsumerDTO consumer, List<GuestIdDTO> guestIds) {
+        String uuid = consumer.getUuid();
+        if (uuid == null) {
+            return new IncrementalComplianceCalculator(consumer, guestIds);
+        }
+
+        synchronized (this.calculators) {
+            IncrementalComplianceCalculator calculator = this.calculators.get(uuid);
+
+            if (calculator == null || !calculator.isCurrent(consumer, guestIds)) {
+                calculator = new IncrementalComplianceCalculator(consumer, guestIds);
+                this.calculators.put(uuid, calculator);
+            }
+
+            return calculator;
+        }
+    }
+
+}
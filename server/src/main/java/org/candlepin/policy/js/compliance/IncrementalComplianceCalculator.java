@@ -0,0 +1,695 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import org.candlepin.dto.rules.v1.ComplianceReasonDTO;
+import org.candlepin.dto.rules.v1.ComplianceStatusDTO;
+import org.candlepin.dto.rules.v1.ConsumerDTO;
+import org.candlepin.dto.rules.v1.EntitlementDTO;
+import org.candlepin.dto.rules.v1.GuestIdDTO;
+import org.candlepin.dto.rules.v1.PoolDTO;
+import org.candlepin.util.DateRange;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+
+
+/**
+ * The IncrementalComplianceCalculator determines the compliance status of a single consumer as
+ * the get_status function of the rules does, but keeps the coverage of every stack and entitlement
+ * between evaluations.
+ *
+ * Each evaluation is keyed on the changes made to the consumer's entitlements since the previous
+ * one: entitlements which were added, removed or modified invalidate the coverage of the stacks
+ * they belong to, while the coverage of all other stacks and entitlements is reused. Coverage
+ * depending on the guest limit of the consumer's entitlements as a whole is only reused while
+ * that limit is unchanged.
+ *
+ * A calculator is bound to the consumer state it was created for; see {@link #isCurrent}.
+ * Instances are not thread safe.
+ */
+public class IncrementalComplianceCalculator {
+    private static Logger log = LoggerFactory.getLogger(IncrementalComplianceCalculator.class);
+
+    /** The maximum number of stack coverages kept between evaluations */
+    private static final int MAX_CACHED_STACKS = 1024;
+
+    private static final String UNMAPPED_GUESTS_ONLY_ATTRIBUTE = "unmapped_guests_only";
+
+    private final String uuid;
+    private final Map<String, String> facts;
+    private final Set<String> installedProducts;
+    private final String typeLabel;
+    private final int activeGuestCount;
+
+    private final RulesConsumer consumer;
+    private final List<String> installedProductIds;
+
+    private Map<String, TrackedEntitlement> entitlements;
+    private final Map<List<Object>, TrackedCoverage> stacks;
+
+    private long stackEvaluations;
+    private long entitlementEvaluations;
+
+    /**
+     * An entitlement of the consumer, along with everything the compliance calculation derives
+     * from it alone.
+     */
+    private static class TrackedEntitlement {
+        private final EntitlementDTO dto;
+        private final RulesEntitlement entitlement;
+        private final long startDate;
+        private final long endDate;
+        private final boolean stacked;
+        private final String stackId;
+        private final boolean unmappedGuest;
+        private final List<String> relevantProducts;
+
+        private TrackedCoverage coverage;
+
+        TrackedEntitlement(EntitlementDTO dto, List<String> installedProducts) {
+            this.dto = dto;
+            this.entitlement = RulesEntitlement.fromDTO(dto);
+
+            // Missing dates are parsed as the epoch by the rules
+            this.startDate = dto.getStartDate() != null ? dto.getStartDate().getTime() : 0;
+            this.endDate = dto.getEndDate() != null ? dto.getEndDate().getTime() : 0;
+
+            RulesPool pool = this.entitlement.getPool();
+            this.stacked = pool.isStacked();
+            this.stackId = this.stacked ? pool.getProductAttribute(RulesPool.STACKING_ID_ATTRIBUTE) : null;
+            this.unmappedGuest = JsValues.equalsIgnoreCase("true",
+                pool.getAttribute(UNMAPPED_GUESTS_ONLY_ATTRIBUTE));
+
+            this.relevantProducts = new ArrayList<>();
+            for (String productId : installedProducts) {
+                if (pool.provides(productId)) {
+                    this.relevantProducts.add(productId);
+                }
+            }
+        }
+
+        boolean isActiveOn(long date) {
+            return this.startDate <= date && this.endDate >= date;
+        }
+
+        /**
+         * Checks whether the given entitlement is the same as this one, as far as compliance is
+         * concerned.
+         */
+        boolean matches(EntitlementDTO other) {
+            PoolDTO pool = this.dto.getPool();
+            PoolDTO otherPool = other.getPool();
+
+            return Objects.equals(this.dto.getQuantity(), other.getQuantity()) &&
+                Objects.equals(this.dto.getStartDate(), other.getStartDate()) &&
+                Objects.equals(this.dto.getEndDate(), other.getEndDate()) &&
+                pool != null && otherPool != null &&
+                Objects.equals(pool.getId(), otherPool.getId()) &&
+                Objects.equals(pool.getProductId(), otherPool.getProductId()) &&
+                Objects.equals(pool.getAttributes(), otherPool.getAttributes()) &&
+                Objects.equals(pool.getProductAttributes(), otherPool.getProductAttributes()) &&
+                Objects.equals(pool.getProvidedProducts(), otherPool.getProvidedProducts());
+        }
+    }
+
+    /**
+     * The coverage of a stack or a single entitlement.
+     */
+    private static class TrackedCoverage {
+        private final boolean covered;
+        private final List<ComplianceReasonDTO> reasons;
+        private final boolean usesGuestLimit;
+        private final Double guestLimit;
+
+        TrackedCoverage(boolean covered, List<ComplianceReasonDTO> reasons, boolean usesGuestLimit,
+            Double guestLimit) {
+
+            this.covered = covered;
+            this.reasons = reasons;
+            this.usesGuestLimit = usesGuestLimit;
+            this.guestLimit = guestLimit;
+        }
+
+        boolean isValidFor(Double guestLimit) {
+            return !this.usesGuestLimit || Objects.equals(this.guestLimit, guestLimit);
+        }
+    }
+
+    /**
+     * The status of the consumer on a single date (the compStatus object of the rules).
+     */
+    private static class DateStatus {
+        private final Date date;
+        private final Map<String, Set<EntitlementDTO>> partialStacks = new HashMap<>();
+        private final Map<String, Set<EntitlementDTO>> partiallyCompliantProducts = new HashMap<>();
+        private final Map<String, Set<EntitlementDTO>> compliantProducts = new HashMap<>();
+        private final List<String> nonCompliantProducts = new ArrayList<>();
+        private final List<ComplianceReasonDTO> reasons = new ArrayList<>();
+
+        DateStatus(Date date) {
+            this.date = date;
+        }
+
+        void addPartialStack(String stackId, EntitlementDTO entitlement) {
+            this.partialStacks.computeIfAbsent(stackId, key -> new LinkedHashSet<>()).add(entitlement);
+        }
+
+        void addPartialProduct(String productId, EntitlementDTO entitlement) {
+            this.partiallyCompliantProducts.computeIfAbsent(productId, key -> new LinkedHashSet<>())
+                .add(entitlement);
+        }
+
+        void addCompliantProduct(String productId, EntitlementDTO entitlement) {
+            this.compliantProducts.computeIfAbsent(productId, key -> new LinkedHashSet<>())
+                .add(entitlement);
+        }
+
+        void addReasons(List<ComplianceReasonDTO> reasons) {
+            this.reasons.addAll(reasons);
+        }
+
+        boolean isCompliant() {
+            return this.nonCompliantProducts.isEmpty() && this.partiallyCompliantProducts.isEmpty();
+        }
+
+        boolean isPartiallyCompliant() {
+            return !this.compliantProducts.isEmpty() || !this.partiallyCompliantProducts.isEmpty();
+        }
+
+        boolean isCompliant(String productId) {
+            return this.compliantProducts.containsKey(productId);
+        }
+
+        boolean isPartiallyCompliant(String productId) {
+            return this.partiallyCompliantProducts.containsKey(productId);
+        }
+
+        ComplianceStatusDTO toDTO() {
+            List<ComplianceReasonDTO> reasons = new ArrayList<>();
+            for (ComplianceReasonDTO reason : this.reasons) {
+                // Reasons are shared with the cached coverage, and the models built from them may
+                // be modified, so each status gets copies of its own.
+                reasons.add(new ComplianceReasonDTO(reason));
+            }
+
+            return new ComplianceStatusDTO()
+                .setDate(this.date)
+                .setPartialStacks(this.partialStacks)
+                .setPartiallyCompliantProducts(this.partiallyCompliantProducts)
+                .setCompliantProducts(this.compliantProducts)
+                .setNonCompliantProducts(this.nonCompliantProducts)
+                .setReasons(reasons);
+        }
+    }
+
+    /**
+     * Creates a new calculator for the given consumer.
+     *
+     * @param consumer
+     *  the consumer to calculate the compliance status of
+     *
+     * @param guestIds
+     *  the guests of the consumer, used to determine its guest limit; may be null
+     */
+    public IncrementalComplianceCalculator(ConsumerDTO consumer, Collection<GuestIdDTO> guestIds) {
+        if (consumer == null) {
+            throw new IllegalArgumentException("consumer is null");
+        }
+
+        this.uuid = consumer.getUuid();
+        this.facts = consumer.getFacts() != null ? new HashMap<>(consumer.getFacts()) : null;
+        this.installedProducts = consumer.getInstalledProducts() != null ?
+            new HashSet<>(consumer.getInstalledProducts()) :
+            null;
+        this.typeLabel = consumer.getType() != null ? consumer.getType().getLabel() : null;
+        this.activeGuestCount = RulesConsumer.countActiveGuests(guestIds);
+
+        Map<String, List<RulesEntitlement>> none = Collections.emptyMap();
+        this.consumer = new RulesConsumer(consumer, this.activeGuestCount, none, none, none);
+        this.installedProductIds = consumer.getInstalledProducts() != null ?
+            new ArrayList<>(consumer.getInstalledProducts()) :
+            Collections.<String>emptyList();
+
+        this.entitlements = new HashMap<>();
+        this.stacks = new HashMap<>();
+    }
+
+    /**
+     * Checks whether this calculator can be used for the given consumer state: the consumer's
+     * facts, installed products, type and active guest count must be the ones the calculator was
+     * created for.
+     *
+     * @param consumer
+     *  the consumer to check
+     *
+     * @param guestIds
+     *  the guests of the consumer; may be null
+     *
+     * @return
+     *  true if the calculator can be used for the given consumer; false otherwise
+     */
+    public boolean isCurrent(ConsumerDTO consumer, Collection<GuestIdDTO> guestIds) {
+        String typeLabel = consumer.getType() != null ? consumer.getType().getLabel() : null;
+
+        return Objects.equals(this.uuid, consumer.getUuid()) &&
+            Objects.equals(this.facts, consumer.getFacts()) &&
+            Objects.equals(this.installedProducts, consumer.getInstalledProducts()) &&
+            Objects.equals(this.typeLabel, typeLabel) &&
+            this.activeGuestCount == RulesConsumer.countActiveGuests(guestIds);
+    }
+
+    /**
+     * Calculates the compliance status of the consumer with the given entitlements.
+     *
+     * @param entitlements
+     *  the entitlements of the consumer
+     *
+     * @param date
+     *  the date to calculate the status for
+     *
+     * @param calculateCompliantUntil
+     *  whether or not to calculate the date until which the consumer remains compliant
+     *
+     * @param calculateProductComplianceDateRanges
+     *  whether or not to calculate the compliance date ranges of the installed products
+     *
+     * @return
+     *  the compliance status of the consumer
+     */
+    public ComplianceStatusDTO getStatus(List<EntitlementDTO> entitlements, Date date,
+        boolean calculateCompliantUntil, boolean calculateProductComplianceDateRanges) {
+
+        long stacksBefore = this.stackEvaluations;
+        long entsBefore = this.entitlementEvaluations;
+
+        List<TrackedEntitlement> tracked = this.track(entitlements);
+        DateStatus status = this.getStatusOnDate(tracked, date);
+
+        Date compliantUntil = null;
+        Map<String, DateRange> dateRanges = null;
+
+        if (status.isCompliant() && calculateCompliantUntil && !tracked.isEmpty()) {
+            compliantUntil = this.determineCompliantUntilDate(tracked, date);
+        }
+
+        if (status.isPartiallyCompliant() && calculateProductComplianceDateRanges && !tracked.isEmpty()) {
+            dateRanges = this.getProductComplianceDateRanges(tracked, date, status);
+        }
+
+        log.debug("Calculated compliance for consumer {}: {} stacks and {} entitlements evaluated",
+            this.uuid, this.stackEvaluations - stacksBefore, this.entitlementEvaluations - entsBefore);
+
+        return status.toDTO()
+            .setCompliantUntil(compliantUntil)
+            .setProductComplianceDateRanges(dateRanges);
+    }
+
+    /**
+     * @return
+     *  the number of times the coverage of a stack has been evaluated by this calculator
+     */
+    public long getStackEvaluations() {
+        return this.stackEvaluations;
+    }
+
+    /**
+     * @return
+     *  the number of times the coverage of a single entitlement has been evaluated by this
+     *  calculator
+     */
+    public long getEntitlementEvaluations() {
+        return this.entitlementEvaluations;
+    }
+
+    /**
+     * Applies the differences between the given entitlements and those of the previous evaluation,
+     * and returns the tracked entitlements in the order given.
+     */
+    private List<TrackedEntitlement> track(List<EntitlementDTO> entitlements) {
+        Map<String, TrackedEntitlement> current = new HashMap<>();
+        List<TrackedEntitlement> ordered = new ArrayList<>(entitlements.size());
+        boolean changed = false;
+
+        for (EntitlementDTO dto : entitlements) {
+            TrackedEntitlement entitlement = dto.getId() != null ? this.entitlements.get(dto.getId()) : null;
+
+            if (entitlement == null || !entitlement.matches(dto)) {
+                entitlement = new TrackedEntitlement(dto, this.installedProductIds);
+                changed = true;
+            }
+
+            if (dto.getId() != null) {
+                current.put(dto.getId(), entitlement);
+            }
+
+            ordered.add(entitlement);
+        }
+
+        changed = changed || !current.keySet().equals(this.entitlements.keySet());
+        this.entitlements = current;
+
+        if (changed) {
+            // Drop the stacks which include entitlements that are gone or were replaced
+            Set<TrackedEntitlement> live = Collections.newSetFromMap(new IdentityHashMap<>());
+            live.addAll(ordered);
+
+            Iterator<List<Object>> keys = this.stacks.keySet().iterator();
+            while (keys.hasNext()) {
+                List<Object> key = keys.next();
+                if (!live.containsAll(key.subList(1, key.size()))) {
+                    keys.remove();
+                }
+            }
+        }
+
+        return ordered;
+    }
+
+    /**
+     * Determines the status of the consumer on the given date (Compliance.getComplianceStatusOnDate)
+     */
+    private DateStatus getStatusOnDate(List<TrackedEntitlement> entitlements, Date date) {
+        DateStatus status = new DateStatus(date);
+
+        List<TrackedEntitlement> active = new ArrayList<>();
+        List<RulesEntitlement> activeEnts = new ArrayList<>();
+        Map<String, List<TrackedEntitlement>> stackMembers = new HashMap<>();
+
+        for (TrackedEntitlement entitlement : entitlements) {
+            if (entitlement.isActiveOn(date.getTime())) {
+                active.add(entitlement);
+                activeEnts.add(entitlement.entitlement);
+
+                if (entitlement.stacked) {
+                    stackMembers.computeIfAbsent(entitlement.stackId, key -> new ArrayList<>())
+                        .add(entitlement);
+                }
+            }
+        }
+
+        Double guestLimit = CoverageCalculator.getGlobalGuestLimit(activeEnts);
+        Set<String> checkedStacks = new HashSet<>();
+
+        for (TrackedEntitlement entitlement : active) {
+            boolean partiallyStacked = false;
+
+            if (entitlement.stacked) {
+                TrackedCoverage coverage = this.getStackCoverage(entitlement.stackId,
+                    stackMembers.get(entitlement.stackId), guestLimit);
+
+                if (!coverage.covered) {
+                    partiallyStacked = true;
+                    status.addPartialStack(entitlement.stackId, entitlement.dto);
+
+                    if (checkedStacks.add(entitlement.stackId)) {
+                        status.addReasons(coverage.reasons);
+                    }
+                }
+            }
+
+            // If we have no installed products and the entitlement is partially covered, we want
+            // the system to be partial.
+            if (entitlement.relevantProducts.isEmpty() && !entitlement.stacked) {
+                TrackedCoverage coverage = this.getEntitlementCoverage(entitlement, guestLimit);
+                if (!coverage.covered) {
+                    status.addReasons(coverage.reasons);
+                }
+            }
+
+            // An entitlement from a pool for unmapped guests only can only be partial
+            if (entitlement.unmappedGuest) {
+                status.addReasons(Collections.singletonList(
+                    buildReason("UNMAPPEDGUEST", "entitlement_id", entitlement.dto.getId())));
+            }
+
+            for (String productId : entitlement.relevantProducts) {
+                if (partiallyStacked) {
+                    status.addPartialProduct(productId, entitlement.dto);
+                    continue;
+                }
+
+                TrackedCoverage coverage = !entitlement.stacked ?
+                    this.getEntitlementCoverage(entitlement, guestLimit) :
+                    null;
+
+                if (coverage != null && !coverage.covered) {
+                    status.addPartialProduct(productId, entitlement.dto);
+                    status.addReasons(coverage.reasons);
+                }
+                else {
+                    status.addCompliantProduct(productId, entitlement.dto);
+                }
+            }
+        }
+
+        // Products covered by a regular entitlement are not partially compliant, though their
+        // partial stacks are kept so they can be repaired.
+        status.partiallyCompliantProducts.keySet().removeAll(status.compliantProducts.keySet());
+
+        for (String productId : this.installedProductIds) {
+            if (!status.isCompliant(productId) && !status.isPartiallyCompliant(productId)) {
+                status.nonCompliantProducts.add(productId);
+                status.addReasons(Collections.singletonList(
+                    buildReason("NOTCOVERED", "product_id", productId)));
+            }
+        }
+
+        return status;
+    }
+
+    private TrackedCoverage getStackCoverage(String stackId, List<TrackedEntitlement> members,
+        Double guestLimit) {
+
+        List<Object> key = new ArrayList<>(members.size() + 1);
+        key.add(stackId);
+        key.addAll(members);
+
+        TrackedCoverage coverage = this.stacks.get(key);
+        if (coverage == null || !coverage.isValidFor(guestLimit)) {
+            ComplianceTracker tracker = new ComplianceTracker(this.consumer);
+            for (TrackedEntitlement member : members) {
+                tracker.updateAccumulatedFromEnt(member.entitlement);
+            }
+
+            coverage = this.evaluate(tracker, stackId, members.get(0).entitlement.getId(), guestLimit);
+            ++this.stackEvaluations;
+
+            if (this.stacks.size() >= MAX_CACHED_STACKS) {
+                this.stacks.clear();
+            }
+
+            this.stacks.put(key, coverage);
+        }
+
+        return coverage;
+    }
+
+    private TrackedCoverage getEntitlementCoverage(TrackedEntitlement entitlement, Double guestLimit) {
+        if (entitlement.coverage == null || !entitlement.coverage.isValidFor(guestLimit)) {
+            ComplianceTracker tracker = new ComplianceTracker(this.consumer);
+            tracker.updateAccumulatedFromEnt(entitlement.entitlement);
+
+            entitlement.coverage = this.evaluate(tracker, null, entitlement.entitlement.getId(), guestLimit);
+            ++this.entitlementEvaluations;
+        }
+
+        return entitlement.coverage;
+    }
+
+    /**
+     * Determines the coverage provided by the given tracker. Like the rules, reasons identify the
+     * stack the tracker was created for or, lacking a stack ID, the first entitlement it tracks.
+     */
+    private TrackedCoverage evaluate(ComplianceTracker tracker, String stackId, String entitlementId,
+        Double guestLimit) {
+
+        boolean usesGuestLimit = tracker.enforces(RulesConsumer.GUEST_LIMIT_ATTRIBUTE);
+        CoverageCalculator.Coverage coverage = CoverageCalculator.getTrackerStackCoverage(tracker,
+            this.consumer, guestLimit);
+
+        List<ComplianceReasonDTO> reasons = coverage.isCovered() ?
+            Collections.<ComplianceReasonDTO>emptyList() :
+            CoverageCalculator.getReasons(tracker, this.consumer, stackId, entitlementId);
+
+        return new TrackedCoverage(coverage.isCovered(), reasons, usesGuestLimit, guestLimit);
+    }
+
+    private static ComplianceReasonDTO buildReason(String key, String attribute, String value) {
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put(attribute, value);
+
+        return new ComplianceReasonDTO()
+            .setKey(key)
+            .setMessage(key)
+            .setAttributes(attributes);
+    }
+
+    /**
+     * Determines the date on which the consumer stops being compliant
+     * (Compliance.determineCompliantUntilDate).
+     */
+    private Date determineCompliantUntilDate(List<TrackedEntitlement> entitlements, Date startDate) {
+        if (this.installedProductIds.isEmpty()) {
+            return null;
+        }
+
+        List<Long> dates = new ArrayList<>();
+        for (TrackedEntitlement entitlement : entitlements) {
+            if (!entitlement.relevantProducts.isEmpty()) {
+                dates.add(entitlement.endDate);
+            }
+        }
+
+        Collections.sort(dates);
+
+        long lastDate = startDate.getTime();
+        for (long date : dates) {
+            // Ignore past dates and duplicates
+            if (date <= lastDate) {
+                continue;
+            }
+
+            // Check whether we are still compliant a second after the end date
+            Date dateToCheck = new Date(date + 1000);
+            lastDate = dateToCheck.getTime();
+
+            if (!this.getStatusOnDate(entitlements, dateToCheck).isCompliant()) {
+                return dateToCheck;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Determines the ranges of dates over which each installed product keeps the compliance it
+     * has on the given date (Compliance.getProductComplianceDateRanges).
+     */
+    @SuppressWarnings("checkstyle:methodlength")
+    private Map<String, DateRange> getProductComplianceDateRanges(List<TrackedEntitlement> entitlements,
+        Date ondate, DateStatus compStatus) {
+
+        Map<String, DateRange> ranges = new HashMap<>();
+
+        if (this.installedProductIds.isEmpty()) {
+            return ranges;
+        }
+
+        long[] dates = new long[entitlements.size() * 2];
+        for (int i = 0; i < entitlements.size(); i++) {
+            dates[i * 2] = entitlements.get(i).startDate;
+            dates[i * 2 + 1] = entitlements.get(i).endDate;
+        }
+
+        Arrays.sort(dates);
+
+        // Find the index of the first date in the future
+        int nextDate = 0;
+        for (int i = dates.length - 1; i >= 0; --i) {
+            if (dates[i] <= ondate.getTime()) {
+                nextDate = i + 1;
+                break;
+            }
+        }
+
+        List<String> productIds = new ArrayList<>();
+        for (String productId : this.installedProductIds) {
+            if (!compStatus.nonCompliantProducts.contains(productId)) {
+                productIds.add(productId);
+                ranges.put(productId, new DateRange());
+            }
+        }
+
+        if (productIds.isEmpty()) {
+            return ranges;
+        }
+
+        // Find the start dates. A millisecond is added to each date to move just outside the
+        // range of the entitlement the date came from.
+        int complete = 0;
+        Date lastValidDate = ondate;
+
+        for (int i = nextDate - 1; i >= 0 && complete < productIds.size(); --i) {
+            DateStatus status = this.getStatusOnDate(entitlements, new Date(dates[i] + 1));
+
+            for (String productId : productIds) {
+                DateRange range = ranges.get(productId);
+
+                if (range.getStartDate() == null &&
+                    (status.nonCompliantProducts.contains(productId) ||
+                    (compStatus.isCompliant(productId) && !status.isCompliant(productId)) ||
+                    (compStatus.isPartiallyCompliant(productId) &&
+                    !status.isPartiallyCompliant(productId)))) {
+
+                    range.setStartDate(lastValidDate);
+                    ++complete;
+                }
+            }
+
+            lastValidDate = new Date(dates[i]);
+        }
+
+        // Find the end dates
+        complete = 0;
+        for (int i = nextDate; i < dates.length && complete < productIds.size(); ++i) {
+            DateStatus status = this.getStatusOnDate(entitlements, new Date(dates[i] + 1));
+
+            for (String productId : productIds) {
+                DateRange range = ranges.get(productId);
+
+                if (range.getEndDate() == null &&
+                    (status.nonCompliantProducts.contains(productId) ||
+                    (compStatus.isCompliant(productId) && !status.isCompliant(productId)) ||
+                    (compStatus.isPartiallyCompliant(productId) && !status.isPartiallyCompliant(productId) &&
+                    !status.isCompliant(productId)))) {
+
+                    range.setEndDate(new Date(dates[i]));
+                    ++complete;
+                }
+            }
+        }
+
+        // Products which remain valid to the ends of the date range get the extremes
+        for (DateRange range : ranges.values()) {
+            if (range.getStartDate() == null) {
+                range.setStartDate(new Date(dates[0]));
+            }
+
+            if (range.getEndDate() == null) {
+                range.setEndDate(new Date(dates[dates.length - 1]));
+            }
+        }
+
+        return ranges;
+    }
+
+}
@@ -0,0 +1,352 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+
+
+/**
+ * The JsValues class provides the handful of JavaScript conversion semantics the autobind rules
+ * depend on (parseInt, ToNumber, ToInt32, Math.round and the rules' own equalsIgnoreCase), so the
+ * native solver evaluates attribute and fact values exactly the way rules.js does.
+ */
+public final class JsValues {
+
+    private static final Pattern DECIMAL_LITERAL =
+        Pattern.compile("[+-]?(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?");
+
+    private static final double TWO_TO_THE_32 = 4294967296.0;
+
+    private JsValues() {
+        // Intentionally left empty
+    }
+
+    /**
+     * Equivalent of the global parseInt function without a radix.
+     *
+     * @param value
+     *  the string to parse; null is converted to "null" as it would be in JavaScript
+     *
+     * @return
+     *  the parsed integer value, or NaN if the string does not start with a number
+     */
+    public static double parseInt(String value) {
+        if (value == null) {
+            return Double.NaN;
+        }
+
+        int length = value.length();
+        int index = skipWhitespace(value, 0, length);
+        boolean negative = false;
+
+        if (index < length && (value.charAt(index) == '+' || value.charAt(index) == '-')) {
+            negative = value.charAt(index) == '-';
+            ++index;
+        }
+
+        int radix = 10;
+        if (index + 1 < length && value.charAt(index) == '0' &&
+            (value.charAt(index + 1) == 'x' || value.charAt(index + 1) == 'X')) {
+
+            radix = 16;
+            index += 2;
+        }
+
+        int start = index;
+        double result = 0;
+        for (; index < length; ++index) {
+            int digit = digit(value.charAt(index), radix);
+            if (digit < 0) {
+                break;
+            }
+
+            result = result * radix + digit;
+        }
+
+        if (index == start) {
+            return Double.NaN;
+        }
+
+        return negative ? -result : result;
+    }
+
+    /**
+     * Equivalent of parseInt applied to a number, which converts the number to its string form
+     * before parsing it.
+     *
+     * @param value
+     *  the number to parse
+     *
+     * @return
+     *  the parsed integer value
+     */
+    public static double parseInt(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return Double.NaN;
+        }
+
+        double magnitude = Math.abs(value);
+        if (magnitude == 0) {
+            return 0;
+        }
+
+        if (magnitude >= 1e21 || magnitude < 1e-6) {
+            // The string form is exponential, so only the leading digit survives
+            double leading = Math.floor(magnitude / Math.pow(10, Math.floor(Math.log10(magnitude))));
+            return Math.copySign(leading, value);
+        }
+
+        return value < 0 ? Math.ceil(value) : Math.floor(value);
+    }
+
+    /**
+     * Equivalent of the ToNumber conversion applied to a string.
+     *
+     * @param value
+     *  the string to convert; null converts to zero
+     *
+     * @return
+     *  the numeric value of the string, or NaN if it is not a numeric literal
+     */
+    static double toNumber(String value) {
+        if (value == null) {
+            return 0;
+        }
+
+        int start = skipWhitespace(value, 0, value.length());
+        int end = value.length();
+        while (end > start && isWhitespace(value.charAt(end - 1))) {
+            --end;
+        }
+
+        if (start == end) {
+            return 0;
+        }
+
+        String trimmed = value.substring(start, end);
+        char first = trimmed.charAt(0);
+        int hexOffset = first == '+' || first == '-' ? 1 : 0;
+
+        if (trimmed.length() > hexOffset + 1 && trimmed.charAt(hexOffset) == '0' &&
+            (trimmed.charAt(hexOffset + 1) == 'x' || trimmed.charAt(hexOffset + 1) == 'X')) {
+
+            double result = 0;
+            for (int index = hexOffset + 2; index < trimmed.length(); ++index) {
+                int digit = digit(trimmed.charAt(index), 16);
+                if (digit < 0) {
+                    return Double.NaN;
+                }
+
+                result = result * 16 + digit;
+            }
+
+            if (trimmed.length() == hexOffset + 2) {
+                return Double.NaN;
+            }
+
+            return first == '-' ? -result : result;
+        }
+
+        String unsigned = hexOffset > 0 ? trimmed.substring(1) : trimmed;
+        if ("Infinity".equals(unsigned)) {
+            return first == '-' ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+
+        if (!DECIMAL_LITERAL.matcher(trimmed).matches()) {
+            return Double.NaN;
+        }
+
+        return Double.parseDouble(trimmed);
+    }
+
+    /**
+     * Equivalent of the ToInt32 conversion performed by the bitwise operators (value | 0).
+     *
+     * @param value
+     *  the value to convert
+     *
+     * @return
+     *  the value converted to a signed 32-bit integer
+     */
+    static int toInt32(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return 0;
+        }
+
+        double truncated = value < 0 ? Math.ceil(value) : Math.floor(value);
+        return (int) (long) (truncated % TWO_TO_THE_32);
+    }
+
+    /**
+     * Equivalent of Math.round, which rounds halves towards positive infinity and passes NaN
+     * through unchanged.
+     *
+     * @param value
+     *  the value to round
+     *
+     * @return
+     *  the rounded value
+     */
+    static double round(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return value;
+        }
+
+        double floor = Math.floor(value);
+        return value - floor >= 0.5 ? floor + 1 : floor;
+    }
+
+    /**
+     * Equivalent of JSON.stringify applied to a number, as the resulting JSON number would be read
+     * back into a string.
+     *
+     * @param value
+     *  the number to convert
+     *
+     * @return
+     *  the string form of the number, or null if the number is NaN or infinite
+     */
+    static String stringify(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return null;
+        }
+
+        if (value == Math.rint(value) && Math.abs(value) < 1e21) {
+            return Long.toString((long) value);
+        }
+
+        return Double.toString(value);
+    }
+
+    /**
+     * Equivalent of Utils.equalsIgnoreCase from the rules. Two null values are considered equal,
+     * but null never equals an empty string.
+     *
+     * @param str1
+     *  the first string to compare
+     *
+     * @param str2
+     *  the second string to compare
+     *
+     * @return
+     *  true if the strings are equal ignoring case; false otherwise
+     */
+    public static boolean equalsIgnoreCase(String str1, String str2) {
+        if (str1 == null || str2 == null) {
+            return str1 == str2;
+        }
+
+        return str1.toLowerCase().equals(str2.toLowerCase());
+    }
+
+    /**
+     * Checks whether the given string is truthy; that is, neither null nor empty.
+     *
+     * @param value
+     *  the string to check
+     *
+     * @return
+     *  true if the string is neither null nor empty; false otherwise
+     */
+    public static boolean isTruthy(String value) {
+        return value != null && !value.isEmpty();
+    }
+
+    /**
+     * Equivalent of the "in" operator applied to an array with a string key, which only succeeds
+     * when the key is the canonical form of an index within the bounds of the array.
+     *
+     * @param key
+     *  the key to look for; null is converted to "null"
+     *
+     * @param array
+     *  the array to check
+     *
+     * @return
+     *  true if the key names an existing index of the array; false otherwise
+     */
+    static boolean isIndexOf(String key, List<?> array) {
+        if (key == null || key.isEmpty() || key.length() > 10) {
+            return false;
+        }
+
+        if (key.length() > 1 && key.charAt(0) == '0') {
+            return false;
+        }
+
+        long index = 0;
+        for (int i = 0; i < key.length(); ++i) {
+            char c = key.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+
+            index = index * 10 + (c - '0');
+        }
+
+        return index < array.size();
+    }
+
+    /**
+     * Equivalent of String.prototype.split with a single character separator, which (unlike
+     * String.split) retains trailing empty strings.
+     *
+     * @param value
+     *  the string to split
+     *
+     * @param separator
+     *  the separator on which to split the string
+     *
+     * @return
+     *  the pieces of the string
+     */
+    static String[] split(String value, String separator) {
+        return value.split(Pattern.quote(separator), -1);
+    }
+
+    private static int skipWhitespace(String value, int index, int length) {
+        while (index < length && isWhitespace(value.charAt(index))) {
+            ++index;
+        }
+
+        return index;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r' || c == '\uFEFF' ||
+            Character.isSpaceChar(c);
+    }
+
+    private static int digit(char c, int radix) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+
+        if (radix == 16) {
+            if (c >= 'a' && c <= 'f') {
+                return c - 'a' + 10;
+            }
+
+            if (c >= 'A' && c <= 'F') {
+                return c - 'A' + 10;
+            }
+        }
+
+        return -1;
+    }
+
+}
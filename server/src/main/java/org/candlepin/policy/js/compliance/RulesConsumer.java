@@ -0,0 +1,477 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import org.candlepin.dto.rules.v1.ConsumerDTO;
+import org.candlepin.dto.rules.v1.GuestIdDTO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+
+
+/**
+ * The RulesConsumer class wraps a rules consumer DTO with the functions createConsumer attaches
+ * to the consumer in rules.js, along with the FactValueCalculator and the pool priority scoring
+ * performed by get_pool_priority.
+ */
+public class RulesConsumer {
+
+    static final String SOCKETS_ATTRIBUTE = "sockets";
+    static final String CORES_ATTRIBUTE = "cores";
+    public static final String ARCH_ATTRIBUTE = "arch";
+    static final String RAM_ATTRIBUTE = "ram";
+    static final String GUEST_LIMIT_ATTRIBUTE = "guest_limit";
+    static final String VCPU_ATTRIBUTE = "vcpu";
+    static final String STORAGE_BAND_ATTRIBUTE = "storage_band";
+
+    public static final String ARCH_FACT = "uname.machine";
+    static final String IS_VIRT_GUEST_FACT = "virt.is_guest";
+
+    private static final List<String> PHYSICAL_ATTRIBUTES = Collections.unmodifiableList(Arrays.asList(
+        SOCKETS_ATTRIBUTE, CORES_ATTRIBUTE, RAM_ATTRIBUTE, ARCH_ATTRIBUTE, GUEST_LIMIT_ATTRIBUTE,
+        STORAGE_BAND_ATTRIBUTE));
+
+    private static final List<String> VIRT_ATTRIBUTES = Collections.unmodifiableList(Arrays.asList(
+        VCPU_ATTRIBUTE, RAM_ATTRIBUTE, ARCH_ATTRIBUTE, GUEST_LIMIT_ATTRIBUTE, STORAGE_BAND_ATTRIBUTE));
+
+    private static final Map<String, String> ATTRIBUTES_TO_CONSUMER_FACTS = new HashMap<>();
+    static {
+        ATTRIBUTES_TO_CONSUMER_FACTS.put(SOCKETS_ATTRIBUTE, "cpu.cpu_socket(s)");
+        ATTRIBUTES_TO_CONSUMER_FACTS.put(CORES_ATTRIBUTE, "cpu.core(s)_per_socket");
+        ATTRIBUTES_TO_CONSUMER_FACTS.put(ARCH_ATTRIBUTE, ARCH_FACT);
+        ATTRIBUTES_TO_CONSUMER_FACTS.put(RAM_ATTRIBUTE, "memory.memtotal");
+        ATTRIBUTES_TO_CONSUMER_FACTS.put(VCPU_ATTRIBUTE, "cpu.core(s)_per_socket");
+        ATTRIBUTES_TO_CONSUMER_FACTS.put(STORAGE_BAND_ATTRIBUTE, "band.storage.usage");
+    }
+
+    /** System purpose attributes and their weights, in the order get_pool_priority scores them */
+    private static final Map<String, Integer> PRIORITY_WEIGHTS = new LinkedHashMap<>();
+    static {
+        PRIORITY_WEIGHTS.put(RulesPool.PRODUCTS_ATTRIBUTE, 20);
+        PRIORITY_WEIGHTS.put(RulesPool.ROLES_ATTRIBUTE, 10);
+        PRIORITY_WEIGHTS.put(RulesPool.ADDONS_ATTRIBUTE, 5);
+        PRIORITY_WEIGHTS.put(RulesPool.SUPPORT_LEVEL_ATTRIBUTE, 3);
+        PRIORITY_WEIGHTS.put(RulesPool.USAGE_ATTRIBUTE, 1);
+    }
+
+    private static final List<String> SIZE_ATTRIBUTES = Collections.unmodifiableList(Arrays.asList(
+        SOCKETS_ATTRIBUTE, CORES_ATTRIBUTE, RAM_ATTRIBUTE, VCPU_ATTRIBUTE));
+
+    private final Map<String, String> facts;
+    private final String typeLabel;
+    private final boolean guest;
+    private final List<String> installedProducts;
+    private final String serviceLevel;
+    private final String role;
+    private final String usage;
+    private final List<String> addOns;
+    private final double activeGuestCount;
+    private final List<Map<String, List<RulesEntitlement>>> complianceMaps;
+    private final Map<String, List<RulesEntitlement>> compliantProducts;
+    private final Map<String, List<String>> satisfiedValues;
+
+    /**
+     * Creates a new consumer for a single autobind evaluation.
+     *
+     * @param consumer
+     *  the consumer being autobound
+     *
+     * @param activeGuestCount
+     *  the number of active guests reported for the consumer
+     *
+     * @param compliantProducts
+     *  the entitlements of the compliantProducts map of the consumer's compliance status
+     *
+     * @param partiallyCompliantProducts
+     *  the entitlements of the partiallyCompliantProducts map of the consumer's compliance status
+     *
+     * @param partialStacks
+     *  the entitlements of the partialStacks map of the consumer's compliance status
+     */
+    public RulesConsumer(ConsumerDTO consumer, double activeGuestCount,
+        Map<String, List<RulesEntitlement>> compliantProducts,
+        Map<String, List<RulesEntitlement>> partiallyCompliantProducts,
+        Map<String, List<RulesEntitlement>> partialStacks) {
+
+        Map<String, String> consumerFacts = consumer.getFacts();
+        this.facts = consumerFacts != null ? consumerFacts : Collections.<String, String>emptyMap();
+        this.typeLabel = consumer.getType() != null ? consumer.getType().getLabel() : null;
+        this.guest = JsValues.equalsIgnoreCase("true", this.facts.get(IS_VIRT_GUEST_FACT));
+
+        this.installedProducts = consumer.getInstalledProducts() != null ?
+            new ArrayList<>(consumer.getInstalledProducts()) :
+            null;
+
+        this.serviceLevel = consumer.getServiceLevel();
+        this.role = JsValues.isTruthy(consumer.getRole()) ? consumer.getRole() : null;
+        this.usage = JsValues.isTruthy(consumer.getUsage()) ? consumer.getUsage() : null;
+        this.addOns = consumer.getAddOns() != null ? new ArrayList<>(consumer.getAddOns()) :
+            new ArrayList<>();
+
+        this.activeGuestCount = activeGuestCount;
+        this.compliantProducts = compliantProducts;
+        this.complianceMaps = Arrays.asList(compliantProducts, partiallyCompliantProducts, partialStacks);
+        this.satisfiedValues = new HashMap<>();
+    }
+
+    public boolean isGuest() {
+        return this.guest;
+    }
+
+    String getTypeLabel() {
+        return this.typeLabel;
+    }
+
+    /**
+     * Returns the value of the given consumer fact, or null if the fact is not present.
+     *
+     * @return
+     *  the value of the fact, or null
+     */
+    public String getFactValue(String fact) {
+        return this.facts.get(fact);
+    }
+
+    boolean hasFact(String fact) {
+        return this.facts.containsKey(fact);
+    }
+
+    public String getRole() {
+        return this.role;
+    }
+
+    /**
+     * Returns the consumer's add-ons. As in the rules, this is the live list autobind trims as
+     * add-ons are satisfied, so it must not be copied by callers that need to observe those changes.
+     *
+     * @return
+     *  the consumer's add-ons
+     */
+    public List<String> getAddOns() {
+        return this.addOns;
+    }
+
+    /**
+     * Returns the product attributes which affect compliance for this consumer.
+     *
+     * @return
+     *  the compliance attributes
+     */
+    public List<String> getComplianceAttributes() {
+        return this.guest ? VIRT_ATTRIBUTES : PHYSICAL_ATTRIBUTES;
+    }
+
+    /**
+     * Calculates the consumer value compared against the given product attribute, as defined by
+     * the FactValueCalculator in the rules.
+     */
+    double getFact(String attribute) {
+        switch (attribute) {
+            case RAM_ATTRIBUTE:
+                String ram = this.getRawFact(attribute);
+                double ramGb = (ram != null ? JsValues.parseInt(ram) : 1) / 1024 / 1024;
+                return JsValues.round(ramGb);
+
+            case CORES_ATTRIBUTE:
+                double sockets = this.getFact(SOCKETS_ATTRIBUTE);
+                String cores = this.getRawFact(attribute);
+                return (cores != null ? JsValues.toNumber(cores) : 1) * sockets;
+
+            case VCPU_ATTRIBUTE:
+                return this.getFact(CORES_ATTRIBUTE);
+
+            case GUEST_LIMIT_ATTRIBUTE:
+                return this.activeGuestCount;
+
+            default:
+                String value = this.getRawFact(attribute);
+                return value != null ? JsValues.toNumber(value) : 1;
+        }
+    }
+
+    /**
+     * Returns the consumer value compared against the given product attribute as the rules report
+     * it in status reasons: the raw fact for attributes without a calculator of their own, or the
+     * calculated number otherwise.
+     */
+    String getFactAsString(String attribute) {
+        switch (attribute) {
+            case RAM_ATTRIBUTE:
+            case CORES_ATTRIBUTE:
+            case VCPU_ATTRIBUTE:
+            case GUEST_LIMIT_ATTRIBUTE:
+                return JsValues.stringify(this.getFact(attribute));
+
+            default:
+                String value = this.getRawFact(attribute);
+                return value != null ? value : "1";
+        }
+    }
+
+    /**
+     * Returns the raw fact mapped to the given attribute, or null if the fact is not set (in which
+     * case the calculators default it to 1).
+     */
+    private String getRawFact(String attribute) {
+        String fact = ATTRIBUTES_TO_CONSUMER_FACTS.get(attribute);
+        String value = this.facts.get(fact != null ? fact : "undefined");
+        return JsValues.isTruthy(value) ? value : null;
+    }
+
+    /**
+     * Returns the values the consumer has specified for the given system purpose attribute.
+     */
+    List<String> retrieveConsumerSpecifiedAttributeValues(String attribute) {
+        switch (attribute) {
+            case RulesPool.PRODUCTS_ATTRIBUTE:
+                return this.installedProducts != null ? this.installedProducts :
+                    Collections.<String>emptyList();
+
+            case RulesPool.ADDONS_ATTRIBUTE:
+                return this.addOns;
+
+            case RulesPool.ROLES_ATTRIBUTE:
+                return singletonOrEmpty(this.role);
+
+            case RulesPool.USAGE_ATTRIBUTE:
+                return singletonOrEmpty(this.usage);
+
+            case RulesPool.SUPPORT_LEVEL_ATTRIBUTE:
+                return singletonOrEmpty(this.serviceLevel);
+
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    private static List<String> singletonOrEmpty(String value) {
+        return JsValues.isTruthy(value) ? Collections.singletonList(value) : Collections.<String>emptyList();
+    }
+
+    /**
+     * Returns the values of the given system purpose attribute already satisfied by the
+     * consumer's existing entitlements.
+     */
+    List<String> retrieveConsumerSatisfiedAttributeValues(String attribute) {
+        if (RulesPool.PRODUCTS_ATTRIBUTE.equals(attribute)) {
+            return new ArrayList<>(this.compliantProducts.keySet());
+        }
+
+        List<String> values = this.satisfiedValues.get(attribute);
+        if (values == null) {
+            values = new ArrayList<>();
+
+            for (Map<String, List<RulesEntitlement>> productMap : this.complianceMaps) {
+                for (List<RulesEntitlement> entitlements : productMap.values()) {
+                    for (RulesEntitlement entitlement : entitlements) {
+                        String value = entitlement.getPool().getProductAttribute(attribute);
+                        if (JsValues.isTruthy(value) && !containsIgnoreCase(values, value)) {
+                            values.add(value);
+                        }
+                    }
+                }
+            }
+
+            this.satisfiedValues.put(attribute, values);
+        }
+
+        return values;
+    }
+
+    private static boolean containsIgnoreCase(List<String> values, String value) {
+        for (String existing : values) {
+            if (JsValues.equalsIgnoreCase(existing, value)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    List<String> retrieveConsumerUnsatisfiedAttributeValues(String attribute) {
+        return difference(this.retrieveConsumerSpecifiedAttributeValues(attribute),
+            this.retrieveConsumerSatisfiedAttributeValues(attribute));
+    }
+
+    /**
+     * Returns the items of the first list that are not included in the second, removing only one
+     * occurrence per matching item (Utils.difference).
+     */
+    static List<String> difference(List<String> list1, List<String> list2) {
+        List<String> result = new ArrayList<>(list1);
+        for (String item : list2) {
+            result.remove(item);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the items of the first list which are also included in the second
+     * (Utils.intersection).
+     */
+    static List<String> intersection(List<String> list1, List<String> list2) {
+        List<String> result = new ArrayList<>();
+        for (String item : list1) {
+            if (list2.contains(item)) {
+                result.add(item);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Calculates the priority of the given pool for this consumer, as get_pool_priority does. The
+     * priority only depends on the pool and the consumer, so it is calculated once per pool.
+     *
+     * @return
+     *  the priority of the pool
+     */
+    public double getPoolPriority(RulesPool pool) {
+        Double cached = pool.getPriority();
+        if (cached != null) {
+            return cached;
+        }
+
+        // start with a default
+        double priority = 100;
+        boolean matchesPurpose = false;
+
+        for (Map.Entry<String, Integer> entry : PRIORITY_WEIGHTS.entrySet()) {
+            String attribute = entry.getKey();
+            List<String> specifiedSet = this.retrieveConsumerSpecifiedAttributeValues(attribute);
+            List<String> unsatisfiedSet = this.retrieveConsumerUnsatisfiedAttributeValues(attribute);
+            List<String> poolSet = pool.retrievePoolAttributeValues(attribute);
+
+            double matchRuleScore = 0;
+            double nullRuleScore = 0;
+            double mismatchRuleScore = 0;
+
+            if (unsatisfiedSet.isEmpty() && poolSet.isEmpty()) {
+                nullRuleScore = 0.1;
+            }
+
+            if (!unsatisfiedSet.isEmpty()) {
+                matchRuleScore = (double) intersection(unsatisfiedSet, poolSet).size() /
+                    unsatisfiedSet.size();
+            }
+
+            if (!specifiedSet.isEmpty() && !poolSet.isEmpty()) {
+                mismatchRuleScore = ((double) difference(specifiedSet, poolSet).size() /
+                    specifiedSet.size()) * -0.5;
+            }
+
+            double attrScore = (nullRuleScore + matchRuleScore + mismatchRuleScore) * entry.getValue();
+            if (attrScore != 0 && matchRuleScore != 0) {
+                matchesPurpose = true;
+            }
+
+            priority += attrScore;
+        }
+
+        // give more weight to system purpose fields
+        if (matchesPurpose) {
+            priority += 450;
+        }
+
+        // use virt only if possible; if the consumer is not virt, the pool will have been filtered out
+        if (pool.isVirtOnly()) {
+            priority += 100;
+        }
+
+        // better still if host specific
+        if (pool.isHostSpecific()) {
+            priority += 150;
+        }
+
+        priority = this.addSizePriority(pool, priority);
+
+        pool.setPriority(priority);
+        return priority;
+    }
+
+    /**
+     * Prefers pools matching the consumer's sockets, cores, RAM and vCPU counts as closely as
+     * possible, so that a pair of two socket subscriptions isn't wasted where one four socket
+     * subscription would do.
+     */
+    private double addSizePriority(RulesPool pool, double priority) {
+        List<String> complianceAttributes = this.getComplianceAttributes();
+
+        for (String attribute : SIZE_ATTRIBUTES) {
+            if (!complianceAttributes.contains(attribute)) {
+                continue;
+            }
+
+            double consumerValue = this.getFact(attribute);
+            double poolValue = JsValues.parseInt(pool.getProductAttribute(attribute));
+
+            if (consumerValue > 0 && poolValue > 0) {
+                double required = Math.ceil(consumerValue / poolValue);
+
+                // Don't count pools INSTANCE_MULTIPLIER times for "required", however let's be sure
+                // there are enough available if we give it preference.
+                double multi = Objects.equals(attribute, SOCKETS_ATTRIBUTE) ? pool.getInstanceMulti() : 1;
+
+                if (pool.getAvailable() / multi >= required) {
+                    poolValue *= required;
+
+                    // Maximum of 10 with an exact match, losing half a point for every additional
+                    // quantity. Doubled so that it trumps the date comparator.
+                    priority += Math.max(0, 10 - (poolValue - consumerValue) - ((required - 1) / 2)) * 2;
+                }
+            }
+            else {
+                priority += 20;
+            }
+        }
+
+        return priority;
+    }
+
+    /**
+     * Counts the guests considered active for the purposes of the guest limit. Only libvirt
+     * guests reporting themselves as active are counted.
+     *
+     * @return
+     *  the number of active guests
+     */
+    public static int countActiveGuests(Collection<GuestIdDTO> guestIds) {
+        int count = 0;
+
+        if (guestIds != null) {
+            for (GuestIdDTO guest : guestIds) {
+                Map<String, String> attributes = guest.getAttributes();
+
+                if (attributes != null && "libvirt".equals(attributes.get("virtWhoType")) &&
+                    "1".equals(attributes.get("active"))) {
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+}
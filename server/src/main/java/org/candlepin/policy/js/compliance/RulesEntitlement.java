@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import org.candlepin.dto.rules.v1.EntitlementDTO;
+
+
+
+/**
+ * The RulesEntitlement class represents either an entitlement the consumer already has, or a
+ * mock entitlement autobind would create from a pool (see get_mock_ent_for_pool). Mock
+ * entitlements have no ID, and their quantity is adjusted while searching for the quantity
+ * required to cover the consumer.
+ */
+public class RulesEntitlement {
+
+    private final String id;
+    private final RulesPool pool;
+    private double quantity;
+
+    RulesEntitlement(String id, RulesPool pool, double quantity) {
+        this.id = id;
+        this.pool = pool;
+        this.quantity = quantity;
+    }
+
+    public static RulesEntitlement fromDTO(EntitlementDTO entitlement) {
+        Integer quantity = entitlement.getQuantity();
+        return new RulesEntitlement(entitlement.getId(), new RulesPool(entitlement.getPool()),
+            quantity != null ? quantity : 0);
+    }
+
+    public static RulesEntitlement mockFor(RulesPool pool) {
+        return new RulesEntitlement(null, pool, pool.getCurrentlyAvailable());
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    public RulesPool getPool() {
+        return this.pool;
+    }
+
+    double getQuantity() {
+        return this.quantity;
+    }
+
+    public void setQuantity(double quantity) {
+        this.quantity = quantity;
+    }
+
+}
@@ -0,0 +1,283 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import org.candlepin.dto.rules.v1.PoolDTO;
+import org.candlepin.dto.rules.v1.PoolDTO.ProvidedProductDTO;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+
+
+/**
+ * The RulesPool class wraps a rules pool DTO with the helper functions createPool attaches to
+ * pools in rules.js. Attribute values of "0" are treated as unset, exactly as the rules do.
+ */
+public class RulesPool {
+
+    public static final String INSTANCE_ATTRIBUTE = "instance_multiplier";
+    static final String REQUIRES_HOST_ATTRIBUTE = "requires_host";
+    public static final String STACKING_ID_ATTRIBUTE = "stacking_id";
+    static final String MULTI_ENTITLEMENT_ATTRIBUTE = "multi-entitlement";
+    public static final String VIRT_ONLY_ATTRIBUTE = "virt_only";
+    public static final String SUPPORT_LEVEL_ATTRIBUTE = "support_level";
+    public static final String ROLES_ATTRIBUTE = "roles";
+    public static final String ADDONS_ATTRIBUTE = "addons";
+    static final String USAGE_ATTRIBUTE = "usage";
+    static final String PRODUCTS_ATTRIBUTE = "products";
+
+    private final PoolDTO pool;
+    private final Map<String, String> attributes;
+    private final Map<String, String> productAttributes;
+    private final double quantity;
+    private final double consumed;
+    private final double endDate;
+
+    private List<String> products;
+    private List<String> derivedProducts;
+    private double currentlyAvailable;
+    private Double priority;
+
+    public RulesPool(PoolDTO pool) {
+        this.pool = pool;
+        this.attributes = nonNull(pool.getAttributes());
+        this.productAttributes = nonNull(pool.getProductAttributes());
+
+        // Missing numbers behave as zero in the arithmetic the rules perform on them
+        this.quantity = pool.getQuantity() != null ? pool.getQuantity() : 0;
+        this.consumed = pool.getConsumed() != null ? pool.getConsumed() : 0;
+
+        Date end = pool.getEndDate();
+        this.endDate = end != null ? end.getTime() : 0;
+    }
+
+    private static Map<String, String> nonNull(Map<String, String> map) {
+        return map != null ? map : Collections.<String, String>emptyMap();
+    }
+
+    private static String findAttributeIn(String name, Map<String, String> attrs) {
+        String value = attrs.get(name);
+
+        // An attribute is considered not set if it has a value of 0.
+        return "0".equals(value) ? null : value;
+    }
+
+    public String getId() {
+        return this.pool.getId();
+    }
+
+    PoolDTO getPool() {
+        return this.pool;
+    }
+
+    double getQuantity() {
+        return this.quantity;
+    }
+
+    public double getEndDate() {
+        return this.endDate;
+    }
+
+    String getAttribute(String name) {
+        String value = findAttributeIn(name, this.attributes);
+        return value != null ? value : findAttributeIn(name, this.productAttributes);
+    }
+
+    boolean hasAttribute(String name) {
+        return this.getAttribute(name) != null;
+    }
+
+    public String getProductAttribute(String name) {
+        String value = findAttributeIn(name, this.productAttributes);
+        return value != null ? value : findAttributeIn(name, this.attributes);
+    }
+
+    public boolean hasProductAttribute(String name) {
+        return this.getProductAttribute(name) != null;
+    }
+
+    boolean provides(String productId) {
+        if (Objects.equals(this.pool.getProductId(), productId)) {
+            return true;
+        }
+
+        Set<ProvidedProductDTO> provided = this.pool.getProvidedProducts();
+        if (provided != null) {
+            for (ProvidedProductDTO product : provided) {
+                if (Objects.equals(product.getProductId(), productId)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    public List<String> products() {
+        if (this.products == null) {
+            this.products = buildProductList(this.pool.getProductId(), this.pool.getProvidedProducts());
+        }
+
+        return this.products;
+    }
+
+    public boolean hasDerived() {
+        return this.pool.getDerivedProductId() != null;
+    }
+
+    public List<String> derivedProducts() {
+        if (!this.hasDerived()) {
+            return Collections.emptyList();
+        }
+
+        if (this.derivedProducts == null) {
+            this.derivedProducts = buildProductList(this.pool.getDerivedProductId(),
+                this.pool.getDerivedProvidedProducts());
+        }
+
+        return this.derivedProducts;
+    }
+
+    private static List<String> buildProductList(String productId, Set<ProvidedProductDTO> provided) {
+        List<String> list = new ArrayList<>();
+        list.add(productId);
+
+        if (provided != null) {
+            for (ProvidedProductDTO product : provided) {
+                list.add(product.getProductId());
+            }
+        }
+
+        return Collections.unmodifiableList(list);
+    }
+
+    public boolean isUnlimited() {
+        return this.quantity < 0;
+    }
+
+    public double getAvailable() {
+        return this.quantity - this.consumed;
+    }
+
+    double getInstanceMulti() {
+        double multi = JsValues.parseInt(this.getAttribute(INSTANCE_ATTRIBUTE));
+        return Double.isNaN(multi) || multi == 0 ? 1 : multi;
+    }
+
+    public boolean isMultiEnt() {
+        return JsValues.equalsIgnoreCase(this.getProductAttribute(MULTI_ENTITLEMENT_ATTRIBUTE), "yes");
+    }
+
+    public boolean isVirtOnly() {
+        return JsValues.equalsIgnoreCase(this.getProductAttribute(VIRT_ONLY_ATTRIBUTE), "true");
+    }
+
+    public boolean isHostSpecific() {
+        return this.getAttribute(REQUIRES_HOST_ATTRIBUTE) != null;
+    }
+
+    /**
+     * Checks for the presence of a stacking_id product attribute, regardless of its value. This
+     * mirrors is_pool_stacked, which does not apply the "0 means unset" convention.
+     *
+     * @return
+     *  true if the pool is stacked; false otherwise
+     */
+    public boolean isStacked() {
+        return this.productAttributes.containsKey(STACKING_ID_ATTRIBUTE);
+    }
+
+    /**
+     * Returns the values the pool has for the given system purpose attribute or, for
+     * "products", the (derived) products it provides.
+     *
+     * @return
+     *  the values of the attribute
+     */
+    public List<String> retrievePoolAttributeValues(String attribute) {
+        List<String> values = new ArrayList<>();
+
+        if (PRODUCTS_ATTRIBUTE.equals(attribute)) {
+            for (String product : this.hasDerived() ? this.derivedProducts() : this.products()) {
+                if (product != null) {
+                    values.add(product);
+                }
+            }
+
+            return values;
+        }
+
+        String value = this.getProductAttribute(attribute);
+        if (!JsValues.isTruthy(value)) {
+            return values;
+        }
+
+        if (ADDONS_ATTRIBUTE.equals(attribute) || ROLES_ATTRIBUTE.equals(attribute)) {
+            Collections.addAll(values, JsValues.split(value, ","));
+        }
+        else if (SUPPORT_LEVEL_ATTRIBUTE.equals(attribute) || USAGE_ATTRIBUTE.equals(attribute)) {
+            values.add(value);
+        }
+
+        return values;
+    }
+
+    /**
+     * Returns the comma separated values of the given product attribute, or an empty list if the
+     * attribute is not set. Unlike retrievePoolAttributeValues, an empty value yields a single
+     * empty string.
+     *
+     * @return
+     *  the values of the product attribute
+     */
+    public List<String> splitProductAttribute(String attribute) {
+        String value = this.getProductAttribute(attribute);
+
+        List<String> values = new ArrayList<>();
+        if (value != null) {
+            Collections.addAll(values, JsValues.split(value, ","));
+        }
+
+        return values;
+    }
+
+    public double getCurrentlyAvailable() {
+        return this.currentlyAvailable;
+    }
+
+    public void setCurrentlyAvailable(double currentlyAvailable) {
+        this.currentlyAvailable = currentlyAvailable;
+    }
+
+    Double getPriority() {
+        return this.priority;
+    }
+
+    void setPriority(Double priority) {
+        this.priority = priority;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RulesPool [id: %s]", this.getId());
+    }
+
+}
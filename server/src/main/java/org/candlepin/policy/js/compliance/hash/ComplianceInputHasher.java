@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance.hash;
+
+import org.candlepin.model.Consumer;
+import org.candlepin.model.Entitlement;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+
+
+/**
+ * Creates hashes of the inputs of a compliance calculation. Unlike the
+ * {@link ComplianceStatusHasher}, these hashes are intended to detect whether a previously
+ * calculated compliance status is still valid, and therefore include the versions of the
+ * consumer's entitlements and pools.
+ */
+public class ComplianceInputHasher {
+
+    private ComplianceInputHasher() {
+        // Static methods only
+    }
+
+    /**
+     * Hashes the state of the consumer considered by a compliance calculation: its type, the given
+     * facts, its installed products and its guests.
+     *
+     * @param consumer
+     *  the consumer to hash
+     *
+     * @param facts
+     *  the facts of the consumer to include in the hash
+     *
+     * @return
+     *  a 256 bit hex string
+     */
+    public static String hashConsumer(Consumer consumer, Collection<String> facts) {
+        List<Map.Entry<String, String>> factEntries = new ArrayList<>();
+        for (String fact : facts) {
+            factEntries.add(new AbstractMap.SimpleEntry<>(fact, consumer.getFact(fact)));
+        }
+
+        Hasher hasher = new Hasher();
+        hasher.putObject(consumer.getTypeId(), HashableStringGenerators.STRING);
+        hasher.putCollection(factEntries, HashableStringGenerators.STRING_ENTRY);
+        hasher.putCollection(consumer.getInstalledProducts(), HashableStringGenerators.INSTALLED_PRODUCT);
+        hasher.putCollection(consumer.getGuestIds(), HashableStringGenerators.GUEST_ID);
+        return hasher.hash();
+    }
+
+    /**
+     * Hashes the given entitlements, along with the versions of the entitlements and their pools.
+     *
+     * @param entitlements
+     *  the entitlements to hash
+     *
+     * @return
+     *  a 256 bit hex string
+     */
+    public static String hashEntitlements(Collection<Entitlement> entitlements) {
+        Hasher hasher = new Hasher();
+        hasher.putCollection(entitlements, HashableStringGenerators.VERSIONED_ENTITLEMENT);
+        return hasher.hash();
+    }
+
+}
@@ -15,20 +15,26 @@
 
 package org.candlepin.policy.js.compliance.hash;
 
+import com.google.common.hash.PrimitiveSink;
+
+
 
 /**
- * An object that is responsible for generating a {@link String}
- * representation of T that will be included in a hash.
+ * An object that is responsible for feeding the hashable data of T
+ * into a hash.
  *
- * @param <T> the object to generate a hashable {@link String}.
+ * @param <T> the object to generate hashable data from.
  */
 public interface HashableStringGenerator<T> {
 
     /**
-     * Generates a {@link String} that is to be included in a hash.
-     * @param toConvert the object to convert.
-     * @return a string representation of all hashable data for this object.
+     * Writes all hashable data of an object to the specified sink. Data is written
+     * field by field, so that no intermediate representation of the object needs
+     * to be built.
+     *
+     * @param toConvert the object to convert; never null.
+     * @param sink the sink to write the hashable data to.
      */
-    String generate(T toConvert);
+    void generate(T toConvert, PrimitiveSink sink);
 
 }
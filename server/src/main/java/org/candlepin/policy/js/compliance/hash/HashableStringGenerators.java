@@ -18,98 +18,157 @@ package org.candlepin.policy.js.compliance.hash;
 import org.candlepin.model.Consumer;
 import org.candlepin.model.ConsumerInstalledProduct;
 import org.candlepin.model.Entitlement;
+import org.candlepin.model.GuestId;
 import org.candlepin.model.Pool;
 import org.candlepin.policy.js.compliance.ComplianceReason;
 
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.PrimitiveSink;
+
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Date;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 
 /**
- * A collection of classes and methods that can be used to generate a
- * hashable {@link String} from an object.
+ * A collection of classes and methods that can be used to feed the
+ * hashable data of an object into a hash.
  */
 public class HashableStringGenerators {
 
     public static final StringGenerator STRING = new StringGenerator();
+    public static final IntegerGenerator INTEGER = new IntegerGenerator();
     public static final StringEntryGenerator STRING_ENTRY = new StringEntryGenerator();
     public static final EntitlementSetEntryGenerator ENTITLEMENT_SET_ENTRY =
         new EntitlementSetEntryGenerator();
     public static final EntitlementGenerator ENTITLEMENT = new EntitlementGenerator();
+    public static final VersionedEntitlementGenerator VERSIONED_ENTITLEMENT =
+        new VersionedEntitlementGenerator();
     public static final PoolGenerator POOL = new PoolGenerator();
     public static final ComplianceReasonGenerator COMPLIANCE_REASON = new ComplianceReasonGenerator();
     public static final ConsumerGenerator CONSUMER = new ConsumerGenerator();
     public static final ConsumerInstalledProductGenerator INSTALLED_PRODUCT =
         new ConsumerInstalledProductGenerator();
+    public static final GuestIdGenerator GUEST_ID = new GuestIdGenerator();
 
+    /** Hashes each element of a collection, so that elements can be combined regardless of order */
+    private static final HashFunction ELEMENT_HASH_FUNCTION = Hashing.murmur3_128();
+    private static final int ELEMENT_HASH_BYTES = ELEMENT_HASH_FUNCTION.bits() / Byte.SIZE;
 
     private HashableStringGenerators() {
 
     }
 
     /**
-     * Generates a string from a collection of type T to be included in a hash.
-     * Once each object's string has been generated by the specified generator,
-     * the results are sorted so that we are guaranteed the same order when
-     * the hash is created.
+     * Writes a collection of type T to the specified sink. As the hash must not depend
+     * on the iteration order of the collection, each element is hashed on its own, and
+     * the element hashes are summed byte by byte before being written to the sink,
+     * along with the number of elements. Unlike sorting the generated data of every
+     * element, this only requires a fixed amount of memory regardless of the size of
+     * the collection.
      *
-     * @param target the collection to generate the string for.
-     * @param generator a generator capable of generating a string from T
-     * @return the generated string
+     * @param target the collection to write; may be null.
+     * @param generator a generator capable of writing the hashable data of T
+     * @param sink the sink to write to
      */
-    public static <T extends Object> String generateFromCollection(
-        Collection<T> target, HashableStringGenerator<T> generator) {
-        // Just append null if the collection was null.
+    public static <T extends Object> void putCollection(Collection<T> target,
+        HashableStringGenerator<T> generator, PrimitiveSink sink) {
         if (target == null) {
-            return null;
+            sink.putInt(-1);
+            return;
         }
 
-        StringBuilder builder = new StringBuilder();
-        // TODO Is there a better way to do this without having to iterate twice?
-        List<String> generated = new LinkedList<>();
+        byte[] combined = new byte[ELEMENT_HASH_BYTES];
+        byte[] element = new byte[ELEMENT_HASH_BYTES];
+        int count = 0;
+
         for (T item : target) {
-            generated.add(generator.generate(item));
+            Hasher hasher = ELEMENT_HASH_FUNCTION.newHasher();
+            putObject(item, generator, hasher);
+
+            HashCode code = hasher.hash();
+            code.writeBytesTo(element, 0, ELEMENT_HASH_BYTES);
+            for (int i = 0; i < ELEMENT_HASH_BYTES; i++) {
+                combined[i] += element[i];
+            }
+
+            ++count;
+        }
+
+        sink.putInt(count);
+        sink.putBytes(combined);
+    }
+
+    /**
+     * Writes a given object to the specified sink.
+     *
+     * @param target the target object; may be null.
+     * @param generator a generator capable of writing the hashable data of the target object
+     * @param sink the sink to write to
+     */
+    public static <T extends Object> void putObject(T target, HashableStringGenerator<T> generator,
+        PrimitiveSink sink) {
+        if (target == null) {
+            sink.putBoolean(false);
+            return;
         }
-        // Must sort our strings so that they are in the same order when hashed.
-        Collections.sort(generated);
 
-        for (String toAdd : generated) {
-            builder.append(toAdd);
+        sink.putBoolean(true);
+        generator.generate(target, sink);
+    }
+
+    /**
+     * Writes a string to the specified sink. The string is prefixed with its length so
+     * that consecutive strings cannot run into each other, and its characters are written
+     * without encoding them first.
+     *
+     * @param value the string to write; may be null.
+     * @param sink the sink to write to
+     */
+    public static void putString(String value, PrimitiveSink sink) {
+        if (value == null) {
+            sink.putInt(-1);
+            return;
         }
-        return builder.toString();
+
+        sink.putInt(value.length());
+        sink.putUnencodedChars(value);
     }
 
     /**
-     * Generate a string for a given object that is intended to be used in a hash.
-     * @param target the target object
-     * @param generator a generator capable of generating a string from the target object
-     * @return the generated string
+     * Safely writes the time of a date to the specified sink.
+     *
+     * @param date the target date; may be null.
+     * @param sink the sink to write to
      */
-    public static <T extends Object> String generateFromObject(T target,
-        HashableStringGenerator<T> generator) {
-        return generator.generate(target);
+    private static void putTime(Date date, PrimitiveSink sink) {
+        if (date == null) {
+            sink.putBoolean(false);
+            return;
+        }
+
+        sink.putBoolean(true);
+        sink.putLong(date.getTime());
     }
 
     /**
-     * String generator will generate a {@link String} from a {@link String}.
-     * This generator just returns the string as is, and is intended for use
-     * when generating a collection of strings.
+     * String generator will write a {@link String} as is, and is intended
+     * for use when hashing a collection of strings.
      */
     private static class StringGenerator implements HashableStringGenerator<String> {
 
         @Override
-        public String generate(String target) {
-            return target;
+        public void generate(String target, PrimitiveSink sink) {
+            putString(target, sink);
         }
 
     }
 
     /**
-     * Generates a string from an {@link Entry} of String to collection of {@link Entitlement}s into
+     * Writes an {@link Entry} of String to collection of {@link Entitlement}s
      * intended for use in a hash.
      *
      */
@@ -117,31 +176,38 @@ public class HashableStringGenerators {
         HashableStringGenerator<Entry<String, Set<Entitlement>>> {
 
         @Override
-        public String generate(Entry<String, Set<Entitlement>> target) {
-            if (target == null) {
-                return null;
-            }
-
-            String allEnts = generateFromCollection(target.getValue(), ENTITLEMENT);
-            return target.getKey() + allEnts;
+        public void generate(Entry<String, Set<Entitlement>> target, PrimitiveSink sink) {
+            putString(target.getKey(), sink);
+            putCollection(target.getValue(), ENTITLEMENT, sink);
         }
 
     }
 
     /**
-     * Generates a string from an {@link Entitlement} intended for use in a hash.
+     * Writes an {@link Entitlement} intended for use in a hash.
      */
     private static class EntitlementGenerator implements HashableStringGenerator<Entitlement> {
 
         @Override
-        public String generate(Entitlement target) {
-            if (target == null) {
-                return null;
-            }
+        public void generate(Entitlement target, PrimitiveSink sink) {
+            putString(target.getId(), sink);
+            putObject(target.getQuantity(), INTEGER, sink);
+            putObject(target.getPool(), POOL, sink);
+        }
 
-            String generated = target.getId() + target.getQuantity();
-            generated += generateFromObject(target.getPool(), POOL);
-            return generated;
+    }
+
+    /**
+     * Writes an {@link Entitlement} intended for use in a hash, which changes
+     * whenever the entitlement or its pool is updated.
+     */
+    private static class VersionedEntitlementGenerator implements HashableStringGenerator<Entitlement> {
+
+        @Override
+        public void generate(Entitlement target, PrimitiveSink sink) {
+            ENTITLEMENT.generate(target, sink);
+            putTime(target.getUpdated(), sink);
+            putTime(target.getEndDateOverride(), sink);
         }
 
     }
@@ -149,92 +215,90 @@ public class HashableStringGenerators {
     private static class PoolGenerator implements HashableStringGenerator<Pool> {
 
         @Override
-        public String generate(Pool target) {
-            if (target == null) {
-                return null;
-            }
-
-            return target.getId() + getTime(target.getUpdated());
+        public void generate(Pool target, PrimitiveSink sink) {
+            putString(target.getId(), sink);
+            putTime(target.getUpdated(), sink);
         }
 
-        /**
-         * Safely get time from a date. If the specified date is null, return null;
-         *
-         * @param date the target date
-         * @return time as long, or null if the specified date is null;
-         */
-        private Long getTime(Date date) {
-            return date == null ? null : date.getTime();
+    }
+
+    /**
+     * Writes an {@link Integer} intended for use in a hash.
+     */
+    private static class IntegerGenerator implements HashableStringGenerator<Integer> {
+
+        @Override
+        public void generate(Integer target, PrimitiveSink sink) {
+            sink.putInt(target);
         }
 
     }
 
     /**
-     * Generates a string from a {@link ComplianceReason} intended for use in a hash.
+     * Writes a {@link ComplianceReason} intended for use in a hash.
      */
     private static class ComplianceReasonGenerator implements HashableStringGenerator<ComplianceReason> {
 
         @Override
-        public String generate(ComplianceReason target) {
-            if (target == null) {
-                return null;
-            }
-
-            String generated = target.getKey();
-            generated += generateFromCollection(target.getAttributes().entrySet(), STRING_ENTRY);
-            return generated;
+        public void generate(ComplianceReason target, PrimitiveSink sink) {
+            putString(target.getKey(), sink);
+            putCollection(target.getAttributes().entrySet(), STRING_ENTRY, sink);
         }
 
     }
 
     /**
-     * Generates a string from an {@link Entry} of String key and String intended for use in a hash.
+     * Writes an {@link Entry} of String key and String intended for use in a hash.
      */
     static class StringEntryGenerator implements HashableStringGenerator<Entry<String, String>> {
 
         @Override
-        public String generate(Entry<String, String> target) {
-            return target == null ? null : target.getKey() + target.getValue();
+        public void generate(Entry<String, String> target, PrimitiveSink sink) {
+            putString(target.getKey(), sink);
+            putString(target.getValue(), sink);
         }
 
     }
 
     /**
-     * Generates a String from a {@link Consumer} intended for use in a hash.
+     * Writes a {@link Consumer} intended for use in a hash.
      */
     private static class ConsumerGenerator implements HashableStringGenerator<Consumer> {
 
         @Override
-        public String generate(Consumer target) {
-            if (target == null) {
-                return null;
-            }
-
-            String generated = target.getUuid();
-            generated += generateFromCollection(target.getFacts().entrySet(), STRING_ENTRY);
-            generated += generateFromCollection(target.getInstalledProducts(), INSTALLED_PRODUCT);
-            generated += generateFromCollection(target.getEntitlements(), ENTITLEMENT);
-            return generated;
+        public void generate(Consumer target, PrimitiveSink sink) {
+            putString(target.getUuid(), sink);
+            putCollection(target.getFacts().entrySet(), STRING_ENTRY, sink);
+            putCollection(target.getInstalledProducts(), INSTALLED_PRODUCT, sink);
+            putCollection(target.getEntitlements(), ENTITLEMENT, sink);
         }
 
     }
 
     /**
-     * Generates a string from an {@link ConsumerInstalledProduct} intended for use in a hash.
+     * Writes a {@link ConsumerInstalledProduct} intended for use in a hash.
      */
     private static class ConsumerInstalledProductGenerator
         implements HashableStringGenerator<ConsumerInstalledProduct> {
 
         @Override
-        public String generate(ConsumerInstalledProduct target) {
-            if (target == null) {
-                return null;
-            }
+        public void generate(ConsumerInstalledProduct target, PrimitiveSink sink) {
+            putString(target.getProductId(), sink);
+            putString(target.getArch(), sink);
+            putString(target.getVersion(), sink);
+        }
 
-            String generated = target.getProductId();
-            generated += target.getArch();
-            generated += target.getVersion();
-            return generated;
+    }
+
+    /**
+     * Writes a {@link GuestId} intended for use in a hash.
+     */
+    private static class GuestIdGenerator implements HashableStringGenerator<GuestId> {
+
+        @Override
+        public void generate(GuestId target, PrimitiveSink sink) {
+            putString(target.getGuestId(), sink);
+            putCollection(target.getAttributes().entrySet(), STRING_ENTRY, sink);
         }
 
     }
@@ -15,31 +15,29 @@
 
 package org.candlepin.policy.js.compliance.hash;
 
-import com.google.common.hash.HashCode;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.nio.charset.Charset;
 import java.util.Collection;
 
 /**
- * Generates a an SHA256 hash of objects via respective {@link HashableStringGenerator}s.
+ * Generates a 256 bit hash of objects via respective {@link HashableStringGenerator}s.
+ * The data of each object is streamed into the hash as it is generated, rather than
+ * being collected beforehand.
+ *
+ * A Hasher can only produce a single hash.
  */
 public class Hasher {
-    private static Logger log = LoggerFactory.getLogger(Hasher.class);
-    private StringBuilder sink;
-
     // Trivia: the second seed is the seventh Mersenne prime
     private static final HashFunction HASH_FUNCTION = Hashing.concatenating(
         Hashing.murmur3_128(),
         Hashing.murmur3_128(524287)
     );
 
+    private com.google.common.hash.Hasher sink;
+
     public Hasher() {
-        sink = new StringBuilder();
+        sink = HASH_FUNCTION.newHasher();
     }
 
     /**
@@ -47,41 +45,41 @@ public class Hasher {
      * bit digest.  We concatenate two 128 bit digests for legacy reasons: previously we used SHA256 which
      * produced a 256 bit digest and I wanted to maintain continuity in the digest size.
      *
+     * This method must only be called once; nothing may be put into this hasher afterward.
+     *
      * @return a 256 bit hex string
      */
     public String hash() {
-        String data = sink.toString();
-        log.debug("Hashing {}", data);
-        HashCode c = HASH_FUNCTION.newHasher().putString(data, Charset.defaultCharset()).hash();
-        return c.toString();
+        return sink.hash().toString();
     }
 
     /**
-     * Adds the specified collection to the result of this hash. The resulting string added to the hash
-     * is generated by the specified generator.
+     * Adds the specified collection to the result of this hash. The data added to the hash for each
+     * object in the collection is generated by the specified generator, and does not depend on the
+     * order of the collection.
      *
      * @see HashableStringGenerators
      *
      * @param toConvert the collection to add
-     * @param generator the generator responsible for generating the hash string for each object
+     * @param generator the generator responsible for generating the hashable data of each object
      *                  in the collection.
      */
     public <T extends Object> void putCollection(Collection<T> toConvert,
         HashableStringGenerator<T> generator) {
-        sink.append(HashableStringGenerators.generateFromCollection(toConvert, generator));
+        HashableStringGenerators.putCollection(toConvert, generator, sink);
     }
 
     /**
-     * Adds the specified Object to the result of this hash. The string added to the hash will be generated
+     * Adds the specified Object to the result of this hash. The data added to the hash will be generated
      * by the specified generator.
      *
      * @see HashableStringGenerators
      *
      * @param toConvert the object to add
-     * @param generator the generator responsible for generating the hash string for the object.
+     * @param generator the generator responsible for generating the hashable data of the object.
      */
     public <T extends Object> void putObject(T toConvert, HashableStringGenerator<T> generator) {
-        sink.append(HashableStringGenerators.generateFromObject(toConvert, generator));
+        HashableStringGenerators.putObject(toConvert, generator, sink);
     }
 
 }
@@ -611,6 +611,10 @@ public class PoolRules {
         if (productsChanged) {
             existingPool.setProduct(incomingProduct);
             existingPool.setProvidedProducts(incomingProvided);
+
+            // A change to the provided products alone does not update the pool itself, which would
+            // leave its update time, checked by the pool availability index, unchanged
+            existingPool.setUpdated(new Date());
         }
 
         return productsChanged;
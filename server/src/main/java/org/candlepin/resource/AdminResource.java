@@ -25,6 +25,8 @@ import org.candlepin.model.User;
 import org.candlepin.model.UserCurator;
 import org.candlepin.service.UserServiceAdapter;
 import org.candlepin.service.impl.DefaultUserServiceAdapter;
+import org.candlepin.util.TraceableMethodStats;
+import org.candlepin.util.TraceableMetrics;
 
 import com.google.inject.Inject;
 
@@ -56,15 +58,18 @@ public class AdminResource {
     private EventSink sink;
     private Configuration config;
     private CandlepinCache candlepinCache;
+    private TraceableMetrics traceableMetrics;
 
     @Inject
     public AdminResource(UserServiceAdapter userService, UserCurator userCurator,
-        EventSink dispatcher, Configuration config, CandlepinCache candlepinCache) {
+        EventSink dispatcher, Configuration config, CandlepinCache candlepinCache,
+        TraceableMetrics traceableMetrics) {
         this.userService = userService;
         this.userCurator = userCurator;
         this.sink = dispatcher;
         this.config = config;
         this.candlepinCache = candlepinCache;
+        this.traceableMetrics = traceableMetrics;
     }
 
     @GET
@@ -110,4 +115,25 @@ public class AdminResource {
     public List<QueueStatus> getQueueStats() {
         return sink.getQueueInfo();
     }
+
+    @GET
+    @Produces({MediaType.APPLICATION_JSON})
+    @Path("metrics")
+    @ApiOperation(
+        notes = "Call counts, error counts and latency histograms of the traceable methods, such as " +
+        "pool refreshes, per method and owner.",
+        value = "Get Method Metrics")
+    public List<TraceableMethodStats> getMethodMetrics() {
+        return traceableMetrics.getStats();
+    }
+
+    @GET
+    @Produces({MediaType.TEXT_PLAIN})
+    @Path("metrics/prometheus")
+    @ApiOperation(
+        notes = "The method metrics, in the Prometheus text exposition format.",
+        value = "Export Method Metrics")
+    public String exportMethodMetrics() {
+        return traceableMetrics.toPrometheus();
+    }
 }
@@ -17,14 +17,18 @@ package org.candlepin.resource;
 import org.candlepin.auth.Principal;
 import org.candlepin.common.config.Configuration;
 import org.candlepin.common.exceptions.IseException;
+import org.candlepin.common.exceptions.NotFoundException;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.CertificateSerial;
 import org.candlepin.model.CertificateSerialCurator;
 import org.candlepin.pki.PKIUtility;
 import org.candlepin.util.CrlFileUtil;
+import org.candlepin.util.CrlPublisher;
+import org.candlepin.util.CrlSnapshot;
 
 import com.google.inject.Inject;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -40,11 +44,16 @@ import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
 import io.swagger.annotations.Authorization;
 
 /**
@@ -58,23 +67,31 @@ public class CrlResource {
     private CrlFileUtil crlFileUtil;
     private PKIUtility pkiUtility;
     private CertificateSerialCurator certificateSerialCurator;
+    private CrlPublisher crlPublisher;
 
 
     @Inject
     public CrlResource(Configuration config, CrlFileUtil crlFileUtil, PKIUtility pkiUtility,
-        CertificateSerialCurator certificateSerialCurator) {
+        CertificateSerialCurator certificateSerialCurator, CrlPublisher crlPublisher) {
 
         this.config = config;
         this.crlFileUtil = crlFileUtil;
         this.pkiUtility = pkiUtility;
         this.certificateSerialCurator = certificateSerialCurator;
+        this.crlPublisher = crlPublisher;
     }
 
     @ApiOperation(notes = "Retrieves the Certificate Revocation List", value = "getCurrentCrl", response =
         String.class)
     @GET
     @Produces(MediaType.TEXT_PLAIN)
-    public Response getCurrentCrl(@Context Principal principal) throws CRLException {
+    public Response getCurrentCrl(@Context Principal principal, @Context Request request)
+        throws CRLException {
+
+        if (this.crlPublisher.isEnabled()) {
+            return this.getCrlSnapshot(request);
+        }
+
         String filePath = getCrlFilePath();
         File crlFile = new File(filePath);
 
@@ -96,6 +113,54 @@ public class CrlResource {
         }
     }
 
+    @ApiOperation(notes = "Retrieves the latest delta Certificate Revocation List, listing the " +
+        "certificates revoked since the Certificate Revocation List was last updated",
+        value = "getDeltaCrl", response = String.class)
+    @ApiResponses({ @ApiResponse(code = 404, message = "If delta CRLs are not enabled") })
+    @GET
+    @Path("delta")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response getDeltaCrl(@Context Principal principal, @Context Request request) {
+        if (!this.crlPublisher.isDeltaEnabled()) {
+            throw new NotFoundException("Delta CRLs are not enabled");
+        }
+
+        try {
+            return this.buildSnapshotResponse(this.crlPublisher.getDeltaSnapshot(), request);
+        }
+        catch (IOException e) {
+            throw new IseException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Serves the current snapshot of the CRL, or a "not modified" response if the client already
+     * has it.
+     */
+    private Response getCrlSnapshot(Request request) {
+        try {
+            return this.buildSnapshotResponse(this.crlPublisher.getSnapshot(), request);
+        }
+        catch (IOException e) {
+            throw new IseException(e.getMessage(), e);
+        }
+    }
+
+    private Response buildSnapshotResponse(CrlSnapshot snapshot, Request request) {
+        EntityTag tag = new EntityTag(snapshot.getETag());
+        ResponseBuilder builder = request != null ?
+            request.evaluatePreconditions(snapshot.getLastModified(), tag) :
+            null;
+
+        if (builder == null) {
+            builder = Response.ok().entity(new ByteArrayInputStream(snapshot.getContent()));
+        }
+
+        return builder.tag(tag)
+            .lastModified(snapshot.getLastModified())
+            .build();
+    }
+
     @ApiOperation(notes = "Deletes a Certificate from the Revocation List", value = "unrevoke")
     @DELETE
     @Produces(MediaType.APPLICATION_JSON)
@@ -112,7 +177,12 @@ public class CrlResource {
             }
 
             if (serials.size() > 0) {
-                this.crlFileUtil.updateCRLFile(crlFile, null, serials);
+                if (this.crlPublisher.isEnabled()) {
+                    this.crlPublisher.unrevoke(serials);
+                }
+                else {
+                    this.crlFileUtil.updateCRLFile(crlFile, null, serials);
+                }
             }
         }
         catch (IOException e) {
@@ -65,6 +65,21 @@ public interface EntitlementCertServiceAdapter {
         Map<String, Product> products, boolean save)
         throws GeneralSecurityException, IOException;
 
+    /**
+     * Regenerate the certificates of the given entitlements, which may belong to any number of
+     * consumers. The certificates are built using the products of the entitlements' pools, and are
+     * neither saved nor attached to the entitlements, as with generateEntitlementCerts when save is
+     * false.
+     *
+     * @param entitlements the entitlements to regenerate the certs of.
+     * @return Client entitlement certificates, in the order of the entitlements, or null for any
+     *  entitlement whose certificate exceeds the size limits of its consumer.
+     * @throws IOException thrown if there's a problem reading the cert.
+     * @throws GeneralSecurityException thrown security problem
+     */
+    List<EntitlementCertificate> regenerateEntitlementCerts(List<Entitlement> entitlements)
+        throws GeneralSecurityException, IOException;
+
     /**
      * Return a list of all entitlement certificates for a given consumer.
      *
@@ -15,11 +15,22 @@
 package org.candlepin.service.impl;
 
 import org.candlepin.model.Consumer;
+import org.candlepin.model.Entitlement;
 import org.candlepin.model.EntitlementCertificate;
 import org.candlepin.model.EntitlementCertificateCurator;
+import org.candlepin.model.PoolQuantity;
 import org.candlepin.service.EntitlementCertServiceAdapter;
+import org.candlepin.util.CertificateSizeException;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 
 
@@ -31,6 +42,8 @@ import java.util.List;
  */
 public abstract class BaseEntitlementCertServiceAdapter implements EntitlementCertServiceAdapter {
 
+    private static Logger log = LoggerFactory.getLogger(BaseEntitlementCertServiceAdapter.class);
+
     protected EntitlementCertificateCurator entCertCurator;
 
     @Override
@@ -38,4 +51,35 @@ public abstract class BaseEntitlementCertServiceAdapter implements EntitlementCe
         return entCertCurator.listForConsumer(consumer);
     }
 
+    /**
+     * Regenerates the certificates of the given entitlements one at a time, on the calling thread,
+     * through generateEntitlementCerts.
+     */
+    @Override
+    public List<EntitlementCertificate> regenerateEntitlementCerts(List<Entitlement> entitlements)
+        throws GeneralSecurityException, IOException {
+
+        List<EntitlementCertificate> certs = new ArrayList<>(entitlements.size());
+
+        for (Entitlement entitlement : entitlements) {
+            String poolId = entitlement.getPool().getId();
+            PoolQuantity poolQuantity = new PoolQuantity(entitlement.getPool(), entitlement.getQuantity());
+
+            try {
+                Map<String, EntitlementCertificate> generated = this.generateEntitlementCerts(
+                    entitlement.getConsumer(), Collections.singletonMap(poolId, poolQuantity),
+                    Collections.singletonMap(poolId, entitlement),
+                    Collections.singletonMap(poolId, entitlement.getPool().getProduct()), false);
+
+                certs.add(generated.get(poolId));
+            }
+            catch (CertificateSizeException cse) {
+                log.warn("The certificate cannot be regenerated at this time: {}", cse.getMessage());
+                certs.add(null);
+            }
+        }
+
+        return certs;
+    }
+
 }
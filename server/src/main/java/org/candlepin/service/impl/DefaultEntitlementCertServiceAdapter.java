@@ -38,6 +38,8 @@ import org.candlepin.model.PoolQuantity;
 import org.candlepin.model.Product;
 import org.candlepin.model.ProductContent;
 import org.candlepin.model.ProductCurator;
+import org.candlepin.model.dto.EntitlementBody;
+import org.candlepin.pki.CertificateGenerationPool;
 import org.candlepin.pki.PKIUtility;
 import org.candlepin.pki.X509ByteExtensionWrapper;
 import org.candlepin.pki.X509ExtensionWrapper;
@@ -49,6 +51,7 @@ import org.candlepin.util.X509Util;
 import org.candlepin.util.X509V3ExtensionUtil;
 
 import com.google.common.collect.Collections2;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 
 import org.apache.commons.lang.BooleanUtils;
@@ -63,6 +66,8 @@ import java.net.URLEncoder;
 import java.security.GeneralSecurityException;
 import java.security.KeyPair;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
@@ -91,6 +96,43 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
     private ProductCurator productCurator;
     private ConsumerTypeCurator consumerTypeCurator;
     private EnvironmentCurator environmentCurator;
+    private CertificateGenerationPool generationPool;
+
+    /**
+     * The state of a consumer shared by all of the certificates generated for it, read once per
+     * consumer rather than once per certificate.
+     */
+    private static class ConsumerCertContext {
+        private Owner owner;
+        private KeyPair keyPair;
+        private byte[] pemEncodedKeyPair;
+        private boolean v3;
+        private Map<String, EnvironmentContent> promotedContent;
+        private String contentPrefix;
+    }
+
+    /**
+     * Everything needed to sign and encode a certificate, gathered on the calling thread so that the
+     * remaining work can be done by the generation pool without touching the database.
+     */
+    private static class CertificateJob {
+        private Entitlement entitlement;
+        private CertificateSerial serial;
+        private String dn;
+        private Set<X509ExtensionWrapper> extensions;
+        private Date startDate;
+        private Date endDate;
+        private KeyPair keyPair;
+        private BigInteger serialNumber;
+
+        // v3 only
+        private boolean v3;
+        private Product sku;
+        private List<org.candlepin.model.dto.Product> productModels;
+        private String contentPrefix;
+        private Map<String, EnvironmentContent> promotedContent;
+        private EntitlementBody payloadBody;
+    }
 
     @Inject
     public DefaultEntitlementCertServiceAdapter(PKIUtility pki,
@@ -104,7 +146,8 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
         Configuration config,
         ProductCurator productCurator,
         ConsumerTypeCurator consumerTypeCurator,
-        EnvironmentCurator environmentCurator) {
+        EnvironmentCurator environmentCurator,
+        CertificateGenerationPool generationPool) {
 
         this.pki = pki;
         this.extensionUtil = extensionUtil;
@@ -119,6 +162,7 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
         this.productCurator = productCurator;
         this.consumerTypeCurator = consumerTypeCurator;
         this.environmentCurator = environmentCurator;
+        this.generationPool = generationPool;
     }
 
 
@@ -170,20 +214,42 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
         KeyPair keyPair, boolean useContentPrefix)
         throws GeneralSecurityException, IOException {
 
-        // oidutil is busted at the moment, so do this manually
-        Set<X509ExtensionWrapper> extensions;
-        Set<X509ByteExtensionWrapper> byteExtensions = new LinkedHashSet<>();
-        products.add(product);
-
         Map<String, EnvironmentContent> promotedContent = getPromotedContent(consumer);
         String contentPrefix = getContentPrefix(consumer, owner, useContentPrefix);
 
-        if (shouldGenerateV3(consumer)) {
-            extensions = prepareV3Extensions();
-            byteExtensions = prepareV3ByteExtensions(product, productModels, contentPrefix, promotedContent);
+        CertificateJob job = this.prepareCertificate(consumer, owner, pool, ent, product, products,
+            productModels, serialNumber, keyPair, shouldGenerateV3(consumer), contentPrefix, promotedContent);
+
+        return this.buildX509Certificate(job);
+    }
+
+    /**
+     * Gathers the extensions, dates and subject of a certificate. Building the v1 extensions reads
+     * from the database, so this must be done on the calling thread.
+     */
+    private CertificateJob prepareCertificate(Consumer consumer, Owner owner, Pool pool,
+        Entitlement ent, Product product, Set<Product> products,
+        List<org.candlepin.model.dto.Product> productModels, BigInteger serialNumber,
+        KeyPair keyPair, boolean v3, String contentPrefix, Map<String, EnvironmentContent> promotedContent) {
+
+        CertificateJob job = new CertificateJob();
+        job.entitlement = ent;
+        job.keyPair = keyPair;
+        job.serialNumber = serialNumber;
+
+        // oidutil is busted at the moment, so do this manually
+        products.add(product);
+
+        if (v3) {
+            job.v3 = true;
+            job.extensions = prepareV3Extensions();
+            job.sku = product;
+            job.productModels = productModels;
+            job.contentPrefix = contentPrefix;
+            job.promotedContent = promotedContent;
         }
         else {
-            extensions = prepareV1Extensions(products, pool, consumer, ent.getQuantity(), contentPrefix,
+            job.extensions = prepareV1Extensions(products, pool, consumer, ent.getQuantity(), contentPrefix,
                 promotedContent);
         }
 
@@ -198,13 +264,62 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
             startDate = calMinusHour.getTime();
         }
 
+        job.startDate = startDate;
+        job.endDate = endDate;
+        job.dn = createDN(ent, owner);
+
+        return job;
+    }
+
+    /**
+     * Builds and signs the certificate of a prepared job. Safe to run on the generation pool.
+     */
+    private X509Certificate buildX509Certificate(CertificateJob job)
+        throws GeneralSecurityException, IOException {
+
+        Set<X509ByteExtensionWrapper> byteExtensions = new LinkedHashSet<>();
+        if (job.v3) {
+            byteExtensions = prepareV3ByteExtensions(job.sku, job.productModels, job.contentPrefix,
+                job.promotedContent);
+        }
+
         X509Certificate x509Cert =  this.pki.createX509Certificate(
-            createDN(ent, owner), extensions, byteExtensions, startDate,
-            endDate, keyPair, serialNumber, null);
+            job.dn, job.extensions, byteExtensions, job.startDate,
+            job.endDate, job.keyPair, job.serialNumber, null);
 
         return x509Cert;
     }
 
+    /**
+     * Builds the PEM encoded certificate of a prepared job, followed by the signed entitlement data
+     * for v3 certificates. Safe to run on the generation pool.
+     */
+    private String buildCertificatePem(CertificateJob job) throws GeneralSecurityException, IOException {
+        X509Certificate x509Cert = this.buildX509Certificate(job);
+
+        log.debug("Getting PEM encoded cert.");
+        String pem = new String(this.pki.getPemEncoded(x509Cert));
+
+        if (job.payloadBody != null) {
+            log.debug("Generating v3 entitlement data");
+
+            byte[] payloadBytes = v3extensionUtil.createEntitlementDataPayload(job.payloadBody);
+
+            String payload = "-----BEGIN ENTITLEMENT DATA-----\n";
+            payload += Util.toBase64(payloadBytes);
+            payload += "-----END ENTITLEMENT DATA-----\n";
+
+            byte[] bytes = pki.getSHA256WithRSAHash(new ByteArrayInputStream(payloadBytes));
+            String signature = "-----BEGIN RSA SIGNATURE-----\n";
+            signature += Util.toBase64(bytes);
+            signature += "-----END RSA SIGNATURE-----\n";
+
+            pem += payload + signature;
+        }
+
+        return pem;
+    }
+
     /**
      * Modify the entitlements end date
      * @param pool
@@ -435,11 +550,8 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
         boolean save)
         throws GeneralSecurityException, IOException {
 
-        Owner owner = ownerCurator.findOwnerById(consumer.getOwnerId());
-
         log.debug("Generating entitlement cert for entitlements");
-        KeyPair keyPair = keyPairCurator.getConsumerKeyPair(consumer);
-        byte[] pemEncodedKeyPair = pki.getPemEncoded(keyPair.getPrivate());
+        ConsumerCertContext context = this.createConsumerContext(consumer);
 
         Map<String, CertificateSerial> serialMap = new HashMap<>();
         for (Entry<String, PoolQuantity> entry : poolQuantities.entrySet()) {
@@ -449,74 +561,30 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
 
         log.debug("WE HAVE {} POOL QUANTITIES TO LOOP THROUGH", poolQuantities.size());
 
-        Map<String, EntitlementCertificate> entitlementCerts = new HashMap<>();
+        List<String> keys = new ArrayList<>(poolQuantities.size());
+        List<CertificateJob> jobs = new ArrayList<>(poolQuantities.size());
         for (Entry<String, PoolQuantity> entry : poolQuantities.entrySet()) {
             Pool pool = entry.getValue().getPool();
             Entitlement ent = entitlements.get(entry.getKey());
             CertificateSerial serial = serialMap.get(entry.getKey());
             Product product = productMap.get(entry.getKey());
 
-            log.info("Generating entitlement cert for pool: {} quantity: {} entitlement id: {}",
-                pool,
-                ent.getQuantity(),
-                ent.getId());
-
-            Set<Product> products = new HashSet<>(productCurator.getPoolProvidedProductsCached(pool));
-
-            // If creating a certificate for a distributor, we need
-            // to add any derived products as well so that their content
-            // is available in the upstream certificate.
-            products.addAll(getDerivedProductsForDistributor(pool, consumer));
-            products.add(product);
-
-            Map<String, EnvironmentContent> promotedContent = getPromotedContent(consumer);
-            String contentPrefix = getContentPrefix(consumer, owner, true);
-
-            log.info("Creating X509 cert for product: {}", product);
-            log.debug("Provided products: {}", products);
-            List<org.candlepin.model.dto.Product> productModels = v3extensionUtil.createProducts(product,
-                products, contentPrefix, promotedContent, consumer, pool);
-
-            X509Certificate x509Cert = createX509Certificate(consumer, owner, pool, ent,
-                product, products, productModels,
-                BigInteger.valueOf(serial.getId()), keyPair, true);
-
-            log.debug("Getting PEM encoded cert.");
-            String pem = new String(this.pki.getPemEncoded(x509Cert));
-
-            if (shouldGenerateV3(consumer)) {
-                log.debug("Generating v3 entitlement data");
-
-                byte[] payloadBytes = v3extensionUtil.createEntitlementDataPayload(productModels,
-                        consumer, pool, ent.getQuantity());
-
-                String payload = "-----BEGIN ENTITLEMENT DATA-----\n";
-                payload += Util.toBase64(payloadBytes);
-                payload += "-----END ENTITLEMENT DATA-----\n";
+            keys.add(entry.getKey());
+            jobs.add(this.prepareEntitlementCertificate(context, consumer, pool, ent, product, serial));
+        }
 
-                byte[] bytes = pki.getSHA256WithRSAHash(new ByteArrayInputStream(payloadBytes));
-                String signature = "-----BEGIN RSA SIGNATURE-----\n";
-                signature += Util.toBase64(bytes);
-                signature += "-----END RSA SIGNATURE-----\n";
+        List<String> pems = this.generationPool.map(jobs, this::buildCertificatePem);
 
-                pem += payload + signature;
-            }
+        Map<String, EntitlementCertificate> entitlementCerts = new HashMap<>();
+        for (int i = 0; i < jobs.size(); i++) {
+            EntitlementCertificate cert = this.createEntitlementCertificate(context, jobs.get(i),
+                pems.get(i));
 
-            // Build a skeleton cert as part of the entitlement processing.
-            EntitlementCertificate cert = new EntitlementCertificate();
-            cert.setKeyAsBytes(pemEncodedKeyPair);
-            cert.setCert(pem);
             if (save) {
-                cert.setEntitlement(ent);
+                cert.setEntitlement(jobs.get(i).entitlement);
             }
 
-            if (log.isDebugEnabled()) {
-                log.debug("Generated cert serial number: {}", serial.getId());
-                log.debug("Key: {}", cert.getKey());
-                log.debug("Cert: {}", cert.getCert());
-            }
-
-            entitlementCerts.put(entry.getKey(), cert);
+            entitlementCerts.put(keys.get(i), cert);
         }
 
         // Serials need to be saved before the certs.
@@ -555,6 +623,156 @@ public class DefaultEntitlementCertServiceAdapter extends BaseEntitlementCertSer
         return entitlementCerts;
     }
 
+    @Override
+    public List<EntitlementCertificate> regenerateEntitlementCerts(List<Entitlement> entitlements)
+        throws GeneralSecurityException, IOException {
+
+        int batchSize = Math.max(1,
+            this.config.getInt(ConfigProperties.ENTITLEMENT_CERT_GENERATION_BATCH_SIZE, 1000));
+
+        List<EntitlementCertificate> entitlementCerts = new ArrayList<>(entitlements.size());
+        Map<String, ConsumerCertContext> contexts = new HashMap<>();
+
+        for (List<Entitlement> block : Lists.partition(entitlements, batchSize)) {
+            entitlementCerts.addAll(this.regenerateEntitlementCertBlock(block, contexts));
+        }
+
+        return entitlementCerts;
+    }
+
+    /**
+     * Regenerates the certificates of a block of entitlements: their certificates are prepared on
+     * this thread, signed and encoded by the generation pool, and their serials persisted at once.
+     *
+     * @return
+     *  the regenerated certificates, in the order of the entitlements, with null in place of the
+     *  certificates which could not be generated
+     */
+    private List<EntitlementCertificate> regenerateEntitlementCertBlock(List<Entitlement> block,
+        Map<String, ConsumerCertContext> contexts) throws GeneralSecurityException, IOException {
+
+        List<Integer> indexes = new ArrayList<>(block.size());
+        List<CertificateJob> jobs = new ArrayList<>(block.size());
+        List<CertificateSerial> serials = new ArrayList<>(block.size());
+
+        for (int i = 0; i < block.size(); i++) {
+            Entitlement ent = block.get(i);
+            Consumer consumer = ent.getConsumer();
+            Pool pool = ent.getPool();
+
+            ConsumerCertContext context = contexts.get(consumer.getUuid());
+            if (context == null) {
+                context = this.createConsumerContext(consumer);
+                contexts.put(consumer.getUuid(), context);
+            }
+
+            try {
+                CertificateSerial serial = new CertificateSerial(pool.getEndDate());
+                jobs.add(this.prepareEntitlementCertificate(context, consumer, pool, ent, pool.getProduct(),
+                    serial));
+
+                indexes.add(i);
+                serials.add(serial);
+            }
+            catch (CertificateSizeException cse) {
+                log.warn("The certificate cannot be regenerated at this time: {}", cse.getMessage());
+            }
+        }
+
+        List<String> pems = this.generationPool.map(jobs, this::buildCertificatePem);
+
+        // Serials need to be saved before the certs.
+        log.debug("Persisting {} new certificate serials", serials.size());
+        serialCurator.saveOrUpdateAll(serials, false, false);
+
+        EntitlementCertificate[] entitlementCerts = new EntitlementCertificate[block.size()];
+        for (int i = 0; i < jobs.size(); i++) {
+            CertificateJob job = jobs.get(i);
+            ConsumerCertContext context = contexts.get(job.entitlement.getConsumer().getUuid());
+
+            EntitlementCertificate cert = this.createEntitlementCertificate(context, job, pems.get(i));
+            cert.setSerial(job.serial);
+
+            entitlementCerts[indexes.get(i)] = cert;
+        }
+
+        return Arrays.asList(entitlementCerts);
+    }
+
+    /**
+     * Reads the state of the given consumer shared by all of its certificates.
+     */
+    private ConsumerCertContext createConsumerContext(Consumer consumer)
+        throws GeneralSecurityException, IOException {
+
+        ConsumerCertContext context = new ConsumerCertContext();
+        context.owner = ownerCurator.findOwnerById(consumer.getOwnerId());
+        context.keyPair = keyPairCurator.getConsumerKeyPair(consumer);
+        context.pemEncodedKeyPair = pki.getPemEncoded(context.keyPair.getPrivate());
+        context.v3 = shouldGenerateV3(consumer);
+        context.promotedContent = getPromotedContent(consumer);
+        context.contentPrefix = getContentPrefix(consumer, context.owner, true);
+
+        return context;
+    }
+
+    /**
+     * Gathers everything needed to generate the certificate of the given entitlement, including the
+     * provided products and the v3 entitlement data, which are read from the database.
+     */
+    private CertificateJob prepareEntitlementCertificate(ConsumerCertContext context, Consumer consumer,
+        Pool pool, Entitlement ent, Product product, CertificateSerial serial) {
+
+        log.info("Generating entitlement cert for pool: {} quantity: {} entitlement id: {}",
+            pool,
+            ent.getQuantity(),
+            ent.getId());
+
+        Set<Product> products = new HashSet<>(productCurator.getPoolProvidedProductsCached(pool));
+
+        // If creating a certificate for a distributor, we need
+        // to add any derived products as well so that their content
+        // is available in the upstream certificate.
+        products.addAll(getDerivedProductsForDistributor(pool, consumer));
+        products.add(product);
+
+        log.info("Creating X509 cert for product: {}", product);
+        log.debug("Provided products: {}", products);
+        List<org.candlepin.model.dto.Product> productModels = v3extensionUtil.createProducts(product,
+            products, context.contentPrefix, context.promotedContent, consumer, pool);
+
+        CertificateJob job = this.prepareCertificate(consumer, context.owner, pool, ent, product, products,
+            productModels, BigInteger.valueOf(serial.getId()), context.keyPair, context.v3,
+            context.contentPrefix, context.promotedContent);
+
+        job.serial = serial;
+        if (context.v3) {
+            job.payloadBody = v3extensionUtil.createEntitlementBody(productModels, consumer, pool,
+                ent.getQuantity());
+        }
+
+        return job;
+    }
+
+    /**
+     * Builds a skeleton cert as part of the entitlement processing.
+     */
+    private EntitlementCertificate createEntitlementCertificate(ConsumerCertContext context,
+        CertificateJob job, String pem) {
+
+        EntitlementCertificate cert = new EntitlementCertificate();
+        cert.setKeyAsBytes(context.pemEncodedKeyPair);
+        cert.setCert(pem);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Generated cert serial number: {}", job.serial.getId());
+            log.debug("Key: {}", cert.getKey());
+            log.debug("Cert: {}", cert.getCert());
+        }
+
+        return cert;
+    }
+
     private String createDN(Entitlement ent, Owner owner) {
         StringBuilder sb = new StringBuilder("CN=");
         sb.append(ent.getId());
@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.inject.Inject;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import javax.inject.Singleton;
+
+
+
+/**
+ * The ContentDictionaryCache keeps the encoded content dictionaries of v3 entitlement certificates,
+ * so that certificates providing the same content, such as the certificates of every entitlement of
+ * a pool, do not each rebuild and re-encode the same path tree.
+ *
+ * A dictionary is entirely determined by the content paths it encodes, in order, so entries are
+ * keyed by a digest of those paths. Changes to products, content, content prefixes or environment
+ * promotions change the paths of the certificates generated afterwards, and therefore their keys;
+ * entries for paths no longer in use are evicted as the cache fills up, and never need to be
+ * invalidated explicitly.
+ */
+@Singleton
+public class ContentDictionaryCache {
+
+    /**
+     * Builds the encoded dictionary of a list of content paths.
+     */
+    public interface DictionaryBuilder {
+        byte[] build() throws IOException;
+    }
+
+    private final Cache<HashCode, byte[]> cache;
+
+    @Inject
+    public ContentDictionaryCache(Configuration config) {
+        this(config.getLong(ConfigProperties.ENTITLEMENT_CERT_CONTENT_CACHE_MAX_BYTES, 0));
+    }
+
+    /**
+     * Creates a cache holding dictionaries up to the given total size.
+     *
+     * @param maxBytes
+     *  the maximum number of bytes of dictionaries to keep; 0 to disable the cache
+     */
+    public ContentDictionaryCache(long maxBytes) {
+        this.cache = maxBytes > 0 ?
+            CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .<HashCode, byte[]>weigher((key, value) -> value.length)
+                .recordStats()
+                .build() :
+            null;
+    }
+
+    /**
+     * Computes the key of the dictionary of the given content paths.
+     *
+     * @param paths
+     *  the content paths, in the order they are encoded
+     *
+     * @return
+     *  the digest of the content paths
+     */
+    static HashCode digest(List<String> paths) {
+        // A cryptographic digest, as paths of custom content are chosen by the users of any owner
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putInt(paths.size());
+
+        for (String path : paths) {
+            if (path != null) {
+                hasher.putInt(path.length());
+                hasher.putUnencodedChars(path);
+            }
+            else {
+                hasher.putInt(-1);
+            }
+        }
+
+        return hasher.hash();
+    }
+
+    /**
+     * Fetches the dictionary of the given content paths, building it if it has not been cached. The
+     * returned bytes are shared, and must not be modified.
+     *
+     * @param paths
+     *  the content paths, in the order they are encoded
+     *
+     * @param builder
+     *  the builder of the dictionary, used if it has not been cached
+     *
+     * @throws IOException
+     *  if the dictionary cannot be built
+     *
+     * @return
+     *  the encoded dictionary of the content paths
+     */
+    public byte[] get(List<String> paths, DictionaryBuilder builder) throws IOException {
+        if (this.cache == null) {
+            return builder.build();
+        }
+
+        try {
+            return this.cache.get(digest(paths), builder::build);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+
+            throw new RuntimeException(e.getCause());
+        }
+        catch (UncheckedExecutionException | ExecutionError e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * @return
+     *  the statistics of the cache, or empty statistics if the cache is disabled
+     */
+    public CacheStats getStats() {
+        return this.cache != null ? this.cache.stats() : new CacheStats(0, 0, 0, 0, 0, 0);
+    }
+
+}
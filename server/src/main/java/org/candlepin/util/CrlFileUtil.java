@@ -51,6 +51,7 @@ import java.security.PrivateKey;
 import java.security.cert.X509CRL;
 import java.security.cert.X509CRLEntry;
 import java.security.interfaces.RSAPrivateKey;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
@@ -58,6 +59,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -88,6 +90,8 @@ public class CrlFileUtil {
 
     private final ReadWriteLock lock = new ReentrantReadWriteLock(true);
 
+    private volatile BigInteger minimumCrlNumber;
+
     @Inject
     public CrlFileUtil(CertificateReader certificateReader, PKIUtility pkiUtility,
         CertificateSerialCurator curator, Configuration config) {
@@ -97,6 +101,17 @@ public class CrlFileUtil {
         this.config = config;
     }
 
+    /**
+     * Sets the lowest CRL number CRL files may be given when they are next initialized or updated,
+     * so that they are numbered after the delta CRLs issued against them.
+     *
+     * @param minimumCrlNumber
+     *  the lowest CRL number of updated CRLs, or null to increment CRL numbers by one
+     */
+    public void setMinimumCRLNumber(BigInteger minimumCrlNumber) {
+        this.minimumCrlNumber = minimumCrlNumber;
+    }
+
     /**
      * Initializes a new CRL at the specified location
      *
@@ -115,7 +130,11 @@ public class CrlFileUtil {
             entries.add(new X509CRLEntryWrapper(serial, new Date()));
         }
 
-        X509CRL crl = this.pkiUtility.createX509CRL(entries, BigInteger.ONE);
+        BigInteger crlNumber = this.minimumCrlNumber != null ?
+            this.minimumCrlNumber.max(BigInteger.ONE) :
+            BigInteger.ONE;
+
+        X509CRL crl = this.pkiUtility.createX509CRL(entries, crlNumber);
 
         try {
             output = new FileOutputStream(file);
@@ -190,6 +209,39 @@ public class CrlFileUtil {
     public void updateCRLFile(File file, final Collection<BigInteger> revoke,
         final Collection<BigInteger> unrevoke) throws IOException {
 
+        CRLEntryValidator validator = null;
+
+        if (unrevoke != null && !unrevoke.isEmpty()) {
+            validator = new CRLEntryValidator() {
+                public boolean shouldDelete(X509CRLEntry entry) {
+                    BigInteger certSerial = entry.getSerialNumber();
+                    return unrevoke.contains(certSerial);
+                }
+            };
+        }
+
+        this.rewriteCRLFile(file, revoke, validator);
+    }
+
+    /**
+     * Updates the specified CRL file by adding the given serials and removing the entries selected
+     * by the given validator, with a single pass over the existing CRL and a single signature.
+     *
+     * @param file
+     *  The CRL file to update
+     *
+     * @param revoke
+     *  A collection of serials to revoke (add)
+     *
+     * @param unrevoke
+     *  A validator selecting the existing entries to unrevoke (remove), or null to keep them all
+     *
+     * @throws IOException
+     *  if an IO error occurs while updating the CRL file
+     */
+    protected void rewriteCRLFile(File file, Collection<BigInteger> revoke, CRLEntryValidator unrevoke)
+        throws IOException {
+
         if (!file.exists() || file.length() == 0) {
             this.initializeCRLFile(file, revoke);
             return;
@@ -213,13 +265,14 @@ public class CrlFileUtil {
 
             // Note: This will break if we ever stop using RSA keys
             PrivateKey key = this.certificateReader.getCaKey();
-            X509CRLStreamWriter writer;
+            JSSX509CRLStreamWriter writer;
             try {
                 writer = new JSSX509CRLStreamWriter(
                     input,
                     (RSAPrivateKey) key,
                     this.certificateReader.getCACert()
                 );
+                writer.setMinimumCRLNumber(this.minimumCrlNumber);
             }
             catch (InvalidBERException e) {
                 throw new IOException("Could not read DER", e);
@@ -236,13 +289,8 @@ public class CrlFileUtil {
 
             // Unfortunately, we need to do the prescan before checking if we have changes queued,
             // or we could miss cases where we have entries to remove, but nothing to add.
-            if (unrevoke != null && !unrevoke.isEmpty()) {
-                writer.preScan(reaper, new CRLEntryValidator() {
-                    public boolean shouldDelete(X509CRLEntry entry) {
-                        BigInteger certSerial = entry.getSerialNumber();
-                        return unrevoke.contains(certSerial);
-                    }
-                });
+            if (unrevoke != null) {
+                writer.preScan(reaper, unrevoke);
             }
             else {
                 writer.preScan(reaper);
@@ -377,37 +425,109 @@ public class CrlFileUtil {
             this.updateCRLFile(crlFile, revoke, unrevoke);
 
             // Do some cleanup so we don't leave a bunch of cert serials lying around
-            if (uncollected.size() > 0) {
-                int collected = this.certificateSerialCurator.markSerialsAsCollected(uncollected);
+            this.collectSerials(uncollected, expired);
+        }
+        return uncollected.size() + expired.size();
+    }
 
-                if (collected != uncollected.size()) {
-                    // We have a severe problem here.
-                    log.error("Unable to collect all expected revoked serials; collected: {}, revoked: {}",
-                        collected, uncollected.size());
-                }
-                else {
-                    log.debug("Collected {} revoked serials", collected);
+    /**
+     * Sync the specified CRL file with the database in a single pass. Every uncollected and
+     * expired serial is fetched up front, and the CRL is rewritten and signed once, rather than
+     * once per batch.
+     *
+     * @param crlFile the CRL file to sync with the DB.
+     * @return the number of records synced.
+     * @throws IOException
+     */
+    @Transactional
+    public int singlePassSyncCRLWithDB(File crlFile) throws IOException {
+        List<Long> uncollected = this.certificateSerialCurator.getUncollectedRevokedCertSerials().list();
+        List<Long> expired = this.certificateSerialCurator.getExpiredRevokedCertSerials().list();
+
+        uncollected.removeIf(Objects::isNull);
+        expired.removeIf(Objects::isNull);
+
+        if (uncollected.isEmpty() && expired.isEmpty()) {
+            return 0;
+        }
+
+        // Revoked serials are added in order, and expired serials are looked up in a sorted array,
+        // which takes far less memory than a set of BigIntegers for millions of serials
+        long[] revoked = toSortedArray(uncollected);
+        List<BigInteger> revoke = new ArrayList<>(revoked.length);
+        for (long serial : revoked) {
+            revoke.add(BigInteger.valueOf(serial));
+        }
+
+        final long[] unrevoke = toSortedArray(expired);
+        CRLEntryValidator validator = null;
+
+        if (unrevoke.length > 0) {
+            validator = new CRLEntryValidator() {
+                public boolean shouldDelete(X509CRLEntry entry) {
+                    BigInteger certSerial = entry.getSerialNumber();
+                    return certSerial.bitLength() < Long.SIZE &&
+                        Arrays.binarySearch(unrevoke, certSerial.longValue()) >= 0;
                 }
+            };
+        }
+
+        log.info("Updating CRL file in a single pass; adding {} newly revoked serials, removing {} " +
+            "expired serials", revoke.size(), unrevoke.length);
+
+        this.rewriteCRLFile(crlFile, revoke, validator);
+        this.collectSerials(uncollected, expired);
+
+        return uncollected.size() + expired.size();
+    }
+
+    private static long[] toSortedArray(List<Long> serials) {
+        long[] array = new long[serials.size()];
+        int i = 0;
+
+        for (Long serial : serials) {
+            array[i++] = serial;
+        }
+
+        Arrays.sort(array);
+        return array;
+    }
+
+    /**
+     * Marks the given revoked serials as collected, and deletes the given expired serials, once they
+     * have been written to the CRL.
+     */
+    private void collectSerials(List<Long> uncollected, List<Long> expired) {
+        if (uncollected.size() > 0) {
+            int collected = this.certificateSerialCurator.markSerialsAsCollected(uncollected);
+
+            if (collected != uncollected.size()) {
+                // We have a severe problem here.
+                log.error("Unable to collect all expected revoked serials; collected: {}, revoked: {}",
+                    collected, uncollected.size());
+            }
+            else {
+                log.debug("Collected {} revoked serials", collected);
             }
+        }
 
-            if (expired.size() > 0) {
-                int deleted = this.certificateSerialCurator.deleteSerials(expired);
+        if (expired.size() > 0) {
+            int deleted = this.certificateSerialCurator.deleteSerials(expired);
 
-                if (deleted != expired.size()) {
-                    log.error("Unable to delete all expected expired serials; deleted: {}, expired: {}",
-                        deleted, expired.size());
-                }
-                else {
-                    log.info("Deleted {} expired serials", deleted);
-                }
+            if (deleted != expired.size()) {
+                log.error("Unable to delete all expected expired serials; deleted: {}, expired: {}",
+                    deleted, expired.size());
+            }
+            else {
+                log.info("Deleted {} expired serials", deleted);
             }
         }
-        return uncollected.size() + expired.size();
     }
 
     /**
      * Sync the specified CRL file with the database. The sync will be done in batches
-     * defined by the candlepin configuration property (default 1,000,000).
+     * defined by the candlepin configuration property (default 1,000,000), or in a single
+     * pass if so configured.
      *
      * @param file the CRL file to be synced
      * @throws IOException
@@ -423,11 +543,17 @@ public class CrlFileUtil {
         log.debug("Deleted {} cert serials that were expired, revoked and not yet collected.", deleted);
 
         int totalProcessed = 0;
-        boolean moreToProcess = true;
-        while (moreToProcess) {
-            int processedRecordCount = this.batchSyncCRLWithDB(file, batchSize);
-            moreToProcess = processedRecordCount != 0;
-            totalProcessed += processedRecordCount;
+
+        if (config.getBoolean(ConfigProperties.CRL_SINGLE_PASS_SYNC, false)) {
+            totalProcessed = this.singlePassSyncCRLWithDB(file);
+        }
+        else {
+            boolean moreToProcess = true;
+            while (moreToProcess) {
+                int processedRecordCount = this.batchSyncCRLWithDB(file, batchSize);
+                moreToProcess = processedRecordCount != 0;
+                totalProcessed += processedRecordCount;
+            }
         }
         log.info("CRL sync processed a total of {} serials.", totalProcessed);
     }
@@ -0,0 +1,468 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.CertificateSerialCurator;
+import org.candlepin.pki.PKIUtility;
+import org.candlepin.pki.X509CRLEntryWrapper;
+
+import com.google.inject.Inject;
+import com.google.inject.persist.UnitOfWork;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.cert.X509CRL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.inject.Singleton;
+
+
+
+/**
+ * The CrlPublisher keeps the CRL served to clients in memory, as an immutable snapshot which is
+ * rebuilt in the background, so that requests for the CRL neither sync the CRL with the database
+ * nor read the CRL file.
+ *
+ * The CRL is synced with the database and reloaded periodically, and whenever a refresh is
+ * requested, by a single background thread; requests for a refresh made while one is pending are
+ * coalesced. Once reloaded, a new snapshot replaces the current one atomically if the content of
+ * the CRL has changed. Only the first request for the CRL, made before any snapshot has been
+ * published, waits on the CRL to be built.
+ *
+ * If delta CRLs are enabled, a delta CRL listing the serials revoked since the current snapshot of
+ * the CRL was built is published as well, and refreshed more often than the CRL itself, so that
+ * clients may download the small delta CRL rather than the full CRL between refreshes of the CRL.
+ * Delta CRLs share their numbering with the CRL, which is numbered after the last delta CRL issued
+ * against it when it is next updated. The number of the last delta CRL is kept in a file next to the
+ * CRL file, so that this holds across restarts as well. The delta CRL is rebuilt whenever a new
+ * snapshot of the CRL is published.
+ */
+@Singleton
+public class CrlPublisher {
+    private static Logger log = LoggerFactory.getLogger(CrlPublisher.class);
+
+    /** The suffix of the file, next to the CRL file, holding the number of the last delta CRL */
+    public static final String DELTA_NUMBER_FILE_SUFFIX = ".delta-number";
+
+    private final CrlFileUtil crlFileUtil;
+    private final PKIUtility pkiUtility;
+    private final CertificateSerialCurator certificateSerialCurator;
+    private final UnitOfWork unitOfWork;
+    private final String filePath;
+    private final long refreshInterval;
+    private final long deltaRefreshInterval;
+    private final ScheduledExecutorService executor;
+
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+    private volatile CrlSnapshot snapshot;
+
+    private volatile CrlSnapshot delta;
+    /** The snapshot of the CRL the current delta CRL was built against */
+    private CrlSnapshot deltaBase;
+    /** The serials listed by the current delta CRL, along with the time they were first listed */
+    private Map<Long, Date> deltaSerials = Collections.emptyMap();
+    private BigInteger lastDeltaCrlNumber;
+
+    @Inject
+    public CrlPublisher(Configuration config, CrlFileUtil crlFileUtil, PKIUtility pkiUtility,
+        CertificateSerialCurator certificateSerialCurator, UnitOfWork unitOfWork) {
+
+        this(crlFileUtil, pkiUtility, certificateSerialCurator, unitOfWork,
+            config.getString(ConfigProperties.CRL_FILE_PATH),
+            config.getLong(ConfigProperties.CRL_SNAPSHOT_REFRESH_INTERVAL, 0) * 1000,
+            config.getLong(ConfigProperties.CRL_DELTA_REFRESH_INTERVAL, 0) * 1000);
+    }
+
+    /**
+     * Creates a publisher, and starts refreshing the CRL periodically.
+     *
+     * @param crlFileUtil
+     *  the utility syncing the CRL file with the database
+     *
+     * @param pkiUtility
+     *  the PKI utility used to build delta CRLs
+     *
+     * @param certificateSerialCurator
+     *  the curator listing the serials revoked since the CRL was last synced
+     *
+     * @param unitOfWork
+     *  the unit of work background refreshes are run in
+     *
+     * @param filePath
+     *  the path of the CRL file
+     *
+     * @param refreshInterval
+     *  the number of milliseconds between periodic refreshes; 0 to disable the publisher, in which
+     *  case the CRL is synced on every request for it
+     *
+     * @param deltaRefreshInterval
+     *  the number of milliseconds between periodic refreshes of the delta CRL; 0 to disable delta
+     *  CRLs
+     */
+    public CrlPublisher(CrlFileUtil crlFileUtil, PKIUtility pkiUtility,
+        CertificateSerialCurator certificateSerialCurator, UnitOfWork unitOfWork, String filePath,
+        long refreshInterval, long deltaRefreshInterval) {
+
+        this.crlFileUtil = crlFileUtil;
+        this.pkiUtility = pkiUtility;
+        this.certificateSerialCurator = certificateSerialCurator;
+        this.unitOfWork = unitOfWork;
+        this.filePath = filePath;
+        this.refreshInterval = Math.max(0, refreshInterval);
+        this.deltaRefreshInterval = Math.max(0, deltaRefreshInterval);
+
+        if (this.isDeltaEnabled()) {
+            this.lastDeltaCrlNumber = this.readLastDeltaCrlNumber();
+
+            if (this.lastDeltaCrlNumber != null) {
+                this.crlFileUtil.setMinimumCRLNumber(this.lastDeltaCrlNumber.add(BigInteger.ONE));
+            }
+        }
+
+        if (this.isEnabled()) {
+            this.executor = Executors.newSingleThreadScheduledExecutor(this::newPublisherThread);
+            this.executor.scheduleWithFixedDelay(this::refreshQuietly, this.refreshInterval,
+                this.refreshInterval, TimeUnit.MILLISECONDS);
+
+            if (this.isDeltaEnabled()) {
+                this.executor.scheduleWithFixedDelay(this::refreshDeltaQuietly, this.deltaRefreshInterval,
+                    this.deltaRefreshInterval, TimeUnit.MILLISECONDS);
+            }
+        }
+        else {
+            this.executor = null;
+        }
+    }
+
+    private Thread newPublisherThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "crl-publisher");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private File getDeltaNumberFile() {
+        return new File(this.filePath + DELTA_NUMBER_FILE_SUFFIX);
+    }
+
+    /**
+     * Reads the number of the last delta CRL issued, as persisted by a previous run.
+     *
+     * @return
+     *  the number of the last delta CRL issued, or null if no delta CRL has been issued, or its
+     *  number cannot be read
+     */
+    private BigInteger readLastDeltaCrlNumber() {
+        File file = this.getDeltaNumberFile();
+
+        if (!file.exists()) {
+            return null;
+        }
+
+        try {
+            return new BigInteger(new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII)
+                .trim());
+        }
+        catch (IOException | NumberFormatException e) {
+            log.warn("Unable to read the number of the last delta CRL from {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return
+     *  true if the CRL is served from snapshots; false if it is synced on every request
+     */
+    public boolean isEnabled() {
+        return this.refreshInterval > 0 && this.filePath != null;
+    }
+
+    /**
+     * @return
+     *  true if delta CRLs are published along with the CRL; false otherwise
+     */
+    public boolean isDeltaEnabled() {
+        return this.isEnabled() && this.deltaRefreshInterval > 0;
+    }
+
+    /**
+     * Retrieves the current snapshot of the CRL, building the first one if none has been published
+     * yet.
+     *
+     * @throws IOException
+     *  if the first snapshot has to be built, and an IO error occurs while building it
+     *
+     * @return
+     *  the current snapshot of the CRL
+     */
+    public CrlSnapshot getSnapshot() throws IOException {
+        CrlSnapshot current = this.snapshot;
+
+        if (current == null) {
+            synchronized (this) {
+                current = this.snapshot != null ? this.snapshot : this.refresh();
+            }
+        }
+
+        return current;
+    }
+
+    /**
+     * Requests a refresh of the CRL in the background. The refresh is coalesced with any refresh
+     * already requested but not yet started.
+     */
+    public void requestRefresh() {
+        if (this.executor != null && this.refreshQueued.compareAndSet(false, true)) {
+            try {
+                this.executor.execute(this::refreshQuietly);
+            }
+            catch (RejectedExecutionException e) {
+                // The publisher has been shut down
+                this.refreshQueued.set(false);
+            }
+        }
+    }
+
+    private void refreshQuietly() {
+        this.refreshQueued.set(false);
+
+        try {
+            this.refresh();
+        }
+        catch (Exception e) {
+            log.warn("Unable to refresh the CRL; serving the previous snapshot", e);
+        }
+    }
+
+    /**
+     * Syncs the CRL with the database, and publishes a new snapshot if its content has changed.
+     *
+     * @throws IOException
+     *  if an IO error occurs while syncing or reading the CRL file
+     *
+     * @return
+     *  the current snapshot of the CRL
+     */
+    public synchronized CrlSnapshot refresh() throws IOException {
+        File file = new File(this.filePath);
+        this.runInUnitOfWork(() -> {
+            this.crlFileUtil.syncCRLWithDB(file);
+            return null;
+        });
+
+        // Create an empty CRL if we didn't have anything to write
+        if (!file.exists() || file.length() < 1) {
+            this.crlFileUtil.initializeCRLFile(file, Collections.emptyList());
+        }
+
+        byte[] content = Files.readAllBytes(file.toPath());
+        CrlSnapshot current = this.snapshot;
+        CrlSnapshot updated = new CrlSnapshot(content, current != null ? current.getVersion() + 1 : 1,
+            new Date());
+
+        if (current != null && current.getETag().equals(updated.getETag())) {
+            return current;
+        }
+
+        log.info("Publishing CRL snapshot {}", updated);
+        this.snapshot = updated;
+
+        // The delta CRL no longer applies to the new CRL
+        if (this.isDeltaEnabled() && this.delta != null) {
+            this.refreshDelta();
+        }
+
+        return updated;
+    }
+
+    /**
+     * Retrieves the current delta CRL, building the first one if none has been published yet.
+     *
+     * @throws IOException
+     *  if the first delta CRL has to be built, and an error occurs while building it
+     *
+     * @return
+     *  the current delta CRL, or null if delta CRLs are disabled
+     */
+    public CrlSnapshot getDeltaSnapshot() throws IOException {
+        if (!this.isDeltaEnabled()) {
+            return null;
+        }
+
+        CrlSnapshot current = this.delta;
+
+        if (current == null) {
+            synchronized (this) {
+                current = this.delta != null ? this.delta : this.refreshDelta();
+            }
+        }
+
+        return current;
+    }
+
+    private void refreshDeltaQuietly() {
+        try {
+            this.refreshDelta();
+        }
+        catch (Exception e) {
+            log.warn("Unable to refresh the delta CRL; serving the previous delta CRL", e);
+        }
+    }
+
+    /**
+     * Builds a delta CRL of the current snapshot of the CRL, listing the serials revoked since the
+     * CRL was last synced with the database, and publishes it if the serials have changed.
+     *
+     * @throws IOException
+     *  if the CRL number of the CRL cannot be read, the serials cannot be listed, or the number of
+     *  the delta CRL cannot be persisted
+     *
+     * @return
+     *  the current delta CRL
+     */
+    public synchronized CrlSnapshot refreshDelta() throws IOException {
+        CrlSnapshot base = this.getSnapshot();
+        BigInteger baseCrlNumber = base.getCrlNumber();
+
+        if (baseCrlNumber == null) {
+            throw new IOException("Unable to read the CRL number of the CRL");
+        }
+
+        List<Long> revoked = this.runInUnitOfWork(
+            () -> this.certificateSerialCurator.getUncollectedRevokedCertSerials().list());
+
+        Date now = new Date();
+        Map<Long, Date> serials = new HashMap<>();
+
+        for (Long serial : revoked) {
+            if (serial != null) {
+                Date listed = this.deltaSerials.get(serial);
+                serials.put(serial, listed != null ? listed : now);
+            }
+        }
+
+        CrlSnapshot current = this.delta;
+        boolean unchanged = this.deltaBase == base && this.deltaSerials.keySet().equals(serials.keySet());
+
+        if (current != null && unchanged) {
+            return current;
+        }
+
+        List<X509CRLEntryWrapper> entries = new ArrayList<>(serials.size());
+        for (Map.Entry<Long, Date> entry : serials.entrySet()) {
+            entries.add(new X509CRLEntryWrapper(BigInteger.valueOf(entry.getKey()), entry.getValue()));
+        }
+
+        // Delta CRLs share their numbering with the CRL they apply to
+        BigInteger crlNumber = this.lastDeltaCrlNumber != null ?
+            this.lastDeltaCrlNumber.max(baseCrlNumber).add(BigInteger.ONE) :
+            baseCrlNumber.add(BigInteger.ONE);
+
+        X509CRL crl = this.pkiUtility.createX509DeltaCRL(entries, crlNumber, baseCrlNumber);
+        CrlSnapshot updated = new CrlSnapshot(this.pkiUtility.getPemEncoded(crl),
+            current != null ? current.getVersion() + 1 : 1, now);
+
+        // Persisted before the delta is published, so the CRL is numbered after it after a restart
+        Files.write(this.getDeltaNumberFile().toPath(),
+            crlNumber.toString().getBytes(StandardCharsets.US_ASCII));
+
+        this.lastDeltaCrlNumber = crlNumber;
+        this.crlFileUtil.setMinimumCRLNumber(crlNumber.add(BigInteger.ONE));
+
+        log.debug("Publishing delta CRL {} of CRL {} with {} serials", crlNumber, baseCrlNumber,
+            entries.size());
+
+        this.delta = updated;
+        this.deltaBase = base;
+        this.deltaSerials = serials;
+
+        return updated;
+    }
+
+    /**
+     * Removes the given serials from the CRL file, and refreshes the CRL in the background. The
+     * update is serialized with the syncs of the CRL file made by refreshes.
+     *
+     * @param serials
+     *  the serials to remove from the CRL
+     *
+     * @throws IOException
+     *  if an IO error occurs while updating the CRL file
+     */
+    public void unrevoke(Collection<BigInteger> serials) throws IOException {
+        synchronized (this) {
+            this.crlFileUtil.updateCRLFile(new File(this.filePath), null, serials);
+        }
+
+        this.requestRefresh();
+    }
+
+    private <T> T runInUnitOfWork(Callable<T> work) throws IOException {
+        boolean startedUnitOfWork = false;
+
+        try {
+            this.unitOfWork.begin();
+            startedUnitOfWork = true;
+        }
+        catch (IllegalStateException e) {
+            log.debug("Already have an open unit of work");
+        }
+
+        try {
+            return work.call();
+        }
+        catch (IOException | RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new IOException(e);
+        }
+        finally {
+            if (startedUnitOfWork) {
+                this.unitOfWork.end();
+            }
+        }
+    }
+
+    /**
+     * Stops refreshing the CRL in the background. The current snapshot is still served, and
+     * refreshed when explicitly requested.
+     */
+    public void shutdown() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+
+
+
+/**
+ * An immutable version of the CRL, as served to clients. A snapshot is identified by a digest of
+ * its content, which clients may use as an entity tag to avoid downloading an unchanged CRL again.
+ */
+public class CrlSnapshot {
+
+    /** The DER encoding of the OID of the CRL number extension, 2.5.29.20 */
+    private static final byte[] CRL_NUMBER_OID = new byte[] { 0x06, 0x03, 0x55, 0x1D, 0x14 };
+
+    private static final String PEM_HEADER = "-----BEGIN";
+    private static final String PEM_FOOTER = "-----END";
+
+    /**
+     * The tag, and the bounds of the content, of a DER-encoded value.
+     */
+    private static class Tlv {
+        private final int tag;
+        private final int start;
+        private final int end;
+
+        private Tlv(byte[] der, int offset) {
+            int length = der[offset + 1] & 0xFF;
+            int position = offset + 2;
+
+            if (length > 0x7F) {
+                int count = length & 0x7F;
+                if (count > 4) {
+                    throw new IllegalArgumentException("Unsupported DER length at offset " + offset);
+                }
+
+                length = 0;
+                for (int i = 0; i < count; ++i) {
+                    length = (length << 8) | (der[position++] & 0xFF);
+                }
+            }
+
+            if (length < 0 || position + length > der.length) {
+                throw new IllegalArgumentException("Truncated DER value at offset " + offset);
+            }
+
+            this.tag = der[offset] & 0xFF;
+            this.start = position;
+            this.end = position + length;
+        }
+    }
+
+    private final byte[] content;
+    private final long version;
+    private final Date lastModified;
+    private final String etag;
+    private volatile BigInteger crlNumber;
+    private volatile boolean crlNumberRead;
+
+    /**
+     * Creates a snapshot of the given PEM-encoded CRL. The content is not copied, and must not be
+     * modified afterward.
+     *
+     * @param content
+     *  the PEM-encoded CRL
+     *
+     * @param version
+     *  the version of the snapshot, incremented whenever the content of the CRL changes
+     *
+     * @param lastModified
+     *  the time the content of the CRL was published
+     */
+    public CrlSnapshot(byte[] content, long version, Date lastModified) {
+        this.content = content;
+        this.version = version;
+        // HTTP dates only carry seconds
+        this.lastModified = new Date(lastModified.getTime() / 1000 * 1000);
+        this.etag = DigestUtils.sha256Hex(content);
+    }
+
+    /**
+     * @return
+     *  the PEM-encoded CRL; the returned array must not be modified
+     */
+    public byte[] getContent() {
+        return this.content;
+    }
+
+    public long getVersion() {
+        return this.version;
+    }
+
+    public Date getLastModified() {
+        return this.lastModified;
+    }
+
+    /**
+     * @return
+     *  a digest of the content of the CRL, suitable for use as an entity tag
+     */
+    public String getETag() {
+        return this.etag;
+    }
+
+    /**
+     * @return
+     *  the CRL number of the CRL, or null if the CRL has no CRL number or could not be decoded
+     */
+    public BigInteger getCrlNumber() {
+        if (!this.crlNumberRead) {
+            this.crlNumber = readCrlNumber(this.content);
+            this.crlNumberRead = true;
+        }
+
+        return this.crlNumber;
+    }
+
+    /**
+     * Reads the CRL number of a PEM or DER-encoded CRL. Only the headers of the values leading to
+     * the CRL extensions are decoded; the revoked certificates are skipped over without being
+     * decoded, so that the CRL number of large CRLs can be read cheaply.
+     *
+     * @param content
+     *  the PEM or DER-encoded CRL
+     *
+     * @return
+     *  the CRL number of the CRL, or null if the CRL has no CRL number or could not be decoded
+     */
+    static BigInteger readCrlNumber(byte[] content) {
+        try {
+            byte[] der = decodePem(content);
+
+            // CertificateList ::= SEQUENCE { tbsCertList TBSCertList, ... }
+            Tlv crl = new Tlv(der, 0);
+            Tlv tbsCertList = new Tlv(der, crl.start);
+
+            for (int offset = tbsCertList.start; offset < tbsCertList.end;) {
+                Tlv field = new Tlv(der, offset);
+
+                // crlExtensions [0] EXPLICIT Extensions OPTIONAL
+                if (field.tag == 0xA0) {
+                    Tlv extensions = new Tlv(der, field.start);
+
+                    for (int extOffset = extensions.start; extOffset < extensions.end;) {
+                        // Extension ::= SEQUENCE { extnID, critical BOOLEAN DEFAULT FALSE, extnValue }
+                        Tlv extension = new Tlv(der, extOffset);
+                        Tlv oid = new Tlv(der, extension.start);
+
+                        byte[] encodedOid = Arrays.copyOfRange(der, extension.start, oid.end);
+
+                        if (Arrays.equals(encodedOid, CRL_NUMBER_OID)) {
+                            Tlv value = new Tlv(der, oid.end);
+                            if (value.tag == 0x01) {
+                                value = new Tlv(der, value.end);
+                            }
+
+                            Tlv number = new Tlv(der, value.start);
+                            return new BigInteger(Arrays.copyOfRange(der, number.start, number.end));
+                        }
+
+                        extOffset = extension.end;
+                    }
+
+                    return null;
+                }
+
+                offset = field.end;
+            }
+        }
+        catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            // Not a CRL we can decode
+        }
+
+        return null;
+    }
+
+    private static byte[] decodePem(byte[] content) {
+        String text = new String(content, StandardCharsets.US_ASCII);
+        int header = text.indexOf(PEM_HEADER);
+
+        if (header < 0) {
+            return content;
+        }
+
+        int start = text.indexOf('\n', header);
+        int end = text.indexOf(PEM_FOOTER, start);
+
+        if (start < 0 || end < 0) {
+            throw new IllegalArgumentException("Malformed PEM-encoded CRL");
+        }
+
+        return Base64.decodeBase64(text.substring(start + 1, end));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CrlSnapshot [version: %d, size: %d, etag: %s]", this.version,
+            this.content.length, this.etag);
+    }
+
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+
+
+/**
+ * Encodes values with the Huffman codes of the v3 entitlement certificate content payload.
+ *
+ * The codes are identical to those of the trie built by {@link X509V3ExtensionUtil#makeTrie}, which
+ * clients use to decode the payload: values are weighted by their position, and the two lightest
+ * nodes are merged repeatedly, the earliest created node winning ties and becoming the left branch.
+ * Rather than scanning the remaining nodes for every merge and searching the trie for every value
+ * encoded, the trie is built using a priority queue and flattened into a table of codes up front.
+ *
+ * @param <T> the type of values to encode
+ */
+public class HuffmanEncoder<T> {
+
+    /** The longest code which can be kept in a table entry */
+    private static final int MAX_CODE_LENGTH = Long.SIZE;
+
+    private final Map<T, Integer> indexes;
+    private final long[] codes;
+    private final int[] lengths;
+
+    /**
+     * Builds the codes of the given values, weighted by their position in the list.
+     *
+     * @param values
+     *  the values to encode; must be unique
+     *
+     * @param firstWeight
+     *  the weight of the first value, each following value weighing one more than the previous one
+     */
+    public HuffmanEncoder(List<? extends T> values, int firstWeight) {
+        int count = values.size();
+
+        this.indexes = new HashMap<>(count * 2);
+        this.codes = new long[count];
+        this.lengths = new int[count];
+
+        for (T value : values) {
+            this.indexes.put(value, this.indexes.size());
+        }
+
+        if (count > 1) {
+            this.buildCodes(count, firstWeight);
+        }
+    }
+
+    private void buildCodes(int count, int firstWeight) {
+        // Nodes are numbered in order of creation: the leaves first, then each merged node. Weights are
+        // summed as ints, like the trie used for decoding does.
+        int total = count * 2 - 1;
+        int[] weights = new int[total];
+        int[] left = new int[total];
+        int[] right = new int[total];
+
+        PriorityQueue<Integer> queue = new PriorityQueue<>(count, (node1, node2) -> {
+            int result = Integer.compare(weights[node1], weights[node2]);
+            return result != 0 ? result : Integer.compare(node1, node2);
+        });
+
+        for (int node = 0; node < count; node++) {
+            weights[node] = firstWeight + node;
+            queue.add(node);
+        }
+
+        for (int node = count; node < total; node++) {
+            left[node] = queue.poll();
+            right[node] = queue.poll();
+            weights[node] = weights[left[node]] + weights[right[node]];
+            queue.add(node);
+        }
+
+        // Children are always created before their parents, so walking the merged nodes backwards from
+        // the root visits each parent before its children.
+        long[] nodeCodes = new long[total];
+        int[] nodeLengths = new int[total];
+
+        for (int node = total - 1; node >= count; node--) {
+            int length = nodeLengths[node] + 1;
+            if (length > MAX_CODE_LENGTH) {
+                throw new IllegalStateException("Huffman code exceeds " + MAX_CODE_LENGTH + " bits");
+            }
+
+            nodeCodes[left[node]] = nodeCodes[node] << 1;
+            nodeLengths[left[node]] = length;
+            nodeCodes[right[node]] = (nodeCodes[node] << 1) | 1;
+            nodeLengths[right[node]] = length;
+        }
+
+        System.arraycopy(nodeCodes, 0, this.codes, 0, count);
+        System.arraycopy(nodeLengths, 0, this.lengths, 0, count);
+    }
+
+    /**
+     * Writes the code of the given value. Values which were not weighted when building this encoder
+     * have no code, and nothing is written for them.
+     *
+     * @param value
+     *  the value to encode
+     *
+     * @param writer
+     *  the writer to write the code to
+     */
+    public void encode(T value, BitWriter writer) {
+        Integer index = this.indexes.get(value);
+        if (index != null) {
+            writer.write(this.codes[index], this.lengths[index]);
+        }
+    }
+
+    /**
+     * Fetches the code of the given value as a string of bits, as produced by
+     * {@link X509V3ExtensionUtil#findHuffPath}.
+     *
+     * @param value
+     *  the value to fetch the code of
+     *
+     * @return
+     *  the code of the value, or an empty string if the value has no code
+     */
+    public String getCode(T value) {
+        Integer index = this.indexes.get(value);
+        if (index == null) {
+            return "";
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (int bit = this.lengths[index] - 1; bit >= 0; bit--) {
+            builder.append((this.codes[index] >>> bit) & 1);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Packs bits into bytes, most significant bit first.
+     */
+    public static class BitWriter {
+        private final ByteArrayOutputStream output;
+        private int current;
+        private int pending;
+
+        public BitWriter(ByteArrayOutputStream output) {
+            this.output = output;
+        }
+
+        /**
+         * Writes the lowest bits of the given value, most significant first.
+         *
+         * @param bits
+         *  the value holding the bits to write
+         *
+         * @param length
+         *  the number of bits to write
+         */
+        public void write(long bits, int length) {
+            for (int bit = length - 1; bit >= 0; bit--) {
+                this.current = (this.current << 1) | (int) ((bits >>> bit) & 1);
+
+                if (++this.pending == Byte.SIZE) {
+                    this.output.write(this.current);
+                    this.current = 0;
+                    this.pending = 0;
+                }
+            }
+        }
+
+        /**
+         * Writes any remaining bits, padding the last byte with zeros.
+         */
+        public void flush() {
+            if (this.pending > 0) {
+                this.output.write(this.current << (Byte.SIZE - this.pending));
+                this.current = 0;
+                this.pending = 0;
+            }
+        }
+    }
+
+}
@@ -133,6 +133,8 @@ public class JSSX509CRLStreamWriter extends AbstractX509CRLStreamWriter {
     private int extensionsDelta;
     private byte[] newExtensions;
 
+    private BigInteger minimumCrlNumber;
+
     public JSSX509CRLStreamWriter(File crlToChange, RSAPrivateKey key, X509Certificate ca)
         throws IOException, InvalidBERException {
         this(new BufferedInputStream(new FileInputStream(crlToChange)), key, ca);
@@ -288,6 +290,31 @@ public class JSSX509CRLStreamWriter extends AbstractX509CRLStreamWriter {
         signingAlg = algorithm;
     }
 
+    /**
+     * Sets the lowest CRL number the updated CRL may be given, so that it is numbered after any
+     * delta CRL issued against the CRL being updated. By default, the CRL number of the existing
+     * CRL is incremented by one.
+     *
+     * @param minimumCrlNumber
+     *  the lowest CRL number of the updated CRL, or null to increment the existing CRL number
+     */
+    public void setMinimumCRLNumber(BigInteger minimumCrlNumber) {
+        if (locked) {
+            throw new IllegalStateException("This stream is already locked.");
+        }
+
+        if (preScanned) {
+            throw new IllegalStateException("preScan has already been run.");
+        }
+
+        this.minimumCrlNumber = minimumCrlNumber;
+    }
+
+    private BigInteger nextCRLNumber(BigInteger crlNumber) {
+        BigInteger next = crlNumber.add(BigInteger.ONE);
+        return this.minimumCrlNumber != null ? next.max(this.minimumCrlNumber) : next;
+    }
+
     @Override
     public boolean hasChangesQueued() {
         return this.newEntries.size() > 0 || this.deletedEntries.size() > 0;
@@ -320,7 +347,7 @@ public class JSSX509CRLStreamWriter extends AbstractX509CRLStreamWriter {
                 if (ext.getExtensionId().equals(PKIXExtensions.CRLNumber_Id)) {
                     CRLNumberExtension crlNumExt = (CRLNumberExtension) ext;
                     BigInteger crlNum = (BigInteger) crlNumExt.get(CRLNumberExtension.NUMBER);
-                    newExts.add(new CRLNumberExtension(ext.isCritical(), crlNum.add(BigInteger.ONE)));
+                    newExts.add(new CRLNumberExtension(ext.isCritical(), this.nextCRLNumber(crlNum)));
                 }
                 else if (ext.getExtensionId().equals(PKIXExtensions.AuthorityKey_Id)) {
                     aki.setCritical(ext.isCritical());
@@ -445,7 +472,7 @@ public class JSSX509CRLStreamWriter extends AbstractX509CRLStreamWriter {
             for (Extension e : exts) {
                 if (e.getExtensionId().equals(PKIXExtensions.CRLNumber_Id)) {
                     DerValue crlNum = new DerValue(e.getExtensionValue());
-                    BigInteger newCrlNum = crlNum.getInteger().toBigInteger().add(BigInteger.ONE);
+                    BigInteger newCrlNum = this.nextCRLNumber(crlNum.getInteger().toBigInteger());
 
                     modifiedExts.addElement(new org.mozilla.jss.pkix.cert.Extension(
                         new OBJECT_IDENTIFIER(e.getExtensionId().toString()), e.isCritical(),
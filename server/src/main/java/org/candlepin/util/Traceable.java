@@ -25,8 +25,11 @@ import java.lang.annotation.Target;
  * Indicates to any application performance managers that this method should be recorded as part of a trace.
  * By default it will only include itself into an already-in-progress trace. However it can be made to start
  * a new trace if one isn't already in progress by specifying {@code @Traceable(startable = true)}.
+ * <p>
+ * Calls of methods of Guice-managed objects with this annotation are also timed and recorded in the
+ * {@link TraceableMetrics}.
  */
-@Retention(RetentionPolicy.CLASS)
+@Retention(RetentionPolicy.RUNTIME)
 @Target({ElementType.METHOD})
 public @interface Traceable {
 
@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import java.util.Map;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Simple DTO for returning the statistics of a traceable method, for one combination of values
+ * of its traceable parameters.
+ */
+@XmlRootElement
+@XmlAccessorType(XmlAccessType.PROPERTY)
+public class TraceableMethodStats {
+
+    private String method;
+    private Map<String, String> tags;
+    private long count;
+    private long errorCount;
+    private double totalSeconds;
+    private double maxSeconds;
+    private Map<String, Long> buckets;
+
+    public TraceableMethodStats() {
+    }
+
+    public TraceableMethodStats(String method, Map<String, String> tags, long count, long errorCount,
+        double totalSeconds, double maxSeconds, Map<String, Long> buckets) {
+        this.method = method;
+        this.tags = tags;
+        this.count = count;
+        this.errorCount = errorCount;
+        this.totalSeconds = totalSeconds;
+        this.maxSeconds = maxSeconds;
+        this.buckets = buckets;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    public void setTags(Map<String, String> tags) {
+        this.tags = tags;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    public void setErrorCount(long errorCount) {
+        this.errorCount = errorCount;
+    }
+
+    public double getTotalSeconds() {
+        return totalSeconds;
+    }
+
+    public void setTotalSeconds(double totalSeconds) {
+        this.totalSeconds = totalSeconds;
+    }
+
+    public double getMaxSeconds() {
+        return maxSeconds;
+    }
+
+    public void setMaxSeconds(double maxSeconds) {
+        this.maxSeconds = maxSeconds;
+    }
+
+    /**
+     * @return
+     *  the number of calls which completed within each bucket's upper bound, in seconds
+     */
+    public Map<String, Long> getBuckets() {
+        return buckets;
+    }
+
+    public void setBuckets(Map<String, Long> buckets) {
+        this.buckets = buckets;
+    }
+
+}
@@ -0,0 +1,230 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.inject.Singleton;
+
+
+
+/**
+ * The TraceableMetrics keep the call counts, error counts and latency histograms of the methods
+ * annotated with {@link Traceable}, per method and per combination of values of their
+ * {@link TraceableParam} parameters, such as the key of the owner a method was called for.
+ */
+@Singleton
+public class TraceableMetrics {
+    private static Logger log = LoggerFactory.getLogger(TraceableMetrics.class);
+
+    /** The upper bounds of the latency histogram buckets, in seconds */
+    static final double[] BUCKETS = {
+        0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120, 300, 600, 1800
+    };
+
+    /**
+     * The maximum number of series kept. Calls with parameter values beyond this many are recorded
+     * without their parameter values, so that the number of owners does not bound memory use.
+     */
+    static final int MAX_SERIES = 10000;
+
+    private static final String PROMETHEUS_PREFIX = "candlepin_traceable_";
+
+    /**
+     * The metrics of one method, for one combination of parameter values.
+     */
+    private static class Series {
+        private final String method;
+        private final SortedMap<String, String> tags;
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length];
+
+        public Series(String method, SortedMap<String, String> tags) {
+            this.method = method;
+            this.tags = tags;
+
+            for (int i = 0; i < this.buckets.length; i++) {
+                this.buckets[i] = new LongAdder();
+            }
+        }
+
+        public void record(long nanos, boolean failed) {
+            double seconds = nanos / 1e9;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                if (seconds <= BUCKETS[i]) {
+                    this.buckets[i].increment();
+                    break;
+                }
+            }
+
+            this.count.increment();
+            this.totalNanos.add(nanos);
+            this.maxNanos.accumulateAndGet(nanos, Math::max);
+
+            if (failed) {
+                this.errors.increment();
+            }
+        }
+    }
+
+    private final ConcurrentMap<String, Series> series = new ConcurrentHashMap<>();
+
+    /**
+     * Records a call of a traceable method.
+     *
+     * @param method
+     *  the name of the method
+     *
+     * @param tags
+     *  the values of the traceable parameters of the call, by parameter name; may be empty
+     *
+     * @param nanos
+     *  the duration of the call, in nanoseconds
+     *
+     * @param failed
+     *  whether or not the call threw an exception
+     */
+    public void record(String method, Map<String, String> tags, long nanos, boolean failed) {
+        SortedMap<String, String> sorted = new TreeMap<>(tags);
+        Series entry = this.series.get(method + sorted);
+
+        if (entry == null) {
+            if (this.series.size() >= MAX_SERIES && !sorted.isEmpty()) {
+                log.debug("Too many traceable series; recording {} without its parameters", method);
+                sorted = Collections.emptySortedMap();
+            }
+
+            SortedMap<String, String> seriesTags = sorted;
+            entry = this.series.computeIfAbsent(method + sorted, key -> new Series(method, seriesTags));
+        }
+
+        entry.record(nanos, failed);
+    }
+
+    /**
+     * @return
+     *  the statistics of every method and combination of parameter values recorded, ordered by
+     *  method
+     */
+    public List<TraceableMethodStats> getStats() {
+        List<Series> ordered = this.getOrderedSeries();
+        List<TraceableMethodStats> stats = new ArrayList<>(ordered.size());
+
+        for (Series entry : ordered) {
+            Map<String, Long> buckets = new LinkedHashMap<>();
+            long cumulative = 0;
+
+            for (int i = 0; i < BUCKETS.length; i++) {
+                cumulative += entry.buckets[i].sum();
+                buckets.put(Double.toString(BUCKETS[i]), cumulative);
+            }
+
+            stats.add(new TraceableMethodStats(entry.method, new LinkedHashMap<>(entry.tags),
+                entry.count.sum(), entry.errors.sum(), entry.totalNanos.sum() / 1e9,
+                entry.maxNanos.get() / 1e9, buckets));
+        }
+
+        return stats;
+    }
+
+    /**
+     * Exports the metrics in the Prometheus text exposition format.
+     *
+     * @return
+     *  the latency histograms and error counts of every method and combination of parameter values
+     *  recorded
+     */
+    public String toPrometheus() {
+        List<Series> ordered = this.getOrderedSeries();
+        StringBuilder builder = new StringBuilder();
+
+        String duration = PROMETHEUS_PREFIX + "duration_seconds";
+        builder.append("# HELP ").append(duration).append(" The duration of traceable method calls\n")
+            .append("# TYPE ").append(duration).append(" histogram\n");
+
+        for (Series entry : ordered) {
+            String labels = this.formatLabels(entry);
+            long count = entry.count.sum();
+            long cumulative = 0;
+
+            for (int i = 0; i < BUCKETS.length; i++) {
+                cumulative += entry.buckets[i].sum();
+                builder.append(duration).append("_bucket{").append(labels).append(",le=\"")
+                    .append(BUCKETS[i]).append("\"} ").append(cumulative).append('\n');
+            }
+
+            builder.append(duration).append("_bucket{").append(labels).append(",le=\"+Inf\"} ")
+                .append(count).append('\n')
+                .append(duration).append("_sum{").append(labels).append("} ")
+                .append(entry.totalNanos.sum() / 1e9).append('\n')
+                .append(duration).append("_count{").append(labels).append("} ")
+                .append(count).append('\n');
+        }
+
+        String errors = PROMETHEUS_PREFIX + "errors_total";
+        builder.append("# HELP ").append(errors).append(" The number of failed traceable method calls\n")
+            .append("# TYPE ").append(errors).append(" counter\n");
+
+        for (Series entry : ordered) {
+            builder.append(errors).append('{').append(this.formatLabels(entry)).append("} ")
+                .append(entry.errors.sum()).append('\n');
+        }
+
+        return builder.toString();
+    }
+
+    private List<Series> getOrderedSeries() {
+        List<Series> ordered = new ArrayList<>(this.series.values());
+        ordered.sort((lhs, rhs) -> {
+            int result = lhs.method.compareTo(rhs.method);
+            return result != 0 ? result : lhs.tags.toString().compareTo(rhs.tags.toString());
+        });
+
+        return ordered;
+    }
+
+    private String formatLabels(Series entry) {
+        StringBuilder builder = new StringBuilder("method=\"").append(escape(entry.method)).append('"');
+
+        for (Map.Entry<String, String> tag : entry.tags.entrySet()) {
+            builder.append(',').append(tag.getKey().replaceAll("[^a-zA-Z0-9_]", "_"))
+                .append("=\"").append(escape(tag.getValue())).append('"');
+        }
+
+        return builder.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+}
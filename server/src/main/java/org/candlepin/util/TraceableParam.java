@@ -25,7 +25,7 @@ import java.lang.annotation.Target;
  * Marks a parameter as traceable. Only applies when used on method parameters for methods
  * annotated with the @Traceable annotation.
  */
-@Retention(RetentionPolicy.CLASS)
+@Retention(RetentionPolicy.RUNTIME)
 @Target({ElementType.PARAMETER})
 public @interface TraceableParam {
 
@@ -54,6 +54,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.Inflater;
@@ -68,21 +69,26 @@ public class X509V3ExtensionUtil extends X509Util {
     private ObjectMapper mapper;
     private Configuration config;
     private EntitlementCurator entCurator;
+    private ContentDictionaryCache dictionaryCache;
     private String thisVersion = "3.3";
 
-    private long pathNodeId = 0;
-    private long huffNodeId = 0;
+    // Node IDs only need to be unique and increasing within a tree, but trees may be built by several
+    // certificate generation workers at once
+    private final AtomicLong pathNodeId = new AtomicLong();
+    private final AtomicLong huffNodeId = new AtomicLong();
     private static final Object END_NODE = new Object();
     private static boolean treeDebug = false;
 
     @Inject
     public X509V3ExtensionUtil(Configuration config, EntitlementCurator entCurator,
-        @Named("X509V3ExtensionUtilObjectMapper") ObjectMapper objectMapper) {
+        @Named("X509V3ExtensionUtilObjectMapper") ObjectMapper objectMapper,
+        ContentDictionaryCache dictionaryCache) {
 
         // Output everything in UTC
         this.config = config;
         this.entCurator = entCurator;
         this.mapper = objectMapper;
+        this.dictionaryCache = dictionaryCache;
     }
 
     public Set<X509ExtensionWrapper> getExtensions() {
@@ -116,27 +122,55 @@ public class X509V3ExtensionUtil extends X509Util {
         EntitlementBody map = createEntitlementBody(productModels,
             consumer, pool, quantity);
 
-        String json = toJson(map);
+        return createEntitlementDataPayload(map);
+    }
+
+    /**
+     * Serializes and compresses an entitlement body built by
+     * {@link #createEntitlementBody(List, Consumer, Pool, Integer)}. Unlike building the body, this
+     * does not read the consumer or pool, and may be done on any thread.
+     *
+     * @param body
+     *  the entitlement body to serialize
+     *
+     * @throws IOException
+     *  if the body cannot be compressed
+     *
+     * @return
+     *  the entitlement data payload
+     */
+    public byte[] createEntitlementDataPayload(EntitlementBody body) throws IOException {
+        String json = toJson(body);
         return processPayload(json);
     }
 
     private byte[] retrieveContentValue(EntitlementBody eb) throws IOException {
         List<Content> contentList = getContentList(eb);
+
+        // The dictionary only depends on the content paths, which are shared by every certificate of
+        // the same pool
+        List<String> paths = new ArrayList<>(contentList.size());
+        for (Content content : contentList) {
+            paths.add(content.getPath());
+        }
+
+        return this.dictionaryCache.get(paths, () -> this.buildContentValue(contentList));
+    }
+
+    private byte[] buildContentValue(List<Content> contentList) throws IOException {
         PathNode treeRoot = makePathTree(contentList, new PathNode());
         List<String> nodeStrings = orderStrings(treeRoot);
         if (nodeStrings.size() == 0) {
             return new byte[0];
         }
         ByteArrayOutputStream data = new ByteArrayOutputStream();
-        List<HuffNode> stringHuffNodes = getStringNodeList(nodeStrings);
-        HuffNode stringTrieParent = makeTrie(stringHuffNodes);
+        HuffmanEncoder<Object> stringEncoder = makeStringEncoder(nodeStrings);
         data.write(byteProcess(nodeStrings));
 
         List<PathNode> orderedNodes = orderNodes(treeRoot);
-        List<HuffNode> pathNodeHuffNodes = getPathNodeNodeList(orderedNodes);
-        HuffNode pathNodeTrieParent = makeTrie(pathNodeHuffNodes);
-        data.write(makeNodeDictionary(stringTrieParent,
-            pathNodeTrieParent, orderedNodes));
+        HuffmanEncoder<PathNode> pathNodeEncoder = makePathNodeEncoder(orderedNodes);
+        data.write(makeNodeDictionary(stringEncoder,
+            pathNodeEncoder, orderedNodes));
 
         return data.toByteArray();
     }
@@ -739,8 +773,8 @@ public class X509V3ExtensionUtil extends X509Util {
         return nodes;
     }
 
-    private byte[] makeNodeDictionary(HuffNode stringParent,
-        HuffNode pathNodeParent, List<PathNode> pathNodes) throws IOException {
+    private byte[] makeNodeDictionary(HuffmanEncoder<Object> stringEncoder,
+        HuffmanEncoder<PathNode> pathNodeEncoder, List<PathNode> pathNodes) throws IOException {
 
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         int nodeSize = pathNodes.size();
@@ -763,37 +797,16 @@ public class X509V3ExtensionUtil extends X509Util {
         else {
             baos.write(nodeSize);
         }
-        StringBuilder bits = new StringBuilder();
-        String endNodeLocation = findHuffPath(stringParent, END_NODE);
+        HuffmanEncoder.BitWriter bits = new HuffmanEncoder.BitWriter(baos);
         for (PathNode pn : pathNodes) {
             for (NodePair np : pn.getChildren()) {
-                bits.append(findHuffPath(stringParent, np.getName()));
-                bits.append(findHuffPath(pathNodeParent, np.getConnection()));
-            }
-            bits.append(endNodeLocation);
-            while (bits.length() >= 8) {
-                int next = 0;
-                for (int i = 0; i < 8; i++) {
-                    next = (byte) next << 1;
-                    if (bits.charAt(i) == '1') {
-                        next++;
-                    }
-                }
-                baos.write(next);
-                bits.delete(0, 8);
+                stringEncoder.encode(np.getName(), bits);
+                pathNodeEncoder.encode(np.getConnection(), bits);
             }
+            stringEncoder.encode(END_NODE, bits);
         }
+        bits.flush();
 
-        if (bits.length() > 0) {
-            int next = 0;
-            for (int i = 0;  i < 8; i++) {
-                next = (byte) next << 1;
-                if (i < bits.length() && bits.charAt(i) == '1') {
-                    next++;
-                }
-            }
-            baos.write(next);
-        }
         byte[] result = baos.toByteArray();
         if (treeDebug) {
             ByteArrayInputStream bais = new ByteArrayInputStream(result);
@@ -867,23 +880,22 @@ public class X509V3ExtensionUtil extends X509Util {
         return baos.toByteArray();
     }
 
-    private List<HuffNode> getStringNodeList(List<String> pathStrings) {
-        List<HuffNode> nodes = new ArrayList<>();
-        int idx = 1;
-        for (String part : pathStrings) {
-            nodes.add(new HuffNode(part, idx++));
-        }
-        nodes.add(new HuffNode(END_NODE, idx));
-        return nodes;
+    /*
+     * The strings are weighted by their position, and followed by the end node. Must match the
+     * string trie built by hydrateContentPackage.
+     */
+    private HuffmanEncoder<Object> makeStringEncoder(List<String> pathStrings) {
+        List<Object> values = new ArrayList<>(pathStrings);
+        values.add(END_NODE);
+        return new HuffmanEncoder<>(values, 1);
     }
 
-    private List<HuffNode> getPathNodeNodeList(List<PathNode> pathNodes) {
-        List<HuffNode> nodes = new ArrayList<>();
-        int idx = 0;
-        for (PathNode pn : pathNodes) {
-            nodes.add(new HuffNode(pn, idx++));
-        }
-        return nodes;
+    /*
+     * The path nodes are weighted by their position, except for the first node which is never
+     * referenced and is not part of the trie (see makeTrie).
+     */
+    private HuffmanEncoder<PathNode> makePathNodeEncoder(List<PathNode> pathNodes) {
+        return new HuffmanEncoder<>(pathNodes.subList(1, pathNodes.size()), 1);
     }
 
     public HuffNode makeTrie(List<HuffNode> nodesList) {
@@ -1140,12 +1152,12 @@ public class X509V3ExtensionUtil extends X509Util {
             this.weight = weight;
             this.left = left;
             this.right = right;
-            this.id = huffNodeId++;
+            this.id = huffNodeId.getAndIncrement();
         }
         public HuffNode(Object value, int weight) {
             this.value = value;
             this.weight = weight;
-            this.id = huffNodeId++;
+            this.id = huffNodeId.getAndIncrement();
         }
 
         public Object getValue() {
@@ -1188,7 +1200,7 @@ public class X509V3ExtensionUtil extends X509Util {
         private List<PathNode> parents = new ArrayList<>();
 
         public PathNode() {
-            this.id = pathNodeId++;
+            this.id = pathNodeId.getAndIncrement();
         }
 
         public long getId() {
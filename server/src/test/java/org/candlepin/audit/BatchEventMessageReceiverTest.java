@@ -0,0 +1,216 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.controller.ActiveMQStatusMonitor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.apache.activemq.artemis.api.core.ActiveMQBuffers;
+import org.apache.activemq.artemis.api.core.client.ClientConsumer;
+import org.apache.activemq.artemis.api.core.client.ClientMessage;
+import org.apache.activemq.artemis.api.core.client.ClientSession;
+import org.apache.activemq.artemis.api.core.client.ClientSessionFactory;
+import org.apache.activemq.artemis.api.core.client.MessageHandler;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+
+/**
+ * BatchEventMessageReceiverTest
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class BatchEventMessageReceiverTest {
+
+    @Mock private ClientSession clientSession;
+    @Mock private ClientConsumer clientConsumer;
+    @Mock private BatchEventListener eventListener;
+
+    private ObjectMapper mapper = new ObjectMapper();
+    private BatchEventMessageReceiver receiver;
+
+    @Before
+    public void init() throws Exception {
+        EventSourceConnection connection = new EventSourceConnection(mock(ActiveMQStatusMonitor.class),
+            mock(Configuration.class));
+
+        this.receiver = new BatchEventMessageReceiver(this.eventListener, connection,
+            new EventCodec(this.mapper), 3, 100);
+        this.receiver.session = this.clientSession;
+    }
+
+    private ClientMessage message(String eventId, long timestamp) throws Exception {
+        Event event = new Event();
+        event.setId(eventId);
+
+        ClientMessage message = mock(ClientMessage.class);
+        when(message.getBodyBuffer()).thenReturn(ActiveMQBuffers.dynamicBuffer(256));
+        message.getBodyBuffer().writeString(this.mapper.writeValueAsString(event));
+        when(message.getTimestamp()).thenReturn(timestamp);
+
+        return message;
+    }
+
+    @Test
+    public void connectedReceiverDrainsQueueWithoutMessageHandler() throws Exception {
+        ClientSessionFactory sessionFactory = mock(ClientSessionFactory.class);
+        when(sessionFactory.createSession(eq(false), eq(false), eq(0))).thenReturn(this.clientSession);
+        when(this.clientSession.createConsumer(anyString())).thenReturn(this.clientConsumer);
+
+        final ClientMessage message = this.message("1", 0);
+        final AtomicBoolean delivered = new AtomicBoolean();
+        when(this.clientConsumer.receive(anyLong())).thenAnswer(invocation -> {
+            if (delivered.compareAndSet(false, true)) {
+                return message;
+            }
+
+            Thread.sleep(10);
+            return null;
+        });
+
+        EventSourceConnection connection = new EventSourceConnection(mock(ActiveMQStatusMonitor.class),
+            mock(Configuration.class)) {
+
+            @Override
+            ClientSessionFactory getFactory() {
+                return sessionFactory;
+            }
+        };
+
+        BatchEventMessageReceiver connected = new BatchEventMessageReceiver(this.eventListener, connection,
+            new EventCodec(this.mapper), 3, 0);
+        connected.connect();
+
+        try {
+            verify(this.eventListener, timeout(5000)).onEvents(anyListOf(Event.class));
+            verify(this.clientSession, timeout(5000)).commit();
+            verify(this.clientConsumer, never()).setMessageHandler(any(MessageHandler.class));
+        }
+        finally {
+            connected.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void batchSizeMustBePositive() throws Exception {
+        new BatchEventMessageReceiver(this.eventListener, null, new EventCodec(this.mapper), 0, 100);
+    }
+
+    @Test
+    public void receiveBatchStopsAtBatchSize() throws Exception {
+        ClientMessage m1 = this.message("1", 0);
+        ClientMessage m2 = this.message("2", 0);
+        ClientMessage m3 = this.message("3", 0);
+        ClientMessage m4 = this.message("4", 0);
+        when(this.clientConsumer.receive(anyLong())).thenReturn(m1, m2, m3, m4);
+
+        assertEquals(Arrays.asList(m1, m2, m3), this.receiver.receiveBatch(this.clientConsumer, 3));
+    }
+
+    @Test
+    public void receiveBatchReturnsPartialBatchWhenNoMoreMessagesArrive() throws Exception {
+        ClientMessage m1 = this.message("1", 0);
+        when(this.clientConsumer.receive(anyLong())).thenReturn(m1, (ClientMessage) null);
+
+        assertEquals(Arrays.asList(m1), this.receiver.receiveBatch(this.clientConsumer, 3));
+    }
+
+    @Test
+    public void receiveBatchReturnsNothingWhenQueueIsEmpty() throws Exception {
+        assertEquals(0, this.receiver.receiveBatch(this.clientConsumer, 3).size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void processCommitsBatchOnce() throws Exception {
+        long sent = System.currentTimeMillis() - 5000;
+        ClientMessage m1 = this.message("1", sent);
+        ClientMessage m2 = this.message("2", sent + 1000);
+
+        this.receiver.process(Arrays.asList(m1, m2));
+
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(this.eventListener).onEvents(captor.capture());
+        List<Event> events = captor.getValue();
+        assertEquals(2, events.size());
+        assertEquals("1", events.get(0).getId());
+        assertEquals("2", events.get(1).getId());
+
+        verify(m1).acknowledge();
+        verify(m2).acknowledge();
+        verify(this.clientSession).commit();
+        verify(this.clientSession, never()).rollback();
+
+        QueueStatus status = new QueueStatus("event.test", 0);
+        this.receiver.updateQueueStatus(status);
+        assertEquals(Long.valueOf(1), status.getBatchCount());
+        assertEquals(Long.valueOf(2), status.getBatchedMessageCount());
+        assertEquals(Integer.valueOf(2), status.getLastBatchSize());
+        assertEquals(true, status.getLastBatchLag() >= 5000);
+    }
+
+    @Test
+    public void failedBatchIsRolledBackAndRetriedOneMessageAtATime() throws Exception {
+        doThrow(new RuntimeException("Forced")).when(this.eventListener).onEvents(anyListOf(Event.class));
+
+        assertEquals(3, this.receiver.nextBatchLimit());
+        this.receiver.process(Arrays.asList(this.message("1", 0), this.message("2", 0)));
+
+        verify(this.clientSession).rollback();
+        verify(this.clientSession, never()).commit();
+        assertEquals(1, this.receiver.nextBatchLimit());
+
+        QueueStatus status = new QueueStatus("event.test", 0);
+        this.receiver.updateQueueStatus(status);
+        assertEquals(Long.valueOf(0), status.getBatchCount());
+    }
+
+    @Test
+    public void unreadableMessageRollsBackBatch() throws Exception {
+        ClientMessage message = mock(ClientMessage.class);
+        when(message.getBodyBuffer()).thenReturn(ActiveMQBuffers.dynamicBuffer(256));
+        message.getBodyBuffer().writeString("test123");
+
+        this.receiver.process(Arrays.asList(this.message("1", 0), message));
+
+        verify(this.eventListener, never()).onEvents(any(List.class));
+        verify(this.clientSession).rollback();
+        verify(this.clientSession, never()).commit();
+    }
+
+}
@@ -14,6 +14,7 @@
  */
 package org.candlepin.audit;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 
@@ -22,9 +23,13 @@ import org.candlepin.model.EventCurator;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.util.Arrays;
+import java.util.Collection;
+
 
 /**
  * DatabaseListenerTest
@@ -47,6 +52,24 @@ public class DatabaseListenerTest {
         verify(ec).create(event);
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void onEventsCreatesEventsAtOnce() {
+        Event other = mock(Event.class);
+        dl.onEvents(Arrays.asList(event, null, other));
+
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(ec).createAll(captor.capture());
+        assertEquals(Arrays.asList(event, other), captor.getValue());
+        verify(ec, never()).create(any(Event.class));
+    }
+
+    @Test
+    public void onEventsWithOnlyNullEvents() {
+        dl.onEvents(Arrays.asList((Event) null));
+        verify(ec, never()).createAll(anyCollectionOf(Event.class));
+    }
+
     @Test
     public void eventNull() {
         when(ec.create(any(Event.class))).thenThrow(new NullPointerException());
@@ -0,0 +1,199 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.candlepin.auth.PrincipalData;
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.audit.EventCodec.Format;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.apache.activemq.artemis.api.core.Message;
+import org.apache.activemq.artemis.api.core.client.ClientMessage;
+import org.apache.activemq.artemis.core.client.impl.ClientMessageImpl;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Date;
+
+
+
+/**
+ * EventCodecTest
+ */
+public class EventCodecTest {
+
+    private ObjectMapper mapper = new ObjectMapper();
+
+    private Event createEvent(String eventData) {
+        Event event = new Event();
+        event.setId("8a8d01f5");
+        event.setType(Event.Type.MODIFIED);
+        event.setTarget(Event.Target.CONSUMER);
+        event.setTargetName("Consum\u00e9r");
+        event.setPrincipal(new PrincipalData("user", "admin"));
+        event.setTimestamp(new Date(1539000000123L));
+        event.setEntityId("c1");
+        event.setOwnerId("o1");
+        event.setConsumerUuid("2c9a8f42-9a3c-4d27-8a3c-8ce2b0d1c0a1");
+        event.setReferenceType(Event.ReferenceType.POOL);
+        event.setEventData(eventData);
+
+        return event;
+    }
+
+    private ClientMessage createMessage() {
+        return new ClientMessageImpl(Message.DEFAULT_TYPE, true, 0, System.currentTimeMillis(),
+            (byte) 4, 1024);
+    }
+
+    private void assertEventEquals(Event expected, Event actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getTarget(), actual.getTarget());
+        assertEquals(expected.getTargetName(), actual.getTargetName());
+        assertEquals(expected.getPrincipalStore(), actual.getPrincipalStore());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getEntityId(), actual.getEntityId());
+        assertEquals(expected.getOwnerId(), actual.getOwnerId());
+        assertEquals(expected.getConsumerUuid(), actual.getConsumerUuid());
+        assertEquals(expected.getReferenceId(), actual.getReferenceId());
+        assertEquals(expected.getReferenceType(), actual.getReferenceType());
+        assertEquals(expected.getEventData(), actual.getEventData());
+        assertEquals(expected.getMessageText(), actual.getMessageText());
+    }
+
+    private String repeat(String value, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(value);
+        }
+
+        return builder.toString();
+    }
+
+    @Test
+    public void jsonRoundTrip() throws Exception {
+        EventCodec codec = new EventCodec(this.mapper);
+        Event event = this.createEvent("{\"name\":\"test\"}");
+        ClientMessage message = this.createMessage();
+
+        codec.encode(event, message);
+
+        assertNull(message.getStringProperty(EventCodec.FORMAT_PROPERTY));
+        this.assertEventEquals(event, codec.decode(message));
+    }
+
+    @Test
+    public void binaryRoundTrip() throws Exception {
+        EventCodec codec = new EventCodec(this.mapper, Format.BINARY, 0);
+        Event event = this.createEvent("{\"name\":\"test\"}");
+        ClientMessage message = this.createMessage();
+
+        codec.encode(event, message);
+
+        assertEquals("binary", message.getStringProperty(EventCodec.FORMAT_PROPERTY));
+        this.assertEventEquals(event, codec.decode(message));
+    }
+
+    @Test
+    public void binaryRoundTripWithNullFields() throws Exception {
+        EventCodec codec = new EventCodec(this.mapper, Format.BINARY, 0);
+        Event event = new Event();
+
+        this.assertEventEquals(event, codec.fromBinary(codec.toBinary(event)));
+    }
+
+    @Test
+    public void binaryIsSmallerThanJson() throws Exception {
+        Event event = this.createEvent("{\"name\":\"test\"}");
+
+        byte[] binary = new EventCodec(this.mapper, Format.BINARY, 0).toBinary(event);
+        assertTrue(binary.length < this.mapper.writeValueAsBytes(event).length);
+    }
+
+    @Test
+    public void largeEventsAreCompressed() throws Exception {
+        EventCodec codec = new EventCodec(this.mapper, Format.BINARY, 512);
+        Event event = this.createEvent(this.repeat("{\"productId\":\"awesomeos\",\"quantity\":10}", 100));
+
+        byte[] body = codec.toBinary(event);
+
+        assertEquals(EventCodec.FLAG_DEFLATED, body[1]);
+        assertTrue(body.length < event.getEventData().length() / 4);
+        this.assertEventEquals(event, codec.fromBinary(body));
+    }
+
+    @Test
+    public void smallEventsAreNotCompressed() throws Exception {
+        EventCodec codec = new EventCodec(this.mapper, Format.BINARY, 512);
+
+        byte[] body = codec.toBinary(this.createEvent("{}"));
+
+        assertEquals(0, body[1]);
+    }
+
+    @Test
+    public void decodesEitherFormat() throws Exception {
+        EventCodec json = new EventCodec(this.mapper);
+        EventCodec binary = new EventCodec(this.mapper, Format.BINARY, 0);
+        Event event = this.createEvent("{}");
+
+        ClientMessage message = this.createMessage();
+        binary.encode(event, message);
+        this.assertEventEquals(event, json.decode(message));
+
+        message = this.createMessage();
+        json.encode(event, message);
+        this.assertEventEquals(event, binary.decode(message));
+    }
+
+    @Test(expected = IOException.class)
+    public void unsupportedVersionIsRejected() throws Exception {
+        EventCodec codec = new EventCodec(this.mapper, Format.BINARY, 0);
+        byte[] body = codec.toBinary(this.createEvent("{}"));
+        body[0] = 2;
+
+        codec.fromBinary(body);
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedEventIsRejected() throws Exception {
+        EventCodec codec = new EventCodec(this.mapper, Format.BINARY, 0);
+        byte[] body = codec.toBinary(this.createEvent("{}"));
+        byte[] truncated = new byte[body.length - 5];
+        System.arraycopy(body, 0, truncated, 0, truncated.length);
+
+        codec.fromBinary(truncated);
+    }
+
+    @Test
+    public void formatIsReadFromConfig() {
+        Configuration config = mock(Configuration.class);
+        when(config.getString(ConfigProperties.AUDIT_MESSAGE_FORMAT, "json")).thenReturn("BINARY");
+        assertEquals(Format.BINARY, new EventCodec(this.mapper, config).getFormat());
+
+        when(config.getString(ConfigProperties.AUDIT_MESSAGE_FORMAT, "json")).thenReturn("xml");
+        assertEquals(Format.JSON, new EventCodec(this.mapper, config).getFormat());
+    }
+
+}
@@ -78,7 +78,7 @@ public class EventMessageReceiverTest {
             }
         };
 
-        receiver = new EventMessageReceiver(eventListener, this.connection, mapper);
+        receiver = new EventMessageReceiver(eventListener, this.connection, new EventCodec(mapper));
         receiver.connect();
     }
 
@@ -135,7 +135,8 @@ public class EventMessageReceiverTest {
 
     @Test
     public void sessionCloseIgnoredIfSessionIsNull() throws Exception {
-        EventMessageReceiver receiver = new EventMessageReceiver(eventListener, this.connection, mapper);
+        EventMessageReceiver receiver = new EventMessageReceiver(eventListener, this.connection,
+            new EventCodec(mapper));
         receiver.close();
         verify(clientSession, never()).close();
 
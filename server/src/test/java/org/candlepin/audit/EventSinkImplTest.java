@@ -45,6 +45,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.apache.activemq.artemis.api.core.ActiveMQBuffers;
 import org.apache.activemq.artemis.api.core.ActiveMQException;
+import org.apache.activemq.artemis.api.core.SimpleString;
 import org.apache.activemq.artemis.api.core.client.ClientMessage;
 import org.apache.activemq.artemis.api.core.client.ClientProducer;
 import org.apache.activemq.artemis.api.core.client.ClientSession;
@@ -58,6 +59,7 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * EventSinkImplTest
@@ -72,6 +74,7 @@ public class EventSinkImplTest {
     @Mock private PrincipalProvider mockPrincipalProvider;
     @Mock private ServerLocator mockLocator;
     @Mock private ModeManager mockModeManager;
+    @Mock private EventSource eventSource;
 
     private EventSinkConnection eventSinkConnection;
     private EventFactory factory;
@@ -112,8 +115,8 @@ public class EventSinkImplTest {
      * @throws Exception
      */
     private EventSinkImpl createEventSink(final ClientSessionFactory sessionFactory) throws Exception {
-        EventSinkImpl sink = new EventSinkImpl(eventFilter, factory, mapper,
-            new CandlepinCommonTestConfig(), eventSinkConnection, mockModeManager);
+        EventSinkImpl sink = new EventSinkImpl(eventFilter, factory, new EventCodec(mapper),
+            new CandlepinCommonTestConfig(), eventSinkConnection, mockModeManager, this.eventSource);
         return sink;
     }
 
@@ -254,4 +257,19 @@ public class EventSinkImplTest {
         verify(mockClientProducer).send(any(ClientMessage.class));
     }
 
+    @Test
+    public void queueInfoIncludesReceiverStatistics() throws Exception {
+        ClientSession.QueueQuery query = mock(ClientSession.QueueQuery.class);
+        when(query.getMessageCount()).thenReturn(5L);
+        when(mockClientSession.queueQuery(any(SimpleString.class))).thenReturn(query);
+
+        List<QueueStatus> statuses = eventSinkImpl.getQueueInfo();
+
+        assertEquals("event.org.candlepin.audit.DatabaseListener", statuses.get(0).getQueueName());
+        assertEquals(5L, statuses.get(0).getPendingMessageCount());
+        for (QueueStatus status : statuses) {
+            verify(eventSource).updateQueueStatus(status);
+        }
+    }
+
 }
@@ -14,6 +14,8 @@
  */
 package org.candlepin.audit;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 
@@ -25,6 +27,7 @@ import org.apache.activemq.artemis.api.core.client.ClientSession;
 import org.apache.activemq.artemis.api.core.client.ClientSessionFactory;
 import org.apache.activemq.artemis.api.core.client.ServerLocator;
 import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
 import org.candlepin.controller.ActiveMQStatusMonitor;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -43,7 +46,8 @@ public class EventSourceTest {
     @Test
     public void eventSourceDoesNotConnectEventReceiversUntilNotifiedConnectionEstablished() throws Exception {
         EventSourceConnection connection = createConnection();
-        EventSource source = new EventSource(connection, new ObjectMapper());
+        EventSource source = new EventSource(connection, new EventCodec(new ObjectMapper()),
+            mock(Configuration.class));
         source.registerListener(mock(EventListener.class));
 
         // Should not attempt to create a client session.
@@ -248,6 +252,40 @@ public class EventSourceTest {
         verify(session, never()).stop();
     }
 
+    @Test
+    public void batchListenersReceiveEventsInBatchesWhenEnabled() throws Exception {
+        Configuration config = mock(Configuration.class);
+        when(config.getInt(eq(ConfigProperties.AUDIT_LISTENER_BATCH_SIZE), anyInt())).thenReturn(10);
+        when(config.getLong(eq(ConfigProperties.AUDIT_LISTENER_BATCH_WAIT), anyLong())).thenReturn(100L);
+
+        EventSource source = new EventSource(createConnection(), new EventCodec(new ObjectMapper()), config);
+        BatchEventListener batchListener = mock(BatchEventListener.class);
+        EventListener listener = mock(EventListener.class);
+        source.registerListener(batchListener);
+        source.registerListener(listener);
+
+        QueueStatus batchStatus = new QueueStatus(EventSource.getQueueName(batchListener), 0);
+        QueueStatus status = new QueueStatus(EventSource.getQueueName(listener), 0);
+        source.updateQueueStatus(batchStatus);
+        source.updateQueueStatus(status);
+
+        assertEquals(Long.valueOf(0), batchStatus.getBatchCount());
+        assertNull(status.getBatchCount());
+    }
+
+    @Test
+    public void batchListenersReceiveEventsOneAtATimeByDefault() throws Exception {
+        EventSource source = new EventSource(createConnection(), new EventCodec(new ObjectMapper()),
+            mock(Configuration.class));
+        BatchEventListener batchListener = mock(BatchEventListener.class);
+        source.registerListener(batchListener);
+
+        QueueStatus status = new QueueStatus(EventSource.getQueueName(batchListener), 0);
+        source.updateQueueStatus(status);
+
+        assertNull(status.getBatchCount());
+    }
+
     /**
      * Creates a new EventSource with a mocked ClientSessionFactory.
      *
@@ -256,7 +294,8 @@ public class EventSourceTest {
     private EventSource createEventSourceStubbedWithFactoryCreation(EventListener ... listeners)
         throws Exception {
         EventSourceConnection connection = createConnection();
-        EventSource source = new EventSource(connection, new ObjectMapper());
+        EventSource source = new EventSource(connection, new EventCodec(new ObjectMapper()),
+            mock(Configuration.class));
 
         for (EventListener listener : listeners) {
             source.registerListener(listener);
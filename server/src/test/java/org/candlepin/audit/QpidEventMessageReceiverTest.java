@@ -71,7 +71,8 @@ public class QpidEventMessageReceiverTest {
             }
         };
 
-        receiver = new QpidEventMessageReceiver(eventListener, this.connection, new ObjectMapper());
+        receiver = new QpidEventMessageReceiver(eventListener, this.connection,
+            new EventCodec(new ObjectMapper()));
         // Calling connect will initialize the ClientSession
         receiver.connect();
     }
@@ -19,7 +19,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
-import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -56,10 +56,13 @@ import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -91,6 +94,7 @@ public class EntitlementCertificateGeneratorTest {
     @Captor private ArgumentCaptor<Map<String, Entitlement>> entMapCaptor;
     @Captor private ArgumentCaptor<Map<String, Product>> productMapCaptor;
     @Captor private ArgumentCaptor<Map<String, PoolQuantity>> poolQuantityMapCaptor;
+    @Captor private ArgumentCaptor<List<Entitlement>> entListCaptor;
 
     private EntitlementCertificateGenerator ecGenerator;
 
@@ -210,6 +214,25 @@ public class EntitlementCertificateGeneratorTest {
         return Arrays.asList(ent1, ent2, ent3);
     }
 
+    /**
+     * Stubs the regeneration of entitlement certificates to return a new certificate for each
+     * entitlement.
+     */
+    private void mockCertRegeneration() throws Exception {
+        when(this.mockEntCertAdapter.regenerateEntitlementCerts(anyListOf(Entitlement.class)))
+            .thenAnswer(new Answer<List<EntitlementCertificate>>() {
+                @Override
+                public List<EntitlementCertificate> answer(InvocationOnMock invocation) {
+                    List<EntitlementCertificate> certs = new ArrayList<>();
+                    for (int i = 0; i < ((List) invocation.getArguments()[0]).size(); i++) {
+                        certs.add(new EntitlementCertificate());
+                    }
+
+                    return certs;
+                }
+            });
+    }
+
     private static int lastPoolId = 1;
 
     /**
@@ -249,16 +272,10 @@ public class EntitlementCertificateGeneratorTest {
         Environment environment = new Environment();
         List<Entitlement> entitlements = this.generateEntitlements();
 
-        HashMap<String, EntitlementCertificate> ecMap = new HashMap<>();
-        for (Entitlement entitlement : entitlements) {
-            ecMap.put(entitlement.getPool().getId(), new EntitlementCertificate());
-        }
-
         CandlepinQuery<Entitlement> cqmock = mock(CandlepinQuery.class);
         when(cqmock.iterator()).thenReturn(entitlements.iterator());
         when(this.mockEntitlementCurator.listByEnvironment(environment)).thenReturn(cqmock);
-        when(this.mockEntCertAdapter.generateEntitlementCerts(any(Consumer.class), any(Map.class),
-            any(Map.class), any(Map.class), anyBoolean())).thenReturn(ecMap);
+        this.mockCertRegeneration();
 
         this.ecGenerator.regenerateCertificatesOf(environment, Arrays.asList("c1", "c2", "c4"), false);
 
@@ -266,9 +283,9 @@ public class EntitlementCertificateGeneratorTest {
         assertFalse(entitlements.get(1).isDirty());
         assertFalse(entitlements.get(2).isDirty());
 
-        verify(this.mockEntCertAdapter, times(2)).generateEntitlementCerts(any(Consumer.class),
-            this.poolQuantityMapCaptor.capture(), this.entMapCaptor.capture(), this.productMapCaptor
-            .capture(), eq(false));
+        verify(this.mockEntCertAdapter, times(1)).regenerateEntitlementCerts(this.entListCaptor.capture());
+        assertEquals(new HashSet<>(entitlements.subList(0, 2)), new HashSet<>(this.entListCaptor.getValue()));
+        assertEquals(2, this.entListCaptor.getValue().size());
 
         verify(this.mockEventSink, times(2)).queueEvent(any(Event.class));
     }
@@ -305,21 +322,16 @@ public class EntitlementCertificateGeneratorTest {
         entitlements.add(entitlement);
         pool.setEntitlements(entitlements);
 
-        HashMap<String, EntitlementCertificate> ecMap = new HashMap<>();
-        ecMap.put(pool.getId(), new EntitlementCertificate());
-
         when(this.mockPoolCurator.listAvailableEntitlementPools(any(Consumer.class), eq(owner),
             eq(product.getId()), any(Date.class))).thenReturn(Arrays.asList(pool));
-        when(this.mockEntCertAdapter.generateEntitlementCerts(any(Consumer.class), any(Map.class),
-            any(Map.class), any(Map.class), anyBoolean())).thenReturn(ecMap);
+        this.mockCertRegeneration();
 
         this.ecGenerator.regenerateCertificatesOf(owner, product.getId(), false);
 
         assertFalse(entitlement.isDirty());
 
-        verify(this.mockEntCertAdapter, times(1)).generateEntitlementCerts(any(Consumer.class),
-            this.poolQuantityMapCaptor.capture(), this.entMapCaptor.capture(),
-            this.productMapCaptor.capture(), eq(false));
+        verify(this.mockEntCertAdapter, times(1)).regenerateEntitlementCerts(this.entListCaptor.capture());
+        assertEquals(Arrays.asList(entitlement), this.entListCaptor.getValue());
 
         verify(this.mockEventSink, times(1)).queueEvent(any(Event.class));
     }
@@ -348,13 +360,7 @@ public class EntitlementCertificateGeneratorTest {
         Pool pool = TestUtil.createPool(owner, product);
         pool.setSourceSubscription(new SourceSubscription("source-sub-id", "master"));
 
-        Map<String, EntitlementCertificate> entCerts = new HashMap<>();
-        entCerts.put(pool.getId(), new EntitlementCertificate());
-
-        when(this.mockEntCertAdapter.generateEntitlementCerts(
-            any(Consumer.class), anyMapOf(String.class, PoolQuantity.class),
-            anyMapOf(String.class, Entitlement.class),
-            anyMapOf(String.class, Product.class), anyBoolean())).thenReturn(entCerts);
+        this.mockCertRegeneration();
 
         Consumer consumer = TestUtil.createConsumer(owner);
         Entitlement entitlement = new Entitlement(pool, consumer, owner, 1);
@@ -362,17 +368,44 @@ public class EntitlementCertificateGeneratorTest {
 
         this.ecGenerator.regenerateCertificatesOf(entitlement, false);
         assertFalse(entitlement.isDirty());
+        assertEquals(1, entitlement.getCertificates().size());
 
-        verify(this.mockEntCertAdapter).generateEntitlementCerts(eq(consumer),
-            this.poolQuantityMapCaptor.capture(), this.entMapCaptor.capture(), this.productMapCaptor
-            .capture(), eq(false));
+        verify(this.mockEntCertAdapter).regenerateEntitlementCerts(this.entListCaptor.capture());
 
-        assertEquals(entitlement, this.entMapCaptor.getValue().get(pool.getId()));
-        assertEquals(product, this.productMapCaptor.getValue().get(pool.getId()));
+        assertEquals(Arrays.asList(entitlement), this.entListCaptor.getValue());
+        assertEquals(consumer, this.entListCaptor.getValue().get(0).getConsumer());
+        assertEquals(product, this.entListCaptor.getValue().get(0).getPool().getProduct());
 
         verify(this.mockEventSink, times(1)).queueEvent(any(Event.class));
     }
 
+    @Test
+    public void testNonLazyRegenerateSkipsOversizedCertificates() throws Exception {
+        Owner owner = TestUtil.createOwner("test-owner", "Test Owner");
+        Consumer consumer = TestUtil.createConsumer(owner);
+        Pool pool1 = TestUtil.createPool(owner, TestUtil.createProduct());
+        Pool pool2 = TestUtil.createPool(owner, TestUtil.createProduct());
+
+        Entitlement entitlement1 = new Entitlement(pool1, consumer, owner, 1);
+        entitlement1.setId("ent1");
+        entitlement1.setDirty(true);
+        Entitlement entitlement2 = new Entitlement(pool2, consumer, owner, 1);
+        entitlement2.setId("ent2");
+        entitlement2.setDirty(true);
+
+        // The certificate of the first entitlement exceeds the size limits
+        when(this.mockEntCertAdapter.regenerateEntitlementCerts(anyListOf(Entitlement.class)))
+            .thenReturn(Arrays.asList(null, new EntitlementCertificate()));
+
+        this.ecGenerator.regenerateCertificatesOf(Arrays.asList(entitlement1, entitlement2), false);
+
+        assertTrue(entitlement1.isDirty());
+        assertFalse(entitlement2.isDirty());
+
+        verify(this.mockEntCertCurator).deleteByEntitlementIds(eq(Collections.singleton("ent2")));
+        verify(this.mockEventSink, times(1)).queueEvent(any(Event.class));
+    }
+
 
     @Test
     public void testLazyRegenerationByEntitlementId() throws Exception {
@@ -407,20 +440,15 @@ public class EntitlementCertificateGeneratorTest {
         Collection<String> entitlements = Arrays.asList(entitlement.getId());
         pool.setEntitlements(new HashSet(Arrays.asList(entitlement)));
 
-        HashMap<String, EntitlementCertificate> ecMap = new HashMap<>();
-        ecMap.put(pool.getId(), new EntitlementCertificate());
-
         when(this.mockEntitlementCurator.get(eq(entitlement.getId()))).thenReturn(entitlement);
-        when(this.mockEntCertAdapter.generateEntitlementCerts(any(Consumer.class), any(Map.class),
-            any(Map.class), any(Map.class), anyBoolean())).thenReturn(ecMap);
+        this.mockCertRegeneration();
 
         this.ecGenerator.regenerateCertificatesByEntitlementIds(entitlements, false);
 
         assertFalse(entitlement.isDirty());
 
-        verify(this.mockEntCertAdapter, times(1)).generateEntitlementCerts(any(Consumer.class),
-            this.poolQuantityMapCaptor.capture(), this.entMapCaptor.capture(), this.productMapCaptor
-            .capture(), eq(false));
+        verify(this.mockEntCertAdapter, times(1)).regenerateEntitlementCerts(this.entListCaptor.capture());
+        assertEquals(Arrays.asList(entitlement), this.entListCaptor.getValue());
 
         verify(this.mockEventSink, times(1)).queueEvent(any(Event.class));
     }
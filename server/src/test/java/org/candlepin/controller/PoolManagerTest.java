@@ -104,6 +104,10 @@ import org.candlepin.service.SubscriptionServiceAdapter;
 import org.candlepin.service.model.SubscriptionInfo;
 import org.candlepin.test.MockResultIterator;
 import org.candlepin.test.TestUtil;
+import org.candlepin.util.TraceableMethodStats;
+import org.candlepin.util.TraceableMetrics;
+
+import com.google.common.hash.HashCode;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -173,10 +177,12 @@ public class PoolManagerTest {
     @Mock private CdnCurator mockCdnCurator;
     @Mock private PinsetterKernel pinsetterKernel;
     @Mock private BindChainFactory mockBindChainFactory;
+    @Mock private AvailablePoolCountCache mockPoolCountCache;
     @Mock private BindContextFactory mockBindContextFactory;
     @Mock private PreEntitlementRulesCheckOpFactory mockPreEntitlementRulesCheckFactory;
 
     private CandlepinPoolManager manager;
+    private TraceableMetrics traceableMetrics;
     private UserPrincipal principal;
 
     private Owner owner;
@@ -191,6 +197,7 @@ public class PoolManagerTest {
         MockitoAnnotations.initMocks(this);
 
         i18n = I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK);
+        traceableMetrics = new TraceableMetrics();
 
         owner = TestUtil.createOwner("key", "displayname");
         product = TestUtil.createProduct();
@@ -211,7 +218,7 @@ public class PoolManagerTest {
             mockECGenerator, complianceRules, systemPurposeComplianceRules, autobindRules,
             activationKeyRules, mockProductCurator, mockProductManager, mockContentManager,
             mockOwnerContentCurator, mockOwnerCurator, mockOwnerProductCurator, mockOwnerManager,
-            mockCdnCurator, pinsetterKernel, i18n, mockBindChainFactory
+            mockCdnCurator, pinsetterKernel, i18n, mockBindChainFactory, mockPoolCountCache
         ));
 
         setupBindChain();
@@ -304,6 +311,8 @@ public class PoolManagerTest {
                         consumerTypeCuratorMock,
                         mockOwnerCurator,
                         i18n,
+                        mockConfig,
+                        traceableMetrics,
                         consumer,
                         pQ);
                 }
@@ -382,6 +391,236 @@ public class PoolManagerTest {
         verify(mockPoolCurator).batchDelete(eq(pools), anySetOf(String.class));
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testRefreshPoolsInChunksSkipsCheckpointedSubscriptions() {
+        when(mockConfig.getInt(eq(ConfigProperties.REFRESH_POOLS_CHUNK_SIZE), anyInt())).thenReturn(1);
+
+        Owner owner = this.getOwner();
+        Product stacked = TestUtil.createProduct();
+        stacked.setAttribute(Product.Attributes.STACKING_ID, "stack-1");
+        Product unstacked = TestUtil.createProduct();
+
+        List<Subscription> subscriptions = new ArrayList<>();
+        for (String subId : Arrays.asList("sub-a", "sub-b", "sub-c", "sub-d")) {
+            Subscription sub = TestUtil.createSubscription(owner,
+                subId.equals("sub-a") || subId.equals("sub-c") ? stacked : unstacked);
+            sub.setId(subId);
+            subscriptions.add(sub);
+        }
+
+        this.mockSubscriptions(owner, subscriptions);
+        when(mockOwnerCurator.getByKey(owner.getKey())).thenReturn(owner);
+        this.mockProductImport(owner, stacked, unstacked);
+        this.mockContentImport(owner, new Content[] {});
+
+        doNothing().when(this.manager).refreshSubscriptionPools(any(Owner.class), any(Collection.class),
+            any(CandlepinPoolManager.RefreshData.class), anyBoolean());
+        doNothing().when(this.manager).finishRefresh(any(Owner.class), any(Set.class), anyBoolean(),
+            any(Map.class));
+
+        // The stacked subscription c shares a unit with a, which has to be refreshed again
+        RefreshCheckpoint checkpoint = mock(RefreshCheckpoint.class);
+        when(checkpoint.getRefreshedSubscriptions())
+            .thenReturn(new HashSet<>(Arrays.asList("sub-c", "sub-d")));
+
+        this.manager.getRefresher(mockSubAdapter, mockOwnerAdapter)
+            .setCheckpoint(checkpoint)
+            .add(owner)
+            .run();
+
+        ArgumentCaptor<Collection> chunkCaptor = ArgumentCaptor.forClass(Collection.class);
+        verify(this.manager, times(2)).refreshSubscriptionPools(eq(owner), chunkCaptor.capture(),
+            any(CandlepinPoolManager.RefreshData.class), anyBoolean());
+
+        Set<String> refreshed = new HashSet<>();
+        for (Collection<SubscriptionInfo> chunk : chunkCaptor.getAllValues()) {
+            List<String> chunkIds = new ArrayList<>();
+            for (SubscriptionInfo sub : chunk) {
+                chunkIds.add(sub.getId());
+            }
+
+            if (chunkIds.contains("sub-a")) {
+                assertEquals(new HashSet<>(Arrays.asList("sub-a", "sub-c")), new HashSet<>(chunkIds));
+            }
+
+            refreshed.addAll(chunkIds);
+            verify(checkpoint).subscriptionsRefreshed(eq(chunkIds), eq(4));
+        }
+
+        assertEquals(new HashSet<>(Arrays.asList("sub-a", "sub-b", "sub-c")), refreshed);
+        Set<String> expected = new HashSet<>(Arrays.asList("sub-a", "sub-b", "sub-c", "sub-d"));
+        verify(this.manager).finishRefresh(eq(owner), eq(expected), anyBoolean(), any(Map.class));
+    }
+
+    /**
+     * A checkpoint keeping the progress of a refresh in memory, across attempts of the refresh.
+     */
+    private static class TestCheckpoint implements RefreshCheckpoint {
+        private final Set<String> refreshed = new HashSet<>();
+        private final Set<String> updatedProducts = new HashSet<>();
+
+        @Override
+        public Set<String> getRefreshedSubscriptions() {
+            return new HashSet<>(this.refreshed);
+        }
+
+        @Override
+        public void subscriptionsRefreshed(Collection<String> subscriptionIds, int total) {
+            this.refreshed.addAll(subscriptionIds);
+        }
+
+        @Override
+        public Set<String> getUpdatedProducts() {
+            return new HashSet<>(this.updatedProducts);
+        }
+
+        @Override
+        public void productsUpdated(Collection<String> productIds) {
+            this.updatedProducts.addAll(productIds);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testResumedRefreshRegeneratesProductsUpdatedByFailedAttempt() {
+        when(mockConfig.getInt(eq(ConfigProperties.REFRESH_POOLS_CHUNK_SIZE), anyInt())).thenReturn(1);
+
+        Owner owner = this.getOwner();
+        Product product = TestUtil.createProduct();
+
+        List<Subscription> subscriptions = new ArrayList<>();
+        for (String subId : Arrays.asList("sub-a", "sub-b")) {
+            Subscription sub = TestUtil.createSubscription(owner, product);
+            sub.setId(subId);
+            subscriptions.add(sub);
+        }
+
+        this.mockSubscriptions(owner, subscriptions);
+        when(mockOwnerCurator.getByKey(owner.getKey())).thenReturn(owner);
+        this.mockContentImport(owner, new Content[] {});
+
+        // The first attempt updates the content of the product, and fails on its second chunk
+        ImportResult<Product> updated = new ImportResult<>();
+        updated.getUpdatedEntities().put(product.getId(), product);
+        when(mockProductManager.importProducts(eq(owner), any(Map.class), any(Map.class)))
+            .thenReturn(updated);
+
+        doNothing().doThrow(new RuntimeException("chunk failed")).when(this.manager)
+            .refreshSubscriptionPools(any(Owner.class), any(Collection.class),
+            any(CandlepinPoolManager.RefreshData.class), anyBoolean());
+        doNothing().when(this.manager).finishRefresh(any(Owner.class), any(Set.class), anyBoolean(),
+            any(Map.class));
+
+        TestCheckpoint checkpoint = new TestCheckpoint();
+
+        try {
+            this.manager.refreshPoolsWithRegeneration(mockSubAdapter, owner, false, checkpoint);
+            fail("Expected the second chunk to fail");
+        }
+        catch (RuntimeException e) {
+            assertEquals("chunk failed", e.getMessage());
+        }
+
+        Set<String> refreshed = checkpoint.getRefreshedSubscriptions();
+        assertEquals(1, refreshed.size());
+        verify(this.manager, never()).finishRefresh(any(Owner.class), any(Set.class), anyBoolean(),
+            any(Map.class));
+
+        // The product was committed by the first attempt, so the resumed refresh imports it unchanged
+        this.mockProductImport(owner, product);
+        doNothing().when(this.manager).refreshPoolsForMasterPool(any(Pool.class), anyBoolean(),
+            anyBoolean(), any(Map.class));
+        doCallRealMethod().when(this.manager).refreshSubscriptionPools(any(Owner.class),
+            any(Collection.class), any(CandlepinPoolManager.RefreshData.class), anyBoolean());
+
+        this.manager.refreshPoolsWithRegeneration(mockSubAdapter, owner, false, checkpoint);
+
+        // The remaining chunk and the floating pools are still regenerated for the product
+        ArgumentCaptor<Map> changedCaptor = ArgumentCaptor.forClass(Map.class);
+        ArgumentCaptor<Pool> poolCaptor = ArgumentCaptor.forClass(Pool.class);
+        verify(this.manager).refreshPoolsForMasterPool(poolCaptor.capture(), eq(false), eq(false),
+            changedCaptor.capture());
+
+        assertFalse(refreshed.contains(poolCaptor.getValue().getSubscriptionId()));
+        assertEquals(Collections.singleton(product.getId()), changedCaptor.getValue().keySet());
+
+        ArgumentCaptor<Map> finishCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(this.manager).finishRefresh(eq(owner), any(Set.class), eq(false), finishCaptor.capture());
+        assertEquals(Collections.singleton(product.getId()), finishCaptor.getValue().keySet());
+
+        assertEquals(new HashSet<>(Arrays.asList("sub-a", "sub-b")), checkpoint.getRefreshedSubscriptions());
+        assertEquals(Collections.singleton(product.getId()), checkpoint.getUpdatedProducts());
+    }
+
+    @Test
+    public void testRecalculatePoolQuantitiesForOwner() {
+        Owner owner = this.getOwner();
+        this.manager.recalculatePoolQuantitiesForOwner(owner);
+
+        verify(mockPoolCurator).calculateConsumedForOwnersPools(eq(owner));
+        verify(mockPoolCurator).calculateExportedForOwnersPools(eq(owner));
+        verify(mockPoolCurator, never()).bulkCalculatePoolQuantitiesForOwner(any(Owner.class));
+    }
+
+    @Test
+    public void testRecalculatePoolQuantitiesForOwnerInBulk() {
+        when(mockConfig.getBoolean(eq(ConfigProperties.REFRESH_POOLS_BULK_QUANTITIES), anyBoolean()))
+            .thenReturn(true);
+
+        Owner owner = this.getOwner();
+        this.manager.recalculatePoolQuantitiesForOwner(owner);
+
+        verify(mockPoolCurator).bulkCalculatePoolQuantitiesForOwner(eq(owner));
+        verify(mockPoolCurator, never()).calculateConsumedForOwnersPools(any(Owner.class));
+        verify(mockPoolCurator, never()).calculateExportedForOwnersPools(any(Owner.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testRefreshPoolsSkipsUnchangedSubscriptions() {
+        when(mockConfig.getBoolean(eq(ConfigProperties.REFRESH_POOLS_SKIP_UNCHANGED), anyBoolean()))
+            .thenReturn(true);
+
+        Owner owner = this.getOwner();
+        Product product = TestUtil.createProduct();
+        Map<String, Product> productMap = Collections.singletonMap(product.getId(), product);
+
+        Subscription unchanged = TestUtil.createSubscription(owner, product);
+        unchanged.setId("unchanged-subid");
+        Subscription changed = TestUtil.createSubscription(owner, product);
+        changed.setId("changed-subid");
+
+        this.mockSubscriptions(owner, Arrays.asList(unchanged, changed));
+        when(mockOwnerCurator.getByKey(owner.getKey())).thenReturn(owner);
+        this.mockProductImport(owner, product);
+        this.mockContentImport(owner, new Content[] {});
+
+        Map<String, String> stored = new HashMap<>();
+        stored.put(unchanged.getId(), SubscriptionFingerprint.compute(unchanged, productMap));
+        stored.put(changed.getId(), "stale");
+        when(mockPoolCurator.getMasterPoolRefreshFingerprints(eq(owner))).thenReturn(stored);
+
+        doNothing().when(this.manager).refreshPoolsForMasterPool(any(Pool.class), anyBoolean(),
+            anyBoolean(), any(Map.class));
+        doNothing().when(this.manager).finishRefresh(any(Owner.class), any(Set.class), anyBoolean(),
+            any(Map.class));
+
+        RefreshResult result = this.manager.getRefresher(mockSubAdapter, mockOwnerAdapter).add(owner).run();
+
+        assertEquals(1, result.getProcessedSubscriptions());
+        assertEquals(1, result.getSkippedSubscriptions());
+
+        ArgumentCaptor<Pool> poolCaptor = ArgumentCaptor.forClass(Pool.class);
+        verify(this.manager, times(1)).refreshPoolsForMasterPool(poolCaptor.capture(), anyBoolean(),
+            anyBoolean(), any(Map.class));
+        assertEquals(changed.getId(), poolCaptor.getValue().getSubscriptionId());
+
+        verify(mockPoolCurator).setMasterPoolRefreshFingerprint(eq(changed.getId()),
+            eq(SubscriptionFingerprint.compute(changed, productMap)));
+        verify(mockPoolCurator, never()).setMasterPoolRefreshFingerprint(eq(unchanged.getId()), anyString());
+    }
+
     @SuppressWarnings({ "rawtypes", "unchecked" })
     @Test
     public void testRefreshPoolsOnlyRegeneratesFloatingWhenNecessary() {
@@ -1236,6 +1475,136 @@ public class PoolManagerTest {
         }
     }
 
+    private PoolCurator.QuantityReservation setupReservation(Consumer consumer, String refusedPoolId) {
+        pool.setId("reserved-pool");
+        pool.setQuantity(10L);
+        pool.setConsumed(0L);
+
+        Map<String, EntitlementCertificate> entCerts = new HashMap<>();
+        entCerts.put(pool.getId(), new EntitlementCertificate());
+        when(mockECGenerator.generateEntitlementCertificates(any(Consumer.class), anyMap(), anyMap(),
+            anyMap(), eq(false))).thenReturn(entCerts);
+
+        CandlepinQuery<Pool> cqmock = mock(CandlepinQuery.class);
+        when(cqmock.iterator()).thenReturn(Arrays.asList(pool).iterator());
+        when(mockPoolCurator.listAllByIds(anyCollection())).thenReturn(cqmock);
+
+        Map<String, ValidationResult> resultMap = new HashMap<>();
+        resultMap.put(pool.getId(), new ValidationResult());
+        when(enforcerMock.preEntitlement(any(Consumer.class), anyCollectionOf(PoolQuantity.class),
+            any(CallerType.class))).thenReturn(resultMap);
+        when(enforcerMock.postEntitlement(eq(manager), any(Consumer.class), any(Owner.class), anyMap(),
+            anyList(), eq(false), anyMap())).thenReturn(new PoolOperationCallback());
+
+        PoolCurator.QuantityReservation reservation = mock(PoolCurator.QuantityReservation.class);
+        when(reservation.getRefusedPoolId()).thenReturn(refusedPoolId);
+        when(mockConfig.getBoolean(eq(ConfigProperties.BIND_POOL_RESERVATIONS), anyBoolean()))
+            .thenReturn(true);
+        when(mockPoolCurator.supportsQuantityReservations()).thenReturn(true);
+        when(mockPoolCurator.reserveQuantities(anyMapOf(String.class, Integer.class), anyBoolean()))
+            .thenReturn(reservation);
+
+        return reservation;
+    }
+
+    private Map<String, Integer> singletonQuantity(Pool pool, int quantity) {
+        // The bind consumes the quantities it is given
+        Map<String, Integer> poolQuantities = new HashMap<>();
+        poolQuantities.put(pool.getId(), quantity);
+        return poolQuantities;
+    }
+
+    @Test
+    public void testBindReservesPoolQuantitiesInsteadOfLockingPools() throws Exception {
+        ConsumerType ctype = this.mockConsumerType(TestUtil.createConsumerType());
+        Consumer consumer = TestUtil.createConsumer(ctype, owner);
+        PoolCurator.QuantityReservation reservation = this.setupReservation(consumer, null);
+
+        List<Entitlement> ents = manager.entitleByPools(consumer, this.singletonQuantity(pool, 2));
+
+        assertEquals(1, ents.size());
+        verify(mockPoolCurator).reserveQuantities(eq(Collections.singletonMap(pool.getId(), 2)), eq(false));
+        verify(mockPoolCurator, never()).lockAndLoadByIds(anyCollection());
+        verify(mockPoolCurator).refresh(eq(pool));
+        verify(reservation, never()).release();
+
+        // The reserved quantity has already been consumed in the database
+        assertEquals(Long.valueOf(0), pool.getConsumed());
+        assertEquals(2, consumer.getEntitlementCount());
+
+        List<TraceableMethodStats> stats = traceableMetrics.getStats();
+        assertEquals(1, stats.size());
+        assertEquals(Collections.singletonMap("pool", pool.getId()), stats.get(0).getTags());
+        assertEquals(0, stats.get(0).getErrorCount());
+    }
+
+    @Test
+    public void testBindLocksPoolsWrittenInTransactionInsteadOfReservingThem() throws Exception {
+        ConsumerType ctype = this.mockConsumerType(TestUtil.createConsumerType());
+        Consumer consumer = TestUtil.createConsumer(ctype, owner);
+        this.setupReservation(consumer, null);
+
+        when(mockPoolCurator.reserveQuantities(anyMapOf(String.class, Integer.class), anyBoolean()))
+            .thenReturn(null);
+        when(mockPoolCurator.lockAndLoadByIds(anyCollection())).thenReturn(Arrays.asList(pool));
+
+        List<Entitlement> ents = manager.entitleByPools(consumer, this.singletonQuantity(pool, 2));
+
+        assertEquals(1, ents.size());
+        verify(mockPoolCurator).lockAndLoadByIds(anyCollection());
+        verify(mockPoolCurator, never()).refresh(eq(pool));
+
+        // The quantity was not reserved, and is consumed by the bind itself
+        assertEquals(Long.valueOf(2), pool.getConsumed());
+        assertTrue(traceableMetrics.getStats().isEmpty());
+    }
+
+    @Test
+    public void testBindRefusedWhenPoolQuantityCannotBeReserved() throws Exception {
+        ConsumerType ctype = this.mockConsumerType(TestUtil.createConsumerType());
+        Consumer consumer = TestUtil.createConsumer(ctype, owner);
+        this.setupReservation(consumer, "reserved-pool");
+
+        try {
+            manager.entitleByPools(consumer, this.singletonQuantity(pool, 1));
+            fail("Expected EntitlementRefusedException");
+        }
+        catch (EntitlementRefusedException e) {
+            ValidationResult result = e.getResults().get(pool.getId());
+            assertEquals("rulefailed.no.entitlements.available",
+                result.getErrors().get(0).getResourceKey());
+        }
+
+        verify(entitlementCurator, never()).saveAll(anyCollection(), anyBoolean(), anyBoolean());
+        assertEquals(1, traceableMetrics.getStats().get(0).getErrorCount());
+    }
+
+    @Test
+    public void testBindReleasesReservationWhenRefusedAfterReserving() throws Exception {
+        ConsumerType ctype = this.mockConsumerType(TestUtil.createConsumerType());
+        Consumer consumer = TestUtil.createConsumer(ctype, owner);
+        PoolCurator.QuantityReservation reservation = this.setupReservation(consumer, null);
+
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ((ValidationResult) invocation.getArguments()[0]).addError("pool.expired");
+                return null;
+            }
+        }).when(enforcerMock).finishValidation(any(ValidationResult.class), any(Pool.class), eq(0));
+
+        try {
+            manager.entitleByPools(consumer, this.singletonQuantity(pool, 1));
+            fail("Expected EntitlementRefusedException");
+        }
+        catch (EntitlementRefusedException e) {
+            // expected
+        }
+
+        verify(reservation).release();
+        verify(entitlementCurator, never()).saveAll(anyCollection(), anyBoolean(), anyBoolean());
+    }
+
     @Test
     public void testRefreshPoolsRemovesExpiredSubscriptionsAlongWithItsPoolsAndEnts() {
         PreUnbindHelper preHelper =  mock(PreUnbindHelper.class);
@@ -2203,4 +2572,125 @@ public class PoolManagerTest {
         assertEquals(expected, output);
     }
 
+    @SuppressWarnings("unchecked")
+    private List<String> mockChunkedAvailablePools(int count, int chunkSize) {
+        List<String> poolIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            poolIds.add("pool-" + i);
+        }
+
+        when(mockConfig.getInt(eq(ConfigProperties.AVAILABLE_POOLS_FILTER_CHUNK_SIZE), anyInt()))
+            .thenReturn(chunkSize);
+        when(mockPoolCurator.listAvailableEntitlementPoolIds(any(Consumer.class), any(String.class),
+            any(String.class), any(String.class), any(Date.class), any(PoolFilterBuilder.class),
+            any(PageRequest.class), anyBoolean(), anyBoolean(), any(Date.class))).thenReturn(poolIds);
+
+        when(mockPoolCurator.listAllByIds(anyCollection())).thenAnswer(new Answer<CandlepinQuery<Pool>>() {
+            @Override
+            public CandlepinQuery<Pool> answer(InvocationOnMock invocation) throws Throwable {
+                List<Pool> pools = new ArrayList<>();
+                for (String poolId : (Collection<String>) invocation.getArguments()[0]) {
+                    Pool pool = TestUtil.createPool(owner, product);
+                    pool.setId(poolId);
+                    pools.add(pool);
+                }
+
+                CandlepinQuery<Pool> cqmock = mock(CandlepinQuery.class);
+                when(cqmock.iterator()).thenReturn(pools.iterator());
+                return cqmock;
+            }
+        });
+
+        // The rules only accept even pools
+        when(enforcerMock.filterPools(any(Consumer.class), anyList(), anyBoolean()))
+            .thenAnswer(new Answer<List<Pool>>() {
+                @Override
+                public List<Pool> answer(InvocationOnMock invocation) throws Throwable {
+                    List<Pool> accepted = new ArrayList<>();
+                    for (Pool pool : (List<Pool>) invocation.getArguments()[1]) {
+                        if (Integer.parseInt(pool.getId().substring(5)) % 2 == 0) {
+                            accepted.add(pool);
+                        }
+                    }
+
+                    return accepted;
+                }
+            });
+
+        return poolIds;
+    }
+
+    private Page<List<Pool>> listAvailablePoolsPage(int page, int perPage) {
+        PageRequest pageRequest = new PageRequest();
+        pageRequest.setPage(page);
+        pageRequest.setPerPage(perPage);
+
+        return manager.listAvailableEntitlementPools(TestUtil.createConsumer(owner), null, owner.getId(),
+            null, null, new Date(), false, new PoolFilterBuilder(), pageRequest, false, false, null);
+    }
+
+    private List<String> getPoolIds(Page<List<Pool>> page) {
+        List<String> poolIds = new ArrayList<>();
+        for (Pool pool : page.getPageData()) {
+            poolIds.add(pool.getId());
+        }
+
+        return poolIds;
+    }
+
+    @Test
+    public void testListAvailablePoolsByChunkStopsOnceThePageIsFilled() {
+        List<String> poolIds = this.mockChunkedAvailablePools(10, 3);
+
+        Page<List<Pool>> page = this.listAvailablePoolsPage(2, 2);
+
+        assertEquals(Arrays.asList("pool-4", "pool-6"), this.getPoolIds(page));
+        // Five pools have been accepted, and the last one has not been filtered
+        assertEquals(Integer.valueOf(6), page.getMaxRecords());
+        verify(mockPoolCurator, times(3)).listAllByIds(anyCollection());
+        verify(mockPoolCurator, never()).listAllByIds(eq(poolIds.subList(9, 10)));
+        verify(mockPoolCurator, never()).listAvailableEntitlementPools(any(Consumer.class),
+            any(String.class), any(String.class), any(String.class), any(Date.class),
+            any(PoolFilterBuilder.class), any(PageRequest.class), anyBoolean(), anyBoolean(),
+            anyBoolean(), any(Date.class));
+    }
+
+    @Test
+    public void testListAvailablePoolsByChunkCountsExactlyWhenExhausted() {
+        this.mockChunkedAvailablePools(10, 4);
+
+        Page<List<Pool>> page = this.listAvailablePoolsPage(3, 2);
+
+        assertEquals(Arrays.asList("pool-8"), this.getPoolIds(page));
+        assertEquals(Integer.valueOf(5), page.getMaxRecords());
+    }
+
+    @Test
+    public void testListAvailablePoolsByChunkCachesExactCount() {
+        this.mockChunkedAvailablePools(10, 3);
+        when(mockPoolCountCache.isEnabled()).thenReturn(true);
+        when(mockPoolCountCache.get(any(HashCode.class))).thenReturn(null);
+
+        Page<List<Pool>> page = this.listAvailablePoolsPage(1, 2);
+
+        assertEquals(Arrays.asList("pool-0", "pool-2"), this.getPoolIds(page));
+        assertEquals(Integer.valueOf(5), page.getMaxRecords());
+        verify(mockPoolCountCache).put(any(HashCode.class), eq(5));
+        verify(mockPoolCurator, times(4)).listAllByIds(anyCollection());
+    }
+
+    @Test
+    public void testListAvailablePoolsByChunkUsesCachedCount() {
+        this.mockChunkedAvailablePools(10, 3);
+        when(mockPoolCountCache.isEnabled()).thenReturn(true);
+        when(mockPoolCountCache.get(any(HashCode.class))).thenReturn(5);
+
+        Page<List<Pool>> page = this.listAvailablePoolsPage(1, 2);
+
+        assertEquals(Arrays.asList("pool-0", "pool-2"), this.getPoolIds(page));
+        assertEquals(Integer.valueOf(5), page.getMaxRecords());
+        verify(mockPoolCurator, times(1)).listAllByIds(anyCollection());
+        verify(mockPoolCountCache, never()).put(any(HashCode.class), anyInt());
+    }
+
 }
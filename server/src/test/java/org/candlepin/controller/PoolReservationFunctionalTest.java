@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import static org.junit.Assert.*;
+
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCurator;
+import org.candlepin.model.ConsumerType;
+import org.candlepin.model.ConsumerTypeCurator;
+import org.candlepin.model.Entitlement;
+import org.candlepin.model.Owner;
+import org.candlepin.model.Pool;
+import org.candlepin.model.PoolAvailabilityIndex;
+import org.candlepin.model.PoolCurator;
+import org.candlepin.model.Product;
+import org.candlepin.policy.js.entitlement.Enforcer;
+import org.candlepin.policy.js.entitlement.EntitlementRules;
+import org.candlepin.test.DatabaseTestFixture;
+import org.candlepin.test.TestUtil;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Module;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+
+
+/**
+ * Binds with pool reservations enabled against pools written by the binding transaction, which
+ * cannot be reserved and must be locked instead.
+ */
+public class PoolReservationFunctionalTest extends DatabaseTestFixture {
+
+    @Inject private CandlepinPoolManager poolManager;
+
+    private Owner owner;
+    private Product product;
+    private Consumer consumer;
+
+    /**
+     * A pool curator reserving quantities on the testing database, which reservations do not
+     * normally support.
+     */
+    @Singleton
+    public static class ReservingPoolCurator extends PoolCurator {
+        @Inject
+        public ReservingPoolCurator(ConsumerCurator consumerCurator,
+            ConsumerTypeCurator consumerTypeCurator, PoolAvailabilityIndex poolIndex) {
+
+            super(consumerCurator, consumerTypeCurator, poolIndex);
+        }
+
+        @Override
+        public boolean supportsQuantityReservations() {
+            return true;
+        }
+    }
+
+    @Override
+    protected Module getGuiceOverrideModule() {
+        return new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(Enforcer.class).to(EntitlementRules.class);
+                bind(PoolCurator.class).to(ReservingPoolCurator.class);
+            }
+        };
+    }
+
+    @Before
+    public void setUp() {
+        this.config.setProperty(ConfigProperties.BIND_POOL_RESERVATIONS, "true");
+
+        this.owner = this.createOwner();
+        this.product = this.createProduct(this.owner);
+
+        ConsumerType ctype = this.consumerTypeCurator.create(new ConsumerType("system"));
+        this.consumer = this.createConsumer(this.owner);
+        this.consumer.setType(ctype);
+        this.consumer = this.consumerCurator.merge(this.consumer);
+    }
+
+    private Map<String, Integer> quantity(Pool pool, int quantity) {
+        // The bind consumes the quantities it is given
+        Map<String, Integer> quantities = new HashMap<>();
+        quantities.put(pool.getId(), quantity);
+
+        return quantities;
+    }
+
+    @Test
+    public void testBindPoolCreatedInSameTransaction() throws Exception {
+        Pool pool = this.createPool(this.owner, this.product, 10L, TestUtil.createDate(2000, 1, 1),
+            TestUtil.createDate(2100, 1, 1));
+
+        List<Entitlement> ents = this.poolManager.entitleByPools(this.consumer, this.quantity(pool, 2));
+
+        assertEquals(1, ents.size());
+        assertEquals(Long.valueOf(2), this.poolCurator.get(pool.getId()).getConsumed());
+    }
+
+    @Test
+    public void testBindPoolUpdatedInSameTransaction() throws Exception {
+        Pool pool = this.createPool(this.owner, this.product, 10L, TestUtil.createDate(2000, 1, 1),
+            TestUtil.createDate(2100, 1, 1));
+
+        this.commitTransaction();
+        this.beginTransaction();
+
+        pool = this.poolCurator.get(pool.getId());
+        pool.setQuantity(1L);
+        this.poolCurator.merge(pool);
+
+        List<Entitlement> ents = this.poolManager.entitleByPools(this.consumer, this.quantity(pool, 1));
+        this.commitTransaction();
+        this.getEntityManager().clear();
+        this.beginTransaction();
+
+        assertEquals(1, ents.size());
+        pool = this.poolCurator.get(pool.getId());
+        assertEquals(Long.valueOf(1), pool.getQuantity());
+        assertEquals(Long.valueOf(1), pool.getConsumed());
+    }
+}
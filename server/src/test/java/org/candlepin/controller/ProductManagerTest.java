@@ -28,6 +28,7 @@ import org.candlepin.model.Content;
 import org.candlepin.model.Owner;
 import org.candlepin.model.Pool;
 import org.candlepin.model.Product;
+import org.candlepin.model.ProductCurator;
 import org.candlepin.test.DatabaseTestFixture;
 import org.candlepin.test.TestUtil;
 
@@ -248,6 +249,36 @@ public class ProductManagerTest extends DatabaseTestFixture {
         verifyZeroInteractions(this.mockEntCertGenerator);
     }
 
+    @Test
+    public void testUpdateProductEvictsReplacedProductFromCache() {
+        ProductCurator productCurator = spy(this.productCurator);
+        this.productManager = new ProductManager(this.mockEntCertGenerator, this.ownerContentCurator,
+            this.ownerProductCurator, productCurator, this.modelTranslator);
+
+        Owner owner = this.createOwner("test-owner", "Test Owner");
+        Product product = this.createProduct("p1", "prod1", owner);
+        ProductDTO update = TestUtil.createProductDTO("p1", "updated product");
+
+        Product output = this.productManager.updateProduct(update, owner, false);
+
+        assertNotEquals(output.getUuid(), product.getUuid());
+        verify(productCurator, times(1)).evictProductsFromCache(eq(Arrays.asList(product.getUuid())));
+    }
+
+    @Test
+    public void testRemoveProductEvictsProductFromCache() {
+        ProductCurator productCurator = spy(this.productCurator);
+        this.productManager = new ProductManager(this.mockEntCertGenerator, this.ownerContentCurator,
+            this.ownerProductCurator, productCurator, this.modelTranslator);
+
+        Owner owner = this.createOwner("test-owner", "Test Owner");
+        Product product = this.createProduct("p1", "prod1", owner);
+
+        this.productManager.removeProduct(owner, product);
+
+        verify(productCurator, times(1)).evictProductsFromCache(eq(Arrays.asList(product.getUuid())));
+    }
+
     @Test(expected = IllegalStateException.class)
     public void testRemoveProductThatDoesntExist() {
         Owner owner = this.createOwner("test-owner", "Test Owner");
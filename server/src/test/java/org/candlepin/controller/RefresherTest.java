@@ -14,6 +14,7 @@
  */
 package org.candlepin.controller;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 
@@ -59,6 +60,29 @@ public class RefresherTest {
         ownerManager = mock(OwnerManager.class);
 
         refresher = new Refresher(poolManager, subAdapter, ownerAdapter, ownerManager, false);
+
+        when(poolManager.refreshPoolsWithRegeneration(any(SubscriptionServiceAdapter.class), any(Owner.class),
+            anyBoolean(), any(RefreshCheckpoint.class))).thenReturn(new RefreshResult());
+    }
+
+    @Test
+    public void testResultSumsOwnerResults() {
+        Owner owner1 = TestUtil.createOwner();
+        Owner owner2 = TestUtil.createOwner();
+
+        when(poolManager.refreshPoolsWithRegeneration(eq(subAdapter), eq(owner1), eq(false),
+            any(RefreshCheckpoint.class))).thenReturn(new RefreshResult()
+            .addProcessedSubscriptions(2)
+            .addSkippedSubscriptions(1));
+        when(poolManager.refreshPoolsWithRegeneration(eq(subAdapter), eq(owner2), eq(false),
+            any(RefreshCheckpoint.class))).thenReturn(new RefreshResult()
+            .addProcessedSubscriptions(3)
+            .addSkippedSubscriptions(4));
+
+        RefreshResult result = refresher.add(owner1).add(owner2).run();
+
+        assertEquals(5, result.getProcessedSubscriptions());
+        assertEquals(5, result.getSkippedSubscriptions());
     }
 
     @Test
@@ -69,7 +93,8 @@ public class RefresherTest {
         refresher.add(owner);
         refresher.run();
 
-        verify(poolManager, times(1)).refreshPoolsWithRegeneration(eq(subAdapter), eq(owner), eq(false));
+        verify(poolManager, times(1)).refreshPoolsWithRegeneration(eq(subAdapter), eq(owner), eq(false),
+            (RefreshCheckpoint) isNull());
     }
 
     @Test
@@ -119,7 +144,8 @@ public class RefresherTest {
         refresher.add(product);
         refresher.run();
 
-        verify(poolManager, times(1)).refreshPoolsWithRegeneration(eq(subAdapter), eq(owner), eq(false));
+        verify(poolManager, times(1)).refreshPoolsWithRegeneration(eq(subAdapter), eq(owner), eq(false),
+            (RefreshCheckpoint) isNull());
         verify(poolManager, times(0)).updatePoolsForMasterPool(any(List.class),
             any(Pool.class), eq(pool.getQuantity()), eq(false), any(Map.class));
     }
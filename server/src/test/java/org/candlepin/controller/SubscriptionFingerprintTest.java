@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.candlepin.model.Owner;
+import org.candlepin.model.Product;
+import org.candlepin.model.dto.ProductData;
+import org.candlepin.model.dto.Subscription;
+import org.candlepin.test.TestUtil;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+
+
+/**
+ * SubscriptionFingerprintTest
+ */
+public class SubscriptionFingerprintTest {
+
+    private Owner owner;
+    private Product product;
+    private Product provided1;
+    private Product provided2;
+    private Map<String, Product> products;
+
+    @Before
+    public void setUp() {
+        this.owner = TestUtil.createOwner();
+        this.product = TestUtil.createProduct();
+        this.provided1 = TestUtil.createProduct();
+        this.provided2 = TestUtil.createProduct();
+
+        this.products = new HashMap<>();
+        for (Product p : Arrays.asList(this.product, this.provided1, this.provided2)) {
+            p.setUuid(p.getId() + "-uuid");
+            this.products.put(p.getId(), p);
+        }
+    }
+
+    private Subscription createSubscription(Product... provided) {
+        Subscription sub = TestUtil.createSubscription(this.owner, this.product);
+        sub.setId("subid");
+        sub.setQuantity(10L);
+        sub.setStartDate(new Date(1000000L));
+        sub.setEndDate(new Date(2000000L));
+
+        for (Product p : provided) {
+            sub.getProvidedProducts().add(p.toDTO());
+        }
+
+        return sub;
+    }
+
+    @Test
+    public void testEqualSubscriptionsHaveEqualFingerprints() {
+        assertEquals(SubscriptionFingerprint.compute(this.createSubscription(), this.products),
+            SubscriptionFingerprint.compute(this.createSubscription(), this.products));
+    }
+
+    @Test
+    public void testFingerprintCoversSubscriptionFields() {
+        String fingerprint = SubscriptionFingerprint.compute(this.createSubscription(), this.products);
+
+        Subscription sub = this.createSubscription();
+        sub.setQuantity(11L);
+        assertNotEquals(fingerprint, SubscriptionFingerprint.compute(sub, this.products));
+
+        sub = this.createSubscription();
+        sub.setEndDate(new Date(3000000L));
+        assertNotEquals(fingerprint, SubscriptionFingerprint.compute(sub, this.products));
+
+        sub = this.createSubscription();
+        sub.setContractNumber("contract");
+        assertNotEquals(fingerprint, SubscriptionFingerprint.compute(sub, this.products));
+    }
+
+    @Test
+    public void testFingerprintIgnoresProvidedProductOrder() {
+        Subscription sub1 = this.createSubscription(this.provided1, this.provided2);
+        Subscription sub2 = this.createSubscription(this.provided2, this.provided1);
+
+        assertEquals(SubscriptionFingerprint.compute(sub1, this.products),
+            SubscriptionFingerprint.compute(sub2, this.products));
+    }
+
+    @Test
+    public void testFingerprintCoversProvidedProducts() {
+        assertNotEquals(
+            SubscriptionFingerprint.compute(this.createSubscription(this.provided1), this.products),
+            SubscriptionFingerprint.compute(this.createSubscription(this.provided2), this.products));
+    }
+
+    @Test
+    public void testFingerprintCoversImportedProductVersions() {
+        Subscription sub = this.createSubscription(this.provided1);
+        String fingerprint = SubscriptionFingerprint.compute(sub, this.products);
+
+        // An update of a product, such as a change to its content, changes the imported entity
+        Product updated = (Product) this.provided1.clone();
+        updated.setUuid(this.provided1.getUuid() + "-updated");
+        updated.setAttribute("attrib", "value");
+        this.products.put(updated.getId(), updated);
+
+        assertNotEquals(fingerprint, SubscriptionFingerprint.compute(sub, this.products));
+    }
+
+    @Test
+    public void testFingerprintCoversProductIdsOfUnresolvedProducts() {
+        Subscription sub1 = this.createSubscription();
+        Subscription sub2 = this.createSubscription();
+        sub2.setDerivedProduct(new ProductData("derived", "derived"));
+
+        assertNotEquals(SubscriptionFingerprint.compute(sub1, this.products),
+            SubscriptionFingerprint.compute(sub2, this.products));
+    }
+
+}
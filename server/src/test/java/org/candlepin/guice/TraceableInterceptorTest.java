@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.guice;
+
+import static org.junit.Assert.*;
+
+import org.candlepin.model.Owner;
+import org.candlepin.util.Traceable;
+import org.candlepin.util.TraceableMethodStats;
+import org.candlepin.util.TraceableMetrics;
+import org.candlepin.util.TraceableParam;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.matcher.Matchers;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+
+
+/**
+ * TraceableInterceptorTest
+ */
+public class TraceableInterceptorTest {
+
+    /**
+     * A class with traceable methods
+     */
+    public static class Traced {
+        @Traceable
+        public String refresh(@TraceableParam("owner") Owner owner, boolean lazy) {
+            return owner.getKey();
+        }
+
+        @Traceable
+        public void fail() {
+            throw new IllegalStateException();
+        }
+
+        public void untraced() {
+            // Intentionally left empty
+        }
+    }
+
+    private TraceableMetrics metrics;
+    private Traced traced;
+
+    @Before
+    public void setUp() {
+        this.metrics = new TraceableMetrics();
+        this.traced = Guice.createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bindInterceptor(Matchers.any(), Matchers.annotatedWith(Traceable.class),
+                    new TraceableInterceptor(metrics));
+            }
+        }).getInstance(Traced.class);
+    }
+
+    @Test
+    public void recordsCallsTaggedWithParameters() {
+        assertEquals("admin", this.traced.refresh(new Owner("admin"), true));
+        this.traced.untraced();
+
+        List<TraceableMethodStats> stats = this.metrics.getStats();
+        assertEquals(1, stats.size());
+        assertEquals("Traced.refresh", stats.get(0).getMethod());
+        assertEquals(Collections.singletonMap("owner", "admin"), stats.get(0).getTags());
+        assertEquals(1, stats.get(0).getCount());
+        assertEquals(0, stats.get(0).getErrorCount());
+    }
+
+    @Test
+    public void recordsFailures() {
+        try {
+            this.traced.fail();
+            fail("Expected an exception");
+        }
+        catch (IllegalStateException e) {
+            // Expected
+        }
+
+        List<TraceableMethodStats> stats = this.metrics.getStats();
+        assertEquals(1, stats.size());
+        assertEquals("Traced.fail", stats.get(0).getMethod());
+        assertTrue(stats.get(0).getTags().isEmpty());
+        assertEquals(1, stats.get(0).getErrorCount());
+    }
+
+}
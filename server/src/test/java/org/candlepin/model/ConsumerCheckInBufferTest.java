@@ -0,0 +1,241 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import org.candlepin.test.TestUtil;
+
+import com.google.inject.persist.UnitOfWork;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+
+
+/**
+ * ConsumerCheckInBufferTest
+ */
+public class ConsumerCheckInBufferTest {
+
+    private static final long HOUR = 3600000L;
+
+    private ConsumerCurator consumerCurator;
+    private UnitOfWork unitOfWork;
+    private ConsumerCheckInBuffer buffer;
+
+    @Before
+    public void setUp() {
+        this.consumerCurator = mock(ConsumerCurator.class);
+        this.unitOfWork = mock(UnitOfWork.class);
+    }
+
+    @After
+    public void tearDown() {
+        if (this.buffer != null) {
+            this.buffer.shutdown();
+        }
+    }
+
+    private ConsumerCheckInBuffer createBuffer(int maxSize, boolean flushOnShutdown) {
+        this.buffer = new ConsumerCheckInBuffer(() -> this.consumerCurator, this.unitOfWork, HOUR, maxSize,
+            flushOnShutdown);
+
+        return this.buffer;
+    }
+
+    private Consumer createConsumer(String id) {
+        Consumer consumer = TestUtil.createConsumer();
+        consumer.setId(id);
+        return consumer;
+    }
+
+    @Test
+    public void testDisabledBufferWritesCheckInsDirectly() {
+        this.buffer = new ConsumerCheckInBuffer(() -> this.consumerCurator, this.unitOfWork, 0, 10, true);
+        Consumer consumer = this.createConsumer("c1");
+        Date date = new Date(5500);
+
+        this.buffer.record(consumer, date);
+
+        assertFalse(this.buffer.isEnabled());
+        verify(this.consumerCurator).updateLastCheckin(consumer, date);
+        assertEquals(0, this.buffer.flush());
+    }
+
+    @Test
+    public void testFlushWritesLatestCheckInOfEachConsumer() {
+        this.createBuffer(10, true);
+        Consumer consumer1 = this.createConsumer("c1");
+        Consumer consumer2 = this.createConsumer("c2");
+
+        this.buffer.record(consumer1, new Date(1500));
+        this.buffer.record(consumer1, new Date(3500));
+        this.buffer.record(consumer1, new Date(2500));
+        this.buffer.record(consumer2, new Date(2700));
+
+        assertEquals(2, this.buffer.getPendingCount());
+        assertEquals(2, this.buffer.getCoalescedCount());
+        verify(this.consumerCurator, never()).updateLastCheckin(any(Consumer.class), any(Date.class));
+
+        assertEquals(2, this.buffer.flush());
+
+        Map<String, Date> expected = new HashMap<>();
+        expected.put("c1", new Date(3000));
+        expected.put("c2", new Date(2000));
+        verify(this.consumerCurator).updateLastCheckins(eq(expected));
+        verify(this.unitOfWork).begin();
+        verify(this.unitOfWork).end();
+
+        assertEquals(0, this.buffer.getPendingCount());
+        assertEquals(2, this.buffer.getFlushedCount());
+        assertEquals(0, this.buffer.flush());
+    }
+
+    @Test
+    public void testPendingCheckInIsVisibleDuringFlush() {
+        this.createBuffer(10, true);
+        final Consumer loaded = this.createConsumer("c1");
+        loaded.setLastCheckin(new Date(1000));
+
+        this.buffer.record(this.createConsumer("c1"), new Date(4200));
+
+        doAnswer(invocation -> {
+            // Consumers loaded while the check in is being written still see it
+            assertEquals(0, this.buffer.getPendingCount());
+            this.buffer.applyPendingCheckIn(loaded);
+
+            // Check ins recorded while flushing are kept for the next flush
+            this.buffer.record(this.createConsumer("c1"), new Date(7200));
+            return 1;
+        }).when(this.consumerCurator).updateLastCheckins(anyMap());
+
+        assertEquals(1, this.buffer.flush());
+        assertEquals(new Date(4000), loaded.getLastCheckin());
+        assertEquals(1, this.buffer.getPendingCount());
+
+        Consumer reloaded = this.createConsumer("c1");
+        this.buffer.applyPendingCheckIn(reloaded);
+        assertEquals(new Date(7000), reloaded.getLastCheckin());
+    }
+
+    @Test
+    public void testRecordedCheckInIsVisibleBeforeFlush() {
+        this.createBuffer(10, true);
+        Consumer consumer = this.createConsumer("c1");
+        consumer.setLastCheckin(new Date(1000));
+
+        this.buffer.record(consumer, new Date(4200));
+        assertEquals(new Date(4000), consumer.getLastCheckin());
+
+        // Consumers loaded afterward see the pending check in as well
+        Consumer loaded = this.createConsumer("c1");
+        loaded.setLastCheckin(new Date(1000));
+        this.buffer.applyPendingCheckIn(loaded);
+        assertEquals(new Date(4000), loaded.getLastCheckin());
+
+        // A later check in already in the database takes precedence
+        loaded.setLastCheckin(new Date(9000));
+        assertEquals(new Date(9000), loaded.getLastCheckin());
+    }
+
+    @Test
+    public void testFailedFlushKeepsCheckIns() {
+        this.createBuffer(10, true);
+        Consumer consumer = this.createConsumer("c1");
+        this.buffer.record(consumer, new Date(1000));
+
+        doThrow(new RuntimeException("database unavailable"))
+            .when(this.consumerCurator).updateLastCheckins(anyMap());
+
+        try {
+            this.buffer.flush();
+        }
+        catch (RuntimeException e) {
+            // expected
+        }
+
+        assertEquals(1, this.buffer.getPendingCount());
+        assertEquals(0, this.buffer.getFlushedCount());
+        verify(this.unitOfWork).end();
+    }
+
+    @Test
+    public void testFullBufferWritesNewConsumersDirectly() {
+        this.createBuffer(1, true);
+        Consumer consumer1 = this.createConsumer("c1");
+        Consumer consumer2 = this.createConsumer("c2");
+
+        this.buffer.record(consumer1, new Date(1000));
+        this.buffer.record(consumer1, new Date(2000));
+        this.buffer.record(consumer2, new Date(3000));
+
+        verify(this.consumerCurator).updateLastCheckin(consumer2, new Date(3000));
+        verify(this.consumerCurator, never()).updateLastCheckin(eq(consumer1), any(Date.class));
+        assertEquals(1, this.buffer.getWriteThroughCount());
+        assertEquals(3, this.buffer.getRecordedCount());
+    }
+
+    @Test
+    public void testShutdownFlushesPendingCheckIns() {
+        this.createBuffer(10, true);
+        this.buffer.record(this.createConsumer("c1"), new Date(1000));
+
+        this.buffer.shutdown();
+
+        verify(this.consumerCurator).updateLastCheckins(eq(Collections.singletonMap("c1", new Date(1000))));
+        assertEquals(0, this.buffer.getDroppedCount());
+    }
+
+    @Test
+    public void testShutdownDropsPendingCheckIns() {
+        this.createBuffer(10, false);
+        this.buffer.record(this.createConsumer("c1"), new Date(1000));
+
+        this.buffer.shutdown();
+
+        verifyZeroInteractions(this.consumerCurator);
+        assertEquals(1, this.buffer.getDroppedCount());
+        assertEquals(0, this.buffer.getPendingCount());
+    }
+
+    @Test
+    public void testPendingLag() {
+        this.createBuffer(10, true);
+        assertEquals(0, this.buffer.getPendingLag());
+
+        this.buffer.record(this.createConsumer("c1"), new Date());
+        assertTrue(this.buffer.getPendingLag() >= 0);
+        assertTrue(this.buffer.getPendingLag() < HOUR);
+    }
+
+}
@@ -675,6 +675,23 @@ public class ConsumerCuratorTest extends DatabaseTestFixture {
         assertTrue(consumer.getLastCheckin().getTime() > date.getTime());
     }
 
+    @Test
+    public void updateLastCheckinsKeepsLaterUpdates() {
+        Consumer consumer = consumerCurator.create(new Consumer("hostConsumer", "testUser", owner, ct));
+        consumerCurator.refresh(consumer);
+        Date updated = consumer.getUpdated();
+
+        // A buffered check in made before the consumer was last updated
+        Date checkin = new Date(updated.getTime() - 3600000L);
+        Map<String, Date> checkins = Collections.singletonMap(consumer.getId(), checkin);
+
+        assertEquals(1, consumerCurator.updateLastCheckins(checkins));
+        consumerCurator.refresh(consumer);
+
+        assertEquals(checkin.getTime(), consumer.getLastCheckin().getTime());
+        assertEquals(updated.getTime(), consumer.getUpdated().getTime());
+    }
+
     @Test
     public void delete() {
         Consumer consumer = new Consumer("testConsumer", "testUser", owner, ct);
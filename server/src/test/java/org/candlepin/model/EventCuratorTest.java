@@ -27,6 +27,7 @@ import org.candlepin.test.DatabaseTestFixture;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
@@ -60,6 +61,24 @@ public class EventCuratorTest extends DatabaseTestFixture {
         assertNotNull(lookedUp.getId());
     }
 
+    @Test
+    public void testCreateAll() {
+        ConsumerType consumerType = this.consumerTypeCurator.create(new ConsumerType("system"));
+
+        Consumer newConsumer = new Consumer("consumername", "user", owner, consumerType);
+        newConsumer = consumerCurator.create(newConsumer);
+
+        setupPrincipal(owner, Access.ALL);
+        Event created = eventFactory.consumerCreated(newConsumer);
+        Event modified = eventFactory.getEventBuilder(Event.Target.CONSUMER, Event.Type.MODIFIED)
+            .setEventData(newConsumer)
+            .buildEvent();
+        eventCurator.createAll(Arrays.asList(created, modified));
+
+        assertEquals(Type.CREATED, eventCurator.get(created.getId()).getType());
+        assertEquals(Type.MODIFIED, eventCurator.get(modified.getId()).getType());
+    }
+
     @Test
     public void testSecondarySorting() {
         ConsumerType consumerType = this.consumerTypeCurator.create(new ConsumerType("system"));
@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.candlepin.model.PoolAvailabilityIndex.Entry;
+import org.candlepin.model.PoolAvailabilityIndex.OwnerIndex;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+
+
+
+/**
+ * PoolAvailabilityIndexTest
+ */
+public class PoolAvailabilityIndexTest {
+
+    private static final long DAY = 86400000L;
+
+    private final Date now = new Date(100 * DAY);
+    private final Date updated = new Date(now.getTime() - 2 * PoolAvailabilityIndex.RECHECK_WINDOW);
+
+    private Entry entry(String poolId, String productId, List<String> provided, int startDay, int endDay) {
+        return new Entry(poolId, productId, provided, new Date(startDay * DAY), new Date(endDay * DAY));
+    }
+
+    private OwnerIndex createIndex() {
+        return new OwnerIndex(Arrays.asList(
+            this.entry("pool1", "sku1", Arrays.asList("prov1", "prov2"), 90, 110),
+            this.entry("pool2", "sku2", Arrays.asList("prov2"), 90, 110),
+            this.entry("pool3", "sku1", null, 105, 120),
+            this.entry("pool4", "sku1", null, 50, 60)),
+            4, this.updated);
+    }
+
+    @Test
+    public void testFindPoolIdsByProductAndProvidedProduct() {
+        OwnerIndex index = this.createIndex();
+
+        assertEquals(new HashSet<>(Arrays.asList("pool1", "pool3", "pool4")),
+            index.findPoolIds(Arrays.asList("sku1"), null, false, false, null));
+        assertEquals(new HashSet<>(Arrays.asList("pool1", "pool2")),
+            index.findPoolIds(Arrays.asList("prov2"), null, false, false, null));
+        assertEquals(new HashSet<>(Arrays.asList("pool1", "pool2")),
+            index.findPoolIds(Arrays.asList("sku2", "prov1"), null, false, false, null));
+        assertTrue(index.findPoolIds(Arrays.asList("unknown"), null, false, false, null).isEmpty());
+    }
+
+    @Test
+    public void testFindPoolIdsMatchesDates() {
+        OwnerIndex index = this.createIndex();
+        List<String> sku = Arrays.asList("sku1");
+
+        assertEquals(Collections.singleton("pool1"), index.findPoolIds(sku, this.now, false, false, null));
+        assertEquals(new HashSet<>(Arrays.asList("pool1", "pool3")),
+            index.findPoolIds(sku, this.now, true, false, null));
+        assertEquals(Collections.singleton("pool3"), index.findPoolIds(sku, this.now, false, true, null));
+        assertEquals(Collections.singleton("pool3"),
+            index.findPoolIds(sku, null, false, false, new Date(100 * DAY)));
+    }
+
+    @Test
+    public void testIsCurrent() {
+        OwnerIndex index = this.createIndex();
+
+        assertTrue(index.isCurrent(4, new Date(this.updated.getTime()), this.now));
+        assertFalse(index.isCurrent(5, this.updated, this.now));
+        assertFalse(index.isCurrent(4, new Date(this.updated.getTime() + 1), this.now));
+
+        // Recent updates are always rechecked, as other updates may share their update time
+        Date recent = new Date(this.now.getTime() - 1000);
+        index = new OwnerIndex(Collections.<Entry>emptyList(), 4, recent);
+        assertFalse(index.isCurrent(4, recent, this.now));
+    }
+
+    @Test
+    public void testGetReloadSince() {
+        OwnerIndex index = this.createIndex();
+
+        assertEquals(new Date(this.updated.getTime() - PoolAvailabilityIndex.RECHECK_WINDOW),
+            index.getReloadSince(this.now));
+
+        // Update times going back means updates have been lost; the index must be rebuilt
+        assertNull(index.getReloadSince(new Date(this.updated.getTime() - 1)));
+        assertNull(new OwnerIndex(Collections.<Entry>emptyList(), 0, null).getReloadSince(this.now));
+    }
+
+    @Test
+    public void testUpdateReplacesReloadedPools() {
+        OwnerIndex index = this.createIndex().update(Arrays.asList(
+            this.entry("pool1", "sku2", null, 90, 110),
+            this.entry("pool5", "sku3", Arrays.asList("prov1"), 90, 110)),
+            5, this.now);
+
+        assertEquals(5, index.size());
+        assertEquals(new HashSet<>(Arrays.asList("pool3", "pool4")),
+            index.findPoolIds(Arrays.asList("sku1"), null, false, false, null));
+        assertEquals(new HashSet<>(Arrays.asList("pool1", "pool2")),
+            index.findPoolIds(Arrays.asList("sku2"), null, false, false, null));
+        assertEquals(Collections.singleton("pool5"),
+            index.findPoolIds(Arrays.asList("prov1"), null, false, false, null));
+    }
+
+    @Test
+    public void testUpdateRequiresRebuildOnceDeletedPoolsAreFound() {
+        OwnerIndex index = this.createIndex();
+
+        assertNull(index.update(Collections.<Entry>emptyList(), 3, this.now));
+    }
+
+    @Test
+    public void testUpdateRequiresRebuildOnceMissedPoolsAreFound() {
+        OwnerIndex index = this.createIndex();
+
+        // A pool committed late with an old update time is counted, but never reloaded
+        assertNull(index.update(Collections.<Entry>emptyList(), 5, this.now));
+        assertNull(index.update(Arrays.asList(this.entry("pool5", "sku3", null, 90, 110)), 6, this.now));
+    }
+
+    @Test
+    public void testDisabledIndex() {
+        PoolAvailabilityIndex disabled = new PoolAvailabilityIndex(0);
+        disabled.put("owner", this.createIndex());
+
+        assertFalse(disabled.isEnabled());
+        assertNull(disabled.get("owner"));
+
+        PoolAvailabilityIndex enabled = new PoolAvailabilityIndex(10);
+        OwnerIndex index = this.createIndex();
+        enabled.put("owner", index);
+
+        assertTrue(enabled.isEnabled());
+        assertSame(index, enabled.get("owner"));
+    }
+
+}
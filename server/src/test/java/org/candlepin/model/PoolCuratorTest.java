@@ -205,6 +205,30 @@ public class PoolCuratorTest extends DatabaseTestFixture {
         assertEquals(pool2.getId(), results.get(0).getId());
     }
 
+    @Test
+    public void availablePoolIdsAreOrderedByPageRequest() throws Exception {
+        Date activeDate = TestUtil.createDate(2000, 3, 2);
+
+        Pool pool1 = poolCurator.create(createPool(owner, product, 20L,
+            activeDate, TestUtil.createDate(2005, 3, 2)));
+        Pool pool2 = poolCurator.create(createPool(owner, product, 30L,
+            activeDate, TestUtil.createDate(2005, 3, 2)));
+        Pool pool3 = poolCurator.create(createPool(owner, product, 10L,
+            activeDate, TestUtil.createDate(2005, 3, 2)));
+
+        PageRequest req = new PageRequest();
+        req.setPage(2);
+        req.setPerPage(1);
+        req.setOrder(PageRequest.Order.DESCENDING);
+        req.setSortBy("quantity");
+
+        List<String> poolIds = poolCurator.listAvailableEntitlementPoolIds(
+            null, owner.getId(), null, null, activeDate, new PoolFilterBuilder(),
+            req, false, false, null);
+
+        assertEquals(Arrays.asList(pool2.getId(), pool1.getId(), pool3.getId()), poolIds);
+    }
+
     @Test
     public void availablePoolsCanBeFilteredByPoolAttribute() throws Exception {
         Date activeDate = TestUtil.createDate(2000, 3, 2);
@@ -1699,6 +1723,22 @@ public class PoolCuratorTest extends DatabaseTestFixture {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void testMasterPoolRefreshFingerprints() {
+        List<Pool> pools = this.setupMasterPoolsTests();
+        Owner owner = pools.get(0).getOwner();
+
+        assertEquals(1, this.poolCurator.setMasterPoolRefreshFingerprint("sub1", "fingerprint1"));
+        assertEquals(1, this.poolCurator.setMasterPoolRefreshFingerprint("sub2", "fingerprint2"));
+        assertEquals(0, this.poolCurator.setMasterPoolRefreshFingerprint("sub4", "fingerprint4"));
+
+        // Only master pools of the owner with fingerprints are included
+        Map<String, String> expected = new HashMap<>();
+        expected.put("sub1", "fingerprint1");
+
+        assertEquals(expected, this.poolCurator.getMasterPoolRefreshFingerprints(owner));
+    }
+
     @Test
     public void testHasAvailablePools()
         throws Exception {
@@ -1807,6 +1847,53 @@ public class PoolCuratorTest extends DatabaseTestFixture {
         assertEquals(pool.getExported().longValue(), 0);
     }
 
+    @Test
+    public void testBulkCalculatePoolQuantitiesForOwner() {
+        Consumer manifestConsumer = createMockConsumer(owner, true);
+        Consumer consumer = this.createConsumer(owner);
+        Date endDate = TestUtil.createDate(Calendar.getInstance().get(Calendar.YEAR) + 1, 3, 2);
+
+        Pool pool1 = createPool(owner, product, 20L, TestUtil.createDate(2010, 3, 2), endDate);
+        poolCurator.create(pool1);
+        Pool pool2 = createPool(owner, product, 20L, TestUtil.createDate(2010, 3, 2), endDate);
+        poolCurator.create(pool2);
+
+        // Stale quantities on a pool without entitlements are reset
+        Pool pool3 = createPool(owner, product, 20L, TestUtil.createDate(2010, 3, 2), endDate);
+        pool3.setConsumed(7L);
+        pool3.setExported(3L);
+        poolCurator.create(pool3);
+
+        Owner otherOwner = this.createOwner();
+        Pool otherPool = createPool(otherOwner, this.createProduct(otherOwner), 20L,
+            TestUtil.createDate(2010, 3, 2), endDate);
+        otherPool.setConsumed(4L);
+        poolCurator.create(otherPool);
+
+        for (Entitlement e : Arrays.asList(new Entitlement(pool1, manifestConsumer, owner, 5),
+            new Entitlement(pool1, consumer, owner, 2), new Entitlement(pool2, consumer, owner, 3))) {
+
+            e.setId(Util.generateDbUUID());
+            entitlementCurator.create(e);
+        }
+
+        poolCurator.bulkCalculatePoolQuantitiesForOwner(owner);
+
+        for (Pool pool : Arrays.asList(pool1, pool2, pool3, otherPool)) {
+            poolCurator.refresh(pool);
+        }
+
+        assertEquals(7L, pool1.getConsumed().longValue());
+        assertEquals(5L, pool1.getExported().longValue());
+        assertEquals(3L, pool2.getConsumed().longValue());
+        assertEquals(0L, pool2.getExported().longValue());
+        assertEquals(0L, pool3.getConsumed().longValue());
+        assertEquals(0L, pool3.getExported().longValue());
+
+        // Pools of other owners are left alone
+        assertEquals(4L, otherPool.getConsumed().longValue());
+    }
+
     @Test
     public void testMarkCertificatesDirtyForPoolsWithNormalProduct() {
         Consumer consumer = this.createConsumer(owner);
@@ -2650,4 +2737,391 @@ public class PoolCuratorTest extends DatabaseTestFixture {
         assertEquals(output, Util.asSet(pool7.getId()));
     }
 
+
+    private PoolCurator createIndexedPoolCurator(PoolAvailabilityIndex poolIndex) {
+        PoolCurator curator = new PoolCurator(this.consumerCurator, this.consumerTypeCurator, poolIndex);
+        this.injectMembers(curator);
+
+        return curator;
+    }
+
+    /**
+     * Commits the pools of the given owner, last updated long enough ago for an index of them to be
+     * used without reloading them, and begins a new transaction.
+     */
+    private void commitAgedPools(Owner owner) {
+        Date updated = new Date(System.currentTimeMillis() - PoolAvailabilityIndex.RECHECK_WINDOW * 10);
+
+        this.getEntityManager()
+            .createQuery("UPDATE Pool p SET p.updated = :updated WHERE p.owner.id = :owner_id")
+            .setParameter("updated", updated)
+            .setParameter("owner_id", owner.getId())
+            .executeUpdate();
+
+        this.commitTransaction();
+        this.getEntityManager().clear();
+        this.beginTransaction();
+    }
+
+    private Set<String> listPoolIds(PoolCurator curator, Owner owner, Product product, Date activeOn,
+        boolean addFuture) {
+
+        return new HashSet<>(curator.listAvailableEntitlementPoolIds(null, owner.getId(), product.getId(),
+            null, activeOn, new PoolFilterBuilder(), null, addFuture, false, null));
+    }
+
+    private Set<String> findIndexedPoolIds(PoolAvailabilityIndex poolIndex, Owner owner, Product product,
+        Date activeOn) {
+
+        return poolIndex.get(owner.getId())
+            .findPoolIds(Arrays.asList(product.getId()), activeOn, false, false, null);
+    }
+
+    @Test
+    public void testIndexedPoolLookupMatchesUnindexedLookup() {
+        Owner owner = this.createOwner();
+        Product product1 = this.createProduct(owner);
+        Product product2 = this.createProduct(owner);
+        Product product3 = this.createProduct(owner);
+
+        this.createPool(owner, product1, Arrays.asList(product2), 10L,
+            TestUtil.createDate(2015, 1, 1), TestUtil.createDate(2025, 1, 1));
+        this.createPool(owner, product2, Arrays.asList(product3), 10L,
+            TestUtil.createDate(2000, 1, 1), TestUtil.createDate(2005, 1, 1));
+        this.createPool(owner, product3, Arrays.asList(product1), 10L,
+            TestUtil.createDate(2050, 1, 1), TestUtil.createDate(2055, 1, 1));
+        this.createPool(owner, product3, 10L,
+            TestUtil.createDate(2016, 1, 1), TestUtil.createDate(2020, 1, 1));
+
+        this.commitAgedPools(owner);
+
+        PoolAvailabilityIndex poolIndex = new PoolAvailabilityIndex(10);
+        PoolCurator indexed = this.createIndexedPoolCurator(poolIndex);
+
+        for (Product product : Arrays.asList(product1, product2, product3)) {
+            for (Date activeOn : Arrays.asList(TestUtil.createDate(2003, 1, 1),
+                TestUtil.createDate(2018, 1, 1), null)) {
+
+                for (boolean addFuture : Arrays.asList(false, true)) {
+                    assertEquals(this.listPoolIds(this.poolCurator, owner, product, activeOn, addFuture),
+                        this.listPoolIds(indexed, owner, product, activeOn, addFuture));
+                }
+            }
+        }
+
+        assertNotNull(poolIndex.get(owner.getId()));
+        assertEquals(4, poolIndex.get(owner.getId()).size());
+    }
+
+    @Test
+    public void testPoolIndexIsReusedWhilePoolsAreUnchanged() {
+        Owner owner = this.createOwner();
+        Product product = this.createProduct(owner);
+        Pool pool = this.createPool(owner, product);
+
+        this.commitAgedPools(owner);
+
+        PoolAvailabilityIndex poolIndex = new PoolAvailabilityIndex(10);
+        PoolCurator indexed = this.createIndexedPoolCurator(poolIndex);
+        Date activeOn = TestUtil.createDate(2018, 1, 1);
+
+        assertEquals(Util.asSet(pool.getId()), this.listPoolIds(indexed, owner, product, activeOn, false));
+        PoolAvailabilityIndex.OwnerIndex index = poolIndex.get(owner.getId());
+
+        assertEquals(Util.asSet(pool.getId()), this.listPoolIds(indexed, owner, product, activeOn, false));
+        assertSame(index, poolIndex.get(owner.getId()));
+    }
+
+    @Test
+    public void testPoolIndexIsUpdatedWithCreatedPools() {
+        Owner owner = this.createOwner();
+        Product product = this.createProduct(owner);
+        Pool pool1 = this.createPool(owner, product);
+
+        this.commitAgedPools(owner);
+
+        PoolAvailabilityIndex poolIndex = new PoolAvailabilityIndex(10);
+        PoolCurator indexed = this.createIndexedPoolCurator(poolIndex);
+        Date activeOn = TestUtil.createDate(2018, 1, 1);
+
+        this.listPoolIds(indexed, owner, product, activeOn, false);
+
+        Pool pool2 = this.createPool(owner, product);
+        this.commitTransaction();
+        this.beginTransaction();
+
+        assertEquals(Util.asSet(pool1.getId(), pool2.getId()),
+            this.listPoolIds(indexed, owner, product, activeOn, false));
+        assertEquals(Util.asSet(pool1.getId(), pool2.getId()),
+            this.findIndexedPoolIds(poolIndex, owner, product, activeOn));
+    }
+
+    @Test
+    public void testPoolIndexIsUpdatedWithUpdatedPools() {
+        Owner owner = this.createOwner();
+        Product product = this.createProduct(owner);
+        Pool pool1 = this.createPool(owner, product);
+        Pool pool2 = this.createPool(owner, product);
+
+        this.commitAgedPools(owner);
+
+        PoolAvailabilityIndex poolIndex = new PoolAvailabilityIndex(10);
+        PoolCurator indexed = this.createIndexedPoolCurator(poolIndex);
+        Date activeOn = TestUtil.createDate(2018, 1, 1);
+
+        this.listPoolIds(indexed, owner, product, activeOn, false);
+
+        pool2 = this.poolCurator.get(pool2.getId());
+        pool2.setEndDate(TestUtil.createDate(2010, 1, 1));
+        this.poolCurator.merge(pool2);
+        this.commitTransaction();
+        this.beginTransaction();
+
+        assertEquals(Util.asSet(pool1.getId()), this.listPoolIds(indexed, owner, product, activeOn, false));
+        assertEquals(Util.asSet(pool1.getId()), this.findIndexedPoolIds(poolIndex, owner, product, activeOn));
+    }
+
+    @Test
+    public void testPoolIndexIsRebuiltWithoutDeletedPools() {
+        Owner owner = this.createOwner();
+        Product product = this.createProduct(owner);
+        Pool pool1 = this.createPool(owner, product);
+        Pool pool2 = this.createPool(owner, product);
+
+        this.commitAgedPools(owner);
+
+        PoolAvailabilityIndex poolIndex = new PoolAvailabilityIndex(10);
+        PoolCurator indexed = this.createIndexedPoolCurator(poolIndex);
+        Date activeOn = TestUtil.createDate(2018, 1, 1);
+
+        this.listPoolIds(indexed, owner, product, activeOn, false);
+        assertEquals(2, poolIndex.get(owner.getId()).size());
+
+        this.poolCurator.delete(this.poolCurator.get(pool2.getId()));
+        this.commitTransaction();
+        this.beginTransaction();
+
+        assertEquals(Util.asSet(pool1.getId()), this.listPoolIds(indexed, owner, product, activeOn, false));
+        assertEquals(1, poolIndex.get(owner.getId()).size());
+        assertEquals(Util.asSet(pool1.getId()), this.findIndexedPoolIds(poolIndex, owner, product, activeOn));
+    }
+
+    @Test
+    public void testPoolIndexIsRebuiltWithPoolsCommittedWithOldUpdateTimes() {
+        Owner owner = this.createOwner();
+        Product product = this.createProduct(owner);
+        Pool pool1 = this.createPool(owner, product);
+
+        this.commitAgedPools(owner);
+
+        PoolAvailabilityIndex poolIndex = new PoolAvailabilityIndex(10);
+        PoolCurator indexed = this.createIndexedPoolCurator(poolIndex);
+        Date activeOn = TestUtil.createDate(2018, 1, 1);
+
+        this.listPoolIds(indexed, owner, product, activeOn, false);
+        assertEquals(1, poolIndex.get(owner.getId()).size());
+
+        // A long transaction commits a pool last updated well before the reloaded range
+        Pool pool2 = this.createPool(owner, product);
+        this.getEntityManager()
+            .createQuery("UPDATE Pool p SET p.updated = :updated WHERE p.id = :pool_id")
+            .setParameter("updated",
+                new Date(System.currentTimeMillis() - PoolAvailabilityIndex.RECHECK_WINDOW * 20))
+            .setParameter("pool_id", pool2.getId())
+            .executeUpdate();
+        this.commitTransaction();
+        this.getEntityManager().clear();
+        this.beginTransaction();
+
+        assertEquals(Util.asSet(pool1.getId(), pool2.getId()),
+            this.listPoolIds(indexed, owner, product, activeOn, false));
+        assertEquals(2, poolIndex.get(owner.getId()).size());
+        assertEquals(Util.asSet(pool1.getId(), pool2.getId()),
+            this.findIndexedPoolIds(poolIndex, owner, product, activeOn));
+    }
+
+
+    /**
+     * Creates and commits two pools of the given quantity, ordered by ID as they are reserved, and
+     * begins a new transaction.
+     */
+    private List<Pool> createCommittedPools(long quantity) {
+        Owner owner = this.createOwner();
+        Product product = this.createProduct(owner);
+
+        Date startDate = TestUtil.createDate(2000, 1, 1);
+        Date endDate = TestUtil.createDate(2100, 1, 1);
+
+        List<Pool> pools = new ArrayList<>(Arrays.asList(
+            this.createPool(owner, product, quantity, startDate, endDate),
+            this.createPool(owner, product, quantity, startDate, endDate)));
+
+        Collections.sort(pools, (pool1, pool2) -> pool1.getId().compareTo(pool2.getId()));
+
+        this.commitTransaction();
+        this.beginTransaction();
+
+        return pools;
+    }
+
+    private Map<String, Integer> quantities(Pool pool1, int quantity1, Pool pool2, int quantity2) {
+        Map<String, Integer> quantities = new HashMap<>();
+        quantities.put(pool1.getId(), quantity1);
+        quantities.put(pool2.getId(), quantity2);
+
+        return quantities;
+    }
+
+    /**
+     * Reads the consumed and exported quantities of a pool, as committed by reservations.
+     */
+    private long[] readQuantities(Pool pool) {
+        this.getEntityManager().clear();
+        Pool current = this.poolCurator.get(pool.getId());
+
+        return new long[] { current.getConsumed(), current.getExported() };
+    }
+
+    @Test
+    public void testReserveQuantities() {
+        List<Pool> pools = this.createCommittedPools(10L);
+
+        PoolCurator.QuantityReservation reservation = this.poolCurator.reserveQuantities(
+            this.quantities(pools.get(0), 3, pools.get(1), 10), true);
+
+        assertNull(reservation.getRefusedPoolId());
+        assertArrayEquals(new long[] { 3, 3 }, this.readQuantities(pools.get(0)));
+        assertArrayEquals(new long[] { 10, 10 }, this.readQuantities(pools.get(1)));
+
+        this.commitTransaction();
+        this.beginTransaction();
+
+        // Committing the transaction keeps the reservation
+        assertArrayEquals(new long[] { 3, 3 }, this.readQuantities(pools.get(0)));
+        assertArrayEquals(new long[] { 10, 10 }, this.readQuantities(pools.get(1)));
+    }
+
+    @Test
+    public void testReserveQuantitiesWithoutExport() {
+        List<Pool> pools = this.createCommittedPools(10L);
+
+        PoolCurator.QuantityReservation reservation = this.poolCurator.reserveQuantities(
+            this.quantities(pools.get(0), 3, pools.get(1), 4), false);
+
+        assertNull(reservation.getRefusedPoolId());
+        assertArrayEquals(new long[] { 3, 0 }, this.readQuantities(pools.get(0)));
+        assertArrayEquals(new long[] { 4, 0 }, this.readQuantities(pools.get(1)));
+    }
+
+    @Test
+    public void testReserveQuantitiesRefusedByLaterPoolReservesNothing() {
+        List<Pool> pools = this.createCommittedPools(10L);
+
+        // The first pool is reserved before the second one is refused
+        PoolCurator.QuantityReservation reservation = this.poolCurator.reserveQuantities(
+            this.quantities(pools.get(0), 3, pools.get(1), 11), true);
+
+        assertEquals(pools.get(1).getId(), reservation.getRefusedPoolId());
+        assertArrayEquals(new long[] { 0, 0 }, this.readQuantities(pools.get(0)));
+        assertArrayEquals(new long[] { 0, 0 }, this.readQuantities(pools.get(1)));
+
+        // Refused reservations have nothing to release
+        reservation.release();
+        this.rollbackTransaction();
+        this.beginTransaction();
+
+        assertArrayEquals(new long[] { 0, 0 }, this.readQuantities(pools.get(0)));
+        assertArrayEquals(new long[] { 0, 0 }, this.readQuantities(pools.get(1)));
+    }
+
+    @Test
+    public void testReleaseReservedQuantities() {
+        List<Pool> pools = this.createCommittedPools(10L);
+
+        PoolCurator.QuantityReservation reservation = this.poolCurator.reserveQuantities(
+            this.quantities(pools.get(0), 3, pools.get(1), 4), true);
+
+        reservation.release();
+
+        assertArrayEquals(new long[] { 0, 0 }, this.readQuantities(pools.get(0)));
+        assertArrayEquals(new long[] { 0, 0 }, this.readQuantities(pools.get(1)));
+
+        // Rolling the transaction back does not release the quantities again
+        this.rollbackTransaction();
+        this.beginTransaction();
+
+        assertArrayEquals(new long[] { 0, 0 }, this.readQuantities(pools.get(0)));
+        assertArrayEquals(new long[] { 0, 0 }, this.readQuantities(pools.get(1)));
+    }
+
+    @Test
+    public void testReservedQuantitiesAreReleasedOnRollback() {
+        List<Pool> pools = this.createCommittedPools(10L);
+
+        this.poolCurator.reserveQuantities(this.quantities(pools.get(0), 3, pools.get(1), 4), true);
+        assertArrayEquals(new long[] { 3, 3 }, this.readQuantities(pools.get(0)));
+
+        this.rollbackTransaction();
+        this.beginTransaction();
+
+        assertArrayEquals(new long[] { 0, 0 }, this.readQuantities(pools.get(0)));
+        assertArrayEquals(new long[] { 0, 0 }, this.readQuantities(pools.get(1)));
+    }
+
+    @Test
+    public void testReserveUnlimitedPool() {
+        List<Pool> pools = this.createCommittedPools(-1L);
+
+        PoolCurator.QuantityReservation reservation = this.poolCurator.reserveQuantities(
+            this.quantities(pools.get(0), 100, pools.get(1), 1), false);
+
+        assertNull(reservation.getRefusedPoolId());
+        assertArrayEquals(new long[] { 100, 0 }, this.readQuantities(pools.get(0)));
+    }
+
+    @Test
+    public void testPoolsCreatedInTransactionAreNotReserved() {
+        Owner owner = this.createOwner();
+        Product product = this.createProduct(owner);
+        Pool pool = this.createPool(owner, product, 10L, TestUtil.createDate(2000, 1, 1),
+            TestUtil.createDate(2100, 1, 1));
+
+        assertNull(this.poolCurator.reserveQuantities(Collections.singletonMap(pool.getId(), 1), false));
+        assertEquals(Long.valueOf(0), pool.getConsumed());
+    }
+
+    @Test
+    public void testPoolsUpdatedInTransactionAreNotReserved() {
+        List<Pool> pools = this.createCommittedPools(10L);
+
+        Pool pool = this.poolCurator.get(pools.get(1).getId());
+        pool.setQuantity(20L);
+
+        // The pending update is written before checking which pools can be reserved
+        assertNull(this.poolCurator.reserveQuantities(this.quantities(pools.get(0), 1, pool, 1), false));
+        this.commitTransaction();
+        this.beginTransaction();
+
+        assertArrayEquals(new long[] { 0, 0 }, this.readQuantities(pools.get(0)));
+        assertEquals(Long.valueOf(20), this.poolCurator.get(pool.getId()).getQuantity());
+    }
+
+    @Test
+    public void testPoolsLockedInTransactionAreNotReserved() {
+        List<Pool> pools = this.createCommittedPools(10L);
+
+        this.poolCurator.lockAndLoadByIds(Arrays.asList(pools.get(0).getId()));
+
+        assertNull(this.poolCurator.reserveQuantities(
+            Collections.singletonMap(pools.get(0).getId(), 1), false));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReserveQuantitiesRequiresTransaction() {
+        List<Pool> pools = this.createCommittedPools(10L);
+        this.commitTransaction();
+
+        this.poolCurator.reserveQuantities(Collections.singletonMap(pools.get(0).getId(), 1), false);
+    }
+
 }
@@ -20,6 +20,7 @@ import static org.mockito.Mockito.*;
 import static org.quartz.JobKey.*;
 
 import org.candlepin.auth.Principal;
+import org.candlepin.common.exceptions.BadRequestException;
 import org.candlepin.model.JobCurator;
 import org.candlepin.pinsetter.core.model.JobStatus;
 import org.candlepin.pinsetter.core.model.JobStatus.JobState;
@@ -34,6 +35,9 @@ import org.quartz.JobDetail;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 
+import java.util.Arrays;
+import java.util.Collections;
+
 
 /**
  * PinsetterJobListenerTest
@@ -250,4 +254,41 @@ public class PinsetterJobListenerTest {
         assertEquals(JobState.FAILED, status.getState());
         verify(jcurator).merge(eq(status));
     }
+
+    @Test
+    public void handleCandlepinException() {
+        JobDetail detail = mock(JobDetail.class);
+        when(detail.getKey()).thenReturn(jobKey("foo"));
+        when(ctx.getJobDetail()).thenReturn(detail);
+
+        JobStatus status = new JobStatus();
+        when(jcurator.get(eq("foo"))).thenReturn(status);
+
+        BadRequestException cause = new BadRequestException("bad request");
+        listener.jobWasExecuted(ctx, new JobExecutionException("job errored", cause, false));
+
+        assertEquals(JobState.FAILED, status.getState());
+        assertEquals(cause.message(), status.getResultData());
+        verify(jcurator).merge(eq(status));
+    }
+
+    @Test
+    public void handleCandlepinExceptionKeepsRecordedResultData() {
+        JobDetail detail = mock(JobDetail.class);
+        when(detail.getKey()).thenReturn(jobKey("foo"));
+        when(ctx.getJobDetail()).thenReturn(detail);
+
+        JobStatus status = new JobStatus();
+        Object progress = Collections.singletonMap("subscriptions", Arrays.asList("sub-1"));
+        status.setResultData(progress);
+        when(jcurator.get(eq("foo"))).thenReturn(status);
+
+        listener.jobWasExecuted(ctx, new JobExecutionException("job errored",
+            new BadRequestException("bad request"), false));
+
+        assertEquals(JobState.FAILED, status.getState());
+        assertEquals("job errored", status.getResult());
+        assertSame(progress, status.getResultData());
+        verify(jcurator).merge(eq(status));
+    }
 }
@@ -16,12 +16,14 @@ package org.candlepin.pinsetter.tasks;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.mock;
 
 import org.candlepin.common.config.Configuration;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.util.CrlFileUtil;
+import org.candlepin.util.CrlPublisher;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -44,11 +46,12 @@ public class CertificateRevocationListTaskTest extends BaseJobTest {
 
     @Mock private Configuration config;
     @Mock private CrlFileUtil crlFileUtil;
+    @Mock private CrlPublisher crlPublisher;
 
     @Before
     public void init() {
         super.init();
-        this.task = new CertificateRevocationListTask(config, crlFileUtil);
+        this.task = new CertificateRevocationListTask(config, crlFileUtil, crlPublisher);
         injector.injectMembers(task);
     }
 
@@ -70,4 +73,16 @@ public class CertificateRevocationListTaskTest extends BaseJobTest {
         verify(crlFileUtil).syncCRLWithDB(any(File.class));
     }
 
+    @Test
+    public void executeRequestsRefreshFromPublisher() throws Exception {
+        when(config.getString(ConfigProperties.CRL_FILE_PATH)).thenReturn("/tmp/test.crl");
+        when(crlPublisher.isEnabled()).thenReturn(true);
+
+        JobExecutionContext context = mock(JobExecutionContext.class);
+        task.execute(context);
+
+        verify(crlPublisher).requestRefresh();
+        verifyZeroInteractions(crlFileUtil);
+    }
+
 }
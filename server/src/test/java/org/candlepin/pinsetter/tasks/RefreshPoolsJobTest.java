@@ -18,7 +18,10 @@ import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 
 import org.candlepin.controller.CandlepinPoolManager;
+import org.candlepin.controller.RefreshCheckpoint;
+import org.candlepin.controller.RefreshResult;
 import org.candlepin.controller.Refresher;
+import org.candlepin.model.JobCurator;
 import org.candlepin.model.Owner;
 import org.candlepin.model.OwnerCurator;
 import org.candlepin.pinsetter.core.model.JobStatus;
@@ -35,6 +38,13 @@ import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 
 /**
  * RefreshPoolsJobTest
@@ -43,6 +53,7 @@ public class RefreshPoolsJobTest extends BaseJobTest{
 
     private CandlepinPoolManager pm;
     private OwnerCurator oc;
+    private JobCurator jc;
     private Owner owner;
     private JobExecutionContext ctx;
     private JobDataMap jdm;
@@ -55,6 +66,7 @@ public class RefreshPoolsJobTest extends BaseJobTest{
         super.init();
         pm = mock(CandlepinPoolManager.class);
         oc = mock(OwnerCurator.class);
+        jc = mock(JobCurator.class);
         owner = mock(Owner.class);
         ctx = mock(JobExecutionContext.class);
         jdm = mock(JobDataMap.class);
@@ -70,12 +82,14 @@ public class RefreshPoolsJobTest extends BaseJobTest{
         when(pm.getRefresher(eq(subAdapter), eq(ownerAdapter), eq(true))).thenReturn(refresher);
         when(refresher.add(eq(owner))).thenReturn(refresher);
         when(refresher.setUnitOfWork(any(UnitOfWork.class))).thenReturn(refresher);
+        when(refresher.setCheckpoint(any(RefreshCheckpoint.class))).thenReturn(refresher);
+        when(refresher.run()).thenReturn(new RefreshResult());
     }
 
     @Test
     public void execute() throws Exception {
         // test
-        RefreshPoolsJob rpj = new RefreshPoolsJob(oc, pm, subAdapter, ownerAdapter);
+        RefreshPoolsJob rpj = new RefreshPoolsJob(oc, pm, subAdapter, ownerAdapter, jc);
         injector.injectMembers(rpj);
         rpj.execute(ctx);
 
@@ -83,7 +97,22 @@ public class RefreshPoolsJobTest extends BaseJobTest{
         verify(pm).getRefresher(subAdapter, ownerAdapter, true);
         verify(refresher).add(owner);
         verify(refresher).run();
-        verify(ctx).setResult(eq("Pools refreshed for owner test owner"));
+        verify(ctx).setResult(eq("Pools refreshed for owner test owner: 0 subscription(s) processed, " +
+            "0 unchanged subscription(s) skipped"));
+    }
+
+    @Test
+    public void resultReportsProcessedAndSkippedSubscriptions() throws Exception {
+        when(refresher.run()).thenReturn(new RefreshResult()
+            .addProcessedSubscriptions(3)
+            .addSkippedSubscriptions(7));
+
+        RefreshPoolsJob rpj = new RefreshPoolsJob(oc, pm, subAdapter, ownerAdapter, jc);
+        injector.injectMembers(rpj);
+        rpj.execute(ctx);
+
+        verify(ctx).setResult(eq("Pools refreshed for owner test owner: 3 subscription(s) processed, " +
+            "7 unchanged subscription(s) skipped"));
     }
 
     @Test
@@ -103,7 +132,7 @@ public class RefreshPoolsJobTest extends BaseJobTest{
         // the real thing we want to handle
         doThrow(new NullPointerException()).when(refresher).run();
 
-        RefreshPoolsJob rpj = new RefreshPoolsJob(oc, pm, subAdapter, ownerAdapter);
+        RefreshPoolsJob rpj = new RefreshPoolsJob(oc, pm, subAdapter, ownerAdapter, jc);
         injector.injectMembers(rpj);
         try {
             rpj.execute(ctx);
@@ -121,7 +150,7 @@ public class RefreshPoolsJobTest extends BaseJobTest{
         RuntimeException e = new RuntimeException("uh oh", new SQLException("not good"));
         doThrow(e).when(refresher).run();
 
-        RefreshPoolsJob rpj = new RefreshPoolsJob(oc, pm, subAdapter, ownerAdapter);
+        RefreshPoolsJob rpj = new RefreshPoolsJob(oc, pm, subAdapter, ownerAdapter, jc);
         injector.injectMembers(rpj);
         try {
             rpj.execute(ctx);
@@ -140,7 +169,7 @@ public class RefreshPoolsJobTest extends BaseJobTest{
         RuntimeException e2 = new RuntimeException("trouble!", e);
         doThrow(e2).when(refresher).run();
 
-        RefreshPoolsJob rpj = new RefreshPoolsJob(oc, pm, subAdapter, ownerAdapter);
+        RefreshPoolsJob rpj = new RefreshPoolsJob(oc, pm, subAdapter, ownerAdapter, jc);
         injector.injectMembers(rpj);
         try {
             rpj.execute(ctx);
@@ -156,7 +185,7 @@ public class RefreshPoolsJobTest extends BaseJobTest{
         RuntimeException e = new RuntimeException("uh oh", new NullPointerException());
         doThrow(e).when(refresher).run();
 
-        RefreshPoolsJob rpj = new RefreshPoolsJob(oc, pm, subAdapter, ownerAdapter);
+        RefreshPoolsJob rpj = new RefreshPoolsJob(oc, pm, subAdapter, ownerAdapter, jc);
         injector.injectMembers(rpj);
         try {
             rpj.execute(ctx);
@@ -166,4 +195,53 @@ public class RefreshPoolsJobTest extends BaseJobTest{
             assertFalse(ex.refireImmediately());
         }
     }
+
+    @Test
+    public void checkpointResumesFromJobStatus() {
+        Map<String, List<String>> data = new HashMap<>();
+        data.put(RefreshPoolsJob.JobStatusCheckpoint.SUBSCRIPTIONS, Arrays.asList("sub-1", "sub-2"));
+        data.put(RefreshPoolsJob.JobStatusCheckpoint.PRODUCTS, Arrays.asList("prod-1"));
+
+        JobStatus status = new JobStatus();
+        status.setResultData(data);
+        when(jc.get(eq("job-1"))).thenReturn(status);
+
+        RefreshPoolsJob.JobStatusCheckpoint checkpoint = new RefreshPoolsJob.JobStatusCheckpoint(jc, "job-1");
+        assertEquals(new HashSet<>(Arrays.asList("prod-1")), checkpoint.getUpdatedProducts());
+        assertEquals(new HashSet<>(Arrays.asList("sub-1", "sub-2")), checkpoint.getRefreshedSubscriptions());
+
+        checkpoint.subscriptionsRefreshed(Collections.singletonList("sub-3"), 5);
+
+        Map<?, ?> saved = (Map<?, ?>) status.getResultData();
+        assertEquals(new HashSet<>(Arrays.asList("sub-1", "sub-2", "sub-3")),
+            new HashSet<>((Collection<?>) saved.get(RefreshPoolsJob.JobStatusCheckpoint.SUBSCRIPTIONS)));
+        assertEquals(new HashSet<>(Arrays.asList("prod-1")),
+            new HashSet<>((Collection<?>) saved.get(RefreshPoolsJob.JobStatusCheckpoint.PRODUCTS)));
+        assertEquals("Refreshed 3 of 5 subscriptions", status.getResult());
+        verify(jc).merge(eq(status));
+    }
+
+    @Test
+    public void checkpointRecordsUpdatedProducts() {
+        JobStatus status = new JobStatus();
+        when(jc.get(eq("job-1"))).thenReturn(status);
+
+        RefreshPoolsJob.JobStatusCheckpoint checkpoint = new RefreshPoolsJob.JobStatusCheckpoint(jc, "job-1");
+        checkpoint.productsUpdated(Arrays.asList("prod-1", "prod-2"));
+
+        // A later attempt of the job reads the products back from the job's status
+        checkpoint = new RefreshPoolsJob.JobStatusCheckpoint(jc, "job-1");
+        assertEquals(new HashSet<>(Arrays.asList("prod-1", "prod-2")), checkpoint.getUpdatedProducts());
+        assertTrue(checkpoint.getRefreshedSubscriptions().isEmpty());
+        verify(jc).merge(eq(status));
+    }
+
+    @Test
+    public void checkpointStartsEmptyWithoutResultData() {
+        when(jc.get(eq("job-1"))).thenReturn(new JobStatus());
+
+        RefreshPoolsJob.JobStatusCheckpoint checkpoint = new RefreshPoolsJob.JobStatusCheckpoint(jc, "job-1");
+        assertTrue(checkpoint.getRefreshedSubscriptions().isEmpty());
+        assertTrue(checkpoint.getUpdatedProducts().isEmpty());
+    }
 }
@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pki;
+
+import static org.junit.Assert.*;
+
+import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * CertificateGenerationPoolTest
+ */
+public class CertificateGenerationPoolTest {
+
+    private List<Integer> inputs(int count) {
+        List<Integer> inputs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            inputs.add(i);
+        }
+
+        return inputs;
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    public void readsThreadsFromConfig() {
+        CandlepinCommonTestConfig config = new CandlepinCommonTestConfig();
+        config.setProperty(ConfigProperties.ENTITLEMENT_CERT_GENERATION_THREADS, "3");
+
+        assertEquals(3, new CertificateGenerationPool(config).getParallelism());
+        assertEquals(Runtime.getRuntime().availableProcessors(),
+            new CertificateGenerationPool(0).getParallelism());
+    }
+
+    @Test
+    public void serialPoolRunsOnCallingThread() throws Exception {
+        CertificateGenerationPool pool = new CertificateGenerationPool(1);
+        Thread caller = Thread.currentThread();
+
+        List<Boolean> result = pool.map(this.inputs(5), input -> Thread.currentThread() == caller);
+        assertEquals(Collections.nCopies(5, true), result);
+    }
+
+    @Test
+    public void preservesInputOrder() throws Exception {
+        CertificateGenerationPool pool = new CertificateGenerationPool(4);
+
+        List<String> result = pool.map(this.inputs(100), input -> {
+            // Finish the later inputs first
+            sleep(100 - input);
+            return "cert-" + input;
+        });
+
+        assertEquals(100, result.size());
+        for (int i = 0; i < result.size(); i++) {
+            assertEquals("cert-" + i, result.get(i));
+        }
+    }
+
+    @Test
+    public void runsTasksConcurrently() throws Exception {
+        CertificateGenerationPool pool = new CertificateGenerationPool(2);
+        CountDownLatch latch = new CountDownLatch(2);
+
+        // Neither task can complete unless both are running at once
+        List<String> result = pool.map(this.inputs(2), input -> {
+            latch.countDown();
+            assertTrue(await(latch));
+            return Thread.currentThread().getName();
+        });
+
+        Set<String> threads = new HashSet<>(result);
+        assertEquals(2, threads.size());
+        for (String thread : threads) {
+            assertTrue(thread.startsWith("cert-generation-"));
+        }
+    }
+
+    @Test
+    public void rethrowsCheckedExceptions() throws Exception {
+        CertificateGenerationPool pool = new CertificateGenerationPool(2);
+
+        try {
+            pool.map(Arrays.asList(1, 2, 3), input -> {
+                if (input == 2) {
+                    throw new GeneralSecurityException("bad key");
+                }
+
+                return input;
+            });
+
+            fail("Expected GeneralSecurityException");
+        }
+        catch (GeneralSecurityException e) {
+            assertEquals("bad key", e.getMessage());
+        }
+
+        try {
+            pool.map(Arrays.asList(1, 2, 3), input -> {
+                throw new IOException("bad encoding");
+            });
+
+            fail("Expected IOException");
+        }
+        catch (IOException e) {
+            assertEquals("bad encoding", e.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rethrowsRuntimeExceptions() throws Exception {
+        new CertificateGenerationPool(2).map(Arrays.asList(1, 2), input -> {
+            throw new IllegalStateException();
+        });
+    }
+
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.pki;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.security.KeyPair;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * KeyPairPoolTest
+ */
+public class KeyPairPoolTest {
+    private PKIUtility pki;
+    private KeyPairPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        this.pki = mock(PKIUtility.class);
+        when(this.pki.generateNewKeyPair()).thenAnswer(new Answer<KeyPair>() {
+            @Override
+            public KeyPair answer(InvocationOnMock invocation) {
+                return new KeyPair(null, null);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        if (this.pool != null) {
+            this.pool.shutdown();
+        }
+    }
+
+    private void awaitDepth(int depth) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (this.pool.getDepth() < depth && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(depth, this.pool.getDepth());
+    }
+
+    @Test
+    public void generatesOnDemandWhenDisabled() throws Exception {
+        this.pool = new KeyPairPool(this.pki, 0, 1);
+
+        assertNotNull(this.pool.take());
+        assertEquals(0, this.pool.getDepth());
+        verify(this.pki, times(1)).generateNewKeyPair();
+    }
+
+    @Test
+    public void fillsInBackground() throws Exception {
+        this.pool = new KeyPairPool(this.pki, 5, 2);
+        this.awaitDepth(5);
+
+        assertEquals(5, this.pool.getRefillCount());
+        verify(this.pki, times(5)).generateNewKeyPair();
+    }
+
+    @Test
+    public void refillsTakenKeyPairs() throws Exception {
+        this.pool = new KeyPairPool(this.pki, 3, 1);
+        this.awaitDepth(3);
+
+        Set<KeyPair> taken = new HashSet<>();
+        taken.add(this.pool.take());
+        taken.add(this.pool.take());
+
+        assertEquals(2, taken.size());
+        assertEquals(2, this.pool.getHitCount());
+        assertEquals(0, this.pool.getFallbackCount());
+
+        this.awaitDepth(3);
+        assertEquals(5, this.pool.getRefillCount());
+    }
+
+    @Test
+    public void fallsBackWhenEmpty() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        PKIUtility slowPki = mock(PKIUtility.class);
+        when(slowPki.generateNewKeyPair()).thenAnswer(new Answer<KeyPair>() {
+            @Override
+            public KeyPair answer(InvocationOnMock invocation) throws Exception {
+                // Background generation is held back until the test is done
+                if (Thread.currentThread().getName().startsWith("keypair-pool-")) {
+                    release.await(10, TimeUnit.SECONDS);
+                }
+
+                return new KeyPair(null, null);
+            }
+        });
+
+        this.pool = new KeyPairPool(slowPki, 2, 1);
+
+        assertNotNull(this.pool.take());
+        assertEquals(1, this.pool.getFallbackCount());
+        assertEquals(0, this.pool.getHitCount());
+
+        release.countDown();
+    }
+
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.dto.ModelTranslator;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerTypeCurator;
+import org.candlepin.model.OwnerCurator;
+import org.candlepin.model.Pool;
+import org.candlepin.model.PoolQuantity;
+import org.candlepin.model.ProductCurator;
+import org.candlepin.policy.js.JsRunner;
+import org.candlepin.policy.js.RulesObjectMapper;
+import org.candlepin.policy.js.autobind.AutobindRules;
+import org.candlepin.policy.js.compliance.ComplianceStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+
+
+/**
+ * Runs the autobind test cases against both the rules and the native autobind engine, verifying
+ * the engines select the same pools and quantities for every case.
+ */
+public class AutobindRulesParityTest extends AutobindRulesTest {
+
+    @Override
+    protected AutobindRules createAutobindRules(JsRunner jsRules, ProductCurator productCurator,
+        ConsumerTypeCurator consumerTypeCurator, OwnerCurator ownerCurator, RulesObjectMapper mapper,
+        ModelTranslator translator, Configuration config) {
+
+        Configuration nativeConfig = mock(Configuration.class);
+        when(nativeConfig.getString(eq(ConfigProperties.AUTOBIND_ENGINE), anyString())).thenReturn("native");
+
+        final AutobindRules nativeRules = new AutobindRules(jsRules, productCurator, consumerTypeCurator,
+            ownerCurator, mapper, translator, nativeConfig);
+
+        return new AutobindRules(jsRules, productCurator, consumerTypeCurator, ownerCurator, mapper,
+            translator, config) {
+
+            @Override
+            public List<PoolQuantity> selectBestPools(Consumer consumer, String[] productIds,
+                List<Pool> pools, ComplianceStatus compliance, String serviceLevelOverride,
+                Set<String> exemptLevels, boolean considerDerived) {
+
+                List<PoolQuantity> expected = super.selectBestPools(consumer, productIds, pools,
+                    compliance, serviceLevelOverride, exemptLevels, considerDerived);
+                List<PoolQuantity> actual = nativeRules.selectBestPools(consumer, productIds, pools,
+                    compliance, serviceLevelOverride, exemptLevels, considerDerived);
+
+                assertEquals(describe(expected), describe(actual));
+                return actual;
+            }
+        };
+    }
+
+    private static List<String> describe(List<PoolQuantity> quantities) {
+        List<String> output = new ArrayList<>();
+        for (PoolQuantity quantity : quantities) {
+            output.add(quantity.getPool().getId() + ":" + quantity.getQuantity());
+        }
+
+        return output;
+    }
+
+}
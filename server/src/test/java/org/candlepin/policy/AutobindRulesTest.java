@@ -116,8 +116,8 @@ public class AutobindRulesTest {
         mapper =  new RulesObjectMapper(new ProductCachedSerializationModule(mockProductCurator));
 
         translator = new StandardTranslator(consumerTypeCurator, environmentCurator, mockOwnerCurator);
-        autobindRules = new AutobindRules(jsRules, mockProductCurator, consumerTypeCurator, mockOwnerCurator,
-           mapper, translator);
+        autobindRules = createAutobindRules(jsRules, mockProductCurator, consumerTypeCurator,
+            mockOwnerCurator, mapper, translator, config);
 
         owner = new Owner();
         owner.setId(TestUtil.randomString());
@@ -2411,6 +2411,14 @@ public class AutobindRulesTest {
         }
     }
 
+    protected AutobindRules createAutobindRules(JsRunner jsRules, ProductCurator productCurator,
+        ConsumerTypeCurator consumerTypeCurator, OwnerCurator ownerCurator, RulesObjectMapper mapper,
+        ModelTranslator translator, Configuration config) {
+
+        return new AutobindRules(jsRules, productCurator, consumerTypeCurator, ownerCurator, mapper,
+            translator, config);
+    }
+
     protected Pool createPool(Owner owner, Product product, int quantity, Date startDate, Date endDate) {
         Pool p = TestUtil.createPool(owner, product, quantity);
         p.setId("testpool" + TestUtil.randomInt());
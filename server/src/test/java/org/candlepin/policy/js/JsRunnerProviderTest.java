@@ -14,6 +14,8 @@
  */
 package org.candlepin.policy.js;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -44,6 +46,16 @@ public class JsRunnerProviderTest {
     private JsRunnerRequestCache mockedCache;
     @Mock private Rules rules;
     private Date time1;
+
+    private static final String POOL_TEST_RULES =
+        "function test_name_space() { return TestNamespace; }\n" +
+        "var TestNamespace = {\n" +
+        "    get_value: function() {\n" +
+        "        var previous = typeof(leftover) == 'undefined' ? null : leftover;\n" +
+        "        leftover = value;\n" +
+        "        return previous;\n" +
+        "    }\n" +
+        "};\n";
     private JsRunnerProvider provider;
 
     @Before
@@ -99,4 +111,61 @@ public class JsRunnerProviderTest {
         verify(rulesCurator, times(3)).getUpdated();
     }
 
+    private JsRunner pooledRunner() {
+        when(cacheProvider.get()).thenReturn(new JsRunnerRequestCache());
+        when(rules.getRules()).thenReturn(POOL_TEST_RULES);
+        provider.compileRules(true);
+
+        JsRunner runner = provider.get();
+        runner.init("test_name_space");
+        return runner;
+    }
+
+    private Object invokeWithValue(JsRunner runner, String value) throws Exception {
+        ArgumentJsContext context = new ArgumentJsContext();
+        context.put("value", value);
+        return runner.invokeMethod("get_value", context);
+    }
+
+    @Test
+    public void pooledScopesAreReused() throws Exception {
+        JsRunner runner = pooledRunner();
+        JsRunnerPool pool = provider.getRunnerPool();
+
+        invokeWithValue(runner, "a");
+
+        JsRunner other = provider.get();
+        other.init("test_name_space");
+        invokeWithValue(other, "b");
+
+        // The init checkout is the only miss; all other checkouts reuse the same scope
+        assertEquals(1, pool.getMissCount());
+        assertEquals(3, pool.getHitCount());
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void pooledScopesAreResetBetweenUses() throws Exception {
+        JsRunner runner = pooledRunner();
+
+        assertNull(invokeWithValue(runner, "a"));
+        assertNull(invokeWithValue(runner, "b"));
+    }
+
+    @Test
+    public void poolIsDrainedWhenRulesAreRecompiled() throws Exception {
+        JsRunner runner = pooledRunner();
+        JsRunnerPool pool = provider.getRunnerPool();
+        assertEquals(1, pool.getIdleCount());
+
+        Date time2 = new Date(time1.getTime() + 1000);
+        when(rulesCurator.getUpdated()).thenReturn(time2);
+        provider.compileRules();
+        assertEquals(0, pool.getIdleCount());
+
+        long misses = pool.getMissCount();
+        invokeWithValue(runner, "a");
+        assertEquals(misses + 1, pool.getMissCount());
+    }
+
 }
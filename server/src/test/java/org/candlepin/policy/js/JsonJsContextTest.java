@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.jackson.ProductCachedSerializationModule;
+import org.candlepin.model.Owner;
+import org.candlepin.model.Pool;
+import org.candlepin.model.Product;
+import org.candlepin.model.ProductCurator;
+import org.candlepin.test.TestUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+
+/**
+ * JsonJsContextTest
+ */
+public class JsonJsContextTest {
+    private static final String SCRIPT =
+        "function roundtrip() { return JSON.stringify(JSON.parse(json_context)); }\n" +
+        "function keys() { return Object.keys(JSON.parse(json_context).compliance).join(','); }\n" +
+        "function modify() {\n" +
+        "    var first = JSON.parse(json_context);\n" +
+        "    first.pool.quantity = 1000;\n" +
+        "    first.extra = true;\n" +
+        "    var second = JSON.parse(json_context);\n" +
+        "    return second.pool.quantity + ':' + ('extra' in second);\n" +
+        "}\n" +
+        "function parseString() { return JSON.parse('{\"a\": [1, 2.5]}').a[1]; }\n";
+
+    private Context context;
+    private Scriptable globalScope;
+    private RulesObjectMapper jsonMapper;
+    private RulesObjectMapper structuredMapper;
+    private Map<String, Object> args;
+
+    @Before
+    public void setUp() {
+        ProductCurator productCurator = mock(ProductCurator.class);
+
+        jsonMapper = new RulesObjectMapper(new ProductCachedSerializationModule(productCurator));
+
+        Configuration config = mock(Configuration.class);
+        when(config.getBoolean(eq(ConfigProperties.RULES_STRUCTURED_CONTEXT), anyBoolean())).thenReturn(true);
+        structuredMapper = new RulesObjectMapper(new ProductCachedSerializationModule(productCurator),
+            config);
+
+        // The rules rely on dynamic scopes to read the context from the request scope
+        context = new JsRunnerProvider.DynamicScopeContextFactory().enterContext();
+        globalScope = context.initStandardObjects(null, true);
+        context.evaluateString(globalScope, SCRIPT, "test", 1, null);
+        ((ScriptableObject) globalScope).sealObject();
+
+        Owner owner = new Owner("test-owner");
+        Product product = TestUtil.createProduct("37060", "test product");
+        product.setAttribute("sockets", "2");
+        Pool pool = TestUtil.createPool(owner, product, 10);
+        pool.setId("pool-id");
+        pool.setEndDate(new Date(1234567890123L));
+
+        Map<String, Object> compliance = new LinkedHashMap<>();
+        compliance.put("37060", Arrays.asList("a", "b"));
+        compliance.put("stack-id", null);
+        compliance.put("7", Arrays.asList(1, 2.5, Long.MAX_VALUE, true));
+
+        args = new LinkedHashMap<>();
+        args.put("pool", pool);
+        args.put("compliance", compliance);
+        args.put("products", new String[] { "37060", "90" });
+        args.put("considerDerived", false);
+    }
+
+    @After
+    public void tearDown() {
+        Context.exit();
+    }
+
+    private Object call(RulesObjectMapper mapper, String function) {
+        JsonJsContext jsContext = new JsonJsContext(mapper);
+        for (Map.Entry<String, Object> entry : args.entrySet()) {
+            jsContext.put(entry.getKey(), entry.getValue());
+        }
+
+        Scriptable scope = context.newObject(globalScope);
+        scope.setPrototype(globalScope);
+        scope.setParentScope(null);
+        jsContext.applyTo(scope);
+
+        Function func = (Function) ScriptableObject.getProperty(scope, function);
+        return func.call(context, scope, scope, Context.emptyArgs);
+    }
+
+    @Test
+    public void structuredContextMatchesJsonContext() {
+        Object expected = call(jsonMapper, "roundtrip");
+        assertEquals(expected, call(structuredMapper, "roundtrip"));
+    }
+
+    @Test
+    public void structuredContextPreservesKeyOrder() {
+        assertEquals(call(jsonMapper, "keys"), call(structuredMapper, "keys"));
+    }
+
+    @Test
+    public void structuredContextParsesIndependentObjects() {
+        assertEquals("10:false", call(jsonMapper, "modify"));
+        assertEquals("10:false", call(structuredMapper, "modify"));
+    }
+
+    @Test
+    public void structuredContextParsesOtherJson() {
+        assertEquals(2.5, ((Number) call(structuredMapper, "parseString")).doubleValue(), 0);
+    }
+
+}
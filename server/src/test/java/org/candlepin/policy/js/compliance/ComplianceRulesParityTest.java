@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import static org.junit.Assert.*;
+
+import org.candlepin.audit.EventSink;
+import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.dto.ModelTranslator;
+import org.candlepin.dto.rules.v1.ComplianceReasonDTO;
+import org.candlepin.dto.rules.v1.ComplianceStatusDTO;
+import org.candlepin.dto.rules.v1.ConsumerDTO;
+import org.candlepin.dto.rules.v1.ConsumerTypeDTO;
+import org.candlepin.dto.rules.v1.EntitlementDTO;
+import org.candlepin.dto.rules.v1.GuestIdDTO;
+import org.candlepin.dto.rules.v1.PoolDTO;
+import org.candlepin.model.ConsumerCurator;
+import org.candlepin.model.ConsumerTypeCurator;
+import org.candlepin.model.EntitlementCurator;
+import org.candlepin.policy.js.JsRunner;
+import org.candlepin.policy.js.RulesObjectMapper;
+import org.candlepin.util.DateRange;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+
+
+/**
+ * Runs the compliance test cases against both the rules and the incremental compliance engine,
+ * verifying the engines calculate the same status for every case.
+ */
+public class ComplianceRulesParityTest extends ComplianceRulesTest {
+
+    private IncrementalComplianceCache createIncrementalCache() {
+        CandlepinCommonTestConfig config = new CandlepinCommonTestConfig();
+        config.setProperty(ConfigProperties.COMPLIANCE_ENGINE, IncrementalComplianceCache.INCREMENTAL_ENGINE);
+
+        IncrementalComplianceCache cache = new IncrementalComplianceCache(config);
+        assertTrue(cache.isEnabled());
+        return cache;
+    }
+
+    @Override
+    protected ComplianceRules createComplianceRules(JsRunner jsRules, EntitlementCurator entCurator,
+        StatusReasonMessageGenerator generator, EventSink eventSink, ConsumerCurator consumerCurator,
+        ConsumerTypeCurator consumerTypeCurator, RulesObjectMapper mapper, ModelTranslator translator) {
+
+        final IncrementalComplianceCache incrementalCache = this.createIncrementalCache();
+
+        return new ComplianceRules(jsRules, entCurator, generator, eventSink, consumerCurator,
+            consumerTypeCurator, mapper, translator,
+            new IncrementalComplianceCache(new CandlepinCommonTestConfig()), this.statusCache) {
+
+            @Override
+            protected ComplianceStatusDTO calculateStatus(ConsumerDTO consumer,
+                List<EntitlementDTO> entitlements, List<GuestIdDTO> guestIds, Date date,
+                boolean calculateCompliantUntil, boolean calculateProductComplianceDateRanges) {
+
+                ComplianceStatusDTO expected = super.calculateStatus(consumer, entitlements, guestIds,
+                    date, calculateCompliantUntil, calculateProductComplianceDateRanges);
+                ComplianceStatusDTO actual = incrementalCache.getStatus(consumer, entitlements, guestIds,
+                    date, calculateCompliantUntil, calculateProductComplianceDateRanges);
+
+                assertEquals(describe(expected), describe(actual));
+                return actual;
+            }
+        };
+    }
+
+    private static String describe(ComplianceStatusDTO status) {
+        Map<String, Object> output = new TreeMap<>();
+        output.put("date", status.getDate());
+        output.put("compliantUntil", status.getCompliantUntil());
+        output.put("nonCompliantProducts", new TreeSet<>(status.getNonCompliantProducts()));
+        output.put("compliantProducts", describe(status.getCompliantProducts()));
+        output.put("partiallyCompliantProducts", describe(status.getPartiallyCompliantProducts()));
+        output.put("partialStacks", describe(status.getPartialStacks()));
+
+        Set<String> reasons = new TreeSet<>();
+        for (ComplianceReasonDTO reason : status.getReasons()) {
+            reasons.add(reason.getKey() + ":" + new TreeMap<>(reason.getAttributes()));
+        }
+        output.put("reasons", reasons);
+
+        if (status.getProductComplianceDateRanges() != null) {
+            Map<String, String> ranges = new TreeMap<>();
+            for (Map.Entry<String, DateRange> entry : status.getProductComplianceDateRanges().entrySet()) {
+                DateRange range = entry.getValue();
+                ranges.put(entry.getKey(), range.getStartDate().getTime() + "-" +
+                    range.getEndDate().getTime());
+            }
+            output.put("productComplianceDateRanges", ranges);
+        }
+
+        return output.toString();
+    }
+
+    private static Map<String, Set<String>> describe(Map<String, Set<EntitlementDTO>> entitlements) {
+        Map<String, Set<String>> output = new TreeMap<>();
+        for (Map.Entry<String, Set<EntitlementDTO>> entry : entitlements.entrySet()) {
+            Set<String> ids = new TreeSet<>();
+            for (EntitlementDTO entitlement : entry.getValue()) {
+                ids.add(entitlement.getId());
+            }
+
+            output.put(entry.getKey(), ids);
+        }
+
+        return output;
+    }
+
+    private static EntitlementDTO createEntitlement(String id, String stackId, String sockets,
+        String... providedProducts) {
+
+        Map<String, String> productAttributes = new HashMap<>();
+        productAttributes.put("sockets", sockets);
+        if (stackId != null) {
+            productAttributes.put("stacking_id", stackId);
+            productAttributes.put("multi-entitlement", "yes");
+        }
+
+        PoolDTO pool = new PoolDTO()
+            .setId("pool-" + id)
+            .setProductId("sku-" + id)
+            .setProductAttributes(productAttributes);
+
+        for (String productId : providedProducts) {
+            pool.addProvidedProduct(new PoolDTO.ProvidedProductDTO(productId, productId));
+        }
+
+        return new EntitlementDTO()
+            .setId(id)
+            .setPool(pool)
+            .setQuantity(1)
+            .setStartDate(new Date(0))
+            .setEndDate(new Date(Long.MAX_VALUE / 2));
+    }
+
+    @Test
+    public void incrementalEngineOnlyReevaluatesChangedStacks() {
+        ConsumerDTO consumer = new ConsumerDTO()
+            .setUuid("incremental-consumer")
+            .setType(new ConsumerTypeDTO().setLabel("system"))
+            .setFacts(Collections.singletonMap("cpu.cpu_socket(s)", "8"))
+            .setInstalledProducts(new HashSet<>(Arrays.asList("p1", "p2", "p3")));
+
+        List<EntitlementDTO> entitlements = new ArrayList<>(Arrays.asList(
+            createEntitlement("e1", "stack-1", "2", "p1"),
+            createEntitlement("e2", "stack-1", "2", "p1"),
+            createEntitlement("e3", "stack-2", "4", "p2"),
+            createEntitlement("e4", null, "8", "p3")));
+
+        IncrementalComplianceCache cache = this.createIncrementalCache();
+        IncrementalComplianceCalculator calculator = cache.getCalculator(consumer, null);
+        Date now = new Date();
+
+        ComplianceStatusDTO status = cache.getStatus(consumer, entitlements, null, now, false, false);
+        assertEquals(new HashSet<>(Arrays.asList("stack-1", "stack-2")), status.getPartialStacks().keySet());
+        assertEquals(2, calculator.getStackEvaluations());
+        assertEquals(1, calculator.getEntitlementEvaluations());
+
+        // Nothing changed; all coverage is reused
+        cache.getStatus(consumer, entitlements, null, now, false, false);
+        assertEquals(2, calculator.getStackEvaluations());
+        assertEquals(1, calculator.getEntitlementEvaluations());
+
+        // Completing the first stack only reevaluates that stack
+        entitlements.add(createEntitlement("e5", "stack-1", "4", "p1"));
+        status = cache.getStatus(consumer, entitlements, null, now, false, false);
+        assertEquals(Collections.singleton("stack-2"), status.getPartialStacks().keySet());
+        assertEquals(new HashSet<>(Arrays.asList("p1", "p3")), status.getCompliantProducts().keySet());
+        assertEquals(3, calculator.getStackEvaluations());
+        assertEquals(1, calculator.getEntitlementEvaluations());
+
+        // As does removing an entitlement from it again
+        entitlements.remove(0);
+        status = cache.getStatus(consumer, entitlements, null, now, false, false);
+        assertEquals(new HashSet<>(Arrays.asList("stack-1", "stack-2")), status.getPartialStacks().keySet());
+        assertEquals(4, calculator.getStackEvaluations());
+        assertEquals(1, calculator.getEntitlementEvaluations());
+        assertSame(calculator, cache.getCalculator(consumer, null));
+
+        // Changing the consumer starts over with a new calculator
+        consumer.setFacts(Collections.singletonMap("cpu.cpu_socket(s)", "2"));
+        assertNotSame(calculator, cache.getCalculator(consumer, null));
+    }
+
+}
@@ -21,14 +21,20 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.candlepin.audit.EventSink;
+import org.candlepin.config.CandlepinCommonTestConfig;
 import org.candlepin.dto.ModelTranslator;
 import org.candlepin.dto.StandardTranslator;
+import org.candlepin.dto.rules.v1.ComplianceReasonDTO;
+import org.candlepin.dto.rules.v1.ComplianceStatusDTO;
 import org.candlepin.model.CandlepinQuery;
 import org.candlepin.jackson.ProductCachedSerializationModule;
 import org.candlepin.model.Consumer;
@@ -67,6 +73,7 @@ import org.xnap.commons.i18n.I18nFactory;
 import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -103,6 +110,7 @@ public class ComplianceRulesTest {
     @Mock private JsRunnerRequestCache cache;
     @Mock private ProductCurator productCurator;
     @Mock private EnvironmentCurator environmentCurator;
+    @Mock protected ComplianceStatusCache statusCache;
 
     private ModelTranslator translator;
     private I18n i18n;
@@ -125,7 +133,7 @@ public class ComplianceRulesTest {
         when(rulesCuratorMock.getRules()).thenReturn(rules);
         when(cacheProvider.get()).thenReturn(cache);
         provider = new JsRunnerProvider(rulesCuratorMock, cacheProvider);
-        compliance = new ComplianceRules(provider.get(), entCurator, new StatusReasonMessageGenerator(i18n),
+        compliance = createComplianceRules(provider.get(), entCurator, new StatusReasonMessageGenerator(i18n),
             eventSink, consumerCurator, consumerTypeCurator,
             new RulesObjectMapper(new ProductCachedSerializationModule(productCurator)), translator);
 
@@ -151,7 +159,8 @@ public class ComplianceRulesTest {
         JsRunner mockRunner = mock(JsRunner.class);
         compliance = new ComplianceRules(mockRunner, entCurator, new StatusReasonMessageGenerator(i18n),
             eventSink, consumerCurator, consumerTypeCurator,
-            new RulesObjectMapper(new ProductCachedSerializationModule(productCurator)), translator);
+            new RulesObjectMapper(new ProductCachedSerializationModule(productCurator)), translator,
+            new IncrementalComplianceCache(new CandlepinCommonTestConfig()), statusCache);
 
         when(mockRunner.runJsFunction(any(Class.class), eq("get_status"),
             any(JsContext.class))).thenReturn("{\"unknown\": \"thing\"}");
@@ -161,6 +170,73 @@ public class ComplianceRulesTest {
         compliance.getStatus(c, TestUtil.createDate(2011, 8, 30));
     }
 
+    protected ComplianceRules createComplianceRules(JsRunner jsRules, EntitlementCurator entCurator,
+        StatusReasonMessageGenerator generator, EventSink eventSink, ConsumerCurator consumerCurator,
+        ConsumerTypeCurator consumerTypeCurator, RulesObjectMapper mapper, ModelTranslator translator) {
+
+        return new ComplianceRules(jsRules, entCurator, generator, eventSink, consumerCurator,
+            consumerTypeCurator, mapper, translator,
+            new IncrementalComplianceCache(new CandlepinCommonTestConfig()), statusCache);
+    }
+
+    @Test
+    public void cachedStatusSkipsRules() {
+        JsRunner mockRunner = mock(JsRunner.class);
+        compliance = new ComplianceRules(mockRunner, entCurator, new StatusReasonMessageGenerator(i18n),
+            eventSink, consumerCurator, consumerTypeCurator,
+            new RulesObjectMapper(new ProductCachedSerializationModule(productCurator)), translator,
+            new IncrementalComplianceCache(new CandlepinCommonTestConfig()), statusCache);
+
+        Consumer c = mockConsumerWithTwoProductsAndNoEntitlements();
+        c.setId("cached-consumer");
+        Date date = TestUtil.createDate(2011, 8, 30);
+
+        ComplianceStatusCache.Fingerprint fingerprint = mock(ComplianceStatusCache.Fingerprint.class);
+        ComplianceStatusDTO cached = new ComplianceStatusDTO();
+        cached.setDate(date);
+        cached.setNonCompliantProducts(new HashSet<>(Arrays.asList(PRODUCT_1.getId(), PRODUCT_2.getId())));
+        List<ComplianceReasonDTO> reasons = new LinkedList<>();
+        for (Product product : Arrays.asList(PRODUCT_1, PRODUCT_2)) {
+            reasons.add(new ComplianceReasonDTO()
+                .setKey("NOTCOVERED")
+                .setMessage("NOTCOVERED")
+                .setAttributes(Collections.singletonMap("product_id", product.getId())));
+        }
+        cached.setReasons(reasons);
+
+        when(statusCache.isEnabled()).thenReturn(true);
+        when(statusCache.getFingerprint(eq(c))).thenReturn(fingerprint);
+        when(statusCache.get(eq(fingerprint), eq(date), eq(true))).thenReturn(cached);
+
+        ComplianceStatus status = compliance.getStatus(c, date);
+        assertEquals(2, status.getNonCompliantProducts().size());
+        assertEquals(2, status.getReasons().size());
+        assertEquals(ComplianceStatus.RED, status.getStatus());
+
+        verify(mockRunner, never()).runJsFunction(any(Class.class), eq("get_status"), any(JsContext.class));
+        verify(statusCache, never()).put(any(ComplianceStatusCache.Fingerprint.class), any(Date.class),
+            anyBoolean(), any(ComplianceStatusDTO.class));
+    }
+
+    @Test
+    public void currentStatusIsCached() {
+        Consumer c = mockConsumerWithTwoProductsAndNoEntitlements();
+        c.setId("cached-consumer");
+
+        ComplianceStatusCache.Fingerprint fingerprint = mock(ComplianceStatusCache.Fingerprint.class);
+        when(statusCache.isEnabled()).thenReturn(true);
+        when(statusCache.getFingerprint(eq(c))).thenReturn(fingerprint);
+
+        compliance.getStatus(c);
+        verify(statusCache).put(eq(fingerprint), any(Date.class), eq(false), any(ComplianceStatusDTO.class));
+
+        // Statuses for other dates are read from the cache, but never stored
+        compliance.getStatus(c, TestUtil.createDate(2011, 8, 30));
+        verify(statusCache).get(eq(fingerprint), any(Date.class), eq(true));
+        verify(statusCache, times(1)).put(any(ComplianceStatusCache.Fingerprint.class), any(Date.class),
+            anyBoolean(), any(ComplianceStatusDTO.class));
+    }
+
     private Consumer mockConsumer(Product ... installedProducts) {
         ConsumerType ctype = new ConsumerType(ConsumerType.ConsumerTypeEnum.SYSTEM);
         ctype.setId("test-ctype-" + TestUtil.randomInt());
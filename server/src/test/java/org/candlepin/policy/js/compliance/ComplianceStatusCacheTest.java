@@ -0,0 +1,284 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.dto.rules.v1.ComplianceReasonDTO;
+import org.candlepin.dto.rules.v1.ComplianceStatusDTO;
+import org.candlepin.dto.rules.v1.EntitlementDTO;
+import org.candlepin.dto.rules.v1.PoolDTO;
+import org.candlepin.jackson.ProductCachedSerializationModule;
+import org.candlepin.model.CachedComplianceStatus;
+import org.candlepin.model.CachedComplianceStatusCurator;
+import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerInstalledProduct;
+import org.candlepin.model.Entitlement;
+import org.candlepin.model.Owner;
+import org.candlepin.model.Pool;
+import org.candlepin.model.Product;
+import org.candlepin.model.ProductCurator;
+import org.candlepin.policy.js.JsRunnerProvider;
+import org.candlepin.policy.js.RulesObjectMapper;
+import org.candlepin.policy.js.compliance.ComplianceStatusCache.InvalidationReason;
+import org.candlepin.test.TestUtil;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+
+
+/**
+ * ComplianceStatusCacheTest
+ */
+public class ComplianceStatusCacheTest {
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private JsRunnerProvider jsProvider;
+    private ComplianceStatusCache cache;
+    private Map<String, CachedComplianceStatus> stored;
+
+    private Owner owner;
+    private Consumer consumer;
+    private Entitlement entitlement;
+    private Date now;
+
+    @Before
+    public void setUp() {
+        CandlepinCommonTestConfig config = new CandlepinCommonTestConfig();
+        config.setProperty(ConfigProperties.COMPLIANCE_CACHE_ENABLED, "true");
+
+        this.stored = new HashMap<>();
+        CachedComplianceStatusCurator curator = mock(CachedComplianceStatusCurator.class);
+        when(curator.get(anyString())).thenAnswer(new Answer<CachedComplianceStatus>() {
+            @Override
+            public CachedComplianceStatus answer(InvocationOnMock invocation) {
+                return stored.get((String) invocation.getArguments()[0]);
+            }
+        });
+        when(curator.store(any(CachedComplianceStatus.class))).thenAnswer(
+            new Answer<CachedComplianceStatus>() {
+                @Override
+                public CachedComplianceStatus answer(InvocationOnMock invocation) {
+                    CachedComplianceStatus status = (CachedComplianceStatus) invocation.getArguments()[0];
+                    stored.put(status.getConsumerId(), status);
+                    return status;
+                }
+            });
+
+        this.jsProvider = mock(JsRunnerProvider.class);
+        when(this.jsProvider.getRulesVersion()).thenReturn("5.30");
+
+        RulesObjectMapper mapper =
+            new RulesObjectMapper(new ProductCachedSerializationModule(mock(ProductCurator.class)));
+        this.cache = new ComplianceStatusCache(config, curator, this.jsProvider, mapper);
+        assertTrue(this.cache.isEnabled());
+
+        this.now = new Date();
+        this.owner = TestUtil.createOwner();
+        this.consumer = TestUtil.createConsumer(this.owner);
+        this.consumer.setId("consumer-id");
+        this.consumer.setFact("cpu.cpu_socket(s)", "4");
+        this.consumer.addInstalledProduct(new ConsumerInstalledProduct("p1", "product 1"));
+
+        this.entitlement = this.createEntitlement(new Date(this.now.getTime() - 10 * DAY),
+            new Date(this.now.getTime() + 10 * DAY));
+    }
+
+    private Entitlement createEntitlement(Date startDate, Date endDate) {
+        Product product = TestUtil.createProduct();
+        Pool pool = TestUtil.createPool(this.owner, product);
+        pool.setId("pool-" + product.getId());
+        pool.setStartDate(startDate);
+        pool.setEndDate(endDate);
+        pool.setUpdated(this.now);
+
+        Entitlement entitlement = TestUtil.createEntitlement(this.owner, this.consumer, pool, null);
+        entitlement.setQuantity(1);
+        entitlement.setUpdated(this.now);
+        return entitlement;
+    }
+
+    private ComplianceStatusDTO createStatus(Date date) {
+        PoolDTO pool = new PoolDTO()
+            .setId(this.entitlement.getPool().getId())
+            .setProductId(this.entitlement.getPool().getProductId())
+            .setStartDate(this.entitlement.getStartDate())
+            .setEndDate(this.entitlement.getEndDate());
+
+        EntitlementDTO entitlement = new EntitlementDTO()
+            .setId(this.entitlement.getId())
+            .setQuantity(1)
+            .setPool(pool)
+            .setStartDate(this.entitlement.getStartDate())
+            .setEndDate(this.entitlement.getEndDate());
+
+        ComplianceReasonDTO reason = new ComplianceReasonDTO()
+            .setKey("SOCKETS")
+            .setMessage("SOCKETS")
+            .setAttributes(Collections.singletonMap("entitlement_id", this.entitlement.getId()));
+
+        return new ComplianceStatusDTO()
+            .setDate(date)
+            .setCompliantUntil(this.entitlement.getEndDate())
+            .setPartiallyCompliantProducts(
+                Collections.singletonMap("p1", Collections.singleton(entitlement)))
+            .setReasons(Collections.singleton(reason));
+    }
+
+    private ComplianceStatusCache.Fingerprint fingerprint() {
+        return this.cache.getFingerprint(this.consumer);
+    }
+
+    private void assertInvalidated(InvalidationReason reason, Date date) {
+        long count = this.cache.getInvalidationCount(reason);
+
+        assertNull(this.cache.get(this.fingerprint(), date, true));
+        assertEquals(count + 1, this.cache.getInvalidationCount(reason));
+    }
+
+    @Test
+    public void missesWithoutCachedStatus() {
+        assertNull(this.cache.get(this.fingerprint(), this.now, true));
+        assertEquals(0, this.cache.getHitCount());
+        assertEquals(1, this.cache.getMissCount());
+        assertEquals(0, this.cache.getHitRatio(), 0);
+    }
+
+    @Test
+    public void servesCachedStatus() {
+        this.cache.put(this.fingerprint(), this.now, true, this.createStatus(this.now));
+
+        Date later = new Date(this.now.getTime() + DAY);
+        ComplianceStatusDTO status = this.cache.get(this.fingerprint(), later, true);
+
+        assertNotNull(status);
+        assertEquals(later, status.getDate());
+        assertEquals(this.entitlement.getEndDate(), status.getCompliantUntil());
+        assertEquals(Collections.singleton("p1"), status.getPartiallyCompliantProducts().keySet());
+
+        EntitlementDTO entitlement = status.getPartiallyCompliantProducts().get("p1").iterator().next();
+        assertEquals(this.entitlement.getId(), entitlement.getId());
+        assertEquals(this.entitlement.getPool().getId(), entitlement.getPool().getId());
+
+        ComplianceReasonDTO reason = status.getReasons().iterator().next();
+        assertEquals("SOCKETS", reason.getKey());
+        assertEquals(this.entitlement.getId(), reason.getAttributes().get("entitlement_id"));
+
+        assertEquals(1, this.cache.getHitCount());
+        assertEquals(1.0, this.cache.getHitRatio(), 0);
+    }
+
+    @Test
+    public void omitsCompliantUntilWhenNotRequested() {
+        this.cache.put(this.fingerprint(), this.now, true, this.createStatus(this.now));
+
+        ComplianceStatusDTO status = this.cache.get(this.fingerprint(), this.now, false);
+        assertNotNull(status);
+        assertNull(status.getCompliantUntil());
+    }
+
+    @Test
+    public void invalidatedWhenCompliantUntilMissing() {
+        this.cache.put(this.fingerprint(), this.now, false, this.createStatus(this.now));
+
+        assertNotNull(this.cache.get(this.fingerprint(), this.now, false));
+        this.assertInvalidated(InvalidationReason.COMPLIANT_UNTIL_MISSING, this.now);
+    }
+
+    @Test
+    public void invalidatedByRulesUpdates() {
+        this.cache.put(this.fingerprint(), this.now, true, this.createStatus(this.now));
+        when(this.jsProvider.getRulesVersion()).thenReturn("5.31");
+
+        this.assertInvalidated(InvalidationReason.RULES_CHANGED, this.now);
+    }
+
+    @Test
+    public void invalidatedByComplianceFactChanges() {
+        this.cache.put(this.fingerprint(), this.now, true, this.createStatus(this.now));
+        this.consumer.setFact("cpu.cpu_socket(s)", "8");
+
+        this.assertInvalidated(InvalidationReason.CONSUMER_CHANGED, this.now);
+    }
+
+    @Test
+    public void invalidatedByInstalledProductChanges() {
+        this.cache.put(this.fingerprint(), this.now, true, this.createStatus(this.now));
+        this.consumer.addInstalledProduct(new ConsumerInstalledProduct("p2", "product 2"));
+
+        this.assertInvalidated(InvalidationReason.CONSUMER_CHANGED, this.now);
+    }
+
+    @Test
+    public void unaffectedByOtherFacts() {
+        this.cache.put(this.fingerprint(), this.now, true, this.createStatus(this.now));
+        this.consumer.setFact("network.hostname", "changed.example.com");
+
+        assertNotNull(this.cache.get(this.fingerprint(), this.now, true));
+    }
+
+    @Test
+    public void invalidatedByNewEntitlements() {
+        this.cache.put(this.fingerprint(), this.now, true, this.createStatus(this.now));
+        this.createEntitlement(this.now, new Date(this.now.getTime() + DAY));
+
+        this.assertInvalidated(InvalidationReason.ENTITLEMENTS_CHANGED, this.now);
+    }
+
+    @Test
+    public void invalidatedByEntitlementUpdates() {
+        this.cache.put(this.fingerprint(), this.now, true, this.createStatus(this.now));
+        this.entitlement.setUpdated(new Date(this.now.getTime() + 1000));
+
+        this.assertInvalidated(InvalidationReason.ENTITLEMENTS_CHANGED, this.now);
+    }
+
+    @Test
+    public void invalidatedByPoolUpdates() {
+        this.cache.put(this.fingerprint(), this.now, true, this.createStatus(this.now));
+        this.entitlement.getPool().setUpdated(new Date(this.now.getTime() + 1000));
+
+        this.assertInvalidated(InvalidationReason.ENTITLEMENTS_CHANGED, this.now);
+    }
+
+    @Test
+    public void validUntilEntitlementsStartOrEnd() {
+        // A second entitlement starting in five days limits the range the status is valid for
+        Date startDate = new Date(this.now.getTime() + 5 * DAY);
+        this.createEntitlement(startDate, new Date(this.now.getTime() + 20 * DAY));
+        this.cache.put(this.fingerprint(), this.now, true, this.createStatus(this.now));
+
+        Date earlier = new Date(this.entitlement.getStartDate().getTime());
+        Date later = new Date(startDate.getTime() - 1);
+        assertNotNull(this.cache.get(this.fingerprint(), earlier, true));
+        assertNotNull(this.cache.get(this.fingerprint(), later, true));
+
+        this.assertInvalidated(InvalidationReason.DATE_OUT_OF_RANGE, startDate);
+        this.assertInvalidated(InvalidationReason.DATE_OUT_OF_RANGE, new Date(earlier.getTime() - 1));
+    }
+
+}
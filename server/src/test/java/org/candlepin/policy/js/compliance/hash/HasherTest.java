@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.policy.js.compliance.hash;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+
+
+/**
+ * HasherTest
+ */
+public class HasherTest {
+
+    private String hashStrings(String... values) {
+        Hasher hasher = new Hasher();
+        for (String value : values) {
+            hasher.putObject(value, HashableStringGenerators.STRING);
+        }
+
+        return hasher.hash();
+    }
+
+    private String hashCollection(Collection<String> values) {
+        Hasher hasher = new Hasher();
+        hasher.putCollection(values, HashableStringGenerators.STRING);
+        return hasher.hash();
+    }
+
+    @Test
+    public void producesHexDigest() {
+        String hash = hashStrings("a");
+        assertEquals(64, hash.length());
+        assertTrue(hash.matches("[0-9a-f]+"));
+        assertEquals(hash, hashStrings("a"));
+    }
+
+    @Test
+    public void keepsStringBoundaries() {
+        assertNotEquals(hashStrings("ab", "c"), hashStrings("a", "bc"));
+        assertNotEquals(hashStrings("a", null), hashStrings("a", ""));
+        assertNotEquals(hashStrings((String) null), hashStrings("null"));
+    }
+
+    @Test
+    public void collectionHashIgnoresOrder() {
+        assertEquals(hashCollection(Arrays.asList("a", "b", "c")),
+            hashCollection(Arrays.asList("c", "a", "b")));
+    }
+
+    @Test
+    public void collectionHashCountsDuplicates() {
+        assertNotEquals(hashCollection(Arrays.asList("a", "b")),
+            hashCollection(Arrays.asList("a", "b", "b")));
+        assertNotEquals(hashCollection(Arrays.asList("a", "a")),
+            hashCollection(Arrays.asList("b", "b")));
+    }
+
+    @Test
+    public void nullCollectionDiffersFromEmptyCollection() {
+        assertNotEquals(hashCollection(null), hashCollection(Arrays.<String>asList()));
+    }
+
+}
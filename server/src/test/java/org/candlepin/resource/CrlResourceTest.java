@@ -19,12 +19,15 @@ import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.*;
 
 import org.candlepin.common.config.Configuration;
+import org.candlepin.common.exceptions.NotFoundException;
 import org.candlepin.config.ConfigProperties;
 import org.candlepin.model.CandlepinQuery;
 import org.candlepin.model.CertificateSerial;
 import org.candlepin.model.CertificateSerialCurator;
 import org.candlepin.pki.PKIUtility;
 import org.candlepin.util.CrlFileUtil;
+import org.candlepin.util.CrlPublisher;
+import org.candlepin.util.CrlSnapshot;
 
 import org.junit.Before;
 import org.junit.After;
@@ -34,9 +37,14 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import java.io.File;
+import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+
 
 
 /**
@@ -52,6 +60,7 @@ public class CrlResourceTest {
     @Mock private CrlFileUtil crlFileUtil;
     @Mock private CertificateSerialCurator certSerialCurator;
     @Mock private PKIUtility pkiUtility;
+    @Mock private CrlPublisher crlPublisher;
 
     @Before
     public void init() throws Exception {
@@ -59,7 +68,7 @@ public class CrlResourceTest {
 
         when(config.getString(ConfigProperties.CRL_FILE_PATH)).thenReturn(this.testFile.getAbsolutePath());
         this.resource = new CrlResource(
-            this.config, this.crlFileUtil, this.pkiUtility, this.certSerialCurator
+            this.config, this.crlFileUtil, this.pkiUtility, this.certSerialCurator, this.crlPublisher
         );
     }
 
@@ -72,7 +81,7 @@ public class CrlResourceTest {
 
     @Test
     public void testGetCurrentCrl() throws Exception {
-        Object response = this.resource.getCurrentCrl(null);
+        Object response = this.resource.getCurrentCrl(null, null);
 
         assertTrue(response != null);
         verify(crlFileUtil).syncCRLWithDB(any(File.class));
@@ -81,12 +90,80 @@ public class CrlResourceTest {
     @Test
     public void testGetCurrentCrlWithNoFile() throws Exception {
         this.cleanup();
-        Object response = this.resource.getCurrentCrl(null);
+        Object response = this.resource.getCurrentCrl(null, null);
 
         assertTrue(response != null);
         verify(crlFileUtil).syncCRLWithDB(any(File.class));
     }
 
+    @Test
+    public void testGetCurrentCrlFromSnapshot() throws Exception {
+        CrlSnapshot snapshot = new CrlSnapshot("crl".getBytes(), 1, new Date());
+        when(this.crlPublisher.isEnabled()).thenReturn(true);
+        when(this.crlPublisher.getSnapshot()).thenReturn(snapshot);
+
+        Response response = this.resource.getCurrentCrl(null, mock(Request.class));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(new EntityTag(snapshot.getETag()), response.getEntityTag());
+        assertEquals(snapshot.getLastModified(), response.getLastModified());
+        verifyZeroInteractions(this.crlFileUtil);
+    }
+
+    @Test
+    public void testGetCurrentCrlNotModified() throws Exception {
+        CrlSnapshot snapshot = new CrlSnapshot("crl".getBytes(), 1, new Date());
+        when(this.crlPublisher.isEnabled()).thenReturn(true);
+        when(this.crlPublisher.getSnapshot()).thenReturn(snapshot);
+
+        Request request = mock(Request.class);
+        when(request.evaluatePreconditions(eq(snapshot.getLastModified()),
+            eq(new EntityTag(snapshot.getETag())))).thenReturn(Response.notModified());
+
+        Response response = this.resource.getCurrentCrl(null, request);
+
+        assertEquals(304, response.getStatus());
+        assertNull(response.getEntity());
+        verifyZeroInteractions(this.crlFileUtil);
+    }
+
+    @Test
+    public void testGetDeltaCrl() throws Exception {
+        CrlSnapshot delta = new CrlSnapshot("delta".getBytes(), 1, new Date());
+        when(this.crlPublisher.isDeltaEnabled()).thenReturn(true);
+        when(this.crlPublisher.getDeltaSnapshot()).thenReturn(delta);
+
+        Response response = this.resource.getDeltaCrl(null, mock(Request.class));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(new EntityTag(delta.getETag()), response.getEntityTag());
+        verifyZeroInteractions(this.crlFileUtil);
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void testGetDeltaCrlWhenDisabled() throws Exception {
+        this.resource.getDeltaCrl(null, mock(Request.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testUnrevokeWithPublisher() throws Exception {
+        String[] input = new String[] { "123" };
+
+        CandlepinQuery cqmock = mock(CandlepinQuery.class);
+        List<CertificateSerial> serials = new LinkedList<>();
+        serials.add(new CertificateSerial(123L));
+
+        when(cqmock.iterator()).thenReturn(serials.iterator());
+        when(this.certSerialCurator.listBySerialIds(eq(input))).thenReturn(cqmock);
+        when(this.crlPublisher.isEnabled()).thenReturn(true);
+
+        this.resource.unrevoke(input);
+
+        verify(this.crlPublisher).unrevoke(anyCollection());
+        verifyZeroInteractions(this.crlFileUtil);
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void testUnrevokeWithArguments() throws Exception {
@@ -21,6 +21,7 @@ import org.candlepin.auth.ConsumerPrincipal;
 import org.candlepin.auth.Principal;
 import org.candlepin.auth.UpdateConsumerCheckIn;
 import org.candlepin.model.Consumer;
+import org.candlepin.model.ConsumerCheckInBuffer;
 import org.candlepin.model.Owner;
 import org.candlepin.test.DatabaseTestFixture;
 
@@ -81,7 +82,8 @@ public class ConsumerCheckInFilterTest extends DatabaseTestFixture {
         ResteasyProviderFactory.pushContext(ResourceInfo.class, mockInfo);
         ResteasyProviderFactory.pushContext(Principal.class, this.principal);
 
-        interceptor = new ConsumerCheckInFilter(consumerCurator);
+        interceptor = new ConsumerCheckInFilter(
+            new ConsumerCheckInBuffer(() -> consumerCurator, null, 0, 0, true));
     }
 
     private void mockResourceMethod(Method method) {
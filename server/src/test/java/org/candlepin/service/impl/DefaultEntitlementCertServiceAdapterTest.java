@@ -49,12 +49,14 @@ import org.candlepin.model.ProductCurator;
 import org.candlepin.model.dto.ProductContentData;
 import org.candlepin.model.dto.ProductData;
 import org.candlepin.model.dto.Subscription;
+import org.candlepin.pki.CertificateGenerationPool;
 import org.candlepin.pki.PKIUtility;
 import org.candlepin.pki.X509ByteExtensionWrapper;
 import org.candlepin.pki.X509ExtensionWrapper;
 import org.candlepin.pki.impl.JSSProviderLoader;
 import org.candlepin.test.TestUtil;
 import org.candlepin.util.CertificateSizeException;
+import org.candlepin.util.ContentDictionaryCache;
 import org.candlepin.util.Util;
 import org.candlepin.util.X509ExtensionUtil;
 import org.candlepin.util.X509V3ExtensionUtil;
@@ -219,13 +221,15 @@ public class DefaultEntitlementCertServiceAdapterTest {
         );
         injector.injectMembers(this);
 
-        v3extensionUtil = new X509V3ExtensionUtil(config, entCurator, mapper);
+        v3extensionUtil = new X509V3ExtensionUtil(config, entCurator, mapper,
+            new ContentDictionaryCache(0));
         certServiceAdapter = new DefaultEntitlementCertServiceAdapter(
             mockedPKI, extensionUtil, v3extensionUtil,
             mock(EntitlementCertificateCurator.class),
             keyPairCurator, serialCurator, ownerCurator, entCurator,
             I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
-            config, productCurator, this.mockConsumerTypeCurator, this.mockEnvironmentCurator);
+            config, productCurator, this.mockConsumerTypeCurator, this.mockEnvironmentCurator,
+            new CertificateGenerationPool(1));
 
         product = TestUtil.createProduct("12345", "a product");
         product.setAttribute(Product.Attributes.VERSION, "version");
@@ -402,7 +406,8 @@ public class DefaultEntitlementCertServiceAdapterTest {
             mock(EntitlementCertificateCurator.class),
             keyPairCurator, serialCurator, ownerCurator, entCurator,
             I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
-            config, productCurator, this.mockConsumerTypeCurator, this.mockEnvironmentCurator);
+            config, productCurator, this.mockConsumerTypeCurator, this.mockEnvironmentCurator,
+            new CertificateGenerationPool(1));
 
         X509Certificate result = certServiceAdapter.createX509Certificate(consumer, owner, pool,
             entitlement, product, new HashSet<>(),
@@ -429,7 +434,8 @@ public class DefaultEntitlementCertServiceAdapterTest {
             mock(EntitlementCertificateCurator.class),
             keyPairCurator, serialCurator, ownerCurator, entCurator,
             I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
-            config, productCurator, this.mockConsumerTypeCurator, this.mockEnvironmentCurator);
+            config, productCurator, this.mockConsumerTypeCurator, this.mockEnvironmentCurator,
+            new CertificateGenerationPool(1));
 
         // pool start date is more than an hour ago, use it
         Calendar cal = Calendar.getInstance();
@@ -870,7 +876,8 @@ public class DefaultEntitlementCertServiceAdapterTest {
             mock(EntitlementCertificateCurator.class),
             keyPairCurator, serialCurator, ownerCurator, entCurator,
             I18nFactory.getI18n(getClass(), Locale.US, I18nFactory.FALLBACK),
-            mockConfig, productCurator, this.mockConsumerTypeCurator, this.mockEnvironmentCurator);
+            mockConfig, productCurator, this.mockConsumerTypeCurator, this.mockEnvironmentCurator,
+            new CertificateGenerationPool(1));
     }
 
     @Test
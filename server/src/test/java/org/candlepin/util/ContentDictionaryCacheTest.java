@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import static org.junit.Assert.*;
+
+import org.candlepin.config.CandlepinCommonTestConfig;
+import org.candlepin.config.ConfigProperties;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+
+/**
+ * ContentDictionaryCacheTest
+ */
+public class ContentDictionaryCacheTest {
+
+    private ContentDictionaryCache.DictionaryBuilder builder(AtomicInteger builds, byte... value) {
+        return () -> {
+            builds.incrementAndGet();
+            return value;
+        };
+    }
+
+    @Test
+    public void buildsEachDictionaryOnce() throws Exception {
+        ContentDictionaryCache cache = new ContentDictionaryCache(1024);
+        AtomicInteger builds = new AtomicInteger();
+        List<String> paths = Arrays.asList("/content/a", "/content/b");
+
+        assertArrayEquals(new byte[] { 1 }, cache.get(paths, this.builder(builds, (byte) 1)));
+        assertArrayEquals(new byte[] { 1 }, cache.get(Arrays.asList("/content/a", "/content/b"),
+            this.builder(builds, (byte) 2)));
+
+        assertEquals(1, builds.get());
+        assertEquals(1, cache.getStats().hitCount());
+    }
+
+    @Test
+    public void keyedOnOrderedPaths() {
+        List<String> paths = Arrays.asList("/content/a", "/content/b");
+
+        assertEquals(ContentDictionaryCache.digest(paths),
+            ContentDictionaryCache.digest(Arrays.asList("/content/a", "/content/b")));
+        assertNotEquals(ContentDictionaryCache.digest(paths),
+            ContentDictionaryCache.digest(Arrays.asList("/content/b", "/content/a")));
+        assertNotEquals(ContentDictionaryCache.digest(paths),
+            ContentDictionaryCache.digest(Arrays.asList("/content/a/content/b")));
+        assertNotEquals(ContentDictionaryCache.digest(Collections.singletonList(null)),
+            ContentDictionaryCache.digest(Collections.singletonList("")));
+    }
+
+    @Test
+    public void evictsBeyondMaxBytes() throws Exception {
+        ContentDictionaryCache cache = new ContentDictionaryCache(10);
+        AtomicInteger builds = new AtomicInteger();
+
+        for (int i = 0; i < 5; i++) {
+            cache.get(Collections.singletonList("/content/" + i), this.builder(builds, new byte[4]));
+        }
+
+        assertTrue(cache.getStats().evictionCount() >= 3);
+    }
+
+    @Test
+    public void disabledCacheAlwaysBuilds() throws Exception {
+        CandlepinCommonTestConfig config = new CandlepinCommonTestConfig();
+        config.setProperty(ConfigProperties.ENTITLEMENT_CERT_CONTENT_CACHE_MAX_BYTES, "0");
+
+        ContentDictionaryCache cache = new ContentDictionaryCache(config);
+        AtomicInteger builds = new AtomicInteger();
+        List<String> paths = Collections.singletonList("/content/a");
+
+        cache.get(paths, this.builder(builds, (byte) 1));
+        cache.get(paths, this.builder(builds, (byte) 1));
+
+        assertEquals(2, builds.get());
+    }
+
+    @Test(expected = IOException.class)
+    public void rethrowsBuildFailures() throws Exception {
+        new ContentDictionaryCache(1024).get(Collections.singletonList("/content/a"), () -> {
+            throw new IOException();
+        });
+    }
+
+}
@@ -16,9 +16,13 @@ package org.candlepin.util;
 
 import static org.candlepin.test.MatchesPattern.*;
 import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
 
 import org.candlepin.TestingModules;
 import org.candlepin.common.config.Configuration;
+import org.candlepin.config.ConfigProperties;
+import org.candlepin.model.CandlepinQuery;
 import org.candlepin.model.CertificateSerialCurator;
 import org.candlepin.pki.CertificateReader;
 import org.candlepin.pki.PKIUtility;
@@ -46,6 +50,7 @@ import java.net.URL;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509CRL;
 import java.security.cert.X509CRLEntry;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
@@ -215,6 +220,45 @@ public class CrlFileUtilTest {
         assertFalse(new ContainsSerials(temp).matchesSafely(unrevoke));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSinglePassSyncRewritesCRLOnce() throws Exception {
+        Set<BigInteger> prime = new HashSet<>(Arrays.asList(
+            new BigInteger("4420205175"),
+            new BigInteger("2475450918")
+        ));
+
+        this.cfu.initializeCRLFile(temp, initialEntry);
+        this.cfu.updateCRLFile(temp, prime, null);
+
+        CandlepinQuery<Long> uncollected = mock(CandlepinQuery.class);
+        when(uncollected.list()).thenReturn(new ArrayList<>(Arrays.asList(5219615176L, 2239819513L, null)));
+        when(this.certSerialCurator.getUncollectedRevokedCertSerials()).thenReturn(uncollected);
+
+        CandlepinQuery<Long> expired = mock(CandlepinQuery.class);
+        when(expired.list()).thenReturn(new ArrayList<>(Arrays.asList(4420205175L)));
+        when(this.certSerialCurator.getExpiredRevokedCertSerials()).thenReturn(expired);
+
+        when(this.config.getBoolean(eq(ConfigProperties.CRL_SINGLE_PASS_SYNC), anyBoolean()))
+            .thenReturn(true);
+
+        CrlFileUtil spy = spy(this.cfu);
+        spy.syncCRLWithDB(temp);
+
+        verify(spy, times(1)).rewriteCRLFile(eq(temp), anyCollection(), any(CRLEntryValidator.class));
+        verify(this.certSerialCurator).markSerialsAsCollected(eq(Arrays.asList(5219615176L, 2239819513L)));
+        verify(this.certSerialCurator).deleteSerials(eq(Arrays.asList(4420205175L)));
+
+        Set<BigInteger> expected = new HashSet<>(Arrays.asList(
+            new BigInteger("2475450918"),
+            new BigInteger("5219615176"),
+            new BigInteger("2239819513")
+        ));
+        assertThat(expected, new ContainsSerials(temp));
+        assertFalse(new ContainsSerials(temp).matchesSafely(
+            new HashSet<>(Arrays.asList(new BigInteger("4420205175")))));
+    }
+
     public class ContainsSerials extends TypeSafeMatcher<Set<BigInteger>> {
         private Set<BigInteger> serials;
 
@@ -0,0 +1,274 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.candlepin.model.CandlepinQuery;
+import org.candlepin.model.CertificateSerialCurator;
+import org.candlepin.pki.PKIUtility;
+
+import com.google.inject.persist.UnitOfWork;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.security.cert.X509CRL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+
+/**
+ * CrlPublisherTest
+ */
+public class CrlPublisherTest {
+
+    private static final long HOUR = 3600000L;
+
+    private CrlFileUtil crlFileUtil;
+    private PKIUtility pkiUtility;
+    private CertificateSerialCurator certSerialCurator;
+    private UnitOfWork unitOfWork;
+    private File crlFile;
+    private CrlPublisher publisher;
+
+    @Before
+    public void setUp() throws Exception {
+        this.crlFileUtil = mock(CrlFileUtil.class);
+        this.unitOfWork = mock(UnitOfWork.class);
+        this.crlFile = File.createTempFile("test-", "crl");
+        this.pkiUtility = mock(PKIUtility.class);
+        this.certSerialCurator = mock(CertificateSerialCurator.class);
+        this.publisher = this.createPublisher(HOUR, 0);
+    }
+
+    private CrlPublisher createPublisher(long refreshInterval, long deltaRefreshInterval) {
+        return new CrlPublisher(this.crlFileUtil, this.pkiUtility, this.certSerialCurator, this.unitOfWork,
+            this.crlFile.getAbsolutePath(), refreshInterval, deltaRefreshInterval);
+    }
+
+    @After
+    public void tearDown() {
+        this.publisher.shutdown();
+        this.crlFile.delete();
+        this.getDeltaNumberFile().delete();
+    }
+
+    private File getDeltaNumberFile() {
+        return new File(this.crlFile.getAbsolutePath() + CrlPublisher.DELTA_NUMBER_FILE_SUFFIX);
+    }
+
+    private void syncWrites(final String content) throws IOException {
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                Files.write(((File) invocation.getArguments()[0]).toPath(), content.getBytes());
+                return null;
+            }
+        }).when(this.crlFileUtil).syncCRLWithDB(any(File.class));
+    }
+
+    @Test
+    public void testDisabledWithoutRefreshInterval() {
+        CrlPublisher disabled = this.createPublisher(0, HOUR);
+
+        assertFalse(disabled.isEnabled());
+        assertFalse(disabled.isDeltaEnabled());
+        assertTrue(this.publisher.isEnabled());
+        assertFalse(this.publisher.isDeltaEnabled());
+    }
+
+    @Test
+    public void testFirstSnapshotIsBuiltOnDemand() throws Exception {
+        this.syncWrites("crl1");
+
+        CrlSnapshot snapshot = this.publisher.getSnapshot();
+
+        assertEquals("crl1", new String(snapshot.getContent()));
+        assertEquals(1, snapshot.getVersion());
+        assertSame(snapshot, this.publisher.getSnapshot());
+        verify(this.crlFileUtil).syncCRLWithDB(eq(this.crlFile));
+        verify(this.unitOfWork).begin();
+        verify(this.unitOfWork).end();
+    }
+
+    @Test
+    public void testRefreshKeepsSnapshotOfUnchangedCrl() throws Exception {
+        this.syncWrites("crl1");
+        CrlSnapshot snapshot = this.publisher.refresh();
+
+        assertSame(snapshot, this.publisher.refresh());
+    }
+
+    @Test
+    public void testRefreshPublishesNewVersionOfChangedCrl() throws Exception {
+        this.syncWrites("crl1");
+        CrlSnapshot snapshot = this.publisher.refresh();
+
+        this.syncWrites("crl2");
+        CrlSnapshot updated = this.publisher.refresh();
+
+        assertEquals(2, updated.getVersion());
+        assertEquals("crl2", new String(updated.getContent()));
+        assertNotEquals(snapshot.getETag(), updated.getETag());
+        assertSame(updated, this.publisher.getSnapshot());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void setupDelta(Long... serials) throws Exception {
+        CandlepinQuery<Long> query = mock(CandlepinQuery.class);
+        when(query.list()).thenReturn(new ArrayList<>(Arrays.asList(serials)));
+        when(this.certSerialCurator.getUncollectedRevokedCertSerials()).thenReturn(query);
+
+        X509CRL crl = mock(X509CRL.class);
+        when(this.pkiUtility.createX509DeltaCRL(anyList(), any(BigInteger.class), any(BigInteger.class)))
+            .thenReturn(crl);
+        when(this.pkiUtility.getPemEncoded(eq(crl))).thenReturn("delta".getBytes());
+    }
+
+    private String readResource(String name) throws Exception {
+        return new String(Files.readAllBytes(
+            new File(CrlPublisherTest.class.getClassLoader().getResource(name).toURI()).toPath()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDeltaListsSerialsRevokedSinceCrlWasSynced() throws Exception {
+        // The CRL number of the test CRL is 7
+        this.syncWrites(this.readResource("crl.pem"));
+        this.setupDelta(10L, 11L, null);
+        this.publisher.shutdown();
+        this.publisher = this.createPublisher(HOUR, HOUR);
+
+        CrlSnapshot delta = this.publisher.getDeltaSnapshot();
+
+        assertEquals("delta", new String(delta.getContent()));
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(this.pkiUtility).createX509DeltaCRL(captor.capture(), eq(BigInteger.valueOf(8)),
+            eq(BigInteger.valueOf(7)));
+        assertEquals(2, captor.getValue().size());
+
+        // Updates of the CRL are numbered after the delta
+        verify(this.crlFileUtil).setMinimumCRLNumber(eq(BigInteger.valueOf(9)));
+    }
+
+    @Test
+    public void testDeltaIsOnlyRebuiltWhenRevokedSerialsChange() throws Exception {
+        this.syncWrites(this.readResource("crl.pem"));
+        this.setupDelta(10L);
+        this.publisher.shutdown();
+        this.publisher = this.createPublisher(HOUR, HOUR);
+
+        CrlSnapshot delta = this.publisher.refreshDelta();
+        assertSame(delta, this.publisher.refreshDelta());
+
+        this.setupDelta(10L, 11L);
+        CrlSnapshot updated = this.publisher.refreshDelta();
+
+        assertEquals(2, updated.getVersion());
+        assertSame(updated, this.publisher.getDeltaSnapshot());
+        verify(this.pkiUtility).createX509DeltaCRL(anyList(), eq(BigInteger.valueOf(9)),
+            eq(BigInteger.valueOf(7)));
+    }
+
+    @Test
+    public void testDeltaNumberIsPersisted() throws Exception {
+        this.syncWrites(this.readResource("crl.pem"));
+        this.setupDelta(10L);
+        this.publisher.shutdown();
+        this.publisher = this.createPublisher(HOUR, HOUR);
+
+        this.publisher.refreshDelta();
+
+        assertEquals("8", new String(Files.readAllBytes(this.getDeltaNumberFile().toPath())));
+    }
+
+    @Test
+    public void testDeltaNumberIsRestoredOnStartup() throws Exception {
+        Files.write(this.getDeltaNumberFile().toPath(), "12".getBytes());
+        this.syncWrites(this.readResource("crl.pem"));
+        this.setupDelta(10L);
+        this.publisher.shutdown();
+        this.publisher = this.createPublisher(HOUR, HOUR);
+
+        // Updates of the CRL are numbered after deltas issued before the restart
+        verify(this.crlFileUtil).setMinimumCRLNumber(eq(BigInteger.valueOf(13)));
+
+        this.publisher.refreshDelta();
+
+        verify(this.pkiUtility).createX509DeltaCRL(anyList(), eq(BigInteger.valueOf(13)),
+            eq(BigInteger.valueOf(7)));
+        assertEquals("13", new String(Files.readAllBytes(this.getDeltaNumberFile().toPath())));
+    }
+
+    @Test
+    public void testUnreadableDeltaNumberIsIgnored() throws Exception {
+        Files.write(this.getDeltaNumberFile().toPath(), "garbage".getBytes());
+        this.syncWrites(this.readResource("crl.pem"));
+        this.setupDelta(10L);
+        this.publisher.shutdown();
+        this.publisher = this.createPublisher(HOUR, HOUR);
+
+        this.publisher.refreshDelta();
+
+        verify(this.pkiUtility).createX509DeltaCRL(anyList(), eq(BigInteger.valueOf(8)),
+            eq(BigInteger.valueOf(7)));
+    }
+
+    @Test
+    public void testDeltaDisabled() throws Exception {
+        assertNull(this.publisher.getDeltaSnapshot());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRefreshInitializesMissingCrl() throws Exception {
+        this.crlFile.delete();
+
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                Files.write(((File) invocation.getArguments()[0]).toPath(), "empty".getBytes());
+                return null;
+            }
+        }).when(this.crlFileUtil).initializeCRLFile(any(File.class), anyCollection());
+
+        assertEquals("empty", new String(this.publisher.refresh().getContent()));
+    }
+
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.util.Date;
+
+
+
+/**
+ * CrlSnapshotTest
+ */
+public class CrlSnapshotTest {
+
+    private byte[] readResource(String name) throws Exception {
+        return Files.readAllBytes(
+            new File(CrlSnapshotTest.class.getClassLoader().getResource(name).toURI()).toPath());
+    }
+
+    @Test
+    public void testReadCrlNumberFromPem() throws Exception {
+        CrlSnapshot snapshot = new CrlSnapshot(this.readResource("crl.pem"), 1, new Date());
+        assertEquals(BigInteger.valueOf(7), snapshot.getCrlNumber());
+    }
+
+    @Test
+    public void testReadCrlNumberFromDer() throws Exception {
+        assertEquals(BigInteger.valueOf(7), CrlSnapshot.readCrlNumber(this.readResource("crl.der")));
+        assertEquals(BigInteger.ONE, CrlSnapshot.readCrlNumber(this.readResource("real-crl.der")));
+    }
+
+    @Test
+    public void testReadCrlNumberOfInvalidContent() {
+        assertNull(CrlSnapshot.readCrlNumber("not a crl".getBytes()));
+        assertNull(CrlSnapshot.readCrlNumber(new byte[] { 0x30, 0x7F }));
+        assertNull(CrlSnapshot.readCrlNumber(new byte[0]));
+    }
+
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import org.candlepin.common.config.Configuration;
+import org.candlepin.model.EntitlementCurator;
+import org.candlepin.util.X509V3ExtensionUtil.HuffNode;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+
+/**
+ * HuffmanEncoderTest
+ */
+public class HuffmanEncoderTest {
+    private X509V3ExtensionUtil util;
+
+    @Before
+    public void init() {
+        util = new X509V3ExtensionUtil(mock(Configuration.class), mock(EntitlementCurator.class),
+            new ObjectMapper(), new ContentDictionaryCache(0));
+    }
+
+    private List<String> values(int count) {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            values.add("value-" + i);
+        }
+
+        return values;
+    }
+
+    private void assertCodesMatchTrie(List<String> values, int firstWeight) {
+        List<HuffNode> nodes = new ArrayList<>();
+        int weight = firstWeight;
+        for (String value : values) {
+            nodes.add(util.new HuffNode(value, weight++));
+        }
+
+        HuffNode trie = util.makeTrie(nodes);
+        HuffmanEncoder<String> encoder = new HuffmanEncoder<>(values, firstWeight);
+
+        for (String value : values) {
+            assertEquals(value, util.findHuffPath(trie, value), encoder.getCode(value));
+        }
+    }
+
+    @Test
+    public void codesMatchTrie() {
+        for (int count : new int[] { 1, 2, 3, 7, 100, 1000, 5000 }) {
+            assertCodesMatchTrie(values(count), 1);
+            assertCodesMatchTrie(values(count), 0);
+        }
+    }
+
+    @Test
+    public void unknownValueHasNoCode() {
+        HuffmanEncoder<String> encoder = new HuffmanEncoder<>(values(3), 1);
+        assertEquals("", encoder.getCode("unknown"));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        HuffmanEncoder.BitWriter writer = new HuffmanEncoder.BitWriter(output);
+        encoder.encode("unknown", writer);
+        writer.flush();
+        assertEquals(0, output.size());
+    }
+
+    @Test
+    public void encodesCodesMostSignificantBitFirst() {
+        // Weights 1, 2, 3 produce the codes 10, 11 and 0 respectively
+        List<String> values = Arrays.asList("a", "b", "c");
+        HuffmanEncoder<String> encoder = new HuffmanEncoder<>(values, 1);
+        assertEquals("10", encoder.getCode("a"));
+        assertEquals("11", encoder.getCode("b"));
+        assertEquals("0", encoder.getCode("c"));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        HuffmanEncoder.BitWriter writer = new HuffmanEncoder.BitWriter(output);
+        for (String value : Arrays.asList("a", "b", "c", "c", "a", "b")) {
+            encoder.encode(value, writer);
+        }
+        writer.flush();
+
+        // 10 11 0 0 10 11, padded with zeros
+        assertArrayEquals(new byte[] { (byte) 0xB2, (byte) 0xC0 }, output.toByteArray());
+    }
+
+}
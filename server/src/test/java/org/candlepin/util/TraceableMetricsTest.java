@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2009 - 2018 Red Hat, Inc.
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package org.candlepin.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * TraceableMetricsTest
+ */
+public class TraceableMetricsTest {
+
+    @Test
+    public void recordsSeriesPerParameterValues() {
+        TraceableMetrics metrics = new TraceableMetrics();
+        metrics.record("Manager.refresh", Collections.singletonMap("owner", "b"),
+            TimeUnit.MILLISECONDS.toNanos(20), false);
+        metrics.record("Manager.refresh", Collections.singletonMap("owner", "a"),
+            TimeUnit.MILLISECONDS.toNanos(3), false);
+        metrics.record("Manager.refresh", Collections.singletonMap("owner", "a"),
+            TimeUnit.SECONDS.toNanos(2), true);
+
+        List<TraceableMethodStats> stats = metrics.getStats();
+        assertEquals(2, stats.size());
+
+        TraceableMethodStats first = stats.get(0);
+        assertEquals("Manager.refresh", first.getMethod());
+        assertEquals(Collections.singletonMap("owner", "a"), first.getTags());
+        assertEquals(2, first.getCount());
+        assertEquals(1, first.getErrorCount());
+        assertEquals(2.0, first.getMaxSeconds(), 0.0001);
+        assertEquals(2.003, first.getTotalSeconds(), 0.0001);
+        assertEquals(Long.valueOf(1), first.getBuckets().get("0.005"));
+        assertEquals(Long.valueOf(1), first.getBuckets().get("1.0"));
+        assertEquals(Long.valueOf(2), first.getBuckets().get("2.5"));
+
+        assertEquals(Collections.singletonMap("owner", "b"), stats.get(1).getTags());
+        assertEquals(0, stats.get(1).getErrorCount());
+    }
+
+    @Test
+    public void exportsPrometheusText() {
+        TraceableMetrics metrics = new TraceableMetrics();
+        metrics.record("Job.execute", Collections.singletonMap("owner", "o\"1"),
+            TimeUnit.MILLISECONDS.toNanos(40), true);
+
+        String text = metrics.toPrometheus();
+
+        assertTrue(text.contains("# TYPE candlepin_traceable_duration_seconds histogram\n"));
+        assertTrue(text.contains(
+            "candlepin_traceable_duration_seconds_bucket{method=\"Job.execute\",owner=\"o\\\"1\"," +
+            "le=\"0.025\"} 0\n"));
+        assertTrue(text.contains(
+            "candlepin_traceable_duration_seconds_bucket{method=\"Job.execute\",owner=\"o\\\"1\"," +
+            "le=\"0.05\"} 1\n"));
+        assertTrue(text.contains(
+            "candlepin_traceable_duration_seconds_count{method=\"Job.execute\",owner=\"o\\\"1\"} 1\n"));
+        assertTrue(text.contains(
+            "candlepin_traceable_errors_total{method=\"Job.execute\",owner=\"o\\\"1\"} 1\n"));
+    }
+
+    @Test
+    public void dropsParametersBeyondMaxSeries() {
+        TraceableMetrics metrics = new TraceableMetrics();
+        for (int i = 0; i < TraceableMetrics.MAX_SERIES + 5; i++) {
+            metrics.record("Manager.refresh", Collections.singletonMap("owner", "owner-" + i), 1, false);
+        }
+
+        List<TraceableMethodStats> stats = metrics.getStats();
+        assertEquals(TraceableMetrics.MAX_SERIES + 1, stats.size());
+
+        TraceableMethodStats untagged = stats.get(stats.size() - 1);
+        assertTrue(untagged.getTags().isEmpty());
+        assertEquals(5, untagged.getCount());
+    }
+
+}
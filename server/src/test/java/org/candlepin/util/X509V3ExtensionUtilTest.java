@@ -28,6 +28,7 @@ import org.candlepin.model.Pool;
 import org.candlepin.model.Product;
 import org.candlepin.model.ProductContent;
 import org.candlepin.model.Owner;
+import org.candlepin.pki.X509ByteExtensionWrapper;
 import org.candlepin.test.TestUtil;
 import org.candlepin.util.X509V3ExtensionUtil.NodePair;
 import org.candlepin.util.X509V3ExtensionUtil.PathNode;
@@ -35,6 +36,7 @@ import org.candlepin.util.X509V3ExtensionUtil.PathNode;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -49,6 +51,7 @@ import java.util.Set;
 public class X509V3ExtensionUtilTest {
     private Configuration config;
     private EntitlementCurator ec;
+    private ContentDictionaryCache dictionaryCache;
     private X509V3ExtensionUtil util;
 
 
@@ -56,7 +59,8 @@ public class X509V3ExtensionUtilTest {
     public void init() {
         config = mock(Configuration.class);
         ec = mock(EntitlementCurator.class);
-        util = new X509V3ExtensionUtil(config, ec, new ObjectMapper());
+        dictionaryCache = new ContentDictionaryCache(1024 * 1024);
+        util = new X509V3ExtensionUtil(config, ec, new ObjectMapper(), dictionaryCache);
     }
 
     @Test
@@ -183,4 +187,62 @@ public class X509V3ExtensionUtilTest {
         assertEquals("OS", resultBrandType);
     }
 
+    @Test
+    public void contentPathsSurviveEncoding() throws Exception {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            paths.add(String.format("/content/dist/rhel/server/%d/%d/$basearch/repo-%d/os",
+                i % 3 + 6, i % 7, i % 250));
+        }
+        paths.add("/content/beta/single");
+        paths.add("/singlesegment");
+
+        List<org.candlepin.model.dto.Content> contents = new ArrayList<>();
+        for (String path : new HashSet<>(paths)) {
+            org.candlepin.model.dto.Content content = new org.candlepin.model.dto.Content();
+            content.setPath(path);
+            contents.add(content);
+        }
+
+        org.candlepin.model.dto.Product product = new org.candlepin.model.dto.Product();
+        product.setContent(contents);
+
+        Set<X509ByteExtensionWrapper> extensions = util.getByteExtensions(null,
+            Arrays.asList(product), null, null);
+        assertEquals(1, extensions.size());
+
+        List<String> hydrated = util.hydrateContentPackage(extensions.iterator().next().getValue());
+        assertEquals(new HashSet<>(paths), new HashSet<>(hydrated));
+        assertEquals(new HashSet<>(paths).size(), hydrated.size());
+    }
+
+    private org.candlepin.model.dto.Product createProductModel(String... paths) {
+        List<org.candlepin.model.dto.Content> contents = new ArrayList<>();
+        for (String path : paths) {
+            org.candlepin.model.dto.Content content = new org.candlepin.model.dto.Content();
+            content.setPath(path);
+            contents.add(content);
+        }
+
+        org.candlepin.model.dto.Product product = new org.candlepin.model.dto.Product();
+        product.setContent(contents);
+        return product;
+    }
+
+    @Test
+    public void reusesDictionariesOfSamePaths() throws Exception {
+        byte[] first = util.getByteExtensions(null, Arrays.asList(createProductModel("/a/b", "/a/c")),
+            null, null).iterator().next().getValue();
+        byte[] second = util.getByteExtensions(null, Arrays.asList(createProductModel("/a/b", "/a/c")),
+            null, null).iterator().next().getValue();
+        byte[] other = util.getByteExtensions(null, Arrays.asList(createProductModel("/a/b", "/a/d")),
+            null, null).iterator().next().getValue();
+
+        assertArrayEquals(first, second);
+        assertEquals(1, dictionaryCache.getStats().hitCount());
+        assertEquals(2, dictionaryCache.getStats().missCount());
+
+        assertEquals(Arrays.asList("/a/b", "/a/d"), util.hydrateContentPackage(other));
+    }
+
 }